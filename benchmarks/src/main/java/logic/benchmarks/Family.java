@@ -0,0 +1,70 @@
+package logic.benchmarks;
+
+import java.util.List;
+
+import logic.formula.Formula;
+
+/**
+ * The input families of the benchmarks, the meaning of the size depends on the family
+ */
+public enum Family
+{
+	/**
+	 * Random 3-SAT with size variables at the phase transition
+	 */
+	RANDOM_3SAT,
+	/**
+	 * Pigeonhole principle with size holes
+	 */
+	PIGEONHOLE,
+	/**
+	 * Parity chain over size variables
+	 */
+	PARITY,
+	/**
+	 * Satisfiable Horn chain of length size
+	 */
+	HORN_CHAIN,
+	/**
+	 * Tree of depth 4 with size children per node over 4*size variables
+	 */
+	WIDE_TREE;
+
+	private static final long SEED = 42;
+
+	/**
+	 * @param size - size of the input
+	 * @return the clauses of the input or null if the input is not a clause set
+	 */
+	public List<int[]> clauses(int size)
+	{
+		switch(this)
+		{
+		case RANDOM_3SAT:
+			return Generators.random3Sat(size, 4.26, SEED);
+		case PIGEONHOLE:
+			return Generators.pigeonhole(size);
+		case HORN_CHAIN:
+			return Generators.hornChain(size, false);
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @param size - size of the input
+	 * @return the input as a formula
+	 */
+	public Formula formula(int size)
+	{
+		switch(this)
+		{
+		case PARITY:
+			return Generators.parityChain(size);
+		case WIDE_TREE:
+			return Generators.wideTree(size, 4, 4*size, SEED);
+		default:
+			return Generators.toFormula(clauses(size));
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package logic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.formula.Algorithms;
+import logic.formula.Formula;
+import logic.formula.SetFormula;
+
+/**
+ * Simplification and the Tseitin transformation, both are expected to be (nearly) linear in the size of the formula
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormulaBenchmark
+{
+	@Param({"RANDOM_3SAT", "PIGEONHOLE", "WIDE_TREE"})
+	public Family family;
+
+	@Param({"6", "12"})
+	public int size;
+
+	private Formula formula;
+
+	@Setup
+	public void setup()
+	{
+		formula = family.formula(size);
+	}
+
+	@Benchmark
+	public Formula simplify()
+	{
+		return formula.simplify();
+	}
+
+	@Benchmark
+	public SetFormula getEquisatisfiableCNF()
+	{
+		return Algorithms.getEquisatisfiableCNF(formula);
+	}
+}
@@ -0,0 +1,194 @@
+package logic.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import logic.formula.ANDFormula;
+import logic.formula.AtomicFormula;
+import logic.formula.Formula;
+import logic.formula.FormulaFactory;
+import logic.formula.NOTFormula;
+import logic.formula.ORFormula;
+
+/**
+ * Generators of benchmark inputs, all formulas are built by the default factory.
+ * <br>
+ * Clause sets are returned as lists of clauses over DIMACS literals, i.e. i and -i for the variable xi.
+ */
+public final class Generators
+{
+	private static final FormulaFactory factory = FormulaFactory.getDefault();
+
+	private Generators()
+	{
+	}
+
+	/**
+	 * Random 3-SAT, every clause has three distinct variables with random signs.
+	 * At the phase transition ratio of about 4.26 half of the instances are satisfiable.
+	 * @param n - number of variables
+	 * @param ratio - number of clauses per variable
+	 * @param seed - seed of the random generator
+	 */
+	public static List<int[]> random3Sat(int n, double ratio, long seed)
+	{
+		Random r = new Random(seed);
+		int m = (int) Math.round(ratio*n);
+		List<int[]> clauses = new ArrayList<>(m);
+		for(int i = 0;i<m;i++)
+		{
+			int a = 1+r.nextInt(n);
+			int b;
+			do
+				b = 1+r.nextInt(n);
+			while(b == a);
+			int c;
+			do
+				c = 1+r.nextInt(n);
+			while(c == a || c == b);
+			clauses.add(new int[] {sign(r, a), sign(r, b), sign(r, c)});
+		}
+		return clauses;
+	}
+
+	private static int sign(Random r, int v)
+	{
+		return r.nextBoolean()?v:-v;
+	}
+
+	/**
+	 * The pigeonhole principle for holes+1 pigeons, the clauses are unsatisfiable.
+	 * The variable (i*holes+j+1) means that pigeon i sits in hole j.
+	 * @param holes - number of holes
+	 */
+	public static List<int[]> pigeonhole(int holes)
+	{
+		List<int[]> clauses = new ArrayList<>();
+		int pigeons = holes+1;
+		for(int i = 0;i<pigeons;i++)
+		{
+			int[] c = new int[holes];
+			for(int j = 0;j<holes;j++)
+				c[j] = i*holes+j+1;
+			clauses.add(c);
+		}
+		for(int j = 0;j<holes;j++)
+			for(int i = 0;i<pigeons;i++)
+				for(int k = i+1;k<pigeons;k++)
+					clauses.add(new int[] {-(i*holes+j+1), -(k*holes+j+1)});
+		return clauses;
+	}
+
+	/**
+	 * A deep chain of Horn clauses x1, x1 -&gt; x2, ..., x(n-1) -&gt; xn, optionally with the goal clause NOT(xn)
+	 * @param n - length of the chain
+	 * @param contradiction - true to add NOT(xn), the clauses are then unsatisfiable
+	 */
+	public static List<int[]> hornChain(int n, boolean contradiction)
+	{
+		List<int[]> clauses = new ArrayList<>(n+1);
+		clauses.add(new int[] {1});
+		for(int i = 1;i<n;i++)
+			clauses.add(new int[] {-i, i+1});
+		if(contradiction)
+			clauses.add(new int[] {-n});
+		return clauses;
+	}
+
+	/**
+	 * @param clauses - clauses over DIMACS literals
+	 * @return the conjunction of the disjunctions of the clauses
+	 */
+	public static Formula toFormula(List<int[]> clauses)
+	{
+		List<Formula> list = new ArrayList<>(clauses.size());
+		for(int[] c:clauses)
+		{
+			List<Formula> lits = new ArrayList<>(c.length);
+			for(int l:c)
+				lits.add(literal(l));
+			list.add(factory.or(lits));
+		}
+		return factory.and(list);
+	}
+
+	private static Formula literal(int l)
+	{
+		AtomicFormula a = factory.atom("x"+Math.abs(l));
+		return l > 0?a:factory.not(a);
+	}
+
+	/**
+	 * The parity x1 XOR ... XOR xn as a chain of AND/OR/NOT, the i-th link refers twice to the (i-1)-th link
+	 * @param n - number of variables
+	 */
+	public static Formula parityChain(int n)
+	{
+		Formula f = factory.atom("x1");
+		for(int i = 2;i<=n;i++)
+		{
+			Formula x = factory.atom("x"+i);
+			f = factory.or(factory.and(f, factory.not(x)), factory.and(factory.not(f), x));
+		}
+		return f;
+	}
+
+	/**
+	 * A tree of alternating AND and OR nodes with random literals at the leaves
+	 * @param width - number of children of every inner node
+	 * @param depth - depth of the tree
+	 * @param variables - number of variables of the leaves
+	 * @param seed - seed of the random generator
+	 */
+	public static Formula wideTree(int width, int depth, int variables, long seed)
+	{
+		return wideTree(width, depth, variables, new Random(seed), true);
+	}
+
+	private static Formula wideTree(int width, int depth, int variables, Random r, boolean and)
+	{
+		if(depth == 0)
+			return literal(sign(r, 1+r.nextInt(variables)));
+		List<Formula> list = new ArrayList<>(width);
+		for(int i = 0;i<width;i++)
+			list.add(wideTree(width, depth-1, variables, r, !and));
+		return and?factory.and(list):factory.or(list);
+	}
+
+	/**
+	 * Formats a formula in the syntax of the parser, in linear time
+	 * @param f - a formula
+	 */
+	public static String toString(Formula f)
+	{
+		StringBuilder sb = new StringBuilder();
+		append(f, sb);
+		return sb.toString();
+	}
+
+	private static void append(Formula f, StringBuilder sb)
+	{
+		if(f instanceof AtomicFormula)
+			sb.append(((AtomicFormula)f).getName());
+		else if(f instanceof NOTFormula)
+		{
+			sb.append("NOT(");
+			append(((NOTFormula)f).getArgumentFormula(), sb);
+			sb.append(')');
+		}
+		else
+		{
+			boolean and = f instanceof ANDFormula;
+			List<Formula> list = and?((ANDFormula)f).getOrigList():((ORFormula)f).getOrigList();
+			sb.append(and?"AND(":"OR(");
+			for(int i = 0;i<list.size();i++)
+			{
+				if(i > 0)
+					sb.append(',');
+				append(list.get(i), sb);
+			}
+			sb.append(')');
+		}
+	}
+}
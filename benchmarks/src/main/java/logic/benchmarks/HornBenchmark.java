@@ -0,0 +1,44 @@
+package logic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.formula.HornFormula;
+import logic.formula.Model;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HornBenchmark
+{
+	@Param({"1000", "100000"})
+	public int size;
+
+	private HornFormula horn;
+
+	@Setup
+	public void setup()
+	{
+		horn = Family.HORN_CHAIN.formula(size).asCNF().asHornFormula();
+	}
+
+	@Benchmark
+	public Model findModel()
+	{
+		return horn.findModel();
+	}
+}
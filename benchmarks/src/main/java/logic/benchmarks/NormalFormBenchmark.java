@@ -0,0 +1,65 @@
+package logic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.formula.Formula;
+import logic.formula.NormalFormCache;
+import logic.formula.SetFormula;
+import logic.helper.Pair;
+
+/**
+ * Conversion to CNF and DNF, the normal forms of these families grow exponentially with the size.
+ * <br>
+ * toNormalForm converts with an empty {@link NormalFormCache} in every invocation, so it measures the conversion and
+ * not the default cache. toNormalFormCached shares one cache between the invocations, i.e. it measures a hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalFormBenchmark
+{
+	@Param({"PARITY", "WIDE_TREE"})
+	public Family family;
+
+	@Param({"3", "6"})
+	public int size;
+
+	private static final long CAPACITY = 1 << 20;
+
+	private Formula formula;
+	private NormalFormCache cache;
+
+	@Setup
+	public void setup()
+	{
+		formula = family.formula(size);
+		cache = new NormalFormCache(CAPACITY);
+	}
+
+	@Benchmark
+	public Pair<SetFormula, SetFormula> toNormalForm()
+	{
+		return formula.toNormalForm(new NormalFormCache(CAPACITY));
+	}
+
+	@Benchmark
+	public Pair<SetFormula, SetFormula> toNormalFormCached()
+	{
+		return formula.toNormalForm(cache);
+	}
+}
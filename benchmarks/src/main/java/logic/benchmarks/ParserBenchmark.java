@@ -0,0 +1,48 @@
+package logic.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.formula.Formula;
+import logic.helper.Parser;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark
+{
+	@Param({"RANDOM_3SAT", "PIGEONHOLE", "WIDE_TREE"})
+	public Family family;
+
+	@Param({"10", "30"})
+	public int size;
+
+	private String input;
+
+	@Setup
+	public void setup()
+	{
+		input = Generators.toString(family.formula(size));
+	}
+
+	@Benchmark
+	public Formula parseFormula()
+	{
+		return Parser.parseFormula(input, new HashMap<>());
+	}
+}
@@ -0,0 +1,61 @@
+package logic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.formula.CubeAndConquer;
+import logic.formula.SetFormula;
+
+/**
+ * Satisfiability of clause sets with the CDCL solver
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark
+{
+	@Param({"RANDOM_3SAT_100", "RANDOM_3SAT_200", "PIGEONHOLE_7", "PIGEONHOLE_8"})
+	public String input;
+
+	private SetFormula cnf;
+
+	@Setup
+	public void setup()
+	{
+		int i = input.lastIndexOf('_');
+		Family family = Family.valueOf(input.substring(0, i));
+		cnf = family.formula(Integer.parseInt(input.substring(i+1))).asCNF();
+	}
+
+	@Benchmark
+	public boolean isSatisfiable()
+	{
+		return cnf.isSatisfiable();
+	}
+
+	@Benchmark
+	public boolean isSatisfiablePortfolio()
+	{
+		return cnf.isSatisfiable(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Benchmark
+	public boolean isSatisfiableCubeAndConquer()
+	{
+		return new CubeAndConquer().solve(cnf);
+	}
+}
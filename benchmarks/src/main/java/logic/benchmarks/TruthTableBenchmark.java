@@ -0,0 +1,49 @@
+package logic.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import logic.formula.Algorithms;
+import logic.formula.Formula;
+import logic.formula.Model;
+
+/**
+ * Truth table search, the pigeonhole formulas are unsatisfiable and enumerate all assignments
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TruthTableBenchmark
+{
+	@Param({"RANDOM_3SAT_20", "PIGEONHOLE_4", "PARITY_20"})
+	public String input;
+
+	private Formula formula;
+
+	@Setup
+	public void setup()
+	{
+		int i = input.lastIndexOf('_');
+		formula = Family.valueOf(input.substring(0, i)).formula(Integer.parseInt(input.substring(i+1)));
+	}
+
+	@Benchmark
+	public Model getModelTT()
+	{
+		return Algorithms.getModelTT(formula);
+	}
+}
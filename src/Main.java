@@ -26,8 +26,8 @@ public class Main
 	  //  Formula f = Formula.parseFormula("AND(OR(NOT(A),NOT(B),NOT(D)),OR(NOT(E)),OR(NOT(C),A),OR(C),OR(B),OR(NOT(G),D))");
 		Formula f = Formula.parseFormula("AND(OR(A,NOT(B),C),OR(NOT(C),NOT(D),A),OR(A,NOT(D),B),OR(NOT(A),NOT(B)))");
 		
-		//System.out.println("CNF: "+f.toNormalForm().getFirst().asFormula().toString().length());
-		//System.out.println("DNF: "+f.toNormalForm().getSecond().asFormula().toString().length());
+		//System.out.println("CNF: "+f.toCNF().asFormula().toString().length());
+		//System.out.println("DNF: "+f.toDNF().asFormula().toString().length());
 	   //System.out.println(Algorithms.getEquisatisfiableCNF(f).asFormula().toString());
 	    //System.out.println(f.getAtomicFormulaOccurences());
 	//	Function<AtomicFormula, Boolean> model = Algorithms.getModelTT(f);
@@ -36,7 +36,7 @@ public class Main
 		//System.out.println((eqf));
 		System.out.println(f.toPrettyString());
 		System.out.println(Algorithms.getModelTT(f));
-		System.out.println(f.toNormalForm().getFirst().resolventSet());
+		System.out.println(f.toCNF().resolventSet());
 		
 	}
 }
@@ -1,6 +1,8 @@
 package logic.formula;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -8,26 +10,34 @@ import logic.helper.LogicHelper;
 
 public class ANDFormula extends Formula
 {
-	public List<Formula> formulaList;
+	// Unmodifiable, the hash code and the interned nodes of a FormulaFactory rely on it
+	private final List<Formula> formulaList;
+	private final int hash;
 
+	/**
+	 * @param formulaList - the arguments, the list is copied
+	 */
 	public ANDFormula(List<Formula> formulaList) 
 	{
 		super();
-		this.formulaList = formulaList;
+		this.formulaList = Collections.unmodifiableList(new ArrayList<>(formulaList));
+		this.hash = 31*this.formulaList.hashCode() + 1;
 	}
 	
 	public ANDFormula(Formula... formulaList) 
 	{
 		super();
-		this.formulaList = new ArrayList<Formula>();
-		for(int i = 0;i<formulaList.length;i++)
-			this.formulaList.add(formulaList[i]);
+		this.formulaList = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(formulaList)));
+		this.hash = 31*this.formulaList.hashCode() + 1;
 	}
 
 	public List<Formula> getFormulaList() {
 		return new ArrayList<>(formulaList);
 	}
 	
+	/**
+	 * @return the arguments without a copy, the list is unmodifiable
+	 */
 	public List<Formula> getOrigList() {
 		return formulaList;
 	}
@@ -48,14 +58,19 @@ public class ANDFormula extends Formula
 
 	@Override
 	public boolean equals(Object arg0) {
-		if(arg0 instanceof ANDFormula)
-			return ((ANDFormula)arg0).getFormulaList().equals(formulaList);
-		return false;
+		if(arg0 == this)
+			return true;
+		if(!(arg0 instanceof ANDFormula))
+			return false;
+		ANDFormula f = (ANDFormula)arg0;
+		if(f.hash != hash || isCanonicalWith(f))
+			return false;
+		return f.formulaList.equals(formulaList);
 	}
 
 	@Override
 	public int hashCode() {
-		return formulaList.hashCode();
+		return hash;
 	}
 
 	@Override
@@ -8,6 +8,7 @@ public class AtomicFormula extends Formula {
 	public static AtomicFormula FALSE = new AtomicFormula("FALSE");
 	
 	String name;
+	int index = -1; // cached variable of the VariableTable
 	
 	public AtomicFormula(String name) {
 		super();
@@ -27,6 +28,8 @@ public class AtomicFormula extends Formula {
 	@Override
 	public boolean equals(Object b)
 	{
+		if(b == this)
+			return true;
 		if(b instanceof AtomicFormula)
 			return ((AtomicFormula)b).getName().equals(name);
 		return false;
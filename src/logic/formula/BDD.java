@@ -0,0 +1,132 @@
+package logic.formula;
+
+import java.math.BigInteger;
+
+/**
+ * A reduced ordered binary decision diagram, i.e. a node of a {@link BDDManager}.
+ * <br>
+ * BDDs are immutable. Two BDDs of the same manager represent equivalent formulas iff they are equal,
+ * so equivalence, tautology and satisfiability checks take constant time once the BDDs are built.
+ * Operations on BDDs of different managers are not allowed.
+ */
+public final class BDD
+{
+	final BDDManager manager;
+	final int node;
+
+	BDD(BDDManager manager, int node)
+	{
+		this.manager = manager;
+		this.node = node;
+	}
+
+	public BDDManager getManager()
+	{
+		return manager;
+	}
+
+	public BDD and(BDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.and(node, g.node));
+	}
+
+	public BDD or(BDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.or(node, g.node));
+	}
+
+	public BDD xor(BDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.xor(node, g.node));
+	}
+
+	public BDD not()
+	{
+		manager.checkpoint();
+		return manager.handle(manager.not(node));
+	}
+
+	/**
+	 * @return the BDD of IF this THEN g ELSE h
+	 */
+	public BDD ite(BDD g, BDD h)
+	{
+		manager.check(g);
+		manager.check(h);
+		manager.checkpoint();
+		return manager.handle(manager.ite(node, g.node, h.node));
+	}
+
+	/**
+	 * @return true iff this BDD is the constant TRUE
+	 */
+	public boolean isTautology()
+	{
+		return node == BDDManager.TRUE;
+	}
+
+	/**
+	 * @return true iff this BDD is not the constant FALSE
+	 */
+	public boolean isSatisfiable()
+	{
+		return node != BDDManager.FALSE;
+	}
+
+	/**
+	 * @param g - a BDD of the same manager
+	 * @return true iff this BDD and g represent equivalent formulas
+	 */
+	public boolean isEquivalentTo(BDD g)
+	{
+		manager.check(g);
+		return node == g.node;
+	}
+
+	/**
+	 * @return the number of assignments of all variables of the manager that satisfy this BDD
+	 */
+	public BigInteger countModels()
+	{
+		return manager.countModels(node);
+	}
+
+	/**
+	 * Enumerates the assignments of all variables of the manager that satisfy this BDD.
+	 * The manager must not be used for other operations during the enumeration.
+	 * @return the satisfying assignments
+	 */
+	public Iterable<Model> models()
+	{
+		return () -> manager.models(node);
+	}
+
+	/**
+	 * @return the number of nodes of this BDD including the terminals
+	 */
+	public int getNodeCount()
+	{
+		return manager.size(node);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(!(obj instanceof BDD))
+			return false;
+		BDD b = (BDD) obj;
+		return b.manager == manager && b.node == node;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return node*31 + System.identityHashCode(manager);
+	}
+}
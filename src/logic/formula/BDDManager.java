@@ -0,0 +1,939 @@
+package logic.formula;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A manager of reduced ordered binary decision diagrams (ROBDDs), see {@link BDD}.
+ * <br>
+ * Nodes are stored in parallel int arrays: the variable, the low and the high child of every node.
+ * The nodes 0 and 1 are the terminals FALSE and TRUE. Every variable has a hash table of its nodes (the unique table),
+ * so equal functions are represented by the same node and two BDDs of one manager are equivalent iff their nodes are equal.
+ * The results of AND, OR, XOR, NOT and ITE are remembered in a direct-mapped cache.
+ * <br>
+ * Nodes that are not reachable from a {@link BDD} object anymore are reclaimed by a mark-and-sweep garbage collection,
+ * which runs before an operation if the number of nodes has doubled since the last collection.
+ * The variable order is improved by sifting: every variable is moved through all levels by swapping adjacent levels
+ * and is left at the level with the fewest nodes. Swaps change nodes in place, so BDD objects stay valid.
+ * Sifting runs automatically after a garbage collection if there are still many nodes, see {@link #setAutoReorder(boolean)}.
+ * <br>
+ * A manager is not thread-safe.
+ */
+public final class BDDManager
+{
+	static final int FALSE = 0;
+	static final int TRUE = 1;
+
+	private static final int OP_AND = 0;
+	private static final int OP_OR = 1;
+	private static final int OP_XOR = 2;
+	private static final int OP_NOT = 3;
+	private static final int OP_ITE = 4;
+
+	// Sifting stops moving a variable in one direction if the number of nodes grows beyond this factor
+	private static final double MAX_GROWTH = 1.2;
+
+	// Nodes
+	private int[] var = new int[1024]; // -1 for free nodes
+	private int[] low = new int[1024];
+	private int[] high = new int[1024];
+	private int[] next = new int[1024]; // next node in the chain of the unique table or the free list, 0 ends a chain
+	private int[] ref = new int[1024]; // reference counts while reordering, marks while collecting
+	private int used = 2;
+	private int freeList;
+	private int live;
+
+	// Unique table, one hash table per variable
+	private int[][] buckets = new int[0][];
+	private int[] bucketCount = new int[0];
+
+	// Variables
+	private int numVars;
+	private int[] var2level = new int[0];
+	private int[] level2var = new int[0];
+	private int[] globalOfVar = new int[0];
+	private int[] varOfGlobal = new int[0]; // variable + 1, 0 if the atomic formula has no variable
+
+	// Computed cache
+	private int[] cacheOp;
+	private int[] cacheA;
+	private int[] cacheB;
+	private int[] cacheC;
+	private int[] cacheResult;
+
+	// Roots of the garbage collection
+	private final List<WeakReference<BDD>> handles = new ArrayList<>();
+	private int handleLimit = 1024;
+	private int[] pinned = new int[16];
+	private int pinnedSize;
+
+	private int gcThreshold = 1 << 16;
+	private boolean autoReorder = true;
+	private int reorderThreshold = 1 << 14;
+	private long collections;
+	private long reorderings;
+
+	/**
+	 * Creates a manager without variables
+	 */
+	public BDDManager()
+	{
+		var[FALSE] = var[TRUE] = -1;
+		initCache(1 << 12);
+	}
+
+	private void initCache(int size)
+	{
+		cacheOp = new int[size];
+		Arrays.fill(cacheOp, -1);
+		cacheA = new int[size];
+		cacheB = new int[size];
+		cacheC = new int[size];
+		cacheResult = new int[size];
+	}
+
+	private void clearCache()
+	{
+		Arrays.fill(cacheOp, -1);
+	}
+
+	/**
+	 * @param on - true to reorder the variables by sifting when the number of nodes grows, true by default
+	 */
+	public void setAutoReorder(boolean on)
+	{
+		autoReorder = on;
+	}
+
+	/**
+	 * @return the BDD of the constant TRUE
+	 */
+	public BDD getTrue()
+	{
+		return handle(TRUE);
+	}
+
+	/**
+	 * @return the BDD of the constant FALSE
+	 */
+	public BDD getFalse()
+	{
+		return handle(FALSE);
+	}
+
+	/**
+	 * @param a - an atomic formula, a new variable at the lowest level is created if necessary
+	 * @return the BDD of a
+	 */
+	public BDD variable(AtomicFormula a)
+	{
+		return handle(variableNode(a));
+	}
+
+	private int variableNode(AtomicFormula a)
+	{
+		if(a.isTRUE())
+			return TRUE;
+		if(a.isFALSE())
+			return FALSE;
+		return mk(getVariable(VariableTable.getIndex(a)), FALSE, TRUE);
+	}
+
+	private int getVariable(int g)
+	{
+		if(g >= varOfGlobal.length)
+			varOfGlobal = Arrays.copyOf(varOfGlobal, Math.max(g+1, 2*varOfGlobal.length));
+		if(varOfGlobal[g] != 0)
+			return varOfGlobal[g]-1;
+		int v = numVars++;
+		if(v == var2level.length)
+		{
+			int n = Math.max(16, 2*v);
+			var2level = Arrays.copyOf(var2level, n);
+			level2var = Arrays.copyOf(level2var, n);
+			globalOfVar = Arrays.copyOf(globalOfVar, n);
+			buckets = Arrays.copyOf(buckets, n);
+			bucketCount = Arrays.copyOf(bucketCount, n);
+		}
+		var2level[v] = v;
+		level2var[v] = v;
+		globalOfVar[v] = g;
+		buckets[v] = new int[16];
+		varOfGlobal[g] = v+1;
+		return v;
+	}
+
+	/**
+	 * @return the number of variables
+	 */
+	public int getNumberOfVariables()
+	{
+		return numVars;
+	}
+
+	/**
+	 * @return the atomic formulas of the variables from the top level to the bottom level
+	 */
+	public List<AtomicFormula> getVariableOrder()
+	{
+		List<AtomicFormula> list = new ArrayList<>(numVars);
+		for(int l = 0;l<numVars;l++)
+			list.add(VariableTable.getAtomicFormula(globalOfVar[level2var[l]]));
+		return list;
+	}
+
+	/**
+	 * @return the number of nodes without the terminals, including nodes that have not been collected yet
+	 */
+	public int getNodeCount()
+	{
+		return live;
+	}
+
+	/**
+	 * @return the number of garbage collections so far
+	 */
+	public long getCollections()
+	{
+		return collections;
+	}
+
+	/**
+	 * @return the number of reorderings so far
+	 */
+	public long getReorderings()
+	{
+		return reorderings;
+	}
+
+	/**
+	 * Builds the BDD of a formula
+	 * @param root - a formula
+	 * @return the BDD of root
+	 */
+	public BDD fromFormula(Formula root)
+	{
+		Map<Formula, Integer> nodes = new HashMap<>();
+		List<Formula> stack = new ArrayList<>();
+		int mark = pinnedSize;
+		stack.add(root);
+		while(!stack.isEmpty())
+		{
+			Formula f = stack.get(stack.size()-1);
+			if(nodes.containsKey(f))
+			{
+				stack.remove(stack.size()-1);
+				continue;
+			}
+			if(f instanceof AtomicFormula)
+			{
+				stack.remove(stack.size()-1);
+				nodes.put(f, pin(variableNode((AtomicFormula) f)));
+				continue;
+			}
+			List<Formula> args = f instanceof NOTFormula?Arrays.asList(((NOTFormula)f).getArgumentFormula()):
+				f instanceof ANDFormula?((ANDFormula)f).getOrigList():((ORFormula)f).getOrigList();
+			boolean ready = true;
+			for(int i = args.size()-1;i>=0;i--)
+			{
+				if(!nodes.containsKey(args.get(i)))
+				{
+					stack.add(args.get(i));
+					ready = false;
+				}
+			}
+			if(!ready)
+				continue;
+			stack.remove(stack.size()-1);
+			int r;
+			if(f instanceof NOTFormula)
+			{
+				checkpoint();
+				r = not(nodes.get(args.get(0)));
+			}
+			else
+			{
+				// The intermediate result is pinned, so the garbage collection can run between the arguments
+				boolean and = f instanceof ANDFormula;
+				int slot = pinnedSize;
+				pin(and?TRUE:FALSE);
+				for(Formula g:args)
+				{
+					checkpoint();
+					pinned[slot] = and?and(pinned[slot], nodes.get(g)):or(pinned[slot], nodes.get(g));
+				}
+				r = pinned[slot];
+				pinnedSize = slot;
+			}
+			nodes.put(f, pin(r));
+		}
+		BDD result = handle(nodes.get(root));
+		pinnedSize = mark;
+		return result;
+	}
+
+	/**
+	 * Protects a node from the garbage collection until pinnedSize is reset
+	 */
+	private int pin(int n)
+	{
+		if(pinnedSize == pinned.length)
+			pinned = Arrays.copyOf(pinned, 2*pinnedSize);
+		pinned[pinnedSize++] = n;
+		return n;
+	}
+
+	BDD handle(int n)
+	{
+		BDD b = new BDD(this, n);
+		if(handles.size() >= handleLimit)
+		{
+			handles.removeIf(w -> w.get() == null);
+			handleLimit = Math.max(1024, 2*handles.size());
+		}
+		handles.add(new WeakReference<>(b));
+		return b;
+	}
+
+	/**
+	 * Collects garbage and reorders if the number of nodes has grown enough, called before every operation
+	 */
+	void checkpoint()
+	{
+		if(live < gcThreshold)
+			return;
+		gc();
+		if(autoReorder && live >= reorderThreshold)
+		{
+			reorder();
+			reorderThreshold = Math.max(reorderThreshold, 2*live);
+		}
+		gcThreshold = Math.max(gcThreshold, 2*live);
+		if(live > cacheOp.length && cacheOp.length < (1 << 22))
+			initCache(2*cacheOp.length);
+	}
+
+	// ---------------------------------------------------------------- nodes
+
+	private int level(int n)
+	{
+		return n < 2?Integer.MAX_VALUE:var2level[var[n]];
+	}
+
+	private static int hash(int lo, int hi)
+	{
+		int h = lo*0x9E3779B1 + hi*0x85EBCA6B;
+		return h ^ (h >>> 15);
+	}
+
+	private int allocate()
+	{
+		if(freeList != 0)
+		{
+			int n = freeList;
+			freeList = next[n];
+			return n;
+		}
+		if(used == var.length)
+		{
+			int size = 2*used;
+			var = Arrays.copyOf(var, size);
+			low = Arrays.copyOf(low, size);
+			high = Arrays.copyOf(high, size);
+			next = Arrays.copyOf(next, size);
+			ref = Arrays.copyOf(ref, size);
+		}
+		return used++;
+	}
+
+	/**
+	 * @return the node of variable v with the children lo and hi
+	 */
+	private int mk(int v, int lo, int hi)
+	{
+		if(lo == hi)
+			return lo;
+		int[] table = buckets[v];
+		int slot = hash(lo, hi) & (table.length-1);
+		for(int n = table[slot];n != 0;n = next[n])
+		{
+			if(low[n] == lo && high[n] == hi)
+				return n;
+		}
+		int n = allocate();
+		var[n] = v;
+		low[n] = lo;
+		high[n] = hi;
+		next[n] = table[slot];
+		table[slot] = n;
+		live++;
+		if(++bucketCount[v] > 2*table.length)
+			resize(v);
+		return n;
+	}
+
+	private void resize(int v)
+	{
+		int[] old = buckets[v];
+		int[] table = new int[2*old.length];
+		int mask = table.length-1;
+		for(int b = 0;b<old.length;b++)
+		{
+			int n = old[b];
+			while(n != 0)
+			{
+				int m = next[n];
+				int slot = hash(low[n], high[n]) & mask;
+				next[n] = table[slot];
+				table[slot] = n;
+				n = m;
+			}
+		}
+		buckets[v] = table;
+	}
+
+	private void insert(int n)
+	{
+		int v = var[n];
+		int[] table = buckets[v];
+		int slot = hash(low[n], high[n]) & (table.length-1);
+		next[n] = table[slot];
+		table[slot] = n;
+		if(++bucketCount[v] > 2*table.length)
+			resize(v);
+	}
+
+	private void unlink(int n)
+	{
+		int v = var[n];
+		int[] table = buckets[v];
+		int slot = hash(low[n], high[n]) & (table.length-1);
+		if(table[slot] == n)
+			table[slot] = next[n];
+		else
+		{
+			int p = table[slot];
+			while(next[p] != n)
+				p = next[p];
+			next[p] = next[n];
+		}
+		bucketCount[v]--;
+	}
+
+	private void free(int n)
+	{
+		var[n] = -1;
+		next[n] = freeList;
+		freeList = n;
+		live--;
+	}
+
+	// ---------------------------------------------------------------- operations
+
+	private int cacheSlot(int op, int a, int b, int c)
+	{
+		int h = op*0x27D4EB2D + a*0x9E3779B1 + b*0x85EBCA6B + c*0xC2B2AE35;
+		return (h ^ (h >>> 16)) & (cacheOp.length-1);
+	}
+
+	private int lookup(int op, int a, int b, int c)
+	{
+		int slot = cacheSlot(op, a, b, c);
+		if(cacheOp[slot] == op && cacheA[slot] == a && cacheB[slot] == b && cacheC[slot] == c)
+			return cacheResult[slot];
+		return -1;
+	}
+
+	private int store(int op, int a, int b, int c, int result)
+	{
+		int slot = cacheSlot(op, a, b, c);
+		cacheOp[slot] = op;
+		cacheA[slot] = a;
+		cacheB[slot] = b;
+		cacheC[slot] = c;
+		cacheResult[slot] = result;
+		return result;
+	}
+
+	int and(int f, int g)
+	{
+		if(f == FALSE || g == FALSE)
+			return FALSE;
+		if(f == TRUE || f == g)
+			return g;
+		if(g == TRUE)
+			return f;
+		return apply(OP_AND, Math.min(f, g), Math.max(f, g));
+	}
+
+	int or(int f, int g)
+	{
+		if(f == TRUE || g == TRUE)
+			return TRUE;
+		if(f == FALSE || f == g)
+			return g;
+		if(g == FALSE)
+			return f;
+		return apply(OP_OR, Math.min(f, g), Math.max(f, g));
+	}
+
+	int xor(int f, int g)
+	{
+		if(f == g)
+			return FALSE;
+		if(f == FALSE)
+			return g;
+		if(g == FALSE)
+			return f;
+		if(f == TRUE)
+			return not(g);
+		if(g == TRUE)
+			return not(f);
+		return apply(OP_XOR, Math.min(f, g), Math.max(f, g));
+	}
+
+	private int apply(int op, int f, int g)
+	{
+		int r = lookup(op, f, g, 0);
+		if(r >= 0)
+			return r;
+		int lf = level(f);
+		int lg = level(g);
+		int top = Math.min(lf, lg);
+		int f0 = lf == top?low[f]:f;
+		int f1 = lf == top?high[f]:f;
+		int g0 = lg == top?low[g]:g;
+		int g1 = lg == top?high[g]:g;
+		int r0, r1;
+		if(op == OP_AND)
+		{
+			r0 = and(f0, g0);
+			r1 = and(f1, g1);
+		}
+		else if(op == OP_OR)
+		{
+			r0 = or(f0, g0);
+			r1 = or(f1, g1);
+		}
+		else
+		{
+			r0 = xor(f0, g0);
+			r1 = xor(f1, g1);
+		}
+		return store(op, f, g, 0, mk(level2var[top], r0, r1));
+	}
+
+	int not(int f)
+	{
+		if(f < 2)
+			return f^1;
+		int r = lookup(OP_NOT, f, 0, 0);
+		if(r >= 0)
+			return r;
+		int v = var[f];
+		int hi = high[f];
+		int r0 = not(low[f]);
+		return store(OP_NOT, f, 0, 0, mk(v, r0, not(hi)));
+	}
+
+	int ite(int f, int g, int h)
+	{
+		if(f == TRUE || g == h)
+			return g;
+		if(f == FALSE)
+			return h;
+		if(g == TRUE && h == FALSE)
+			return f;
+		if(g == FALSE && h == TRUE)
+			return not(f);
+		if(g == TRUE || f == g)
+			return or(f, h);
+		if(h == FALSE || f == h)
+			return and(f, g);
+		int r = lookup(OP_ITE, f, g, h);
+		if(r >= 0)
+			return r;
+		int top = Math.min(level(f), Math.min(level(g), level(h)));
+		int r0 = ite(cofactor(f, top, false), cofactor(g, top, false), cofactor(h, top, false));
+		int r1 = ite(cofactor(f, top, true), cofactor(g, top, true), cofactor(h, top, true));
+		return store(OP_ITE, f, g, h, mk(level2var[top], r0, r1));
+	}
+
+	private int cofactor(int f, int level, boolean value)
+	{
+		if(level(f) != level)
+			return f;
+		return value?high[f]:low[f];
+	}
+
+	void check(BDD b)
+	{
+		if(b.manager != this)
+			throw new IllegalArgumentException("BDD belongs to another manager");
+	}
+
+	// ---------------------------------------------------------------- analysis
+
+	/**
+	 * @return the number of nodes reachable from n including the terminals
+	 */
+	int size(int n)
+	{
+		BitSet visited = new BitSet();
+		int[] stack = new int[16];
+		int sp = 0;
+		stack[sp++] = n;
+		int count = 0;
+		while(sp > 0)
+		{
+			int m = stack[--sp];
+			if(visited.get(m))
+				continue;
+			visited.set(m);
+			count++;
+			if(m >= 2)
+			{
+				if(sp+2 > stack.length)
+					stack = Arrays.copyOf(stack, 2*stack.length);
+				stack[sp++] = low[m];
+				stack[sp++] = high[m];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of assignments of all variables of this manager that satisfy n
+	 */
+	BigInteger countModels(int n)
+	{
+		Map<Integer, BigInteger> memo = new HashMap<>();
+		return count(n, memo).shiftLeft(countLevel(n));
+	}
+
+	private int countLevel(int n)
+	{
+		return n < 2?numVars:var2level[var[n]];
+	}
+
+	/**
+	 * @return the number of satisfying assignments of the variables at the level of n and below
+	 */
+	private BigInteger count(int n, Map<Integer, BigInteger> memo)
+	{
+		if(n < 2)
+			return n == TRUE?BigInteger.ONE:BigInteger.ZERO;
+		BigInteger c = memo.get(n);
+		if(c == null)
+		{
+			int l = countLevel(n);
+			c = count(low[n], memo).shiftLeft(countLevel(low[n])-l-1)
+					.add(count(high[n], memo).shiftLeft(countLevel(high[n])-l-1));
+			memo.put(n, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Enumerates the assignments of all variables of this manager that satisfy n,
+	 * the manager must not be used by other operations during the enumeration
+	 */
+	Iterator<Model> models(int root)
+	{
+		final int n = numVars;
+		return new Iterator<Model>()
+		{
+			private final int[] nodes = new int[n+1];
+			private final int[] choice = new int[n];
+			private int depth;
+			private Model nextModel;
+			{
+				nodes[0] = root;
+				Arrays.fill(choice, -1);
+				// Without variables the search starts at the last level, where FALSE has no model
+				if(root == FALSE)
+					depth = -1;
+				advance();
+			}
+
+			/**
+			 * Depth first search over the levels, choice[l] is the value tried at level l
+			 */
+			private void advance()
+			{
+				nextModel = null;
+				while(depth >= 0)
+				{
+					if(depth == n)
+					{
+						BitSet values = new BitSet();
+						for(int l = 0;l<n;l++)
+						{
+							if(choice[l] == 1)
+								values.set(globalOfVar[level2var[l]]);
+						}
+						nextModel = new Model(values);
+						depth--;
+						return;
+					}
+					int c = ++choice[depth];
+					if(c > 1)
+					{
+						choice[depth--] = -1;
+						continue;
+					}
+					int node = nodes[depth];
+					int child = level(node) == depth?(c == 0?low[node]:high[node]):node;
+					if(child == FALSE)
+						continue;
+					nodes[++depth] = child;
+				}
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return nextModel != null;
+			}
+
+			@Override
+			public Model next()
+			{
+				if(nextModel == null)
+					throw new NoSuchElementException();
+				Model m = nextModel;
+				advance();
+				return m;
+			}
+		};
+	}
+
+	// ---------------------------------------------------------------- garbage collection
+
+	/**
+	 * Frees all nodes that are not reachable from a BDD object
+	 */
+	public void gc()
+	{
+		collections++;
+		int[] stack = new int[64];
+		int sp = 0;
+		handles.removeIf(w -> w.get() == null);
+		int roots = handles.size()+pinnedSize;
+		if(stack.length < roots)
+			stack = new int[roots];
+		for(WeakReference<BDD> w:handles)
+		{
+			BDD b = w.get();
+			if(b != null)
+				stack[sp++] = b.node;
+		}
+		for(int i = 0;i<pinnedSize;i++)
+			stack[sp++] = pinned[i];
+		// Mark
+		while(sp > 0)
+		{
+			int n = stack[--sp];
+			if(n < 2 || ref[n] != 0)
+				continue;
+			ref[n] = 1;
+			if(sp+2 > stack.length)
+				stack = Arrays.copyOf(stack, 2*stack.length);
+			stack[sp++] = low[n];
+			stack[sp++] = high[n];
+		}
+		// Sweep
+		for(int v = 0;v<numVars;v++)
+		{
+			int[] table = buckets[v];
+			for(int b = 0;b<table.length;b++)
+			{
+				int prev = 0;
+				int n = table[b];
+				while(n != 0)
+				{
+					int m = next[n];
+					if(ref[n] == 0)
+					{
+						if(prev == 0)
+							table[b] = m;
+						else
+							next[prev] = m;
+						bucketCount[v]--;
+						free(n);
+					}
+					else
+					{
+						ref[n] = 0;
+						prev = n;
+					}
+					n = m;
+				}
+			}
+		}
+		clearCache();
+	}
+
+	// ---------------------------------------------------------------- reordering
+
+	/**
+	 * Reorders the variables by sifting to reduce the number of nodes
+	 */
+	public void reorder()
+	{
+		gc();
+		reorderings++;
+		// Reference counts: parents and BDD objects
+		for(WeakReference<BDD> w:handles)
+		{
+			BDD b = w.get();
+			if(b != null)
+				ref[b.node]++;
+		}
+		for(int i = 0;i<pinnedSize;i++)
+			ref[pinned[i]]++;
+		for(int n = 2;n<used;n++)
+		{
+			if(var[n] >= 0)
+			{
+				ref[low[n]]++;
+				ref[high[n]]++;
+			}
+		}
+		Integer[] order = new Integer[numVars];
+		for(int v = 0;v<numVars;v++)
+			order[v] = v;
+		Arrays.sort(order, (a,b) -> Integer.compare(bucketCount[b], bucketCount[a]));
+		for(int v:order)
+			sift(v);
+		Arrays.fill(ref, 0, used, 0);
+		clearCache();
+	}
+
+	/**
+	 * Moves v to the bottom and to the top and then to the level with the fewest nodes
+	 */
+	private void sift(int v)
+	{
+		int start = var2level[v];
+		int best = live;
+		int bestLevel = start;
+		while(var2level[v] < numVars-1 && live <= MAX_GROWTH*best)
+		{
+			swap(var2level[v]);
+			if(live < best)
+			{
+				best = live;
+				bestLevel = var2level[v];
+			}
+		}
+		while(var2level[v] > 0 && (var2level[v] > start || live <= MAX_GROWTH*best))
+		{
+			swap(var2level[v]-1);
+			if(live < best)
+			{
+				best = live;
+				bestLevel = var2level[v];
+			}
+		}
+		while(var2level[v] < bestLevel)
+			swap(var2level[v]);
+		while(var2level[v] > bestLevel)
+			swap(var2level[v]-1);
+	}
+
+	/**
+	 * Swaps the variables of the levels l and l+1. Every node of the upper variable x that depends on the lower
+	 * variable y becomes a node of y whose children are nodes of x, so it keeps its index and its function.
+	 */
+	private void swap(int l)
+	{
+		int x = level2var[l];
+		int y = level2var[l+1];
+		// Remove the nodes of x that depend on y from the unique table
+		int[] moved = new int[16];
+		int count = 0;
+		int[] table = buckets[x];
+		for(int b = 0;b<table.length;b++)
+		{
+			int prev = 0;
+			int n = table[b];
+			while(n != 0)
+			{
+				int m = next[n];
+				if(var[low[n]] == y || var[high[n]] == y)
+				{
+					if(prev == 0)
+						table[b] = m;
+					else
+						next[prev] = m;
+					bucketCount[x]--;
+					if(count == moved.length)
+						moved = Arrays.copyOf(moved, 2*count);
+					moved[count++] = n;
+				}
+				else
+					prev = n;
+				n = m;
+			}
+		}
+		level2var[l] = y;
+		level2var[l+1] = x;
+		var2level[y] = l;
+		var2level[x] = l+1;
+		for(int i = 0;i<count;i++)
+		{
+			int f = moved[i];
+			int f0 = low[f];
+			int f1 = high[f];
+			boolean d0 = var[f0] == y;
+			boolean d1 = var[f1] == y;
+			int a = mkRef(x, d0?low[f0]:f0, d1?low[f1]:f1);
+			ref[a]++;
+			int b = mkRef(x, d0?high[f0]:f0, d1?high[f1]:f1);
+			ref[b]++;
+			var[f] = y;
+			low[f] = a;
+			high[f] = b;
+			insert(f);
+			deref(f0);
+			deref(f1);
+		}
+	}
+
+	/**
+	 * Like mk but maintains the reference counts of the children of a new node
+	 */
+	private int mkRef(int v, int lo, int hi)
+	{
+		int before = live;
+		int n = mk(v, lo, hi);
+		if(live != before)
+		{
+			ref[n] = 0;
+			ref[lo]++;
+			ref[hi]++;
+		}
+		return n;
+	}
+
+	private void deref(int n)
+	{
+		if(n < 2 || --ref[n] > 0)
+			return;
+		unlink(n);
+		int lo = low[n];
+		int hi = high[n];
+		free(n);
+		deref(lo);
+		deref(hi);
+	}
+}
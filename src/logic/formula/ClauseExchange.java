@@ -0,0 +1,88 @@
+package logic.formula;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free ring buffer through which parallel solvers share learnt clauses.
+ * <br>
+ * A solver publishes a clause by claiming the next position with an atomic increment and writing the clause
+ * into the slot of the position. Every reader keeps its own position. A reader that falls behind by more than the capacity
+ * skips the overwritten clauses, so neither writers nor readers ever wait. Sharing is an optimization,
+ * losing a clause only costs the time to learn it again.
+ */
+final class ClauseExchange
+{
+	private static final class Entry
+	{
+		final long position;
+		final int producer;
+		final int[] lits;
+
+		Entry(long position, int producer, int[] lits)
+		{
+			this.position = position;
+			this.producer = producer;
+			this.lits = lits;
+		}
+	}
+
+	private final AtomicReferenceArray<Entry> slots;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * @param capacity - the number of clauses that are kept, rounded up to a power of two
+	 */
+	ClauseExchange(int capacity)
+	{
+		int size = Integer.highestOneBit(Math.max(capacity-1, 1)) << 1;
+		slots = new AtomicReferenceArray<>(size);
+		mask = size-1;
+	}
+
+	/**
+	 * @return the position of the next published clause
+	 */
+	long position()
+	{
+		return tail.get();
+	}
+
+	/**
+	 * @param producer - the id of the publishing solver
+	 * @param lits - the literals of the clause, the array must not be modified afterwards
+	 */
+	void publish(int producer, int[] lits)
+	{
+		long p = tail.getAndIncrement();
+		slots.lazySet((int) (p & mask), new Entry(p, producer, lits));
+	}
+
+	/**
+	 * Passes the clauses published by other solvers from position from on to a consumer
+	 * @param reader - the id of the reading solver, its own clauses are skipped
+	 * @param from - the position of the first clause
+	 * @return the position from which the next read starts
+	 */
+	long read(int reader, long from, Consumer<int[]> consumer)
+	{
+		long to = tail.get();
+		long p = Math.max(from, to-slots.length());
+		for(;p<to;p++)
+		{
+			Entry e = slots.get((int) (p & mask));
+			if(e == null || e.position != p)
+			{
+				// Not written yet or already overwritten
+				if(e == null || e.position < p)
+					break;
+				continue;
+			}
+			if(e.producer != reader)
+				consumer.accept(e.lits);
+		}
+		return p;
+	}
+}
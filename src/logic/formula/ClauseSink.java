@@ -0,0 +1,16 @@
+package logic.formula;
+
+/**
+ * Receives clauses over encoded literals of the {@link VariableTable}, e.g. from {@link TseitinTransformation}.
+ * <br>
+ * Implemented by {@link ClauseStore} and {@link DimacsWriter}, a {@link SATSolver} accepts clauses through
+ * {@link SATSolver#asClauseSink()}.
+ */
+public interface ClauseSink
+{
+	/**
+	 * Adds the clause lits[from],...,lits[from+length-1], the array is not modified and not kept
+	 * @param lits - encoded literals
+	 */
+	void addClause(int[] lits, int from, int length);
+}
@@ -0,0 +1,421 @@
+package logic.formula;
+
+import java.util.Arrays;
+
+/**
+ * A set of clauses over encoded literals (see {@link VariableTable}).
+ * <br>
+ * Each clause is stored sorted and without duplicate literals in one flat int array,
+ * clauses are deduplicated with an open addressing hash table over cached clause hashes.
+ * Tautological clauses, i.e. clauses that contain a literal and its negation, are never stored.
+ * <br>
+ * A store can be frozen, afterwards it cannot be modified anymore.
+ * This is done by {@link SetFormula} which is an immutable view of a store.
+ */
+public final class ClauseStore implements ClauseSink
+{
+	private int[] arena;
+	private int arenaSize;
+	private int[] start; // clause i occupies arena[start[i]] ... arena[start[i+1]-1]
+	private int[] hashes;
+	private int count;
+	private int[] table; // clause index + 1, 0 means empty slot
+	private int maxVariable = -1;
+	private boolean frozen;
+	private int[] scratch = new int[16];
+
+	/**
+	 * Creates a new empty store
+	 */
+	public ClauseStore()
+	{
+		this(16, 64);
+	}
+
+	/**
+	 * Creates a new empty store
+	 * @param clauses - expected number of clauses
+	 * @param literals - expected total number of literals
+	 */
+	public ClauseStore(int clauses, int literals)
+	{
+		clauses = Math.max(clauses, 4);
+		arena = new int[Math.max(literals, 4)];
+		start = new int[clauses+1];
+		hashes = new int[clauses];
+		table = new int[Integer.highestOneBit(clauses)*4];
+	}
+
+	/**
+	 * Creates a modifiable copy of a store
+	 * @param s - a store
+	 */
+	public ClauseStore(ClauseStore s)
+	{
+		arena = Arrays.copyOf(s.arena, Math.max(s.arenaSize, 4));
+		arenaSize = s.arenaSize;
+		int capacity = Math.max(s.count, 4);
+		start = Arrays.copyOf(s.start, capacity+1);
+		hashes = Arrays.copyOf(s.hashes, capacity);
+		count = s.count;
+		table = s.table.clone();
+		maxVariable = s.maxVariable;
+	}
+
+	/**
+	 * Adds a clause
+	 * @param lits - encoded literals in any order, possibly with duplicates
+	 * @return true if the clause was added, false if it is a tautology or already contained in this store
+	 */
+	public boolean add(int... lits)
+	{
+		return add(lits, 0, lits.length);
+	}
+
+	/**
+	 * Adds the clause lits[from],...,lits[from+length-1]
+	 * @return true if the clause was added, false if it is a tautology or already contained in this store
+	 */
+	public boolean add(int[] lits, int from, int length)
+	{
+		if(scratch.length < length)
+			scratch = new int[Math.max(length, 2*scratch.length)];
+		System.arraycopy(lits, from, scratch, 0, length);
+		int n = normalize(scratch, length);
+		if(n < 0)
+			return false;
+		return addSorted(scratch, 0, n);
+	}
+
+	@Override
+	public void addClause(int[] lits, int from, int length)
+	{
+		add(lits, from, length);
+	}
+
+	/**
+	 * Adds a clause that is already sorted, duplicate free and not a tautology
+	 * @return true if the clause was added, false if it is already contained in this store
+	 */
+	boolean addSorted(int[] lits, int from, int length)
+	{
+		if(frozen)
+			throw new IllegalStateException("Clause store is frozen");
+		int h = hash(lits, from, length);
+		int mask = table.length-1;
+		int slot = h & mask;
+		while(table[slot] != 0)
+		{
+			int c = table[slot]-1;
+			if(hashes[c] == h && equalClause(c, lits, from, length))
+				return false;
+			slot = (slot+1) & mask;
+		}
+		if(count == hashes.length)
+		{
+			hashes = Arrays.copyOf(hashes, 2*count);
+			start = Arrays.copyOf(start, 2*count+1);
+		}
+		if(arenaSize + length > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(2*arena.length, arenaSize+length));
+		System.arraycopy(lits, from, arena, arenaSize, length);
+		arenaSize += length;
+		if(length > 0)
+			maxVariable = Math.max(maxVariable, lits[from+length-1]>>1);
+		hashes[count] = h;
+		table[slot] = ++count;
+		start[count] = arenaSize;
+		if(2*count > table.length)
+			rehash();
+		return true;
+	}
+
+	private void rehash()
+	{
+		table = new int[2*table.length];
+		int mask = table.length-1;
+		for(int c = 0;c<count;c++)
+		{
+			int slot = hashes[c] & mask;
+			while(table[slot] != 0)
+				slot = (slot+1) & mask;
+			table[slot] = c+1;
+		}
+	}
+
+	private boolean equalClause(int c, int[] lits, int from, int length)
+	{
+		int s = start[c];
+		if(start[c+1]-s != length)
+			return false;
+		for(int i = 0;i<length;i++)
+		{
+			if(arena[s+i] != lits[from+i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Sorts lits[0],...,lits[length-1] and removes duplicates
+	 * @return the new length or -1 if the literals contain a complementary pair
+	 */
+	static int normalize(int[] lits, int length)
+	{
+		Arrays.sort(lits, 0, length);
+		int n = 0;
+		for(int i = 0;i<length;i++)
+		{
+			int l = lits[i];
+			if(n > 0)
+			{
+				if(lits[n-1] == l)
+					continue;
+				if(lits[n-1] == (l^1))
+					return -1;
+			}
+			lits[n++] = l;
+		}
+		return n;
+	}
+
+	/**
+	 * Computes the union of two sorted duplicate free clauses
+	 * @return the length of the union written to out or -1 if the union is a tautology
+	 */
+	static int merge(int[] a, int aFrom, int aLength, int[] b, int bFrom, int bLength, int[] out)
+	{
+		int i = aFrom;
+		int j = bFrom;
+		int aEnd = aFrom+aLength;
+		int bEnd = bFrom+bLength;
+		int n = 0;
+		while(i < aEnd || j < bEnd)
+		{
+			int l;
+			if(j == bEnd || (i < aEnd && a[i] < b[j]))
+				l = a[i++];
+			else if(i == aEnd || b[j] < a[i])
+				l = b[j++];
+			else
+			{
+				l = a[i++];
+				j++;
+			}
+			if(n > 0 && out[n-1] == (l^1))
+				return -1;
+			out[n++] = l;
+		}
+		return n;
+	}
+
+	static int hash(int[] lits, int from, int length)
+	{
+		int h = length;
+		for(int i = from;i<from+length;i++)
+			h = h*0x9E3779B1 + lits[i];
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	/**
+	 * @return the index of the clause lits[from],...,lits[from+length-1] which must be sorted and duplicate free,
+	 * 			-1 if it is not contained in this store
+	 */
+	int indexOf(int[] lits, int from, int length)
+	{
+		int h = hash(lits, from, length);
+		int mask = table.length-1;
+		int slot = h & mask;
+		while(table[slot] != 0)
+		{
+			int c = table[slot]-1;
+			if(hashes[c] == h && equalClause(c, lits, from, length))
+				return c;
+			slot = (slot+1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param lits - encoded literals in any order
+	 * @return true iff the clause consisting of lits is contained in this store
+	 */
+	public boolean contains(int... lits)
+	{
+		int[] c = lits.clone();
+		int n = normalize(c, c.length);
+		return n >= 0 && indexOf(c, 0, n) >= 0;
+	}
+
+	/**
+	 * @return the number of clauses
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+	/**
+	 * @return the total number of literals of all clauses
+	 */
+	public int literalCount()
+	{
+		return arenaSize;
+	}
+
+	/**
+	 * @return the largest variable that occurs in this store or -1 if there is none
+	 */
+	public int getMaxVariable()
+	{
+		return maxVariable;
+	}
+
+	/**
+	 * @param i - a clause index
+	 * @return the number of literals of the i-th clause
+	 */
+	public int length(int i)
+	{
+		return start[i+1]-start[i];
+	}
+
+	/**
+	 * @param i - a clause index
+	 * @param j - a literal index
+	 * @return the j-th literal of the i-th clause
+	 */
+	public int get(int i, int j)
+	{
+		return arena[start[i]+j];
+	}
+
+	/**
+	 * @param i - a clause index
+	 * @return a copy of the i-th clause
+	 */
+	public int[] getClause(int i)
+	{
+		return Arrays.copyOfRange(arena, start[i], start[i+1]);
+	}
+
+	/**
+	 * @return the offset of the i-th clause in {@link #arena()}
+	 */
+	int start(int i)
+	{
+		return start[i];
+	}
+
+	/**
+	 * @return the underlying array of literals, it must not be modified
+	 */
+	int[] arena()
+	{
+		return arena;
+	}
+
+	int hash(int i)
+	{
+		return hashes[i];
+	}
+
+	/**
+	 * @return true iff this store contains the empty clause
+	 */
+	public boolean containsEmptyClause()
+	{
+		return indexOf(scratch, 0, 0) >= 0;
+	}
+
+	/**
+	 * Prevents further modifications of this store
+	 */
+	public void freeze()
+	{
+		frozen = true;
+	}
+
+	public boolean isFrozen()
+	{
+		return frozen;
+	}
+
+	/**
+	 * @return a new store that contains the clauses of this store with all literals negated
+	 */
+	public ClauseStore negate()
+	{
+		ClauseStore s = new ClauseStore(count, arenaSize);
+		for(int c = 0;c<count;c++)
+		{
+			int from = start[c];
+			int length = start[c+1]-from;
+			// Negation keeps the order since every variable occurs at most once in a clause
+			if(s.scratch.length < length)
+				s.scratch = new int[Math.max(length, 2*s.scratch.length)];
+			for(int i = 0;i<length;i++)
+				s.scratch[i] = arena[from+i]^1;
+			s.addSorted(s.scratch, 0, length);
+		}
+		return s;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(!(obj instanceof ClauseStore))
+			return false;
+		ClauseStore s = (ClauseStore) obj;
+		if(s.count != count || s.arenaSize != arenaSize)
+			return false;
+		for(int c = 0;c<count;c++)
+		{
+			if(s.indexOf(arena, start[c], start[c+1]-start[c]) < 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The sum over the sets of the products of the weights of their literals modulo 2^64, i.e. the polynomial of
+	 * the family evaluated at fixed pseudo-random points. It does not depend on the order of the sets, and a
+	 * {@link ZDD} of the same family has the same signature without enumerating the sets.
+	 * @return the signature of the sets of this store
+	 */
+	long signature()
+	{
+		long s = 0;
+		for(int c = 0;c<count;c++)
+		{
+			long p = 1;
+			for(int j = start[c];j<start[c+1];j++)
+				p *= weight(arena[j]);
+			s += p;
+		}
+		return s;
+	}
+
+	/**
+	 * @return the odd weight of an encoded literal in a signature
+	 */
+	static long weight(int lit)
+	{
+		long z = lit*0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+		return (z ^ (z >>> 31)) | 1;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int h = 0;
+		for(int c = 0;c<count;c++)
+			h += hashes[c];
+		return h;
+	}
+}
@@ -0,0 +1,482 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A formula compiled into a flat register-based program.
+ * <br>
+ * The atomic formulas are resolved to the slots 0,...,n-1 once, these are also the input registers of the program.
+ * Equal subformulas are compiled only once, so shared subformulas are evaluated once per call.
+ * Every instruction reads its operand registers and writes one register, registers are reused as soon as
+ * their value is not needed anymore.
+ * <br>
+ * An instruction is stored as opcode, destination register, number of operands, operand registers.
+ * A program can compute several formulas over the same slots, each one has its own result register.
+ * <br>
+ * Evaluating a single row does not allocate, every thread uses its own registers.
+ * Batches are evaluated bit-parallel with 64 rows per long.
+ */
+public class CompiledFormula
+{
+	static final int COPY = 0;
+	static final int CONST_TRUE = 1;
+	static final int CONST_FALSE = 2;
+	static final int NOT = 3;
+	static final int AND = 4;
+	static final int OR = 5;
+
+	private final List<AtomicFormula> atoms;
+	private final Map<AtomicFormula, Integer> slots;
+	private final int[] code;
+	private final int numRegisters;
+	private final int[] results;
+	private final ThreadLocal<boolean[]> registers;
+
+	private CompiledFormula(List<AtomicFormula> atoms, Map<AtomicFormula, Integer> slots, int[] code, int numRegisters, int[] results)
+	{
+		this.atoms = atoms;
+		this.slots = slots;
+		this.code = code;
+		this.numRegisters = numRegisters;
+		this.results = results;
+		this.registers = ThreadLocal.withInitial(() -> new boolean[numRegisters]);
+	}
+
+	/**
+	 * Compiles formulas into one program
+	 * @param formulas - formulas, the i-th formula is the i-th result of the program
+	 * @return the compiled program
+	 */
+	public static CompiledFormula compile(Formula... formulas)
+	{
+		return new Compiler(formulas).compile();
+	}
+
+	/**
+	 * @return the number of slots, i.e. atomic formulas
+	 */
+	public int getNumberOfSlots()
+	{
+		return atoms.size();
+	}
+
+	/**
+	 * @return the atomic formulas ordered by their slots
+	 */
+	public List<AtomicFormula> getAtomicFormulas()
+	{
+		return Collections.unmodifiableList(atoms);
+	}
+
+	/**
+	 * @param a - an atomic formula
+	 * @return the slot of a or -1 if a does not occur in the compiled formulas
+	 */
+	public int getSlot(AtomicFormula a)
+	{
+		Integer i = slots.get(a);
+		return i == null?-1:i;
+	}
+
+	/**
+	 * @return the number of registers, including the input registers
+	 */
+	public int getNumberOfRegisters()
+	{
+		return numRegisters;
+	}
+
+	/**
+	 * @return the number of results of the program
+	 */
+	public int getNumberOfResults()
+	{
+		return results.length;
+	}
+
+	/**
+	 * Evaluates the first formula of the program
+	 * @param row - the values of the slots
+	 * @return the value of the formula
+	 */
+	public boolean evaluate(boolean[] row)
+	{
+		return evaluate(row, 0);
+	}
+
+	/**
+	 * Evaluates a formula of the program
+	 * @param row - the values of the slots
+	 * @param result - index of the formula
+	 * @return the value of the formula
+	 */
+	public boolean evaluate(boolean[] row, int result)
+	{
+		if(row.length < atoms.size())
+			throw new IllegalArgumentException("row does not define all slots");
+		boolean[] regs = registers.get();
+		System.arraycopy(row, 0, regs, 0, atoms.size());
+		int pc = 0;
+		while(pc < code.length)
+		{
+			int op = code[pc];
+			int dest = code[pc+1];
+			int argc = code[pc+2];
+			int args = pc+3;
+			pc = args+argc;
+			switch(op)
+			{
+			case COPY:
+				regs[dest] = regs[code[args]];
+				break;
+			case CONST_TRUE:
+				regs[dest] = true;
+				break;
+			case CONST_FALSE:
+				regs[dest] = false;
+				break;
+			case NOT:
+				regs[dest] = !regs[code[args]];
+				break;
+			case AND:
+			{
+				boolean r = true;
+				for(int i = args;i<pc && r;i++)
+					r = regs[code[i]];
+				regs[dest] = r;
+				break;
+			}
+			case OR:
+			{
+				boolean r = false;
+				for(int i = args;i<pc && !r;i++)
+					r = regs[code[i]];
+				regs[dest] = r;
+				break;
+			}
+			}
+		}
+		return regs[results[result]];
+	}
+
+	/**
+	 * Evaluates the first formula of the program, every slot is looked up once
+	 * @param interpretation - an interpretation that is defined on all atomic formulas of the program
+	 * @return the value of the formula
+	 */
+	public boolean evaluate(Function<AtomicFormula, Boolean> interpretation)
+	{
+		boolean[] row = new boolean[atoms.size()];
+		for(int i = 0;i<row.length;i++)
+		{
+			Boolean b = interpretation.apply(atoms.get(i));
+			if(b == null)
+				throw new IllegalArgumentException("model is not defined on all variables in the formula");
+			row[i] = b;
+		}
+		return evaluate(row, 0);
+	}
+
+	/**
+	 * Evaluates the first formula of the program on a batch of rows
+	 * @param rows - rows, each row holds the values of the slots
+	 * @param out - the value of the formula for each row is written to out
+	 */
+	public void evaluate(boolean[][] rows, boolean[] out)
+	{
+		int block = 64;
+		long[][] regs = newRegisters(block);
+		for(int start = 0;start<rows.length;start += 64*block)
+		{
+			int end = Math.min(rows.length, start+64*block);
+			int words = (end-start+63) >>> 6;
+			for(int s = 0;s<atoms.size();s++)
+				Arrays.fill(regs[s], 0, words, 0);
+			for(int r = start;r<end;r++)
+			{
+				boolean[] row = rows[r];
+				int k = (r-start) >>> 6;
+				long bit = 1L << ((r-start) & 63);
+				for(int s = 0;s<atoms.size();s++)
+				{
+					if(row[s])
+						regs[s][k] |= bit;
+				}
+			}
+			evaluate(regs, words);
+			long[] result = regs[results[0]];
+			for(int r = start;r<end;r++)
+				out[r] = (result[(r-start) >>> 6] & (1L << ((r-start) & 63))) != 0;
+		}
+	}
+
+	/**
+	 * @param length - number of words per register
+	 * @return registers for {@link #evaluate(long[][], int)}
+	 */
+	public long[][] newRegisters(int length)
+	{
+		return new long[numRegisters][length];
+	}
+
+	/**
+	 * Evaluates the program bit-parallel, every instruction is applied to length words at once
+	 * @param regs - registers, regs[s][0],...,regs[s][length-1] hold the values of slot s,
+	 * 			the result i is written to regs[getResultRegister(i)]
+	 * @param length - number of words
+	 */
+	public void evaluate(long[][] regs, int length)
+	{
+		int pc = 0;
+		while(pc < code.length)
+		{
+			int op = code[pc];
+			long[] d = regs[code[pc+1]];
+			int argc = code[pc+2];
+			int args = pc+3;
+			pc = args+argc;
+			switch(op)
+			{
+			case COPY:
+				System.arraycopy(regs[code[args]], 0, d, 0, length);
+				break;
+			case CONST_TRUE:
+				Arrays.fill(d, 0, length, -1L);
+				break;
+			case CONST_FALSE:
+				Arrays.fill(d, 0, length, 0);
+				break;
+			case NOT:
+			{
+				long[] a = regs[code[args]];
+				for(int k = 0;k<length;k++)
+					d[k] = ~a[k];
+				break;
+			}
+			case AND:
+			{
+				long[] a = regs[code[args]];
+				long[] b = regs[code[args+1]];
+				for(int k = 0;k<length;k++)
+					d[k] = a[k] & b[k];
+				for(int i = args+2;i<pc;i++)
+				{
+					a = regs[code[i]];
+					for(int k = 0;k<length;k++)
+						d[k] &= a[k];
+				}
+				break;
+			}
+			case OR:
+			{
+				long[] a = regs[code[args]];
+				long[] b = regs[code[args+1]];
+				for(int k = 0;k<length;k++)
+					d[k] = a[k] | b[k];
+				for(int i = args+2;i<pc;i++)
+				{
+					a = regs[code[i]];
+					for(int k = 0;k<length;k++)
+						d[k] |= a[k];
+				}
+				break;
+			}
+			}
+		}
+	}
+
+	/**
+	 * @param i - index of a formula
+	 * @return the register that holds the value of the i-th formula after an evaluation
+	 */
+	public int getResultRegister(int i)
+	{
+		return results[i];
+	}
+
+	/**
+	 * Translates a DAG of formulas into instructions and allocates the registers
+	 */
+	private static final class Compiler
+	{
+		private final Formula[] roots;
+		private final List<AtomicFormula> atoms = new ArrayList<>();
+		private final Map<AtomicFormula, Integer> slots = new HashMap<>();
+		// Every distinct subformula becomes a node, the value of node i is computed by instruction i
+		private final Map<Formula, Integer> nodeMap = new HashMap<>();
+		private final List<Formula> nodes = new ArrayList<>();
+		private final List<int[]> operands = new ArrayList<>(); // operand nodes, slots are encoded as -(slot+1)
+		private final List<Integer> opcodes = new ArrayList<>();
+
+		Compiler(Formula[] roots)
+		{
+			this.roots = roots;
+		}
+
+		/**
+		 * @return the node of f or -(slot+1) if f is an atomic formula
+		 */
+		private int visit(Formula root)
+		{
+			// Post-order traversal, a formula is pushed again with exit set to create its node after its arguments
+			List<Formula> formulas = new ArrayList<>();
+			List<Boolean> exits = new ArrayList<>();
+			formulas.add(root);
+			exits.add(false);
+			while(!formulas.isEmpty())
+			{
+				Formula f = formulas.remove(formulas.size()-1);
+				boolean exit = exits.remove(exits.size()-1);
+				if(f instanceof AtomicFormula && !((AtomicFormula)f).isBasic())
+				{
+					if(!slots.containsKey(f))
+					{
+						slots.put((AtomicFormula) f, atoms.size());
+						atoms.add((AtomicFormula) f);
+					}
+					continue;
+				}
+				// A shared subformula can be pushed several times before its node exists
+				if(nodeMap.containsKey(f))
+					continue;
+				List<Formula> args = arguments(f);
+				if(!exit)
+				{
+					formulas.add(f);
+					exits.add(true);
+					for(int i = args.size()-1;i>=0;i--)
+					{
+						formulas.add(args.get(i));
+						exits.add(false);
+					}
+					continue;
+				}
+				int op;
+				if(f instanceof AtomicFormula)
+					op = ((AtomicFormula)f).isTRUE()?CONST_TRUE:CONST_FALSE;
+				else if(f instanceof NOTFormula)
+					op = NOT;
+				else if(args.isEmpty())
+					op = f instanceof ANDFormula?CONST_TRUE:CONST_FALSE;
+				else if(args.size() == 1)
+					op = COPY;
+				else
+					op = f instanceof ANDFormula?AND:OR;
+				int[] operandNodes = new int[args.size()];
+				for(int i = 0;i<operandNodes.length;i++)
+					operandNodes[i] = node(args.get(i));
+				nodeMap.put(f, nodes.size());
+				nodes.add(f);
+				opcodes.add(op);
+				operands.add(operandNodes);
+			}
+			return node(root);
+		}
+
+		/**
+		 * @return the node of a visited formula or -(slot+1) if f is an atomic formula
+		 */
+		private int node(Formula f)
+		{
+			Integer s = slots.get(f);
+			return s != null?-(s+1):nodeMap.get(f);
+		}
+
+		private static List<Formula> arguments(Formula f)
+		{
+			if(f instanceof AtomicFormula)
+				return Collections.emptyList();
+			if(f instanceof NOTFormula)
+				return Collections.singletonList(((NOTFormula)f).getArgumentFormula());
+			if(f instanceof ANDFormula)
+				return ((ANDFormula)f).getOrigList();
+			if(f instanceof ORFormula)
+				return ((ORFormula)f).getOrigList();
+			throw new IllegalStateException("This type of formula is not supported");
+		}
+
+		CompiledFormula compile()
+		{
+			int[] rootNodes = new int[roots.length];
+			for(int i = 0;i<roots.length;i++)
+			{
+				int n = visit(roots[i]);
+				if(n < 0)
+				{
+					// An atomic formula as result is copied to its own register
+					int slot = n;
+					n = nodes.size();
+					nodes.add(roots[i]);
+					opcodes.add(COPY);
+					operands.add(new int[] {slot});
+				}
+				rootNodes[i] = n;
+			}
+			int m = nodes.size();
+			int slotCount = atoms.size();
+
+			// Last use of every node, results are used until the end
+			int[] lastUse = new int[m];
+			for(int i = 0;i<m;i++)
+				for(int a:operands.get(i))
+					if(a >= 0)
+						lastUse[a] = i;
+			for(int r:rootNodes)
+				lastUse[r] = Integer.MAX_VALUE;
+
+			// Linear scan register allocation
+			int[] reg = new int[m];
+			int[] free = new int[m];
+			int freeCount = 0;
+			int numRegisters = slotCount;
+			int[] code = new int[16];
+			int size = 0;
+			for(int i = 0;i<m;i++)
+			{
+				int[] args = operands.get(i);
+				int[] argRegs = new int[args.length];
+				for(int j = 0;j<args.length;j++)
+					argRegs[j] = args[j] < 0?-args[j]-1:reg[args[j]];
+				// The destination is allocated before the operands that die here are freed,
+				// an instruction must not overwrite an operand it still has to read
+				reg[i] = freeCount > 0?free[--freeCount]:numRegisters++;
+				for(int j = 0;j<args.length;j++)
+				{
+					int a = args[j];
+					if(a >= 0 && lastUse[a] == i)
+					{
+						lastUse[a] = -1; // free only once
+						free[freeCount++] = reg[a];
+					}
+				}
+				if(size+3+args.length > code.length)
+					code = Arrays.copyOf(code, Math.max(2*code.length, size+3+args.length));
+				code[size++] = opcodes.get(i);
+				code[size++] = reg[i];
+				code[size++] = args.length;
+				for(int r:argRegs)
+					code[size++] = r;
+				if(lastUse[i] == 0 && !isRoot(rootNodes, i))
+					free[freeCount++] = reg[i]; // value is never used
+			}
+			int[] results = new int[rootNodes.length];
+			for(int i = 0;i<results.length;i++)
+				results[i] = reg[rootNodes[i]];
+			return new CompiledFormula(atoms, slots, Arrays.copyOf(code, size), Math.max(numRegisters, 1), results);
+		}
+
+		private static boolean isRoot(int[] rootNodes, int n)
+		{
+			for(int r:rootNodes)
+				if(r == n)
+					return true;
+			return false;
+		}
+	}
+}
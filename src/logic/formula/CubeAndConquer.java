@@ -0,0 +1,429 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Decides the satisfiability of a formula in CNF by cube-and-conquer.
+ * <br>
+ * In the cube phase a lookahead search splits the formula into cubes, i.e. partial assignments that cover all
+ * assignments. At every node of the search the candidate variables, the unassigned variables that occur most often,
+ * are assigned both ways and propagated. The variable that maximizes the product of the numbers of implied assignments
+ * is split on. If one way leads to a conflict, the other way is implied. If both ways do, the cube is refuted.
+ * The search stops at a fixed depth, so there are at most 2^depth cubes.
+ * <br>
+ * In the conquer phase the cubes are solved by fork/join tasks that steal work from each other.
+ * Each worker thread has an incremental {@link SATSolver} that solves one cube after the other under assumptions
+ * and keeps its learnt clauses. As soon as one cube is satisfiable, the remaining cubes are skipped and the running
+ * solvers are interrupted. Statistics of every cube are available by {@link #getCubes()}.
+ */
+public class CubeAndConquer
+{
+	/**
+	 * The state of a cube
+	 */
+	public enum Status
+	{
+		/** not solved because another cube was satisfiable */
+		UNKNOWN,
+		/** refuted by the lookahead */
+		REFUTED,
+		SATISFIABLE,
+		UNSATISFIABLE
+	}
+
+	/**
+	 * A cube together with the statistics of solving it
+	 */
+	public static final class Cube
+	{
+		private final int[] lits; // literals of the solver
+		private final SATSolver names;
+		private volatile Status status;
+		private long conflicts;
+		private long decisions;
+		private long propagations;
+		private long time;
+
+		private Cube(int[] lits, SATSolver names, Status status)
+		{
+			this.lits = lits;
+			this.names = names;
+			this.status = status;
+		}
+
+		/**
+		 * @return the literals of this cube
+		 */
+		public Set<Literal> getLiterals()
+		{
+			Set<Literal> set = new LinkedHashSet<>();
+			for(int l:lits)
+				set.add(VariableTable.decode((names.getGlobalVariable(l>>1) << 1) | (l&1)));
+			return set;
+		}
+
+		/**
+		 * @return the number of literals of this cube
+		 */
+		public int size()
+		{
+			return lits.length;
+		}
+
+		public Status getStatus()
+		{
+			return status;
+		}
+
+		/**
+		 * @return the number of conflicts of the solver while solving this cube
+		 */
+		public long getConflicts()
+		{
+			return conflicts;
+		}
+
+		/**
+		 * @return the number of decisions of the solver while solving this cube
+		 */
+		public long getDecisions()
+		{
+			return decisions;
+		}
+
+		/**
+		 * @return the number of propagated literals of the solver while solving this cube
+		 */
+		public long getPropagations()
+		{
+			return propagations;
+		}
+
+		/**
+		 * @return the time spent solving this cube in nanoseconds
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		@Override
+		public String toString()
+		{
+			return getLiterals()+" "+status+" conflicts: "+conflicts+" time: "+time/1000000+"ms";
+		}
+	}
+
+	private int depth = 10;
+	private int candidates = 32;
+	private final int parallelism;
+
+	private List<Cube> cubes = Collections.emptyList();
+	private Model model;
+	private long lookaheadTime;
+
+	/**
+	 * Creates a solver with one worker per available processor
+	 */
+	public CubeAndConquer()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism - the number of worker threads
+	 */
+	public CubeAndConquer(int parallelism)
+	{
+		if(parallelism < 1)
+			throw new IllegalArgumentException("At least one worker is required");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @param depth - the maximal number of splits per cube, 10 by default
+	 */
+	public void setDepth(int depth)
+	{
+		if(depth < 0 || depth > 30)
+			throw new IllegalArgumentException("Depth must be between 0 and 30");
+		this.depth = depth;
+	}
+
+	/**
+	 * @param candidates - the number of variables that are tried at every node of the lookahead, 32 by default
+	 */
+	public void setCandidates(int candidates)
+	{
+		if(candidates < 1)
+			throw new IllegalArgumentException("At least one candidate is required");
+		this.candidates = candidates;
+	}
+
+	/**
+	 * Decides the satisfiability of f, the model is available by {@link #getModel()}
+	 * @param f - a formula in CNF
+	 * @return true iff f is satisfiable
+	 */
+	public boolean solve(SetFormula f)
+	{
+		if(!f.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		model = null;
+		long start = System.nanoTime();
+		SATSolver lookahead = new SATSolver(f);
+		List<Cube> list = new ArrayList<>();
+		if(lookahead.propagateRoot())
+			new Splitter(lookahead, list).split(new int[depth+lookahead.getNumberOfVariables()], 0, 0);
+		cubes = Collections.unmodifiableList(list);
+		lookaheadTime = System.nanoTime()-start;
+		List<Cube> open = new ArrayList<>();
+		for(Cube c:list)
+		{
+			if(c.status == Status.UNKNOWN)
+				open.add(c);
+		}
+		if(open.isEmpty())
+			return false;
+		Conquer conquer = new Conquer(f, open);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try
+		{
+			model = pool.invoke(conquer.new CubeTask(0, open.size()));
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+		return model != null;
+	}
+
+	/**
+	 * The lookahead search
+	 */
+	private final class Splitter
+	{
+		private final SATSolver solver;
+		private final List<Cube> out;
+		private final int[] occurrences;
+		private final int[] best;
+
+		Splitter(SATSolver solver, List<Cube> out)
+		{
+			this.solver = solver;
+			this.out = out;
+			this.occurrences = solver.countOccurrences();
+			this.best = new int[candidates];
+		}
+
+		/**
+		 * Splits the cube path[0],...,path[length-1] whose literals are assigned
+		 * @param splits - the number of splits so far
+		 */
+		void split(int[] path, int length, int splits)
+		{
+			int lvl = solver.getDecisionLevel();
+			int top = lvl; // the level of the last implied literal
+			int v = -1;
+			if(splits < depth)
+			{
+				while(true)
+				{
+					int n = selectCandidates();
+					v = -1;
+					long bestScore = -1;
+					int forced = -1;
+					for(int i = 0;i<n && forced < 0;i++)
+					{
+						int x = best[i];
+						int base = solver.getNumberOfAssignments();
+						boolean pos = solver.assume(x<<1);
+						int p = solver.getNumberOfAssignments()-base;
+						solver.backtrack(top);
+						boolean neg = solver.assume((x<<1)|1);
+						int q = solver.getNumberOfAssignments()-base;
+						solver.backtrack(top);
+						if(!pos && !neg)
+						{
+							solver.backtrack(lvl);
+							out.add(new Cube(Arrays.copyOf(path, length), solver, Status.REFUTED));
+							return;
+						}
+						if(!pos || !neg)
+							forced = pos?x<<1:(x<<1)|1;
+						else if((long) (p+1)*(q+1) > bestScore)
+						{
+							bestScore = (long) (p+1)*(q+1);
+							v = x;
+						}
+					}
+					if(forced < 0)
+						break;
+					// A failed literal, the other way is implied and the candidates are selected again
+					solver.assume(forced);
+					top = solver.getDecisionLevel();
+					path[length++] = forced;
+				}
+			}
+			if(v < 0)
+				out.add(new Cube(Arrays.copyOf(path, length), solver, Status.UNKNOWN));
+			else
+			{
+				for(int sign = 0;sign<2;sign++)
+				{
+					int lit = (v<<1) | sign;
+					path[length] = lit;
+					if(solver.assume(lit))
+						split(path, length+1, splits+1);
+					else
+						out.add(new Cube(Arrays.copyOf(path, length+1), solver, Status.REFUTED));
+					solver.backtrack(top);
+				}
+			}
+			solver.backtrack(lvl);
+		}
+
+		/**
+		 * Selects the unassigned variables with the most occurrences
+		 * @return the number of candidates in best
+		 */
+		private int selectCandidates()
+		{
+			int n = 0;
+			for(int v = 0;v<occurrences.length;v++)
+			{
+				if(solver.isAssigned(v) || occurrences[v] == 0)
+					continue;
+				// Insertion into the candidates sorted by decreasing occurrences
+				int i = n < best.length?n++:n;
+				if(i == best.length && occurrences[best[i-1]] >= occurrences[v])
+					continue;
+				if(i == best.length)
+					i--;
+				while(i > 0 && occurrences[best[i-1]] < occurrences[v])
+				{
+					best[i] = best[i-1];
+					i--;
+				}
+				best[i] = v;
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * The conquer phase, every worker thread has its own solver
+	 */
+	private static final class Conquer
+	{
+		private final SetFormula formula;
+		private final List<Cube> cubes;
+		private final ConcurrentHashMap<Thread, SATSolver> solvers = new ConcurrentHashMap<>();
+		private volatile boolean found;
+
+		Conquer(SetFormula formula, List<Cube> cubes)
+		{
+			this.formula = formula;
+			this.cubes = cubes;
+		}
+
+		/**
+		 * Solves the cubes from,...,to-1, the range is split in halves until it contains one cube
+		 */
+		private final class CubeTask extends RecursiveTask<Model>
+		{
+			private static final long serialVersionUID = 1L;
+			private final int from;
+			private final int to;
+
+			CubeTask(int from, int to)
+			{
+				this.from = from;
+				this.to = to;
+			}
+
+			@Override
+			protected Model compute()
+			{
+				if(to-from == 1)
+					return solve(cubes.get(from));
+				int mid = (from+to) >>> 1;
+				CubeTask left = new CubeTask(from, mid);
+				left.fork();
+				Model m = new CubeTask(mid, to).compute();
+				Model l = left.join();
+				return l != null?l:m;
+			}
+		}
+
+		private Model solve(Cube cube)
+		{
+			if(found)
+				return null;
+			SATSolver solver = solvers.computeIfAbsent(Thread.currentThread(), t -> new SATSolver(formula));
+			long conflicts = solver.getConflicts();
+			long decisions = solver.getDecisions();
+			long propagations = solver.getPropagations();
+			long start = System.nanoTime();
+			Model m = null;
+			try
+			{
+				if(solver.solve(cube.lits))
+				{
+					m = solver.getModel();
+					cube.status = Status.SATISFIABLE;
+					found = true;
+					for(SATSolver s:solvers.values())
+					{
+						if(s != solver)
+							s.interrupt();
+					}
+				}
+				else
+					cube.status = Status.UNSATISFIABLE;
+			}
+			catch(CancellationException e)
+			{
+				// Another cube is satisfiable
+			}
+			cube.time = System.nanoTime()-start;
+			cube.conflicts = solver.getConflicts()-conflicts;
+			cube.decisions = solver.getDecisions()-decisions;
+			cube.propagations = solver.getPropagations()-propagations;
+			return m;
+		}
+	}
+
+	/**
+	 * @return the model found by the last call of solve or null if there is none
+	 */
+	public Model getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * @return the cubes of the last call of solve in the order of the lookahead search
+	 */
+	public List<Cube> getCubes()
+	{
+		return cubes;
+	}
+
+	/**
+	 * @return the time of the cube phase of the last call of solve in nanoseconds
+	 */
+	public long getLookaheadTime()
+	{
+		return lookaheadTime;
+	}
+}
@@ -0,0 +1,286 @@
+package logic.formula;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import logic.formula.SetFormula.Type;
+
+/**
+ * Reads formulas in DIMACS CNF format.
+ * <br>
+ * The file is memory-mapped and parsed byte by byte, integers are parsed without allocation and
+ * clauses are added to a {@link ClauseStore} as soon as their terminating 0 is read.
+ * The DIMACS variable i is the atomic formula with the name prefix+i, e.g. x1, x2, ...
+ * <br>
+ * Comment lines starting with c are skipped, the header p cnf is optional and only used to presize the store,
+ * up to what the rest of the file can hold.
+ * The input ends at the end of the file or at a line starting with %.
+ */
+public class DimacsReader
+{
+	// Files are mapped in windows of this size
+	private static final long WINDOW = 1 << 30;
+	// Maximum number of clauses, literals or variables the header presizes
+	private static final long PRESIZE_LIMIT = 1 << 24;
+
+	private final String prefix;
+	private final FormulaFactory factory;
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long base;
+	private int c;
+
+	private int declaredVariables = -1;
+	private int declaredClauses = -1;
+	// VariableTable index of every DIMACS variable, 0 if the variable has not occurred yet
+	private int[] variables = new int[16];
+
+	/**
+	 * Creates a reader that maps the DIMACS variable i to the atomic formula xi
+	 */
+	public DimacsReader()
+	{
+		this("x", FormulaFactory.getDefault());
+	}
+
+	/**
+	 * @param prefix - prefix of the names of the atomic formulas
+	 * @param factory - the factory that creates the atomic formulas
+	 */
+	public DimacsReader(String prefix, FormulaFactory factory)
+	{
+		this.prefix = prefix;
+		this.factory = factory;
+	}
+
+	/**
+	 * Reads a formula in DIMACS CNF format with the default reader
+	 * @param file - the file
+	 * @return the formula in CNF
+	 * @throws IOException if the file can not be read
+	 */
+	public static SetFormula read(Path file) throws IOException
+	{
+		return new DimacsReader().readFormula(file);
+	}
+
+	/**
+	 * @param file - a file in DIMACS CNF format
+	 * @return the formula in CNF
+	 * @throws IOException if the file can not be read
+	 * @throws IllegalArgumentException if the file is not well-formed
+	 */
+	public SetFormula readFormula(Path file) throws IOException
+	{
+		return new SetFormula(readClauses(file, null), Type.CNF);
+	}
+
+	/**
+	 * Adds the clauses of a file to a store
+	 * @param file - a file in DIMACS CNF format
+	 * @param store - the store, null to create a new store presized by the header
+	 * @return the store
+	 * @throws IOException if the file can not be read
+	 * @throws IllegalArgumentException if the file is not well-formed
+	 */
+	public ClauseStore readClauses(Path file, ClauseStore store) throws IOException
+	{
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			channel = ch;
+			base = 0;
+			buffer = ch.map(MapMode.READ_ONLY, 0, Math.min(WINDOW, ch.size()));
+			return parse(store);
+		}
+		finally
+		{
+			channel = null;
+			buffer = null;
+		}
+	}
+
+	/**
+	 * @return the number of variables declared by the header of the last file or -1 if there was no header
+	 */
+	public int getDeclaredVariables()
+	{
+		return declaredVariables;
+	}
+
+	/**
+	 * @return the number of clauses declared by the header of the last file or -1 if there was no header
+	 */
+	public int getDeclaredClauses()
+	{
+		return declaredClauses;
+	}
+
+	/**
+	 * @param i - a DIMACS variable
+	 * @return the atomic formula of i
+	 */
+	public AtomicFormula getAtomicFormula(int i)
+	{
+		return VariableTable.getAtomicFormula(variable(i));
+	}
+
+	private int variable(int i)
+	{
+		if(i >= variables.length)
+			variables = Arrays.copyOf(variables, Math.max(i+1, 2*variables.length));
+		int v = variables[i];
+		if(v == 0)
+		{
+			v = VariableTable.getIndex(factory.atom(prefix+i));
+			variables[i] = v;
+		}
+		return v;
+	}
+
+	private void next() throws IOException
+	{
+		if(!buffer.hasRemaining())
+		{
+			base += buffer.capacity();
+			long size = channel.size();
+			if(base >= size)
+			{
+				c = -1;
+				return;
+			}
+			buffer = channel.map(MapMode.READ_ONLY, base, Math.min(WINDOW, size-base));
+		}
+		c = buffer.get() & 0xFF;
+	}
+
+	private long position()
+	{
+		return base+buffer.position();
+	}
+
+	private static boolean isWhitespace(int c)
+	{
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	private void skipWhitespace() throws IOException
+	{
+		while(isWhitespace(c))
+			next();
+	}
+
+	private void skipLine() throws IOException
+	{
+		while(c >= 0 && c != '\n')
+			next();
+	}
+
+	/**
+	 * Reads an integer starting at the current byte
+	 */
+	private int readInt() throws IOException
+	{
+		boolean negative = c == '-';
+		if(negative)
+			next();
+		if(c < '0' || c > '9')
+			throw new IllegalArgumentException("Number expected at offset "+position());
+		long n = 0;
+		while(c >= '0' && c <= '9')
+		{
+			n = 10*n + (c-'0');
+			if(n > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Number too large at offset "+position());
+			next();
+		}
+		if(c >= 0 && !isWhitespace(c))
+			throw new IllegalArgumentException("Unexpected character at offset "+position());
+		return negative?(int) -n:(int) n;
+	}
+
+	private void readHeader() throws IOException
+	{
+		next();
+		skipWhitespace();
+		if(c != 'c')
+			throw new IllegalArgumentException("Only the format cnf is supported");
+		next();
+		if(c != 'n')
+			throw new IllegalArgumentException("Only the format cnf is supported");
+		next();
+		if(c != 'f')
+			throw new IllegalArgumentException("Only the format cnf is supported");
+		next();
+		skipWhitespace();
+		declaredVariables = readInt();
+		skipWhitespace();
+		declaredClauses = readInt();
+		if(declaredVariables < 0 || declaredClauses < 0)
+			throw new IllegalArgumentException("Invalid header");
+		int n = presize(declaredVariables);
+		if(variables.length <= n)
+			variables = Arrays.copyOf(variables, n+1);
+	}
+
+	/**
+	 * Bounds a number of the header by the rest of the file, every clause, literal or variable takes at least
+	 * two bytes, and by PRESIZE_LIMIT, beyond that the arrays grow as the clauses are read
+	 */
+	private int presize(long declared) throws IOException
+	{
+		return (int) Math.min(Math.min(declared, (channel.size()-position())/2), PRESIZE_LIMIT);
+	}
+
+	private ClauseStore parse(ClauseStore store) throws IOException
+	{
+		declaredVariables = -1;
+		declaredClauses = -1;
+		int[] clause = new int[16];
+		int length = 0;
+		next();
+		while(c >= 0)
+		{
+			if(isWhitespace(c))
+				next();
+			else if(c == 'c')
+				skipLine();
+			else if(c == 'p' && length == 0)
+			{
+				readHeader();
+				if(store == null)
+					store = new ClauseStore(presize(declaredClauses), presize(3L*declaredClauses));
+			}
+			else if(c == '%')
+				break;
+			else
+			{
+				int lit = readInt();
+				if(store == null)
+					store = new ClauseStore();
+				if(lit == 0)
+				{
+					store.add(clause, 0, length);
+					length = 0;
+				}
+				else
+				{
+					if(length == clause.length)
+						clause = Arrays.copyOf(clause, 2*length);
+					clause[length++] = (variable(Math.abs(lit)) << 1) | (lit < 0?1:0);
+				}
+			}
+		}
+		if(store == null)
+			store = new ClauseStore();
+		// Be lenient about a missing 0 after the last clause
+		if(length > 0)
+			store.add(clause, 0, length);
+		return store;
+	}
+}
@@ -0,0 +1,359 @@
+package logic.formula;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes formulas in DIMACS CNF format.
+ * <br>
+ * The output is formatted into a direct byte buffer and written to a channel whenever the buffer is full,
+ * numbers are formatted without allocation.
+ * Variables of the {@link VariableTable} are numbered 1,2,... in the order they are written,
+ * see {@link #getAtomicFormula(int)}.
+ * <br>
+ * As a {@link ClauseSink} the writer does not know the number of clauses in advance. If the channel is seekable,
+ * e.g. a file, a header of fixed width is reserved before the first clause and filled in by {@link #close()}.
+ */
+public class DimacsWriter implements ClauseSink, Closeable
+{
+	private final WritableByteChannel out;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+	private final byte[] digits = new byte[11];
+
+	// DIMACS variable of every variable of the VariableTable, 0 if not numbered yet
+	private int[] dimacs = new int[16];
+	// Variable of the VariableTable of every DIMACS variable
+	private int[] variables = new int[16];
+	private int variableCount;
+
+	private boolean header;
+	private long headerPosition = -1;
+	private long flushed;
+	private int clauseCount;
+
+	/**
+	 * @param out - the channel the output is written to, it is closed by {@link #close()}
+	 */
+	public DimacsWriter(WritableByteChannel out)
+	{
+		this.out = out;
+	}
+
+	/**
+	 * Creates a writer that replaces the content of a file
+	 * @param file - the file
+	 * @throws IOException if the file can not be opened
+	 */
+	public DimacsWriter(Path file) throws IOException
+	{
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/**
+	 * Writes a formula in CNF to a file
+	 * @param f - a formula in CNF
+	 * @param file - the file
+	 * @throws IOException if the file can not be written
+	 */
+	public static void write(SetFormula f, Path file) throws IOException
+	{
+		try(DimacsWriter w = new DimacsWriter(file))
+		{
+			w.write(f);
+		}
+	}
+
+	/**
+	 * Writes a formula in CNF including the header
+	 * @param f - a formula in CNF
+	 * @throws IOException if the output can not be written
+	 */
+	public void write(SetFormula f) throws IOException
+	{
+		if(!f.isCNF())
+			throw new IllegalArgumentException("Only formulas in CNF can be written");
+		write(f.getClauseStore());
+	}
+
+	/**
+	 * Writes a store of clauses including the header.
+	 * The constants TRUE and FALSE are evaluated, i.e. satisfied clauses and false literals are not written.
+	 * @param store - a store of clauses
+	 * @throws IOException if the output can not be written
+	 */
+	public void write(ClauseStore store) throws IOException
+	{
+		int[] arena = store.arena();
+		int clauses = 0;
+		for(int i = 0;i<store.size();i++)
+		{
+			int from = store.start(i);
+			int to = from+store.length(i);
+			if(isSatisfied(arena, from, to))
+				continue;
+			clauses++;
+			for(int j = from;j<to;j++)
+				getDimacsVariable(arena[j] >> 1);
+		}
+		writeHeader(variableCount, clauses);
+		for(int i = 0;i<store.size();i++)
+		{
+			int from = store.start(i);
+			int to = from+store.length(i);
+			if(isSatisfied(arena, from, to))
+				continue;
+			for(int j = from;j<to;j++)
+			{
+				if(!isConstant(arena[j] >> 1))
+					writeLiteral(arena[j]);
+			}
+			writeEnd();
+		}
+	}
+
+	private static boolean isConstant(int v)
+	{
+		return v == VariableTable.TRUE || v == VariableTable.FALSE;
+	}
+
+	private static boolean isSatisfied(int[] arena, int from, int to)
+	{
+		for(int j = from;j<to;j++)
+		{
+			int lit = arena[j];
+			if(lit == VariableTable.TRUE << 1 || lit == (VariableTable.FALSE << 1 | 1))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes the header p cnf variables clauses
+	 * @throws IOException if the output can not be written
+	 */
+	public void writeHeader(int variables, int clauses) throws IOException
+	{
+		header = true;
+		writeAscii("p cnf ");
+		writeInt(variables);
+		writeByte(' ');
+		writeInt(clauses);
+		writeByte('\n');
+	}
+
+	/**
+	 * Reserves a header that is written by {@link #close()} with the number of variables and clauses written so far
+	 * @throws IOException if the output can not be written
+	 * @throws IllegalStateException if the channel is not seekable
+	 */
+	public void reserveHeader() throws IOException
+	{
+		if(!(out instanceof SeekableByteChannel))
+			throw new IllegalStateException("The header can only be reserved for a seekable channel");
+		header = true;
+		headerPosition = flushed+buffer.position();
+		writeAscii(formatHeader(0, 0));
+	}
+
+	private static String formatHeader(int variables, int clauses)
+	{
+		return String.format("p cnf %-10d %-10d\n", variables, clauses);
+	}
+
+	/**
+	 * Writes a clause, a header is reserved before the first clause if possible, see {@link #reserveHeader()}
+	 * @throws UncheckedIOException if the output can not be written
+	 */
+	@Override
+	public void addClause(int[] lits, int from, int length)
+	{
+		try
+		{
+			if(!header && out instanceof SeekableByteChannel)
+				reserveHeader();
+			writeClause(lits, from, length);
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the number of clauses written so far
+	 */
+	public int getNumberOfClauses()
+	{
+		return clauseCount;
+	}
+
+	/**
+	 * Writes a comment line
+	 * @param comment - a comment without line breaks
+	 * @throws IOException if the output can not be written
+	 */
+	public void writeComment(String comment) throws IOException
+	{
+		writeAscii("c ");
+		byte[] b = comment.getBytes(StandardCharsets.UTF_8);
+		for(byte x:b)
+			writeByte(x);
+		writeByte('\n');
+	}
+
+	/**
+	 * Writes the clause lits[from],...,lits[from+length-1] over encoded literals,
+	 * the constants TRUE and FALSE are written as ordinary variables
+	 * @throws IOException if the output can not be written
+	 */
+	public void writeClause(int[] lits, int from, int length) throws IOException
+	{
+		for(int j = from;j<from+length;j++)
+			writeLiteral(lits[j]);
+		writeEnd();
+	}
+
+	/**
+	 * @param v - a variable of the VariableTable
+	 * @return the DIMACS variable of v, v is numbered if it has not been written yet
+	 */
+	public int getDimacsVariable(int v)
+	{
+		if(v >= dimacs.length)
+			dimacs = Arrays.copyOf(dimacs, Math.max(v+1, 2*dimacs.length));
+		int d = dimacs[v];
+		if(d == 0)
+		{
+			d = ++variableCount;
+			dimacs[v] = d;
+			if(d >= variables.length)
+				variables = Arrays.copyOf(variables, 2*d);
+			variables[d] = v;
+		}
+		return d;
+	}
+
+	/**
+	 * Numbers a variable that is not a variable of the VariableTable, e.g. a variable of a proof
+	 * @return the new DIMACS variable
+	 */
+	int newDimacsVariable()
+	{
+		int d = ++variableCount;
+		if(d >= variables.length)
+			variables = Arrays.copyOf(variables, 2*d);
+		variables[d] = -1;
+		return d;
+	}
+
+	/**
+	 * @return the number of DIMACS variables so far
+	 */
+	public int getNumberOfVariables()
+	{
+		return variableCount;
+	}
+
+	/**
+	 * @param i - a DIMACS variable
+	 * @return the atomic formula of i
+	 */
+	public AtomicFormula getAtomicFormula(int i)
+	{
+		if(i < 1 || i > variableCount)
+			throw new IllegalArgumentException("Unknown DIMACS variable "+i);
+		if(variables[i] < 0)
+			throw new IllegalArgumentException("DIMACS variable "+i+" has no atomic formula");
+		return VariableTable.getAtomicFormula(variables[i]);
+	}
+
+	private void writeLiteral(int lit) throws IOException
+	{
+		if((lit & 1) != 0)
+			writeByte('-');
+		writeInt(getDimacsVariable(lit >> 1));
+		writeByte(' ');
+	}
+
+	private void writeEnd() throws IOException
+	{
+		clauseCount++;
+		writeByte('0');
+		writeByte('\n');
+	}
+
+	private void writeAscii(String s) throws IOException
+	{
+		for(int i = 0;i<s.length();i++)
+			writeByte(s.charAt(i));
+	}
+
+	private void writeInt(int n) throws IOException
+	{
+		if(n < 0)
+		{
+			writeByte('-');
+			n = -n;
+		}
+		int k = digits.length;
+		do
+		{
+			digits[--k] = (byte) ('0' + n%10);
+			n /= 10;
+		}
+		while(n != 0);
+		if(buffer.remaining() < digits.length-k)
+			flush();
+		buffer.put(digits, k, digits.length-k);
+	}
+
+	private void writeByte(int b) throws IOException
+	{
+		if(!buffer.hasRemaining())
+			flush();
+		buffer.put((byte) b);
+	}
+
+	/**
+	 * Writes the buffered output to the channel
+	 * @throws IOException if the output can not be written
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		flushed += buffer.remaining();
+		while(buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+			if(headerPosition >= 0)
+			{
+				SeekableByteChannel ch = (SeekableByteChannel) out;
+				ch.position(headerPosition);
+				ByteBuffer b = ByteBuffer.wrap(formatHeader(variableCount, clauseCount).getBytes(StandardCharsets.US_ASCII));
+				while(b.hasRemaining())
+					ch.write(b);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
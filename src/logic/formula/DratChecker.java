@@ -0,0 +1,850 @@
+package logic.formula;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Checks DRAT proofs of unsatisfiability, e.g. written by a {@link SATSolver} with a {@link DratWriter}.
+ * <br>
+ * The proof is read from a channel in one forward pass, text and binary proofs are recognized by their first bytes.
+ * Every lemma is added and every deleted clause is removed while the assignments implied at the top level are
+ * propagated with two watched literals. The pass stops at the first conflict, the rest of the proof is not read.
+ * Deletions of clauses that are the reason of an implied literal are ignored, like by drat-trim.
+ * <br>
+ * Then the lemmas are checked backwards: the clauses that were used to derive the conflict are marked, and going back
+ * through the proof, every marked lemma is checked by reverse unit propagation (RUP) against the clauses at the time it was added.
+ * The clauses used by that check are marked in turn. If RUP fails, the lemma must be a resolution asymmetric
+ * tautology (RAT) on its first literal. Lemmas that are not marked are never checked, usually most of them.
+ */
+public class DratChecker
+{
+	private static final byte TRUE = 1;
+	private static final byte FALSE = -1;
+	private static final byte UNDEF = 0;
+	private static final int INPUT = -1; // pivot of a clause of the formula
+	private static final int EMPTY = -2; // pivot of the empty lemma
+
+	// Clause c occupies arena[start[c]] ... arena[start[c+1]-1]
+	private int[] arena;
+	private int arenaSize;
+	private int[] start;
+	private int[] pivots; // first literal of a lemma as written, INPUT or EMPTY
+	private boolean[] active;
+	private boolean[] marked;
+	private int[] hashes;
+	private int[] next; // next clause + 1 with the same slot
+	private int[] table; // first clause + 1 of a slot
+	private int count;
+
+	// Item k of the proof is clause << 1 for a lemma and clause << 1 | 1 for a deletion
+	private int[] items;
+	private int itemCount;
+
+	// Assignments at the top level, followed by the assumptions of a RUP check
+	private byte[] value = new byte[0];
+	private int[] reason = new int[0]; // clause or -1
+	private boolean[] seen = new boolean[0];
+	private int[] trail = new int[0];
+	private int[] trailStep = new int[0]; // the proof item + 1 at which a literal was assigned
+	private int trailSize;
+	private int qhead;
+	private int step;
+	private int[][] watches = new int[0][]; // list[0] is the length of a list
+	private int[] literalMarks = new int[0];
+	private int literalMark;
+
+	// Input
+	private FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+	private long position;
+	private int c;
+	private boolean binary;
+	private IntUnaryOperator variables;
+	private int[] lits = new int[16];
+	private int litCount;
+	private int pivot;
+
+	private long lemmas;
+	private long checked;
+	private long ratLemmas;
+	private long ignoredDeletions;
+	private long coreClauses;
+
+	/**
+	 * Checks a proof of a formula whose variables are numbered by their index in the VariableTable,
+	 * e.g. a proof of a {@link SATSolver} without numbering
+	 * @param cnf - a formula in CNF
+	 * @param proof - a DRAT proof in text or binary format
+	 * @return true iff the proof shows that cnf is unsatisfiable
+	 * @throws IOException if the proof can not be read
+	 * @throws IllegalArgumentException if the proof is malformed
+	 */
+	public boolean check(SetFormula cnf, Path proof) throws IOException
+	{
+		if(!cnf.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		return check(cnf.getClauseStore(), proof, v -> v);
+	}
+
+	/**
+	 * Checks a proof of a formula in a DIMACS file
+	 * @param cnf - a formula in DIMACS CNF format
+	 * @param proof - a DRAT proof in text or binary format
+	 * @return true iff the proof shows that cnf is unsatisfiable
+	 * @throws IOException if a file can not be read
+	 * @throws IllegalArgumentException if a file is malformed
+	 */
+	public boolean check(Path cnf, Path proof) throws IOException
+	{
+		DimacsReader reader = new DimacsReader();
+		SetFormula f = reader.readFormula(cnf);
+		return check(f.getClauseStore(), proof, v -> VariableTable.getIndex(reader.getAtomicFormula(v)));
+	}
+
+	/**
+	 * @param variables - maps a DIMACS variable of the proof to its variable of the VariableTable
+	 */
+	private boolean check(ClauseStore cnf, Path proof, IntUnaryOperator variables) throws IOException
+	{
+		init();
+		int conflict = -1;
+		int[] a = cnf.arena();
+		for(int i = 0;i<cnf.size() && conflict < 0;i++)
+		{
+			litCount = 0;
+			boolean satisfied = false;
+			for(int j = cnf.start(i);j<cnf.start(i)+cnf.length(i);j++)
+			{
+				int g = a[j]>>1;
+				if(g == VariableTable.TRUE || g == VariableTable.FALSE)
+					satisfied |= (g == VariableTable.TRUE) == ((a[j]&1) == 0);
+				else
+					addLiteral(a[j]);
+			}
+			if(!satisfied)
+				conflict = add(INPUT);
+		}
+		// Unit propagation refutes the formula without a proof
+		if(conflict >= 0)
+			return true;
+		this.variables = variables;
+		try(FileChannel ch = FileChannel.open(proof, StandardOpenOption.READ))
+		{
+			channel = ch;
+			buffer.clear().flip();
+			position = 0;
+			next();
+			binary = isBinary();
+			int item;
+			while(conflict < 0 && (item = readItem()) >= 0)
+			{
+				step = itemCount+1;
+				if(item == 0)
+				{
+					lemmas++;
+					conflict = add(pivot);
+				}
+				else
+					delete();
+			}
+		}
+		finally
+		{
+			channel = null;
+		}
+		return conflict >= 0 && checkBackwards(conflict);
+	}
+
+	private void init()
+	{
+		arena = new int[1024];
+		arenaSize = 0;
+		start = new int[257];
+		pivots = new int[256];
+		active = new boolean[256];
+		marked = new boolean[256];
+		hashes = new int[256];
+		next = new int[256];
+		table = new int[1024];
+		count = 0;
+		items = new int[256];
+		itemCount = 0;
+		Arrays.fill(value, UNDEF);
+		Arrays.fill(reason, -1);
+		Arrays.fill(watches, null);
+		trailSize = 0;
+		qhead = 0;
+		step = 0;
+		lemmas = 0;
+		checked = 0;
+		ratLemmas = 0;
+		ignoredDeletions = 0;
+		coreClauses = 0;
+	}
+
+	/**
+	 * Adds an encoded literal to the clause that is read, the variable arrays grow if necessary
+	 */
+	private void addLiteral(int lit)
+	{
+		int v = lit>>1;
+		if(v >= reason.length)
+		{
+			int old = reason.length;
+			int n = Math.max(v+1, 2*old);
+			value = Arrays.copyOf(value, 2*n);
+			reason = Arrays.copyOf(reason, n);
+			Arrays.fill(reason, old, n, -1);
+			seen = Arrays.copyOf(seen, n);
+			trail = Arrays.copyOf(trail, n);
+			trailStep = Arrays.copyOf(trailStep, n);
+			watches = Arrays.copyOf(watches, 2*n);
+			literalMarks = Arrays.copyOf(literalMarks, 2*n);
+		}
+		if(litCount == lits.length)
+			lits = Arrays.copyOf(lits, 2*litCount);
+		lits[litCount++] = lit;
+	}
+
+	/**
+	 * Sorts the clause that is read and removes duplicate literals
+	 * @return false if the clause is a tautology
+	 */
+	private boolean normalize()
+	{
+		Arrays.sort(lits, 0, litCount);
+		int n = 0;
+		for(int i = 0;i<litCount;i++)
+		{
+			if(n > 0 && lits[n-1] == (lits[i]^1))
+				return false;
+			if(n == 0 || lits[n-1] != lits[i])
+				lits[n++] = lits[i];
+		}
+		litCount = n;
+		return true;
+	}
+
+	/**
+	 * Adds the clause that is read and propagates it
+	 * @param pivot - the first literal of a lemma, EMPTY or INPUT
+	 * @return a conflicting clause or -1
+	 */
+	private int add(int pivot)
+	{
+		if(!normalize())
+			return -1; // a tautology can not contribute to a conflict
+		int c = store(lits, litCount, pivot);
+		if(pivot != INPUT)
+			record(c << 1);
+		int s = start[c];
+		int n = litCount;
+		if(n == 0)
+			return c;
+		// The watched literals are the first two literals that are not false
+		int k = 0;
+		for(int i = 0;i<n;i++)
+		{
+			int l = arena[s+i];
+			if(value[l] != FALSE)
+			{
+				arena[s+i] = arena[s+k];
+				arena[s+k++] = l;
+			}
+		}
+		if(k == 0)
+			return c;
+		if(k == 1 && value[arena[s]] == UNDEF)
+			assign(arena[s], c);
+		if(n > 1)
+			attach(c);
+		return propagate();
+	}
+
+	private int store(int[] lits, int n, int pivot)
+	{
+		if(count+1 == start.length)
+		{
+			int m = 2*count;
+			start = Arrays.copyOf(start, m+1);
+			pivots = Arrays.copyOf(pivots, m);
+			active = Arrays.copyOf(active, m);
+			marked = Arrays.copyOf(marked, m);
+			hashes = Arrays.copyOf(hashes, m);
+			next = Arrays.copyOf(next, m);
+		}
+		if(arenaSize+n > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(2*arena.length, arenaSize+n));
+		System.arraycopy(lits, 0, arena, arenaSize, n);
+		arenaSize += n;
+		int c = count++;
+		start[count] = arenaSize;
+		pivots[c] = pivot;
+		active[c] = true;
+		hashes[c] = hash(lits, n);
+		if(2*count > table.length)
+			rehash();
+		link(c);
+		return c;
+	}
+
+	private void record(int item)
+	{
+		if(itemCount == items.length)
+			items = Arrays.copyOf(items, 2*itemCount);
+		items[itemCount++] = item;
+	}
+
+	/**
+	 * @return a hash code of the clause that does not depend on the order of the literals
+	 */
+	private static int hash(int[] lits, int n)
+	{
+		int h = n;
+		for(int i = 0;i<n;i++)
+		{
+			int x = lits[i]*0x9E3779B9;
+			h += x ^ (x >>> 16);
+		}
+		return h;
+	}
+
+	private void link(int c)
+	{
+		int slot = hashes[c] & (table.length-1);
+		next[c] = table[slot];
+		table[slot] = c+1;
+	}
+
+	private void rehash()
+	{
+		table = new int[2*table.length];
+		for(int c = 0;c<count;c++)
+		{
+			if(active[c])
+				link(c);
+		}
+	}
+
+	/**
+	 * Removes the clause that is read from the active clauses, unless it is the reason of an assignment
+	 */
+	private void delete()
+	{
+		if(!normalize())
+			return;
+		int h = hash(lits, litCount);
+		literalMark++;
+		for(int i = 0;i<litCount;i++)
+			literalMarks[lits[i]] = literalMark;
+		int slot = h & (table.length-1);
+		int prev = -1;
+		for(int c = table[slot]-1;c>=0;prev = c, c = next[c]-1)
+		{
+			if(hashes[c] != h || start[c+1]-start[c] != litCount || !active[c])
+				continue;
+			boolean equal = true;
+			for(int j = start[c];j<start[c+1] && equal;j++)
+				equal = literalMarks[arena[j]] == literalMark;
+			if(!equal)
+				continue;
+			if(isReason(c))
+			{
+				ignoredDeletions++;
+				return;
+			}
+			active[c] = false;
+			if(prev < 0)
+				table[slot] = next[c];
+			else
+				next[prev] = next[c];
+			record((c << 1) | 1);
+			return;
+		}
+		ignoredDeletions++; // the clause is not in the formula
+	}
+
+	private boolean isReason(int c)
+	{
+		for(int j = start[c];j<start[c+1];j++)
+		{
+			int l = arena[j];
+			if(value[l] == TRUE && reason[l>>1] == c)
+				return true;
+		}
+		return false;
+	}
+
+	private void attach(int c)
+	{
+		int s = start[c];
+		watches[arena[s]] = append(watches[arena[s]], c);
+		watches[arena[s+1]] = append(watches[arena[s+1]], c);
+	}
+
+	private static int[] append(int[] list, int c)
+	{
+		if(list == null)
+			list = new int[4];
+		else if(list[0]+1 == list.length)
+			list = Arrays.copyOf(list, 2*list.length);
+		list[++list[0]] = c;
+		return list;
+	}
+
+	private void assign(int lit, int from)
+	{
+		value[lit] = TRUE;
+		value[lit^1] = FALSE;
+		reason[lit>>1] = from;
+		trail[trailSize] = lit;
+		trailStep[trailSize++] = step;
+	}
+
+	/**
+	 * Undoes the assignments after the first size assignments
+	 */
+	private void backtrack(int size)
+	{
+		while(trailSize > size)
+		{
+			int lit = trail[--trailSize];
+			value[lit] = UNDEF;
+			value[lit^1] = UNDEF;
+			reason[lit>>1] = -1;
+		}
+		qhead = Math.min(qhead, trailSize);
+	}
+
+	/**
+	 * Propagates all assignments with two watched literals, watches of inactive clauses are dropped
+	 * @return a conflicting clause or -1
+	 */
+	private int propagate()
+	{
+		while(qhead < trailSize)
+		{
+			int falseLit = trail[qhead++]^1;
+			int[] ws = watches[falseLit];
+			if(ws == null)
+				continue;
+			int n = ws[0];
+			int j = 1;
+			for(int i = 1;i<=n;i++)
+			{
+				int c = ws[i];
+				if(!active[c])
+					continue;
+				int s = start[c];
+				int e = start[c+1];
+				if(arena[s] == falseLit)
+				{
+					arena[s] = arena[s+1];
+					arena[s+1] = falseLit;
+				}
+				if(arena[s+1] != falseLit)
+					continue; // the clause watches other literals by now
+				int first = arena[s];
+				if(value[first] == TRUE)
+				{
+					ws[j++] = c;
+					continue;
+				}
+				boolean found = false;
+				for(int k = s+2;k<e;k++)
+				{
+					if(value[arena[k]] != FALSE)
+					{
+						arena[s+1] = arena[k];
+						arena[k] = falseLit;
+						watches[arena[s+1]] = append(watches[arena[s+1]], c);
+						found = true;
+						break;
+					}
+				}
+				if(found)
+					continue;
+				ws[j++] = c;
+				if(value[first] == FALSE)
+				{
+					while(i < n)
+						ws[j++] = ws[++i];
+					ws[0] = j-1;
+					qhead = trailSize;
+					return c;
+				}
+				assign(first, c);
+			}
+			ws[0] = j-1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Marks the clauses that imply the conflict of clause c or, if c is -1, the literal lit
+	 */
+	private void analyze(int c, int lit)
+	{
+		int pending = 0;
+		if(c >= 0)
+		{
+			mark(c);
+			for(int j = start[c];j<start[c+1];j++)
+			{
+				int v = arena[j]>>1;
+				if(!seen[v])
+				{
+					seen[v] = true;
+					pending++;
+				}
+			}
+		}
+		else
+		{
+			seen[lit>>1] = true;
+			pending++;
+		}
+		for(int i = trailSize-1;i>=0 && pending > 0;i--)
+		{
+			int v = trail[i]>>1;
+			if(!seen[v])
+				continue;
+			seen[v] = false;
+			pending--;
+			int r = reason[v];
+			if(r < 0)
+				continue;
+			mark(r);
+			for(int j = start[r];j<start[r+1];j++)
+			{
+				int w = arena[j]>>1;
+				if(!seen[w] && w != v)
+				{
+					seen[w] = true;
+					pending++;
+				}
+			}
+		}
+	}
+
+	private void mark(int c)
+	{
+		if(marked[c])
+			return;
+		marked[c] = true;
+		if(pivots[c] == INPUT)
+			coreClauses++;
+	}
+
+	/**
+	 * Checks the marked lemmas from the last one to the first one
+	 */
+	private boolean checkBackwards(int conflict)
+	{
+		analyze(conflict, -1);
+		int[] lemma = new int[16];
+		for(int k = itemCount-1;k>=0;k--)
+		{
+			int c = items[k] >> 1;
+			if((items[k] & 1) != 0)
+			{
+				// The clause was active before it was deleted
+				active[c] = true;
+				reattach(c);
+				continue;
+			}
+			active[c] = false;
+			int size = trailSize;
+			while(size > 0 && trailStep[size-1] > k)
+				size--;
+			backtrack(size);
+			if(!marked[c])
+				continue;
+			int n = start[c+1]-start[c];
+			if(lemma.length < n)
+				lemma = new int[2*n];
+			System.arraycopy(arena, start[c], lemma, 0, n);
+			if(!isRUP(lemma, n) && !isRAT(c, lemma, n))
+				return false;
+			checked++;
+		}
+		return true;
+	}
+
+	/**
+	 * Watches the first two literals that are not false of a reactivated clause
+	 */
+	private void reattach(int c)
+	{
+		int s = start[c];
+		int n = start[c+1]-s;
+		int k = 0;
+		for(int i = 0;i<n && k < 2;i++)
+		{
+			int l = arena[s+i];
+			if(value[l] != FALSE)
+			{
+				arena[s+i] = arena[s+k];
+				arena[s+k++] = l;
+			}
+		}
+		if(n > 1)
+			attach(c);
+	}
+
+	/**
+	 * Checks whether unit propagation of the negated clause leads to a conflict, the clauses used are marked
+	 */
+	private boolean isRUP(int[] clause, int n)
+	{
+		int size = trailSize;
+		int saved = step;
+		step = Integer.MAX_VALUE;
+		int conflict = -1;
+		boolean implied = false;
+		for(int i = 0;i<n && !implied;i++)
+		{
+			int l = clause[i];
+			if(value[l] == TRUE)
+			{
+				analyze(-1, l);
+				implied = true;
+			}
+			else if(value[l] == UNDEF)
+				assign(l^1, -1);
+		}
+		if(!implied)
+		{
+			conflict = propagate();
+			if(conflict >= 0)
+				analyze(conflict, -1);
+		}
+		backtrack(size);
+		step = saved;
+		return implied || conflict >= 0;
+	}
+
+	/**
+	 * Checks whether the lemma c has the RAT property on its first literal: every resolvent with an active clause
+	 * on the negated literal must be RUP
+	 */
+	private boolean isRAT(int c, int[] lemma, int n)
+	{
+		int p = pivots[c];
+		if(p < 0)
+			return false;
+		int[] resolvent = new int[16];
+		for(int d = 0;d<count;d++)
+		{
+			if(!active[d])
+				continue;
+			boolean contains = false;
+			for(int j = start[d];j<start[d+1] && !contains;j++)
+				contains = arena[j] == (p^1);
+			if(!contains)
+				continue;
+			int m = n+start[d+1]-start[d];
+			if(resolvent.length < m)
+				resolvent = new int[2*m];
+			System.arraycopy(lemma, 0, resolvent, 0, n);
+			literalMark++;
+			for(int i = 0;i<n;i++)
+				literalMarks[lemma[i]] = literalMark;
+			boolean tautology = false;
+			int r = n;
+			for(int j = start[d];j<start[d+1] && !tautology;j++)
+			{
+				int l = arena[j];
+				if(l == (p^1) || literalMarks[l] == literalMark)
+					continue;
+				tautology = literalMarks[l^1] == literalMark;
+				resolvent[r++] = l;
+			}
+			if(tautology)
+				continue;
+			if(!isRUP(resolvent, r))
+				return false;
+			mark(d);
+		}
+		ratLemmas++;
+		return true;
+	}
+
+	/**
+	 * @return true if the proof starts like a binary proof, i.e. with the byte a or with bytes that are not text
+	 */
+	private boolean isBinary() throws IOException
+	{
+		if(c == 'a')
+			return true;
+		buffer.mark();
+		int b = c;
+		boolean binary = false;
+		for(int i = 0;i<10 && b >= 0 && !binary;i++)
+		{
+			binary = b != '\n' && b != '\r' && b != '\t' && (b < 32 || b > 126);
+			b = buffer.hasRemaining()?buffer.get() & 0xFF:-1;
+		}
+		buffer.reset();
+		return binary;
+	}
+
+	private void next() throws IOException
+	{
+		if(!buffer.hasRemaining())
+		{
+			buffer.clear();
+			int n;
+			do
+				n = channel.read(buffer);
+			while(n == 0);
+			buffer.flip();
+			if(n < 0)
+			{
+				c = -1;
+				return;
+			}
+		}
+		c = buffer.get() & 0xFF;
+		position++;
+	}
+
+	/**
+	 * Reads the next lemma or deletion into lits
+	 * @return 0 for a lemma, 1 for a deletion, -1 at the end of the proof
+	 */
+	private int readItem() throws IOException
+	{
+		litCount = 0;
+		pivot = EMPTY;
+		if(binary)
+		{
+			if(c < 0)
+				return -1;
+			if(c != 'a' && c != 'd')
+				throw new IllegalArgumentException("Binary proof item expected at offset "+position);
+			int item = c == 'a'?0:1;
+			next();
+			long u;
+			while((u = readUnsigned()) != 0)
+				addProofLiteral((int) (u >> 1), (int) (u & 1));
+			return item;
+		}
+		while(true)
+		{
+			while(c == ' ' || c == '\n' || c == '\r' || c == '\t')
+				next();
+			if(c != 'c')
+				break;
+			while(c >= 0 && c != '\n')
+				next();
+		}
+		if(c < 0)
+			return -1;
+		int item = 0;
+		if(c == 'd')
+		{
+			item = 1;
+			next();
+		}
+		while(true)
+		{
+			while(c == ' ' || c == '\n' || c == '\r' || c == '\t')
+				next();
+			int n = readInt();
+			if(n == 0)
+				return item;
+			addProofLiteral(Math.abs(n), n < 0?1:0);
+		}
+	}
+
+	private void addProofLiteral(int d, int sign)
+	{
+		int lit = (variables.applyAsInt(d) << 1) | sign;
+		if(litCount == 0)
+			pivot = lit;
+		addLiteral(lit);
+	}
+
+	private long readUnsigned() throws IOException
+	{
+		long n = 0;
+		int shift = 0;
+		while(true)
+		{
+			if(c < 0)
+				throw new IllegalArgumentException("Unexpected end of binary proof");
+			n |= (long) (c & 0x7F) << shift;
+			boolean more = (c & 0x80) != 0;
+			next();
+			if(!more)
+				return n;
+			shift += 7;
+			if(shift > 35)
+				throw new IllegalArgumentException("Number too large at offset "+position);
+		}
+	}
+
+	private int readInt() throws IOException
+	{
+		boolean negative = c == '-';
+		if(negative)
+			next();
+		if(c < '0' || c > '9')
+			throw new IllegalArgumentException("Number expected at offset "+position);
+		long n = 0;
+		while(c >= '0' && c <= '9')
+		{
+			n = 10*n + (c-'0');
+			if(n > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Number too large at offset "+position);
+			next();
+		}
+		return negative?(int) -n:(int) n;
+	}
+
+	/**
+	 * @return the number of lemmas read by the last check
+	 */
+	public long getLemmas()
+	{
+		return lemmas;
+	}
+
+	/**
+	 * @return the number of lemmas that were needed for the conflict and checked by the last check
+	 */
+	public long getCheckedLemmas()
+	{
+		return checked;
+	}
+
+	/**
+	 * @return the number of checked lemmas of the last check that were RAT but not RUP
+	 */
+	public long getRATLemmas()
+	{
+		return ratLemmas;
+	}
+
+	/**
+	 * @return the number of deletions of the last check that were ignored, because the clause was a reason or not present
+	 */
+	public long getIgnoredDeletions()
+	{
+		return ignoredDeletions;
+	}
+
+	/**
+	 * @return the number of clauses of the formula that were needed for the refutation in the last check
+	 */
+	public long getCoreClauses()
+	{
+		return coreClauses;
+	}
+}
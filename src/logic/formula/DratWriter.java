@@ -0,0 +1,250 @@
+package logic.formula;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a DRAT proof, the certificate that a formula in CNF is unsatisfiable, e.g. of a {@link SATSolver}.
+ * <br>
+ * A proof is a sequence of added clauses (lemmas) and deleted clauses. In the text format a lemma is written as
+ * its DIMACS literals terminated by 0 and a deletion starts with d. In the binary format a lemma starts with the
+ * byte a and a deletion with d, the literals are written as unsigned variable-length numbers 2*v+sign and
+ * terminated by the byte 0. Proofs can be checked by {@link DratChecker} or external checkers like drat-trim.
+ * <br>
+ * The output is formatted into a direct byte buffer and written to a channel whenever the buffer is full,
+ * like by a {@link DimacsWriter}. The literals are encoded literals of the {@link VariableTable}, the DIMACS variable of a
+ * variable is its index in the table, or its number in the DIMACS file of the formula, see {@link #setNumbering(DimacsWriter)}.
+ * Variables that have no atomic formula, like the variables a solver creates for itself, are variables of the proof,
+ * see {@link #newVariable()}.
+ */
+public class DratWriter implements Closeable
+{
+	private final WritableByteChannel out;
+	private final boolean binary;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+	private final byte[] digits = new byte[11];
+	private DimacsWriter numbering;
+	// DIMACS variable of the proof variable -(i+1), 0 if it has not been written yet
+	private int[] proofVariables = new int[0];
+	private int proofVariableCount;
+	// Without a numbering the proof variables are numbered from the size of the VariableTable on
+	private int firstProofVariable = -1;
+	private int nextProofVariable;
+	private long lemmas;
+	private long deletions;
+
+	/**
+	 * @param out - the channel the proof is written to, it is closed by {@link #close()}
+	 * @param binary - true for the binary format, false for the text format
+	 */
+	public DratWriter(WritableByteChannel out, boolean binary)
+	{
+		this.out = out;
+		this.binary = binary;
+	}
+
+	/**
+	 * Creates a writer that replaces the content of a file
+	 * @param file - the file
+	 * @param binary - true for the binary format, false for the text format
+	 * @throws IOException if the file can not be opened
+	 */
+	public DratWriter(Path file, boolean binary) throws IOException
+	{
+		this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), binary);
+	}
+
+	/**
+	 * Numbers the variables like in a DIMACS file, so that the proof can be checked against that file
+	 * @param dimacs - the writer of the formula, or null to number the variables by their index in the VariableTable
+	 */
+	public void setNumbering(DimacsWriter dimacs)
+	{
+		this.numbering = dimacs;
+	}
+
+	/**
+	 * Creates a variable that only exists in this proof, it is numbered when it is written first: after the
+	 * variables of the DIMACS file, or after the variables of the VariableTable if there is no numbering.
+	 * In the latter case variables of the VariableTable that are created later can not be written anymore.
+	 * @return the variable, a negative number whose literals are encoded like literals of the VariableTable
+	 */
+	public int newVariable()
+	{
+		return -(++proofVariableCount);
+	}
+
+	/**
+	 * Writes the lemma lits[from],...,lits[from+length-1]
+	 * @param lits - encoded literals
+	 * @throws UncheckedIOException if the output can not be written
+	 */
+	public void add(int[] lits, int from, int length)
+	{
+		lemmas++;
+		write(binary?'a':-1, lits, from, length);
+	}
+
+	/**
+	 * Writes the deletion of the clause lits[from],...,lits[from+length-1]
+	 * @param lits - encoded literals
+	 * @throws UncheckedIOException if the output can not be written
+	 */
+	public void delete(int[] lits, int from, int length)
+	{
+		deletions++;
+		write('d', lits, from, length);
+	}
+
+	/**
+	 * @return the number of lemmas written so far
+	 */
+	public long getNumberOfLemmas()
+	{
+		return lemmas;
+	}
+
+	/**
+	 * @return the number of deletions written so far
+	 */
+	public long getNumberOfDeletions()
+	{
+		return deletions;
+	}
+
+	private void write(int prefix, int[] lits, int from, int length)
+	{
+		try
+		{
+			if(prefix >= 0)
+			{
+				writeByte(prefix);
+				if(!binary)
+					writeByte(' ');
+			}
+			for(int i = from;i<from+length;i++)
+			{
+				int lit = lits[i];
+				int v = dimacsVariable(lit >> 1);
+				if(binary)
+					writeUnsigned(2*(long) v + (lit & 1));
+				else
+				{
+					if((lit & 1) != 0)
+						writeByte('-');
+					writeInt(v);
+					writeByte(' ');
+				}
+			}
+			if(binary)
+				writeByte(0);
+			else
+			{
+				writeByte('0');
+				writeByte('\n');
+			}
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param v - a variable of the VariableTable or of this proof
+	 */
+	private int dimacsVariable(int v)
+	{
+		if(v < 0)
+		{
+			int i = -v-1;
+			if(i >= proofVariableCount)
+				throw new IllegalArgumentException("Unknown proof variable "+v);
+			if(i >= proofVariables.length)
+				proofVariables = Arrays.copyOf(proofVariables, Math.max(i+1, 2*proofVariables.length));
+			if(proofVariables[i] == 0)
+			{
+				if(numbering != null)
+					proofVariables[i] = numbering.newDimacsVariable();
+				else
+				{
+					if(firstProofVariable < 0)
+						firstProofVariable = nextProofVariable = VariableTable.size();
+					proofVariables[i] = nextProofVariable++;
+				}
+			}
+			return proofVariables[i];
+		}
+		if(numbering != null)
+			return numbering.getDimacsVariable(v);
+		if(firstProofVariable >= 0 && v >= firstProofVariable)
+			throw new IllegalStateException("Variable "+v+" is numbered like a variable of the proof, see setNumbering");
+		return v;
+	}
+
+	/**
+	 * Writes n in groups of 7 bits, the lowest group first, the highest bit of a byte marks that more groups follow
+	 */
+	private void writeUnsigned(long n) throws IOException
+	{
+		while(n > 0x7F)
+		{
+			writeByte((int) (n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		writeByte((int) n);
+	}
+
+	private void writeInt(int n) throws IOException
+	{
+		int k = digits.length;
+		do
+		{
+			digits[--k] = (byte) ('0' + n%10);
+			n /= 10;
+		}
+		while(n != 0);
+		if(buffer.remaining() < digits.length-k)
+			flush();
+		buffer.put(digits, k, digits.length-k);
+	}
+
+	private void writeByte(int b) throws IOException
+	{
+		if(!buffer.hasRemaining())
+			flush();
+		buffer.put((byte) b);
+	}
+
+	/**
+	 * Writes the buffered output to the channel
+	 * @throws IOException if the output can not be written
+	 */
+	public void flush() throws IOException
+	{
+		buffer.flip();
+		while(buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -1,18 +1,20 @@
 package logic.formula;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 import logic.formula.SetFormula.Type;
-import logic.helper.BinaryIterator;
+import logic.helper.FormulaParser;
 import logic.helper.LogicHelper;
 import logic.helper.Pair;
-import logic.helper.Parser;
 
 /**
  * 
@@ -27,10 +29,32 @@ import logic.helper.Parser;
  */
 public abstract class Formula implements Comparable<Formula> 
 {
+	/**
+	 * The factory whose unique table contains this object, null if this formula is not canonical
+	 */
+	FormulaFactory factory;
+	
+	/**
+	 * @return true iff this formula and f are both canonical objects of the same factory, 
+	 * 			in that case they are equal iff they are identical
+	 */
+	boolean isCanonicalWith(Formula f)
+	{
+		return factory != null && factory == f.factory;
+	}
+	
+	/**
+	 * @return the factory that created this formula or the default factory if this formula is not canonical
+	 */
+	FormulaFactory getFactory()
+	{
+		FormulaFactory f = factory;
+		return f == null?FormulaFactory.getDefault():f;
+	}
 	
 	public Formula not()
 	{
-		return simplifyNOTFormula(this);
+		return simplifyNOTFormula(this, getFactory());
 	}
 	
 	public SetFormula asCNF()
@@ -103,93 +127,311 @@ public abstract class Formula implements Comparable<Formula>
 		return LogicHelper.createSet(this);
 	}
 	
-	private List<Formula> asORFormulaList()
+	/**
+	 * Computes the CNF of this formula, the DNF of a subformula is only computed if it is below a negation.
+	 * The normal forms of all subformulas are looked up in and added to the default {@link NormalFormCache}.
+	 * @return the CNF of this formula
+	 */
+	public SetFormula toCNF()
 	{
-		if(this instanceof ORFormula)
-			return ((ORFormula)this).getFormulaList();
-		return LogicHelper.createList(this);
+		return toCNF(NormalFormCache.getDefault());
 	}
-	
 
-	private List<Formula> asANDFormulaList()
+	/**
+	 * Computes the CNF of this formula like {@link #toCNF()}
+	 * @param cache - a cache of normal forms
+	 * @return the CNF of this formula
+	 */
+	public SetFormula toCNF(NormalFormCache cache)
 	{
-		if(this instanceof ANDFormula)
-			return ((ANDFormula)this).getFormulaList();
-		return LogicHelper.createList(this);
+		return getFactory().intern(this).toCanonicalNormalForm(true, cache);
 	}
-	
+
+	/**
+	 * Computes the DNF of this formula, the CNF of a subformula is only computed if it is below a negation.
+	 * The normal forms of all subformulas are looked up in and added to the default {@link NormalFormCache}.
+	 * @return the DNF of this formula
+	 */
+	public SetFormula toDNF()
+	{
+		return toDNF(NormalFormCache.getDefault());
+	}
+
+	/**
+	 * Computes the DNF of this formula like {@link #toDNF()}
+	 * @param cache - a cache of normal forms
+	 * @return the DNF of this formula
+	 */
+	public SetFormula toDNF(NormalFormCache cache)
+	{
+		return getFactory().intern(this).toCanonicalNormalForm(false, cache);
+	}
+
+	/**
+	 * Estimates the size of the CNF of this formula in linear time, see {@link NormalFormEstimator}
+	 * @return an upper bound of the number of clauses of {@link #toCNF()}, at most Long.MAX_VALUE
+	 */
+	public long estimateCNFSize()
+	{
+		return new NormalFormEstimator().estimateCNF(this);
+	}
+
+	/**
+	 * Estimates the size of the DNF of this formula in linear time, see {@link NormalFormEstimator}
+	 * @return an upper bound of the number of terms of {@link #toDNF()}, at most Long.MAX_VALUE
+	 */
+	public long estimateDNFSize()
+	{
+		return new NormalFormEstimator().estimateDNF(this);
+	}
+
+	/**
+	 * Computes CNF and DNF of this formula, the normal forms of all subformulas are looked up in and added to
+	 * the default {@link NormalFormCache}. If only one of them is needed, {@link #toCNF()} or {@link #toDNF()}
+	 * are much cheaper.
+	 * @return the CNF and the DNF of this formula
+	 */
 	public Pair<SetFormula, SetFormula> toNormalForm()
 	{
-		if(this instanceof AtomicFormula)
-		{
-			Literal l = new Literal((AtomicFormula)this, true);
-			return new Pair<>(new SetFormula(LogicHelper.createSet(LogicHelper.createSet(l)), Type.CNF), new SetFormula(LogicHelper.createSet(LogicHelper.createSet(l)), Type.DNF));
-		}
-		if(this instanceof NOTFormula)
-		{
-			Formula f = ((NOTFormula)this).getArgumentFormula();
-			Pair<SetFormula, SetFormula> pair = f.toNormalForm();
-			return new Pair<>(pair.getSecond().negate(), pair.getFirst().negate());
-		}
-		List<Pair<SetFormula, SetFormula>> normalForms = new ArrayList<>();
-		if(this instanceof ANDFormula)	
+		return toNormalForm(NormalFormCache.getDefault());
+	}
+
+	/**
+	 * Computes CNF and DNF of this formula, the normal forms of all subformulas are looked up in and added to cache
+	 * @param cache - a cache of normal forms
+	 * @return the CNF and the DNF of this formula
+	 */
+	public Pair<SetFormula, SetFormula> toNormalForm(NormalFormCache cache)
+	{
+		Formula f = getFactory().intern(this);
+		return new Pair<>(f.toCanonicalNormalForm(true, cache), f.toCanonicalNormalForm(false, cache));
+	}
+
+	/**
+	 * Computes one normal form of this canonical formula. A negation swaps the normal forms, so the other normal
+	 * form is only computed for the arguments of negations.
+	 * @param cnf - true for the CNF, false for the DNF
+	 */
+	SetFormula toCanonicalNormalForm(boolean cnf, NormalFormCache cache)
+	{
+		// Post-order traversal, a frame is a subformula and whether its CNF or its DNF is computed. The normal forms
+		// of this traversal are kept in forms, the cache may evict them before they are used.
+		Map<Formula, SetFormula[]> forms = new IdentityHashMap<>();
+		List<Formula> formulas = new ArrayList<>();
+		List<Boolean> types = new ArrayList<>();
+		formulas.add(this);
+		types.add(cnf);
+		while(!formulas.isEmpty())
 		{
-			((ANDFormula)this).getFormulaList().forEach(f -> normalForms.add(f.toNormalForm()));
-			//Create CNF and DNF
-			SetFormula cnf = SetFormula.getEmptySetFormula(Type.CNF); //i.e. {} which is a true formula in CNF
-			SetFormula dnf = new SetFormula(Type.DNF); //i.e. {{}} which is a true formula in DNF
-			for(Pair<SetFormula, SetFormula> pair:normalForms)
+			int top = formulas.size()-1;
+			Formula f = formulas.get(top);
+			boolean c = types.get(top);
+			if(normalForm(forms, f, c) != null)
+			{
+				formulas.remove(top);
+				types.remove(top);
+				continue;
+			}
+			SetFormula result;
+			if(f instanceof AtomicFormula)
 			{
-				cnf = cnf.and(pair.getFirst());
-				dnf = dnf.and(pair.getSecond());
+				Literal l = new Literal((AtomicFormula)f, true);
+				result = new SetFormula(LogicHelper.createSet(LogicHelper.createSet(l)), c?Type.CNF:Type.DNF);
 			}
-			return new Pair<>(cnf, dnf);
+			else if((result = cache.get(f, c)) == null)
+			{
+				// A negation swaps the normal forms
+				List<Formula> args = arguments(f);
+				boolean argCNF = f instanceof NOTFormula?!c:c;
+				boolean ready = true;
+				for(Formula g:args)
+				{
+					if(normalForm(forms, g, argCNF) == null)
+					{
+						formulas.add(g);
+						types.add(argCNF);
+						ready = false;
+					}
+				}
+				if(!ready)
+					continue;
+				if(f instanceof NOTFormula)
+					result = normalForm(forms, args.get(0), argCNF).negate();
+				else if(f instanceof ANDFormula)
+				{
+					// {} is true in CNF, {{}} is true in DNF
+					result = c?SetFormula.getEmptySetFormula(Type.CNF):new SetFormula(Type.DNF);
+					for(Formula g:args)
+						result = result.and(normalForm(forms, g, c));
+				}
+				else
+				{
+					// {{}} is false in CNF, {} is false in DNF
+					result = c?new SetFormula(Type.CNF):SetFormula.getEmptySetFormula(Type.DNF);
+					for(Formula g:args)
+						result = result.or(normalForm(forms, g, c));
+				}
+				cache.put(f, c, result);
+			}
+			formulas.remove(top);
+			types.remove(top);
+			forms.computeIfAbsent(f, g -> new SetFormula[2])[c?0:1] = result;
 		}
-		if(this instanceof ORFormula)	
+		return normalForm(forms, this, cnf);
+	}
+
+	/**
+	 * @return the CNF or the DNF of f computed by toCanonicalNormalForm or null
+	 */
+	private static SetFormula normalForm(Map<Formula, SetFormula[]> forms, Formula f, boolean cnf)
+	{
+		SetFormula[] nf = forms.get(f);
+		return nf == null?null:nf[cnf?0:1];
+	}
+
+	/**
+	 * Computes CNF and DNF of this formula like {@link #toNormalForm()}, but the sets of literals are
+	 * kept in ZDDs of manager, see {@link SetFormula#getZDD()}
+	 * @param manager - the ZDD manager of the normal forms
+	 * @return the CNF and the DNF of this formula
+	 */
+	public Pair<SetFormula, SetFormula> toNormalForm(ZDDManager manager)
+	{
+		// Post-order traversal, shared subformulas of the interned formula are converted once
+		Formula root = getFactory().intern(this);
+		Map<Formula, Pair<SetFormula, SetFormula>> memo = new IdentityHashMap<>();
+		List<Formula> stack = new ArrayList<>();
+		stack.add(root);
+		while(!stack.isEmpty())
 		{
-			((ORFormula)this).getFormulaList().forEach(f -> normalForms.add(f.toNormalForm()));
-			//Create CNF and DNF
-			SetFormula cnf = new SetFormula(Type.CNF); // i.e. {{}} which is a false formula in CNF
-			SetFormula dnf = SetFormula.getEmptySetFormula(Type.DNF); // i.e. {} which is a false formula in DNF
-			for(Pair<SetFormula, SetFormula> pair:normalForms)
+			Formula f = stack.get(stack.size()-1);
+			if(memo.containsKey(f))
+			{
+				stack.remove(stack.size()-1);
+				continue;
+			}
+			if(f instanceof AtomicFormula)
+			{
+				ZDD l = manager.literal(new Literal((AtomicFormula)f, true));
+				memo.put(f, new Pair<>(new SetFormula(l, Type.CNF), new SetFormula(l, Type.DNF)));
+				stack.remove(stack.size()-1);
+				continue;
+			}
+			List<Formula> args = arguments(f);
+			boolean ready = true;
+			for(Formula g:args)
+			{
+				if(!memo.containsKey(g))
+				{
+					stack.add(g);
+					ready = false;
+				}
+			}
+			if(!ready)
+				continue;
+			stack.remove(stack.size()-1);
+			if(f instanceof NOTFormula)
 			{
-				cnf = cnf.or(pair.getFirst());
-				dnf = dnf.or(pair.getSecond());
+				Pair<SetFormula, SetFormula> pair = memo.get(args.get(0));
+				memo.put(f, new Pair<>(pair.getSecond().negate(), pair.getFirst().negate()));
+				continue;
 			}
-			return new Pair<>(cnf, dnf);
+			boolean and = f instanceof ANDFormula;
+			//{} is true in CNF and false in DNF, {{}} is false in CNF and true in DNF
+			SetFormula cnf = new SetFormula(and?manager.getEmpty():manager.getBase(), Type.CNF);
+			SetFormula dnf = new SetFormula(and?manager.getBase():manager.getEmpty(), Type.DNF);
+			for(Formula g:args)
+			{
+				Pair<SetFormula, SetFormula> pair = memo.get(g);
+				cnf = and?cnf.and(pair.getFirst()):cnf.or(pair.getFirst());
+				dnf = and?dnf.and(pair.getSecond()):dnf.or(pair.getSecond());
+			}
+			memo.put(f, new Pair<>(cnf, dnf));
 		}
-		throw new IllegalArgumentException();
+		return memo.get(root);
 	}
-	
-	
+
+	private static List<Formula> arguments(Formula f)
+	{
+		if(f instanceof NOTFormula)
+			return Arrays.asList(((NOTFormula)f).getArgumentFormula());
+		if(f instanceof ANDFormula)
+			return ((ANDFormula)f).getOrigList();
+		if(f instanceof ORFormula)
+			return ((ORFormula)f).getOrigList();
+		throw new IllegalArgumentException("Formula type not supported");
+	}
+
+	/**
+	 * Simplifies this formula, the result is a canonical formula of the factory of this formula.
+	 * <br>
+	 * Nested ANDs and ORs are flattened, constants are evaluated, duplicates are removed (idempotence),
+	 * complementary arguments make the formula constant and absorbed arguments are removed,
+	 * e.g. AND(A,OR(A,B)) becomes A. The formula is traversed with an explicit stack and every node is simplified
+	 * only once, shared subformulas are looked up in a memo, so the time is linear in the size of the formula.
+	 * @return a simplified formula that is equivalent to this formula
+	 */
 	public Formula simplify()
 	{
-		if(this instanceof NOTFormula)
+		return simplify(getFactory());
+	}
+	
+	private Formula simplify(FormulaFactory factory)
+	{
+		Map<Formula, Formula> memo = new IdentityHashMap<>();
+		List<Formula> stack = new ArrayList<>();
+		stack.add(this);
+		while(!stack.isEmpty())
 		{
-			NOTFormula f = (NOTFormula) this;
-			Formula arg = f.getArgumentFormula().simplify();
-			return simplifyNOTFormula(arg);
+			Formula f = stack.get(stack.size()-1);
+			if(memo.containsKey(f))
+			{
+				stack.remove(stack.size()-1);
+				continue;
+			}
+			if(f instanceof AtomicFormula)
+			{
+				stack.remove(stack.size()-1);
+				memo.put(f, factory.intern(f));
+				continue;
+			}
+			List<Formula> args = f.getArguments();
+			// Simplify the arguments first
+			int size = stack.size();
+			for(Formula g:args)
+				if(!memo.containsKey(g))
+					stack.add(g);
+			if(stack.size() > size)
+				continue;
+			stack.remove(stack.size()-1);
+			List<Formula> argList = new ArrayList<>(args.size());
+			for(Formula g:args)
+				argList.add(memo.get(g));
+			if(f instanceof NOTFormula)
+				memo.put(f, simplifyNOTFormula(argList.get(0), factory));
+			else if(f instanceof ANDFormula)
+				memo.put(f, simplifyJunction(argList, true, factory));
+			else
+				memo.put(f, simplifyJunction(argList, false, factory));
 		}
+		return memo.get(this);
+	}
+
+	/**
+	 * @return the arguments of a NOT, AND or OR formula, the list must not be modified
+	 */
+	private List<Formula> getArguments()
+	{
+		if(this instanceof NOTFormula)
+			return LogicHelper.createList(((NOTFormula)this).getArgumentFormula());
 		if(this instanceof ANDFormula)
-		{
-			ANDFormula f = (ANDFormula) this;
-			List<Formula> argList = new ArrayList<>();
-			for(int i = 0;i<f.getLength();i++)
-				argList.add(f.getFormulaAt(i).simplify());
-			return simplifyANDFormula(argList);
-		}
+			return ((ANDFormula)this).getOrigList();
 		if(this instanceof ORFormula)
-		{
-			ORFormula f = (ORFormula) this;
-			List<Formula> argList = new ArrayList<>();
-			for(int i = 0;i<f.getLength();i++)
-				argList.add(f.getFormulaAt(i).simplify());
-			return simplifyORFormula(argList);
-		}
-		return this;
+			return ((ORFormula)this).getOrigList();
+		throw new IllegalArgumentException("Formula type not supported");
 	}
 	
-	private static Formula simplifyNOTFormula(Formula arg)
+	private static Formula simplifyNOTFormula(Formula arg, FormulaFactory factory)
 	{
 		if(arg instanceof NOTFormula)
 			return ((NOTFormula)arg).getArgumentFormula();
@@ -197,78 +439,74 @@ public abstract class Formula implements Comparable<Formula>
 			return AtomicFormula.FALSE;
 		if(arg.equals(AtomicFormula.FALSE))
 			return AtomicFormula.TRUE;
-		return new NOTFormula(arg);
+		return factory.not(arg);
 	}
-	
-	private static Formula simplifyANDFormula(List<Formula> argList)
+
+	/**
+	 * Simplifies an AND or OR formula whose arguments are simplified canonical formulas
+	 * @param argList - the simplified arguments
+	 * @param and - true for AND, false for OR
+	 */
+	private static Formula simplifyJunction(List<Formula> argList, boolean and, FormulaFactory factory)
 	{
-		//Merge 
+		// The neutral and the absorbing constant
+		Formula neutral = and?AtomicFormula.TRUE:AtomicFormula.FALSE;
+		Formula absorbing = and?AtomicFormula.FALSE:AtomicFormula.TRUE;
+		//Merge, the arguments are canonical, so equal arguments are found by hashing
 		List<Formula> list = new ArrayList<>();
+		Set<Formula> members = new HashSet<>();
+		Set<Formula> negated = new HashSet<>(); // arguments of the NOT members
 		for(Formula f : argList)
 		{
-			List<Formula> list2 = f.asANDFormulaList();
+			List<Formula> list2 = (and?f instanceof ANDFormula:f instanceof ORFormula)?f.getArguments():LogicHelper.createList(f);
 			for(Formula g : list2)
 			{
-				if(list.contains(g.not()))
-					return AtomicFormula.FALSE;
-				if(g.equals(AtomicFormula.FALSE))
-					return AtomicFormula.FALSE;
-				if(!g.equals(AtomicFormula.TRUE))
-					list.add(g);
+				if(g.equals(absorbing))
+					return absorbing;
+				if(g.equals(neutral))
+					continue;
+				// Complementary arguments
+				if(negated.contains(g) || g instanceof NOTFormula && members.contains(((NOTFormula)g).getArgumentFormula()))
+					return absorbing;
+				if(!members.add(g))
+					continue;
+				list.add(g);
+				if(g instanceof NOTFormula)
+					negated.add(((NOTFormula)g).getArgumentFormula());
 			}
 		}
-		
-		//Remove duplicates
-		list = LogicHelper.removeDuplicates(list);
+
+		//Absorption, e.g. AND(A,OR(A,B)) = A. The arguments of a simplified OR are no ORs, so absorbed formulas
+		//do not absorb others
+		list.removeIf(g -> (and?g instanceof ORFormula:g instanceof ANDFormula) && absorbed(g.getArguments(), members));
 		
 		//Sort list
 		list.sort((a,b) -> a.compareTo(b));
 		
 		//Return
 		if(list.size() == 0)
-			return AtomicFormula.TRUE;
+			return neutral;
 		if(list.size() == 1)
 			return list.get(0);
-		return new ANDFormula(list);
+		return and?factory.and(list):factory.or(list);
 	}
-	
 
-	private static Formula simplifyORFormula(List<Formula> argList)
+	private static boolean absorbed(List<Formula> args, Set<Formula> members)
 	{
-		//Merge 
-		List<Formula> list = new ArrayList<>();
-		for(Formula f : argList)
-		{
-			List<Formula> list2 = f.asORFormulaList();
-			for(Formula g : list2)
-			{
-				if(list.contains(g.not()))
-					return AtomicFormula.TRUE;
-				if(g.equals(AtomicFormula.TRUE))
-					return AtomicFormula.TRUE;
-				if(!g.equals(AtomicFormula.FALSE))
-					list.add(g);
-			}
-		}
-		
-		//Remove duplicates
-		list = LogicHelper.removeDuplicates(list);
-		
-		//Sort list
-		list.sort((a,b) -> a.compareTo(b));
-		
-		//Return
-		if(list.size() == 0)
-			return AtomicFormula.FALSE;
-		if(list.size() == 1)
-			return list.get(0);
-		return new ORFormula(list);
+		for(Formula g:args)
+			if(members.contains(g))
+				return true;
+		return false;
 	}
 	
+	/**
+	 * Parses a formula, the result is a canonical formula of the default factory
+	 * @param s - a formula such as AND(A,OR(B,NOT(C))) or A &amp; (B | !C) -&gt; D, see {@link FormulaParser}
+	 * @return the parsed formula
+	 */
 	public static Formula parseFormula(String s)
 	{
-		Map<AtomicFormula, AtomicFormula> afMap = new HashMap<>();
-		return Parser.parseFormula(s, afMap);
+		return FormulaParser.parse(s);
 	}
 	
 	public boolean isTrue(Function<AtomicFormula, Boolean> interpretation)
@@ -395,18 +633,58 @@ public abstract class Formula implements Comparable<Formula>
 		throw new IllegalStateException("Formula not supported");
 	}
 	
+	/**
+	 * Compares the truth tables of this formula and f, see {@link TruthTable}.
+	 * With more than {@value #TRUTH_TABLE_LIMIT} atomic formulas the BDDs of both formulas are compared instead.
+	 * @param f - a formula
+	 * @return true iff this formula and f are equivalent
+	 */
 	public boolean isEquivalentTo(Formula f)
 	{
-		Set<AtomicFormula> occ = this.getAtomicFormulaOccurences();
-		occ.addAll(f.getAtomicFormulaOccurences());
-		BinaryIterator<AtomicFormula> it = new BinaryIterator<>(occ);
-		while(it.hasNext())
-		{
-			Function<AtomicFormula, Boolean> interpretation = it.next();
-			if(this.isTrue(interpretation) != f.isTrue(interpretation))
-				return false;
-		}
-		return true;
+		Set<AtomicFormula> atoms = getAtomicFormulaOccurences();
+		atoms.addAll(f.getAtomicFormulaOccurences());
+		if(atoms.size() <= TRUTH_TABLE_LIMIT)
+			return TruthTable.isEquivalent(this, f);
+		BDDManager manager = new BDDManager();
+		return manager.fromFormula(this).isEquivalentTo(manager.fromFormula(f));
+	}
+
+	private static final int TRUTH_TABLE_LIMIT = 20;
+
+	/**
+	 * Builds the reduced ordered binary decision diagram of this formula in a new {@link BDDManager}
+	 * @return the BDD of this formula
+	 */
+	public BDD toBDD()
+	{
+		return new BDDManager().fromFormula(this);
+	}
+
+	/**
+	 * Counts the models of this formula over its atomic formulas with a {@link ModelCounter}
+	 * @return the number of assignments of the atomic formulas of this formula that satisfy it
+	 */
+	public BigInteger countModels()
+	{
+		return new ModelCounter().count(this);
+	}
+
+	/**
+	 * Enumerates the models of this formula lazily with a {@link ModelEnumerator}
+	 * @return a stream of the models of this formula over its atomic formulas
+	 */
+	public Stream<Model> models()
+	{
+		return ModelEnumerator.models(this);
+	}
+
+	/**
+	 * Compiles this formula for repeated evaluation, see {@link CompiledFormula}
+	 * @return the compiled formula
+	 */
+	public CompiledFormula compile()
+	{
+		return CompiledFormula.compile(this);
 	}
 	
 	public String toPrettyString()
@@ -0,0 +1,248 @@
+package logic.formula;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates hash-consed formulas: structurally equal formulas created by the same factory are the same object.
+ * <br>
+ * Every formula keeps its hash code, so a lookup in the unique table of the factory only compares the
+ * arguments of a node, which are canonical themselves and therefore compared by identity.
+ * Two canonical formulas of the same factory are equal iff they are identical.
+ * <br>
+ * The unique table is a concurrent hash map, formulas built concurrently by different threads are deduplicated as well.
+ * It holds weak references, so a canonical formula is garbage collected like any other object once it is no longer
+ * referenced, e.g. by a formula that contains it, and the table does not grow with every formula ever built.
+ */
+public class FormulaFactory
+{
+	private static final FormulaFactory DEFAULT = new FormulaFactory();
+
+	private final ConcurrentHashMap<Node, Node> table = new ConcurrentHashMap<>();
+	private final ReferenceQueue<Formula> queue = new ReferenceQueue<>();
+
+	/**
+	 * An entry of the unique table, two entries are equal iff their formulas are equal and not collected
+	 */
+	private static final class Node extends WeakReference<Formula>
+	{
+		private final int hash;
+
+		Node(Formula f, ReferenceQueue<Formula> queue)
+		{
+			super(f, queue);
+			this.hash = f.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(obj == this)
+				return true;
+			if(!(obj instanceof Node))
+				return false;
+			Formula f = get();
+			Formula g = ((Node)obj).get();
+			return f != null && g != null && f.equals(g);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+
+	/**
+	 * Creates a new factory with an empty unique table
+	 */
+	public FormulaFactory()
+	{
+		register(AtomicFormula.TRUE);
+		register(AtomicFormula.FALSE);
+	}
+
+	/**
+	 * @return the factory shared by the parser and the simplifier
+	 */
+	public static FormulaFactory getDefault()
+	{
+		return DEFAULT;
+	}
+
+	private void register(Formula f)
+	{
+		if(f.factory == null)
+			unique(f);
+	}
+
+	/**
+	 * Returns the canonical object of f, f must only have canonical arguments
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends Formula> T unique(T f)
+	{
+		expunge();
+		Node node = new Node(f, queue);
+		while(true)
+		{
+			Node n = table.putIfAbsent(node, node);
+			if(n == null)
+			{
+				// Mark as canonical only after f has won the race for the table entry
+				f.factory = this;
+				return f;
+			}
+			Formula g = n.get();
+			if(g != null)
+				return (T) g;
+			// The entry was collected after the lookup
+			table.remove(n);
+		}
+	}
+
+	/**
+	 * @return the canonical formula that is equal to f or null
+	 */
+	private Formula lookup(Formula f)
+	{
+		Node n = table.get(new Node(f, null));
+		return n != null?n.get():null;
+	}
+
+	/**
+	 * Removes the entries of the formulas that have been garbage collected
+	 */
+	private void expunge()
+	{
+		for(Object n = queue.poll();n != null;n = queue.poll())
+			table.remove(n);
+	}
+
+	/**
+	 * @param name - name of the atomic formula
+	 * @return the canonical atomic formula with this name
+	 */
+	public AtomicFormula atom(String name)
+	{
+		return unique(new AtomicFormula(name));
+	}
+
+	/**
+	 * @param f - a formula
+	 * @return the canonical negation of f
+	 */
+	public NOTFormula not(Formula f)
+	{
+		return unique(new NOTFormula(intern(f)));
+	}
+
+	/**
+	 * @param args - a list of formulas
+	 * @return the canonical conjunction of args
+	 */
+	public ANDFormula and(List<Formula> args)
+	{
+		return unique(new ANDFormula(internAll(args)));
+	}
+
+	public ANDFormula and(Formula... args)
+	{
+		return and(Arrays.asList(args));
+	}
+
+	/**
+	 * @param args - a list of formulas
+	 * @return the canonical disjunction of args
+	 */
+	public ORFormula or(List<Formula> args)
+	{
+		return unique(new ORFormula(internAll(args)));
+	}
+
+	public ORFormula or(Formula... args)
+	{
+		return or(Arrays.asList(args));
+	}
+
+	/**
+	 * @param f - a formula
+	 * @return the canonical formula that is equal to f
+	 */
+	public Formula intern(Formula f)
+	{
+		if(f.factory == this)
+			return f;
+		if(f instanceof AtomicFormula)
+		{
+			Formula g = lookup(f);
+			return g != null?g:unique(new AtomicFormula(((AtomicFormula)f).getName()));
+		}
+		// Bottom-up with an explicit stack, shared subformulas are interned once and deep formulas do not overflow
+		Map<Formula, Formula> canonical = new IdentityHashMap<>();
+		List<Formula> stack = new ArrayList<>();
+		stack.add(f);
+		while(!stack.isEmpty())
+		{
+			Formula g = stack.get(stack.size()-1);
+			if(g.factory == this || g instanceof AtomicFormula)
+			{
+				stack.remove(stack.size()-1);
+				canonical.put(g, g.factory == this?g:intern(g));
+				continue;
+			}
+			List<Formula> args = arguments(g);
+			int size = stack.size();
+			for(Formula h:args)
+				if(!canonical.containsKey(h))
+					stack.add(h);
+			if(stack.size() > size)
+				continue;
+			stack.remove(stack.size()-1);
+			List<Formula> list = new ArrayList<>(args.size());
+			for(Formula h:args)
+				list.add(canonical.get(h));
+			if(g instanceof NOTFormula)
+				canonical.put(g, unique(new NOTFormula(list.get(0))));
+			else if(g instanceof ANDFormula)
+				canonical.put(g, unique(new ANDFormula(list)));
+			else
+				canonical.put(g, unique(new ORFormula(list)));
+		}
+		return canonical.get(f);
+	}
+
+	private static List<Formula> arguments(Formula f)
+	{
+		if(f instanceof NOTFormula)
+			return Arrays.asList(((NOTFormula)f).getArgumentFormula());
+		if(f instanceof ANDFormula)
+			return ((ANDFormula)f).getOrigList();
+		if(f instanceof ORFormula)
+			return ((ORFormula)f).getOrigList();
+		throw new IllegalArgumentException("Formula type not supported");
+	}
+
+	private List<Formula> internAll(List<Formula> args)
+	{
+		List<Formula> list = new ArrayList<>(args.size());
+		for(Formula f:args)
+			list.add(intern(f));
+		return list;
+	}
+
+	/**
+	 * @return the number of canonical formulas of this factory that have not been garbage collected
+	 */
+	public int size()
+	{
+		expunge();
+		return table.size();
+	}
+}
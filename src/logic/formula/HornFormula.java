@@ -1,12 +1,11 @@
 package logic.formula;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
 
 import logic.formula.SetFormula.Type;
-import logic.helper.LogicHelper;
 import logic.helper.Pair;
 
 /**
@@ -46,7 +45,8 @@ public class HornFormula
 		{
 			Set<Literal> set2 = new HashSet<>();
 			p.getFirst().forEach(l -> set2.add(new Literal(l,false)));
-			set2.add(new Literal(p.getSecond(), true));
+			if(p.getSecond() != null)
+				set2.add(new Literal(p.getSecond(), true));
 			set.add(set2);
 		}
 		return new SetFormula(set, Type.CNF);
@@ -61,38 +61,118 @@ public class HornFormula
 	}
 	
 	/**
-	 * Computes a model of this formula: See "Logic for Computer Scientists" by Uwe Schoening, p. 32
-	 * @return	A model of this formula or null if this formula is not satisfiable
+	 * Computes the minimal model of this formula by forward chaining (Dowling and Gallier, 1984).
+	 * <br>
+	 * Every clause keeps a counter of the atoms of its premise that are not known to be true yet, 
+	 * and every atom has the list of clauses in whose premise it occurs. 
+	 * Each atom is marked at most once and each marking decrements the counters of its clauses, 
+	 * so the runtime is linear in the length of the formula.
+	 * @return	The minimal model of this formula or null if this formula is not satisfiable
 	 */
-	public Function<AtomicFormula, Boolean> findModel()
+	public Model findModel()
 	{
-		Set<AtomicFormula> flag = new HashSet<>();
-		hornRep.forEach(p -> {
-			if(p.getFirst().isEmpty())
+		// Map the atomic formulas to dense variables 
+		int clauseCount = hornRep.size();
+		int[] localOfGlobal = new int[VariableTable.size()+1];
+		int[] globalOfLocal = new int[16];
+		int varCount = 0;
+		int[] count = new int[clauseCount];
+		int[] head = new int[clauseCount];
+		int[] bodyStart = new int[clauseCount+1];
+		int[] body = new int[16];
+		int bodySize = 0;
+		int c = 0;
+		for(Pair<Set<AtomicFormula>, AtomicFormula> p:hornRep)
+		{
+			bodyStart[c] = bodySize;
+			boolean satisfied = false;
+			for(AtomicFormula a:p.getFirst())
 			{
-				if(p.getSecond() != null)
-					flag.add(p.getSecond());
+				int g = VariableTable.getIndex(a);
+				if(g == VariableTable.FALSE)
+					satisfied = true; // premise is never true
+				if(g == VariableTable.TRUE)
+					continue;
+				if(g >= localOfGlobal.length)
+					localOfGlobal = Arrays.copyOf(localOfGlobal, 2*g+1);
+				if(localOfGlobal[g] == 0)
+				{
+					if(varCount == globalOfLocal.length)
+						globalOfLocal = Arrays.copyOf(globalOfLocal, 2*varCount);
+					globalOfLocal[varCount] = g;
+					localOfGlobal[g] = ++varCount;
+				}
+				if(bodySize == body.length)
+					body = Arrays.copyOf(body, 2*bodySize);
+				body[bodySize++] = localOfGlobal[g]-1;
 			}
-		});
-		boolean done = false;
-		while(!done)
+			AtomicFormula h = p.getSecond();
+			if(h != null && h.isTRUE())
+				satisfied = true;
+			if(satisfied)
+			{
+				bodySize = bodyStart[c];
+				continue;
+			}
+			head[c] = (h == null || h.isFALSE())?-1:VariableTable.getIndex(h);
+			count[c] = bodySize - bodyStart[c];
+			c++;
+		}
+		clauseCount = c;
+		bodyStart[clauseCount] = bodySize;
+		
+		// Occurrence lists of the premises in CSR format
+		int[] occStart = new int[varCount+1];
+		for(int i = 0;i<bodySize;i++)
+			occStart[body[i]+1]++;
+		for(int v = 0;v<varCount;v++)
+			occStart[v+1] += occStart[v];
+		int[] occ = new int[bodySize];
+		int[] fill = Arrays.copyOf(occStart, varCount);
+		for(c = 0;c<clauseCount;c++)
+			for(int i = bodyStart[c];i<bodyStart[c+1];i++)
+				occ[fill[body[i]]++] = c;
+		
+		// Forward chaining, the queue contains the variables of the VariableTable that are marked
+		BitSet marked = new BitSet();
+		int[] queue = new int[varCount+clauseCount];
+		int qhead = 0;
+		int qtail = 0;
+		for(c = 0;c<clauseCount;c++)
+		{
+			if(count[c] == 0)
+			{
+				if(head[c] < 0)
+					return null;
+				if(!marked.get(head[c]))
+				{
+					marked.set(head[c]);
+					queue[qtail++] = head[c];
+				}
+			}
+		}
+		while(qhead < qtail)
 		{
-			done = true;
-			for(Pair<Set<AtomicFormula>, AtomicFormula> p:hornRep)
+			int g = queue[qhead++];
+			if(g >= localOfGlobal.length || localOfGlobal[g] == 0)
+				continue; // atom does not occur in a premise
+			int v = localOfGlobal[g]-1;
+			for(int i = occStart[v];i<occStart[v+1];i++)
 			{
-				if(LogicHelper.isSubSetOf(p.getFirst(), flag))
+				c = occ[i];
+				if(--count[c] == 0)
 				{
-					if(p.getSecond() == null)
-						return null; //this formula has no model
-					else 
+					if(head[c] < 0)
+						return null; // this formula has no model
+					if(!marked.get(head[c]))
 					{
-						if(flag.add(p.getSecond()))
-							done = false;
+						marked.set(head[c]);
+						queue[qtail++] = head[c];
 					}
 				}
 			}
 		}
-		return f -> flag.contains(f);
+		return new Model(marked);
 	}
 	
 	@Override 
@@ -0,0 +1,221 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Translates formulas into clauses by distribution where the CNF is small and by a {@link TseitinTransformation}
+ * where it would blow up.
+ * <br>
+ * The size of the CNF of every subformula is predicted by a {@link NormalFormEstimator}. A subformula whose estimate
+ * is at most the limit is converted by distribution, see {@link Formula#toCNF()}. A conjunction above the limit
+ * (an AND, or a negated OR) is split into its arguments, which are converted one by one. In a disjunction above the limit the
+ * arguments with the largest estimates are replaced by fresh literals of the Tseitin transformation, until the product
+ * of the estimates is at most the limit, and the rest is distributed.
+ * <br>
+ * So every subformula that is converted by distribution adds at most limit clauses, and the definitions of the fresh
+ * literals are linear in the size of the formula. A limit of 1 is close to the Tseitin transformation, a limit of
+ * Long.MAX_VALUE is the CNF. The result is equisatisfiable, and its models restricted to the atomic formulas of the
+ * input are the models of the input.
+ */
+public class HybridTransformation
+{
+	private final ClauseSink sink;
+	private final long limit;
+	private final TseitinTransformation tseitin;
+	private final NormalFormEstimator estimator = new NormalFormEstimator();
+	private final NormalFormCache cache;
+	private int[] clause = new int[16];
+	private int clauseCount;
+	private int definedCount;
+
+	/**
+	 * Creates a transformation in the Plaisted-Greenbaum mode that uses the default {@link NormalFormCache}
+	 * @param sink - receives the clauses
+	 * @param limit - the maximum estimated number of clauses of a subformula that is converted by distribution
+	 */
+	public HybridTransformation(ClauseSink sink, long limit)
+	{
+		this(sink, limit, true, NormalFormCache.getDefault());
+	}
+
+	/**
+	 * @param sink - receives the clauses
+	 * @param limit - the maximum estimated number of clauses of a subformula that is converted by distribution
+	 * @param plaistedGreenbaum - true to only add the definitions required by the polarities of the subformulas
+	 * @param cache - a cache of the normal forms of the distributed subformulas
+	 */
+	public HybridTransformation(ClauseSink sink, long limit, boolean plaistedGreenbaum, NormalFormCache cache)
+	{
+		if(limit < 1)
+			throw new IllegalArgumentException("Limit must be positive");
+		this.sink = sink;
+		this.limit = limit;
+		this.cache = cache;
+		// The definitions go through this transformation, so constants are removed from them too
+		this.tseitin = new TseitinTransformation(this::emit, plaistedGreenbaum);
+	}
+
+	/**
+	 * Transforms a formula into equisatisfiable clauses
+	 * @param f - a formula
+	 * @param limit - the maximum estimated number of clauses of a subformula that is converted by distribution
+	 * @return the formula in CNF
+	 */
+	public static SetFormula transform(Formula f, long limit)
+	{
+		ClauseStore store = new ClauseStore();
+		new HybridTransformation(store, limit).assertFormula(f);
+		return new SetFormula(store, SetFormula.Type.CNF);
+	}
+
+	/**
+	 * @param prefix - prefix of the names of fresh variables, X_ by default
+	 */
+	public void setPrefix(String prefix)
+	{
+		tseitin.setPrefix(prefix);
+	}
+
+	/**
+	 * Adds clauses that are satisfiable iff f is satisfiable, together with the clauses of earlier calls
+	 * @param f - a formula
+	 */
+	public void assertFormula(Formula f)
+	{
+		// A frame is a subformula and whether it is negated
+		List<Formula> formulas = new ArrayList<>();
+		List<Boolean> negations = new ArrayList<>();
+		formulas.add(f.getFactory().intern(f));
+		negations.add(false);
+		while(!formulas.isEmpty())
+		{
+			Formula g = formulas.remove(formulas.size()-1);
+			boolean negated = negations.remove(negations.size()-1);
+			while(g instanceof NOTFormula)
+			{
+				g = ((NOTFormula)g).getArgumentFormula();
+				negated = !negated;
+			}
+			if(estimator.estimateCNF(g, negated) <= limit)
+				emitAll(toCNF(g, negated), new int[0], 0);
+			else if(g instanceof ANDFormula != negated)
+			{
+				for(Formula h:NormalFormEstimator.arguments(g))
+				{
+					formulas.add(h);
+					negations.add(negated);
+				}
+			}
+			else
+				split(g, negated);
+		}
+	}
+
+	/**
+	 * Converts a disjunction whose estimate is above the limit, the largest arguments are replaced by fresh literals
+	 */
+	private void split(Formula g, boolean negated)
+	{
+		List<Formula> args = new ArrayList<>(NormalFormEstimator.arguments(g));
+		long[] estimates = new long[args.size()];
+		long product = 1;
+		for(int i = 0;i<args.size();i++)
+		{
+			estimates[i] = estimator.estimateCNF(args.get(i), negated);
+			product = NormalFormEstimator.multiply(product, estimates[i]);
+		}
+		int[] literals = new int[args.size()];
+		int n = 0;
+		while(product > limit)
+		{
+			int max = 0;
+			for(int i = 1;i<args.size();i++)
+				if(estimates[i] > estimates[max])
+					max = i;
+			// The literal implies the argument, NOT(h) is implied by NOT of the literal of h
+			int lit = tseitin.encode(args.get(max), !negated) ^ (negated?1:0);
+			definedCount++;
+			literals[n++] = lit;
+			args.remove(max);
+			System.arraycopy(estimates, max+1, estimates, max, args.size()-max);
+			product = 1;
+			for(int i = 0;i<args.size();i++)
+				product = NormalFormEstimator.multiply(product, estimates[i]);
+		}
+		SetFormula cnf = new SetFormula(SetFormula.Type.CNF); // i.e. {{}} which is a false formula in CNF
+		for(Formula h:args)
+			cnf = cnf.or(toCNF(h, negated));
+		emitAll(cnf, literals, n);
+	}
+
+	private SetFormula toCNF(Formula g, boolean negated)
+	{
+		return negated?g.toCanonicalNormalForm(false, cache).negate():g.toCanonicalNormalForm(true, cache);
+	}
+
+	/**
+	 * Adds every clause of cnf extended by the literals literals[0],...,literals[n-1]
+	 */
+	private void emitAll(SetFormula cnf, int[] literals, int n)
+	{
+		ClauseStore store = cnf.getClauseStore();
+		for(int c = 0;c<store.size();c++)
+		{
+			int length = store.length(c);
+			int[] lits = new int[length+n];
+			for(int j = 0;j<length;j++)
+				lits[j] = store.get(c, j);
+			System.arraycopy(literals, 0, lits, length, n);
+			emit(lits, 0, lits.length);
+		}
+	}
+
+	/**
+	 * Adds a clause without false constants, clauses with a true constant are dropped
+	 */
+	private void emit(int[] lits, int from, int length)
+	{
+		if(clause.length < length)
+			clause = new int[2*length];
+		int n = 0;
+		for(int i = from;i<from+length;i++)
+		{
+			int v = lits[i] >> 1;
+			if(v == VariableTable.TRUE || v == VariableTable.FALSE)
+			{
+				if((v == VariableTable.TRUE) == ((lits[i]&1) == 0))
+					return;
+				continue;
+			}
+			clause[n++] = lits[i];
+		}
+		clauseCount++;
+		sink.addClause(clause, 0, n);
+	}
+
+	/**
+	 * @return the number of clauses added so far, including the definitions of the fresh literals
+	 */
+	public int getNumberOfClauses()
+	{
+		return clauseCount;
+	}
+
+	/**
+	 * @return the number of subformulas that were replaced by fresh literals so far
+	 */
+	public int getNumberOfDefinitions()
+	{
+		return definedCount;
+	}
+
+	/**
+	 * @return the fresh variables created so far
+	 */
+	public BitSet getAuxiliaryVariables()
+	{
+		return tseitin.getAuxiliaryVariables();
+	}
+}
@@ -40,7 +40,7 @@ public class Literal
 
 	@Override
 	public int hashCode() {
-		return formula.hashCode();
+		return 2*formula.hashCode() + (positive?0:1);
 	}
 
 	@Override
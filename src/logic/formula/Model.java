@@ -0,0 +1,106 @@
+package logic.formula;
+
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import logic.helper.LogicHelper;
+
+/**
+ * An interpretation stored as a bitset over the variables of the {@link VariableTable}.
+ * <br>
+ * An atomic formula is true iff its bit is set, atomic formulas that have never been interned are false.
+ * The constant TRUE is always true and the constant FALSE is always false.
+ */
+public class Model implements Function<AtomicFormula, Boolean>
+{
+	private final BitSet values;
+
+	/**
+	 * Creates a model
+	 * @param values - the variables that are true, the bitset is not copied and must not be modified afterwards
+	 */
+	public Model(BitSet values)
+	{
+		values.set(VariableTable.TRUE);
+		values.clear(VariableTable.FALSE);
+		this.values = values;
+	}
+
+	@Override
+	public Boolean apply(AtomicFormula a)
+	{
+		return isTrue(a);
+	}
+
+	/**
+	 * @param a - an atomic formula
+	 * @return true iff a is true in this model
+	 */
+	public boolean isTrue(AtomicFormula a)
+	{
+		int v = VariableTable.findIndex(a);
+		return v >= 0 && values.get(v);
+	}
+
+	/**
+	 * @param v - a variable of the VariableTable
+	 * @return true iff v is true in this model
+	 */
+	public boolean isTrue(int v)
+	{
+		return values.get(v);
+	}
+
+	/**
+	 * @param lit - an encoded literal
+	 * @return true iff lit is true in this model
+	 */
+	public boolean isLiteralTrue(int lit)
+	{
+		return values.get(lit>>1) == ((lit&1) == 0);
+	}
+
+	/**
+	 * @return the set of all atomic formulas that are true in this model, without the constant TRUE
+	 */
+	public Set<AtomicFormula> getTrueAtomicFormulas()
+	{
+		Set<AtomicFormula> set = new LinkedHashSet<>();
+		for(int v = values.nextSetBit(0);v>=0;v = values.nextSetBit(v+1))
+		{
+			if(v != VariableTable.TRUE)
+				set.add(VariableTable.getAtomicFormula(v));
+		}
+		return set;
+	}
+
+	/**
+	 * @return the variables that are true in this model as a new bitset
+	 */
+	public BitSet toBitSet()
+	{
+		return (BitSet) values.clone();
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(!(obj instanceof Model))
+			return false;
+		return ((Model)obj).values.equals(values);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return values.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return LogicHelper.setToString(getTrueAtomicFormulas());
+	}
+}
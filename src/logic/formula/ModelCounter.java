@@ -0,0 +1,542 @@
+package logic.formula;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the models of formulas in CNF exactly (#SAT).
+ * <br>
+ * The counter is a DPLL search with unit propagation. After every decision the remaining clauses are split into
+ * connected components, i.e. groups of clauses that share no unassigned variable, and the components are counted
+ * independently, the count of the formula is the product of their counts. The count of every component is kept in a
+ * cache whose key is the canonical form of the component: the sorted unassigned variables and the sorted indices of
+ * the unsatisfied clauses. Components that reappear under other assignments are counted only once.
+ * <br>
+ * Counts are computed with longs, BigIntegers are only used at the top level for the product of the components and
+ * the free variables. If a component has more models than a long can hold, the count is repeated with BigIntegers.
+ * <br>
+ * In projected counting only the assignments of a subset of the variables are counted, the other variables are
+ * existentially quantified. This counts the models of a formula by its Tseitin transformation, see
+ * {@link #count(Formula)}. The search decides projected variables first, components without projected variables
+ * are only checked for satisfiability.
+ */
+public class ModelCounter
+{
+	// Canonical form of a component
+	private static final class Key
+	{
+		private final int[] data;
+		private final int hash;
+
+		private Key(int[] data)
+		{
+			this.data = data;
+			this.hash = Arrays.hashCode(data);
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof Key && Arrays.equals(((Key)obj).data, data);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+
+	private int cacheLimit = 1 << 20;
+	private long decisions;
+	private long cacheHits;
+	private long components;
+
+	// Clauses over local variables 0,...,n-1
+	private int[][] clauses;
+	private int[][] occurrences; // clause indices of every literal
+	private boolean[] projected;
+	private byte[] values; // 0 unassigned, 1 true, 2 false
+	private int[] satisfied; // number of true literals of every clause
+	private int[] falsified; // number of false literals of every clause
+	private int[] trail;
+	private int trailSize;
+	private int[] queue;
+	private int[] stamps; // marks of variables for the component search
+	private int stamp;
+	private int[] clauseStamps;
+	private Map<Key, Long> cache;
+
+	// Numbers in BigInteger mode are indices of values
+	private boolean big;
+	private final List<BigInteger> numbers = new ArrayList<>();
+
+	/**
+	 * @param cacheLimit - the maximum number of cached components, the cache is cleared when it is full
+	 */
+	public void setCacheLimit(int cacheLimit)
+	{
+		if(cacheLimit < 0)
+			throw new IllegalArgumentException("Cache limit must not be negative");
+		this.cacheLimit = cacheLimit;
+	}
+
+	/**
+	 * @return the number of decisions of the last count
+	 */
+	public long getDecisions()
+	{
+		return decisions;
+	}
+
+	/**
+	 * @return the number of components of the last count whose count was found in the cache
+	 */
+	public long getCacheHits()
+	{
+		return cacheHits;
+	}
+
+	/**
+	 * @return the number of components of the last count
+	 */
+	public long getComponents()
+	{
+		return components;
+	}
+
+	/**
+	 * Counts the models of a formula in CNF over its variables
+	 * @param cnf - a formula in CNF
+	 * @return the number of assignments of the variables of cnf that satisfy cnf
+	 */
+	public BigInteger count(SetFormula cnf)
+	{
+		if(!cnf.isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		return count(cnf.getClauseStore(), variables(cnf.getClauseStore()));
+	}
+
+	/**
+	 * Counts the models of a formula in CNF projected to some variables, i.e. the number of assignments of the
+	 * variables that can be extended to a model of cnf. Variables that do not occur in cnf can be assigned arbitrarily.
+	 * @param cnf - a formula in CNF
+	 * @param variables - the counted variables
+	 * @return the number of projected models
+	 */
+	public BigInteger count(SetFormula cnf, Collection<AtomicFormula> variables)
+	{
+		if(!cnf.isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		BitSet vars = new BitSet();
+		for(AtomicFormula a:variables)
+			if(!a.isBasic())
+				vars.set(VariableTable.getIndex(a));
+		return count(cnf.getClauseStore(), vars);
+	}
+
+	/**
+	 * Counts the models of a formula over its atomic formulas by a projected count of its Plaisted-Greenbaum
+	 * transformation, so the auxiliary variables are not counted
+	 * @param f - a formula
+	 * @return the number of assignments of the atomic formulas of f that satisfy f
+	 */
+	public BigInteger count(Formula f)
+	{
+		return count(Algorithms.getEquisatisfiableCNF(f, true), f.getAtomicFormulaOccurences());
+	}
+
+	/**
+	 * @param store - clauses over encoded literals
+	 * @param variables - the counted global variables
+	 * @return the number of projected models
+	 */
+	BigInteger count(ClauseStore store, BitSet variables)
+	{
+		decisions = 0;
+		cacheHits = 0;
+		components = 0;
+		try
+		{
+			big = false;
+			return run(store, variables);
+		}
+		catch(ArithmeticException e)
+		{
+			big = true;
+			return run(store, variables);
+		}
+		finally
+		{
+			cache = null;
+			numbers.clear();
+		}
+	}
+
+	/**
+	 * @return the variables of the clauses of store without the constants
+	 */
+	static BitSet variables(ClauseStore store)
+	{
+		BitSet vars = new BitSet();
+		for(int i = 0;i<store.size();i++)
+			for(int j = 0;j<store.length(i);j++)
+				vars.set(store.get(i, j)>>1);
+		vars.clear(VariableTable.TRUE);
+		vars.clear(VariableTable.FALSE);
+		return vars;
+	}
+
+	private BigInteger run(ClauseStore store, BitSet variables)
+	{
+		cache = new HashMap<>();
+		numbers.clear();
+		// Map global variables to local ones and drop constant literals
+		Map<Integer, Integer> local = new HashMap<>();
+		List<Boolean> proj = new ArrayList<>();
+		List<int[]> list = new ArrayList<>();
+		int[] buffer = new int[16];
+		next:
+		for(int i = 0;i<store.size();i++)
+		{
+			int n = 0;
+			for(int j = 0;j<store.length(i);j++)
+			{
+				int l = store.get(i, j);
+				int g = l>>1;
+				if(g == VariableTable.TRUE || g == VariableTable.FALSE)
+				{
+					if((g == VariableTable.TRUE) == ((l&1) == 0))
+						continue next;
+					continue;
+				}
+				Integer v = local.get(g);
+				if(v == null)
+				{
+					v = local.size();
+					local.put(g, v);
+					proj.add(variables.get(g));
+				}
+				if(n == buffer.length)
+					buffer = Arrays.copyOf(buffer, 2*n);
+				buffer[n++] = (v << 1) | (l&1);
+			}
+			if(n == 0)
+				return BigInteger.ZERO;
+			list.add(Arrays.copyOf(buffer, n));
+		}
+		int n = local.size();
+		clauses = list.toArray(new int[list.size()][]);
+		projected = new boolean[n];
+		for(int v = 0;v<n;v++)
+			projected[v] = proj.get(v);
+		int[] sizes = new int[2*n];
+		for(int[] c:clauses)
+			for(int l:c)
+				sizes[l]++;
+		occurrences = new int[2*n][];
+		for(int l = 0;l<2*n;l++)
+			occurrences[l] = new int[sizes[l]];
+		Arrays.fill(sizes, 0);
+		for(int c = 0;c<clauses.length;c++)
+			for(int l:clauses[c])
+				occurrences[l][sizes[l]++] = c;
+		values = new byte[n];
+		satisfied = new int[clauses.length];
+		falsified = new int[clauses.length];
+		trail = new int[n];
+		trailSize = 0;
+		queue = new int[n+clauses.length+1];
+		stamps = new int[n];
+		clauseStamps = new int[clauses.length];
+		stamp = 0;
+
+		// Projected variables that do not occur in the clauses are free
+		int free = variables.cardinality();
+		for(int v = 0;v<n;v++)
+			if(projected[v])
+				free--;
+		for(int[] c:clauses)
+			if(c.length == 1 && !assign(c[0]))
+				return BigInteger.ZERO;
+		int[] all = new int[n];
+		for(int v = 0;v<n;v++)
+			all[v] = v;
+		// Count the components at the top level with BigIntegers
+		BigInteger result = BigInteger.ONE;
+		for(int[][] component:split(all))
+		{
+			if(component[1].length == 0)
+			{
+				if(projected[component[0][0]])
+					free++;
+				continue;
+			}
+			BigInteger c = value(count(component[0], component[1]));
+			if(c.signum() == 0)
+				return BigInteger.ZERO;
+			result = result.multiply(c);
+		}
+		return result.shiftLeft(free);
+	}
+
+	/**
+	 * @param vars - the unassigned variables of a component
+	 * @param comp - the unsatisfied clauses of the component
+	 * @return the number of projected models of the component
+	 */
+	private long count(int[] vars, int[] comp)
+	{
+		components++;
+		int[] data = new int[vars.length+comp.length+1];
+		System.arraycopy(vars, 0, data, 0, vars.length);
+		data[vars.length] = -1;
+		System.arraycopy(comp, 0, data, vars.length+1, comp.length);
+		Key key = new Key(data);
+		Long cached = cache.get(key);
+		if(cached != null)
+		{
+			cacheHits++;
+			return cached;
+		}
+		boolean counting = false;
+		for(int v:vars)
+			counting |= projected[v];
+		// Branch on the variable with the most occurrences, projected variables first
+		int best = -1;
+		int bestScore = -1;
+		for(int v:vars)
+		{
+			if(counting && !projected[v])
+				continue;
+			int score = activeOccurrences(v<<1)+activeOccurrences(v<<1|1);
+			if(score > bestScore)
+			{
+				best = v;
+				bestScore = score;
+			}
+		}
+		long result = number(0);
+		for(int sign = 0;sign<2;sign++)
+		{
+			decisions++;
+			int mark = trailSize;
+			if(assign(best<<1 | sign))
+			{
+				long c = countRest(vars);
+				if(!isZero(c))
+					result = counting?add(result, c):number(1);
+			}
+			undo(mark);
+			if(!counting && !isZero(result))
+				break;
+		}
+		if(cache.size() >= cacheLimit)
+			cache.clear();
+		cache.put(key, result);
+		return result;
+	}
+
+	/**
+	 * @param vars - the variables of a component after a decision
+	 * @return the product of the counts of the components of the unassigned variables
+	 */
+	private long countRest(int[] vars)
+	{
+		int free = 0;
+		long result = number(1);
+		for(int[][] component:split(vars))
+		{
+			if(component[1].length == 0)
+			{
+				if(projected[component[0][0]])
+					free++;
+				continue;
+			}
+			long c = count(component[0], component[1]);
+			if(isZero(c))
+				return c;
+			result = multiply(result, c);
+		}
+		return shift(result, free);
+	}
+
+	/**
+	 * Splits the unassigned variables of vars into connected components
+	 * @return pairs of sorted variables and sorted clauses, a variable without clauses is a component on its own
+	 */
+	private List<int[][]> split(int[] vars)
+	{
+		List<int[][]> result = new ArrayList<>();
+		stamp++;
+		int[] stack = new int[vars.length];
+		int[] members = new int[vars.length];
+		List<Integer> comp = new ArrayList<>();
+		for(int root:vars)
+		{
+			if(values[root] != 0 || stamps[root] == stamp)
+				continue;
+			int size = 0;
+			int top = 0;
+			stack[top++] = root;
+			stamps[root] = stamp;
+			comp.clear();
+			while(top > 0)
+			{
+				int v = stack[--top];
+				members[size++] = v;
+				for(int l = v<<1;l<=(v<<1|1);l++)
+					for(int c:occurrences[l])
+					{
+						if(satisfied[c] > 0 || clauseStamps[c] == stamp)
+							continue;
+						clauseStamps[c] = stamp;
+						comp.add(c);
+						for(int k:clauses[c])
+						{
+							int w = k>>1;
+							if(values[w] == 0 && stamps[w] != stamp)
+							{
+								stamps[w] = stamp;
+								stack[top++] = w;
+							}
+						}
+					}
+			}
+			int[] cv = Arrays.copyOf(members, size);
+			Arrays.sort(cv);
+			int[] cc = new int[comp.size()];
+			for(int i = 0;i<cc.length;i++)
+				cc[i] = comp.get(i);
+			Arrays.sort(cc);
+			result.add(new int[][]{cv, cc});
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of unsatisfied clauses with lit
+	 */
+	private int activeOccurrences(int lit)
+	{
+		int n = 0;
+		for(int c:occurrences[lit])
+			if(satisfied[c] == 0)
+				n++;
+		return n;
+	}
+
+	/**
+	 * Assigns a literal and propagates the unit clauses, the assignments are undone by {@link #undo(int)}
+	 * @return false iff a clause became false
+	 */
+	private boolean assign(int lit)
+	{
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = lit;
+		boolean conflict = false;
+		while(head < tail && !conflict)
+		{
+			int l = queue[head++];
+			int v = l>>1;
+			byte value = (byte) ((l&1)+1);
+			if(values[v] != 0)
+			{
+				conflict = values[v] != value;
+				continue;
+			}
+			values[v] = value;
+			trail[trailSize++] = l;
+			for(int c:occurrences[l])
+				satisfied[c]++;
+			// The counters of all clauses are updated before a conflict is reported, so undo stays consistent
+			for(int c:occurrences[l^1])
+			{
+				if(++falsified[c] < clauses[c].length-1 || satisfied[c] > 0)
+					continue;
+				if(falsified[c] == clauses[c].length)
+				{
+					conflict = true;
+					continue;
+				}
+				for(int k:clauses[c])
+					if(values[k>>1] == 0)
+					{
+						queue[tail++] = k;
+						break;
+					}
+			}
+		}
+		return !conflict;
+	}
+
+	private void undo(int mark)
+	{
+		while(trailSize > mark)
+		{
+			int l = trail[--trailSize];
+			for(int c:occurrences[l])
+				satisfied[c]--;
+			for(int c:occurrences[l^1])
+				falsified[c]--;
+			values[l>>1] = 0;
+		}
+	}
+
+	// Arithmetic on longs or, in BigInteger mode, on indices of numbers
+
+	private long number(long n)
+	{
+		if(!big)
+			return n;
+		numbers.add(BigInteger.valueOf(n));
+		return numbers.size()-1;
+	}
+
+	private BigInteger value(long n)
+	{
+		return big?numbers.get((int) n):BigInteger.valueOf(n);
+	}
+
+	private boolean isZero(long n)
+	{
+		return big?numbers.get((int) n).signum() == 0:n == 0;
+	}
+
+	private long add(long a, long b)
+	{
+		if(!big)
+			return Math.addExact(a, b);
+		numbers.add(numbers.get((int) a).add(numbers.get((int) b)));
+		return numbers.size()-1;
+	}
+
+	private long multiply(long a, long b)
+	{
+		if(!big)
+			return Math.multiplyExact(a, b);
+		numbers.add(numbers.get((int) a).multiply(numbers.get((int) b)));
+		return numbers.size()-1;
+	}
+
+	private long shift(long a, int k)
+	{
+		if(k == 0)
+			return a;
+		if(!big)
+		{
+			if(k >= Long.SIZE-1)
+				throw new ArithmeticException("long overflow");
+			return Math.multiplyExact(a, 1L << k);
+		}
+		numbers.add(numbers.get((int) a).shiftLeft(k));
+		return numbers.size()-1;
+	}
+}
@@ -0,0 +1,260 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Enumerates the models of a formula in CNF lazily, projected to a set of variables.
+ * <br>
+ * A {@link SATSolver} finds one model after the other. Every model is shrunk to a cube, a partial assignment that
+ * satisfies every clause and every blocking clause: for each clause that is not yet satisfied by the cube one true
+ * literal is added, preferably of a variable that is not projected. All projected variables outside of the cube can be assigned
+ * arbitrarily, so the cube covers 2^k projected models that are enumerated without the solver. The cube is then
+ * excluded by a blocking clause, so no projected model is returned twice. Only the current cube and the blocking
+ * clauses are kept, taking the first k models needs memory for at most k blocking clauses.
+ * <br>
+ * The enumerator splits for parallel streams: the split off enumerator gets its own solver, the blocking clauses so
+ * far and a prefix that sets a projected variable to false, this enumerator continues with the variable set to true.
+ */
+public class ModelEnumerator implements Spliterator<Model>
+{
+	private final ClauseStore clauses;
+	private final int[] projection; // projected variables of the VariableTable
+	private final BitSet projected;
+	private final SATSolver solver;
+	private final List<int[]> blocking; // blocking clauses over literals of the VariableTable
+	private int[] prefix; // literals of the first projected variables
+	private boolean done;
+
+	// The current cube
+	private BitSet base; // projected variables that are true in the cube
+	private int[] free; // projected variables that are not in the cube
+	private BitSet counter; // assignment of free that is returned next, null if the cube is exhausted
+
+	/**
+	 * @param cnf - a formula in CNF
+	 * @param projection - the enumerated variables
+	 */
+	public ModelEnumerator(SetFormula cnf, Collection<AtomicFormula> projection)
+	{
+		if(!cnf.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		this.clauses = cnf.getClauseStore();
+		BitSet vars = new BitSet();
+		for(AtomicFormula a:projection)
+			if(!a.isBasic())
+				vars.set(VariableTable.getIndex(a));
+		this.projected = vars;
+		this.projection = vars.stream().toArray();
+		this.blocking = new ArrayList<>();
+		this.prefix = new int[0];
+		this.solver = createSolver();
+	}
+
+	private ModelEnumerator(ModelEnumerator parent, int[] prefix)
+	{
+		this.clauses = parent.clauses;
+		this.projection = parent.projection;
+		this.projected = parent.projected;
+		this.blocking = new ArrayList<>(parent.blocking);
+		this.prefix = prefix;
+		this.solver = createSolver();
+	}
+
+	/**
+	 * @param cnf - a formula in CNF
+	 * @return a stream of the models of cnf over its variables
+	 */
+	public static Stream<Model> models(SetFormula cnf)
+	{
+		List<AtomicFormula> vars = new ArrayList<>();
+		BitSet v = ModelCounter.variables(cnf.getClauseStore());
+		for(int i = v.nextSetBit(0);i>=0;i = v.nextSetBit(i+1))
+			vars.add(VariableTable.getAtomicFormula(i));
+		return models(cnf, vars);
+	}
+
+	/**
+	 * @param cnf - a formula in CNF
+	 * @param projection - the enumerated variables
+	 * @return a stream of the assignments of projection that can be extended to a model of cnf
+	 */
+	public static Stream<Model> models(SetFormula cnf, Collection<AtomicFormula> projection)
+	{
+		return StreamSupport.stream(new ModelEnumerator(cnf, projection), false);
+	}
+
+	/**
+	 * Enumerates the models of a formula by its Plaisted-Greenbaum transformation projected to the atomic formulas of f
+	 * @param f - a formula
+	 * @return a stream of the models of f over its atomic formulas
+	 */
+	public static Stream<Model> models(Formula f)
+	{
+		return models(Algorithms.getEquisatisfiableCNF(f, true), f.getAtomicFormulaOccurences());
+	}
+
+	private SATSolver createSolver()
+	{
+		SATSolver s = new SATSolver(new SetFormula(clauses, SetFormula.Type.CNF));
+		// Projected variables that do not occur in the clauses need variables too
+		for(int v:projection)
+			s.getVariable(v);
+		for(int[] c:blocking)
+			s.addGlobalClause(c, 0, c.length, -1);
+		return s;
+	}
+
+	private int local(int lit)
+	{
+		return (solver.getVariable(lit>>1) << 1) | (lit&1);
+	}
+
+	private boolean isTrue(int lit)
+	{
+		int g = lit>>1;
+		if(g == VariableTable.TRUE || g == VariableTable.FALSE)
+			return (g == VariableTable.TRUE) == ((lit&1) == 0);
+		return solver.modelValue(local(lit)>>1) == ((lit&1) == 0);
+	}
+
+	/**
+	 * Chooses the literal of a clause that is added to the cube
+	 * @param l - a literal of the clause
+	 * @param choice - the literal chosen so far or -1
+	 * @return -2 if the clause is already satisfied by the cube, the literal chosen so far otherwise
+	 */
+	private int choose(int l, int choice, BitSet kept)
+	{
+		if(!isTrue(l))
+			return choice;
+		if(kept.get(l>>1))
+			return -2;
+		if(choice < 0 || projected.get(choice>>1) && !projected.get(l>>1))
+			return l;
+		return choice;
+	}
+
+	/**
+	 * Finds the next cube
+	 * @return false if there is none
+	 */
+	private boolean nextCube()
+	{
+		int[] assumptions = new int[prefix.length];
+		for(int i = 0;i<prefix.length;i++)
+			assumptions[i] = local(prefix[i]);
+		if(!solver.solve(assumptions))
+			return false;
+		// The prefix is part of the cube, the other enumerators cover the other values of the prefix
+		BitSet kept = new BitSet();
+		for(int l:prefix)
+			kept.set(l>>1);
+		for(int c = 0;c<clauses.size();c++)
+		{
+			int choice = -1;
+			for(int j = 0;j<clauses.length(c) && choice != -2;j++)
+				choice = choose(clauses.get(c, j), choice, kept);
+			if(choice >= 0)
+				kept.set(choice>>1);
+		}
+		// The cube must also satisfy the blocking clauses, so that it is disjoint from the previous cubes
+		for(int[] c:blocking)
+		{
+			int choice = -1;
+			for(int j = 0;j<c.length && choice != -2;j++)
+				choice = choose(c[j], choice, kept);
+			if(choice >= 0)
+				kept.set(choice>>1);
+		}
+		base = new BitSet();
+		int[] block = new int[projection.length];
+		int n = 0;
+		int k = 0;
+		free = new int[projection.length];
+		for(int v:projection)
+		{
+			if(!kept.get(v))
+			{
+				free[k++] = v;
+				continue;
+			}
+			boolean value = solver.modelValue(solver.getVariable(v));
+			if(value)
+				base.set(v);
+			block[n++] = (v << 1) | (value?1:0);
+		}
+		free = Arrays.copyOf(free, k);
+		counter = new BitSet();
+		int[] clause = Arrays.copyOf(block, n);
+		blocking.add(clause);
+		solver.addGlobalClause(clause, 0, n, -1);
+		return true;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Model> action)
+	{
+		if(counter == null)
+		{
+			if(done || !nextCube())
+			{
+				done = true;
+				return false;
+			}
+		}
+		BitSet values = (BitSet) base.clone();
+		for(int i = counter.nextSetBit(0);i>=0;i = counter.nextSetBit(i+1))
+			values.set(free[i]);
+		// Binary increment of the counter
+		int i = counter.nextClearBit(0);
+		if(i >= free.length)
+			counter = null;
+		else
+		{
+			counter.clear(0, i);
+			counter.set(i);
+		}
+		action.accept(new Model(values));
+		return true;
+	}
+
+	@Override
+	public Spliterator<Model> trySplit()
+	{
+		if(done || prefix.length == projection.length)
+			return null;
+		int v = projection[prefix.length];
+		int[] p = Arrays.copyOf(prefix, prefix.length+1);
+		p[prefix.length] = (v << 1) | 1;
+		ModelEnumerator split = new ModelEnumerator(this, p);
+		// This enumerator continues with v set to true
+		p = p.clone();
+		p[prefix.length] = v << 1;
+		prefix = p;
+		return split;
+	}
+
+	/**
+	 * @return 2^n where n is the number of projected variables that are not in the prefix, at most Long.MAX_VALUE
+	 */
+	@Override
+	public long estimateSize()
+	{
+		int n = projection.length-prefix.length;
+		return done?0:n >= Long.SIZE-1?Long.MAX_VALUE:1L << n;
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return DISTINCT | NONNULL;
+	}
+}
@@ -5,10 +5,12 @@ import logic.helper.LogicHelper;
 public class NOTFormula extends Formula
 {
 	Formula formula;
+	private final int hash;
 
 	public NOTFormula(Formula formula) {
 		super();
 		this.formula = formula;
+		this.hash = ~(31*formula.hashCode());
 	}
 	
 	public Formula getArgumentFormula() {
@@ -18,14 +20,19 @@ public class NOTFormula extends Formula
 	@Override
 	public boolean equals(Object arg0) 
 	{
-		if(arg0 instanceof NOTFormula)
-			return ((NOTFormula)arg0).getArgumentFormula().equals(formula);
-		return false;
+		if(arg0 == this)
+			return true;
+		if(!(arg0 instanceof NOTFormula))
+			return false;
+		NOTFormula f = (NOTFormula)arg0;
+		if(f.hash != hash || isCanonicalWith(f))
+			return false;
+		return f.formula.equals(formula);
 	}
 
 	@Override
 	public int hashCode() {
-			return formula.hashCode();
+		return hash;
 	}
 
 	@Override
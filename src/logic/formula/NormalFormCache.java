@@ -0,0 +1,173 @@
+package logic.formula;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import logic.helper.Pair;
+
+/**
+ * A bounded cache of normal forms that is used by {@link Formula#toCNF()}, {@link Formula#toDNF()} and
+ * {@link Formula#toNormalForm()} for every subformula.
+ * <br>
+ * The key of a subformula is its canonical formula of a {@link FormulaFactory}: structurally equal subformulas have
+ * the same canonical object, whose hash code is computed once from the structure. So the canonical formula is the
+ * structural fingerprint of the subformula and a lookup compares keys by identity.
+ * <br>
+ * An entry holds the CNF, the DNF or both, whichever has been computed. The weight of an entry is the number of
+ * clauses of its normal forms. When the total weight exceeds the capacity,
+ * the least recently used entries are evicted. All methods are thread-safe, the normal forms are immutable
+ * and shared by all callers.
+ */
+public class NormalFormCache
+{
+	private static final NormalFormCache DEFAULT = new NormalFormCache(1 << 20);
+
+	private final long capacity;
+	private final LinkedHashMap<Formula, Pair<SetFormula, SetFormula>> map = new LinkedHashMap<>(16, 0.75f, true);
+	private long weight;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param capacity - the maximum total number of clauses of the cached normal forms
+	 */
+	public NormalFormCache(long capacity)
+	{
+		if(capacity < 0)
+			throw new IllegalArgumentException("Capacity must not be negative");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @return the cache used by {@link Formula#toCNF()}, {@link Formula#toDNF()} and {@link Formula#toNormalForm()}
+	 */
+	public static NormalFormCache getDefault()
+	{
+		return DEFAULT;
+	}
+
+	/**
+	 * @param f - a canonical formula
+	 * @param cnf - true for the CNF, false for the DNF
+	 * @return the cached normal form of f or null
+	 */
+	synchronized SetFormula get(Formula f, boolean cnf)
+	{
+		Pair<SetFormula, SetFormula> p = map.get(f);
+		SetFormula form = p == null?null:cnf?p.getFirst():p.getSecond();
+		if(form == null)
+			misses++;
+		else
+			hits++;
+		return form;
+	}
+
+	/**
+	 * Caches a normal form of a canonical formula, the other normal form of the formula stays cached.
+	 * Entries heavier than the capacity are not cached.
+	 * @param cnf - true if form is the CNF of f, false if it is the DNF
+	 */
+	synchronized void put(Formula f, boolean cnf, SetFormula form)
+	{
+		Pair<SetFormula, SetFormula> old = map.get(f);
+		Pair<SetFormula, SetFormula> p = old == null?new Pair<>(null, null):new Pair<>(old.getFirst(), old.getSecond());
+		if(cnf)
+			p.setFirst(form);
+		else
+			p.setSecond(form);
+		long w = weight(p);
+		if(w > capacity)
+			return;
+		map.put(f, p);
+		if(old != null)
+			weight -= weight(old);
+		weight += w;
+		Iterator<Pair<SetFormula, SetFormula>> it = map.values().iterator();
+		while(weight > capacity)
+		{
+			weight -= weight(it.next());
+			it.remove();
+			evictions++;
+		}
+	}
+
+	private static long weight(Pair<SetFormula, SetFormula> p)
+	{
+		return 1L + size(p.getFirst()) + size(p.getSecond());
+	}
+
+	private static long size(SetFormula f)
+	{
+		return f == null?0:f.size();
+	}
+
+	/**
+	 * Removes all entries, the statistics are kept
+	 */
+	public synchronized void clear()
+	{
+		map.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return the number of cached formulas
+	 */
+	public synchronized int size()
+	{
+		return map.size();
+	}
+
+	/**
+	 * @return the total number of clauses of the cached normal forms, plus one per entry
+	 */
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+
+	public long getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * @return the number of lookups that found the normal form
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that did not find the normal form
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * @return the number of entries that were evicted to stay within the capacity
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return the fraction of lookups that found the normal form
+	 */
+	public synchronized double getHitRate()
+	{
+		return hits+misses == 0?0:(double) hits/(hits+misses);
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "NormalFormCache[size="+map.size()+", weight="+weight+"/"+capacity+", hits="+hits+", misses="+misses
+				+", evictions="+evictions+"]";
+	}
+}
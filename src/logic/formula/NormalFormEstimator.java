@@ -0,0 +1,145 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates the number of clauses of the CNF and the number of terms of the DNF of a formula in linear time,
+ * without computing the normal forms.
+ * <br>
+ * The estimates are computed bottom-up: an atomic formula has one clause and one term, the CNF of an AND is the union
+ * of the CNFs of its arguments and the CNF of an OR is their product, dually for the DNF, and a negation swaps the
+ * two estimates. So an estimate is an upper bound of the size of the normal form computed by {@link Formula#toCNF()} and
+ * {@link Formula#toDNF()}, which also remove tautologies and subsumed sets. The arithmetic saturates at
+ * {@link Long#MAX_VALUE}, so exponential sizes do not overflow.
+ * <br>
+ * The estimates of all visited subformulas are kept, so estimating several formulas that share subformulas with
+ * one estimator visits every shared subformula once.
+ */
+public class NormalFormEstimator
+{
+	private final Map<Formula, long[]> estimates = new IdentityHashMap<>();
+
+	/**
+	 * @param f - a formula
+	 * @return an upper bound of the number of clauses of the CNF of f
+	 */
+	public long estimateCNF(Formula f)
+	{
+		return estimate(f)[0];
+	}
+
+	/**
+	 * @param f - a formula
+	 * @return an upper bound of the number of terms of the DNF of f
+	 */
+	public long estimateDNF(Formula f)
+	{
+		return estimate(f)[1];
+	}
+
+	/**
+	 * @param f - a formula
+	 * @param negated - true to estimate the CNF of NOT(f)
+	 * @return an upper bound of the number of clauses of the CNF of f or NOT(f)
+	 */
+	long estimateCNF(Formula f, boolean negated)
+	{
+		return estimate(f)[negated?1:0];
+	}
+
+	/**
+	 * @return the CNF and the DNF estimate of f
+	 */
+	private long[] estimate(Formula root)
+	{
+		long[] result = estimates.get(root);
+		if(result != null)
+			return result;
+		// Post-order traversal, a formula is estimated when it is on top of the stack and all arguments are estimated
+		List<Formula> stack = new ArrayList<>();
+		stack.add(root);
+		while(!stack.isEmpty())
+		{
+			Formula f = stack.get(stack.size()-1);
+			if(estimates.containsKey(f))
+			{
+				stack.remove(stack.size()-1);
+				continue;
+			}
+			if(f instanceof AtomicFormula)
+			{
+				estimates.put(f, new long[] {1, 1});
+				stack.remove(stack.size()-1);
+				continue;
+			}
+			List<Formula> args = arguments(f);
+			boolean ready = true;
+			for(Formula g:args)
+			{
+				if(!estimates.containsKey(g))
+				{
+					stack.add(g);
+					ready = false;
+				}
+			}
+			if(!ready)
+				continue;
+			stack.remove(stack.size()-1);
+			if(f instanceof NOTFormula)
+			{
+				long[] e = estimates.get(args.get(0));
+				estimates.put(f, new long[] {e[1], e[0]});
+				continue;
+			}
+			boolean and = f instanceof ANDFormula;
+			// The union of an AND in CNF and of an OR in DNF, the product otherwise
+			long union = 0;
+			long product = 1;
+			for(Formula g:args)
+			{
+				long[] e = estimates.get(g);
+				union = add(union, e[and?0:1]);
+				product = multiply(product, e[and?1:0]);
+			}
+			estimates.put(f, and?new long[] {union, product}:new long[] {product, union});
+		}
+		return estimates.get(root);
+	}
+
+	static List<Formula> arguments(Formula f)
+	{
+		if(f instanceof NOTFormula)
+		{
+			List<Formula> list = new ArrayList<>(1);
+			list.add(((NOTFormula)f).getArgumentFormula());
+			return list;
+		}
+		if(f instanceof ANDFormula)
+			return ((ANDFormula)f).getOrigList();
+		if(f instanceof ORFormula)
+			return ((ORFormula)f).getOrigList();
+		throw new IllegalArgumentException("Formula type not supported");
+	}
+
+	/**
+	 * @return a+b for non-negative a and b, Long.MAX_VALUE if the sum overflows
+	 */
+	static long add(long a, long b)
+	{
+		long sum = a+b;
+		return sum < 0?Long.MAX_VALUE:sum;
+	}
+
+	/**
+	 * @return a*b for non-negative a and b, Long.MAX_VALUE if the product overflows
+	 */
+	static long multiply(long a, long b)
+	{
+		if(a == 0 || b == 0)
+			return 0;
+		return a > Long.MAX_VALUE/b?Long.MAX_VALUE:a*b;
+	}
+}
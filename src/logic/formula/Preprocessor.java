@@ -0,0 +1,853 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import logic.helper.DisjointSet;
+
+/**
+ * Simplifies formulas in CNF before they are solved, the result is satisfiable iff the input is.
+ * <br>
+ * The pipeline consists of stages that are run in a configurable order:
+ * <ul>
+ * <li>{@link Stage#UNITS}: unit propagation, satisfied clauses are removed and false literals are deleted</li>
+ * <li>{@link Stage#PURE_LITERALS}: a literal whose negation does not occur is set to true</li>
+ * <li>{@link Stage#EQUIVALENT_LITERALS}: the strongly connected components of the binary implication graph are
+ * equivalent literals, every literal is replaced by the representative of its component in a {@link DisjointSet}</li>
+ * <li>{@link Stage#BLOCKED_CLAUSES}: a clause C with a literal l is blocked if all resolvents of C on l are
+ * tautologies, blocked clauses are removed</li>
+ * <li>{@link Stage#VARIABLE_ELIMINATION}: a variable is eliminated by replacing its clauses with all their
+ * resolvents if that does not increase the number of clauses by more than a bound</li>
+ * </ul>
+ * Every stage runs under a time budget and reports what it removed, see {@link #getReports()}.
+ * <br>
+ * Removed clauses are pushed on a reconstruction stack together with a witness literal.
+ * {@link #reconstruct(Model)} maps a model of the simplified formula to a model of the original formula by going
+ * through the stack backwards and setting the witness to true whenever its clause is false.
+ * Frozen variables, e.g. variables of assumptions, are never eliminated and keep their unit clauses.
+ */
+public class Preprocessor
+{
+	/**
+	 * The stages of the pipeline
+	 */
+	public enum Stage
+	{
+		UNITS,
+		PURE_LITERALS,
+		EQUIVALENT_LITERALS,
+		BLOCKED_CLAUSES,
+		VARIABLE_ELIMINATION
+	}
+
+	/**
+	 * The result of one run of a stage
+	 */
+	public static final class Report
+	{
+		private final Stage stage;
+		private final int clausesBefore;
+		private final int clausesAfter;
+		private final int removedClauses;
+		private final int removedVariables;
+		private final long time;
+		private final boolean completed;
+
+		private Report(Stage stage, int clausesBefore, int clausesAfter, int removedClauses, int removedVariables,
+				long time, boolean completed)
+		{
+			this.stage = stage;
+			this.clausesBefore = clausesBefore;
+			this.clausesAfter = clausesAfter;
+			this.removedClauses = removedClauses;
+			this.removedVariables = removedVariables;
+			this.time = time;
+			this.completed = completed;
+		}
+
+		public Stage getStage()
+		{
+			return stage;
+		}
+
+		public int getClausesBefore()
+		{
+			return clausesBefore;
+		}
+
+		public int getClausesAfter()
+		{
+			return clausesAfter;
+		}
+
+		/**
+		 * @return the number of clauses that were removed, resolvents of eliminated variables are not subtracted
+		 */
+		public int getRemovedClauses()
+		{
+			return removedClauses;
+		}
+
+		/**
+		 * @return the number of variables that were fixed, substituted or eliminated
+		 */
+		public int getRemovedVariables()
+		{
+			return removedVariables;
+		}
+
+		/**
+		 * @return the time of the stage in milliseconds
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		/**
+		 * @return false if the stage was stopped by the time budget
+		 */
+		public boolean isCompleted()
+		{
+			return completed;
+		}
+
+		@Override
+		public String toString()
+		{
+			return stage+": "+clausesBefore+" -> "+clausesAfter+" clauses, "+removedClauses+" removed, "
+					+removedVariables+" variables removed, "+time+"ms"+(completed?"":" (budget exceeded)");
+		}
+	}
+
+	// Clauses of variable elimination and blocked clause elimination are only considered up to these limits
+	private static final int OCCURRENCE_LIMIT = 16;
+	private static final int RESOLVENT_LIMIT = 20;
+	private static final int BLOCKED_LIMIT = 64;
+
+	private List<Stage> stages = Arrays.asList(Stage.UNITS, Stage.EQUIVALENT_LITERALS, Stage.PURE_LITERALS,
+			Stage.VARIABLE_ELIMINATION, Stage.BLOCKED_CLAUSES);
+	private long budget = Long.MAX_VALUE;
+	private int growth;
+	private final BitSet frozenVariables = new BitSet(); // variables of the VariableTable
+
+	private final List<Report> reports = new ArrayList<>();
+	private final List<int[]> stack = new ArrayList<>(); // witness followed by the clause, literals of the VariableTable
+
+	// Clauses over local variables, removed clauses are null
+	private int[] global; // variable of the VariableTable of every local variable
+	private List<int[]> clauses;
+	private int[][] occurrences; // may contain removed clauses and clauses that lost the literal
+	private int[] occurrenceCount;
+	private byte[] values; // 0 unassigned, 1 true, 2 false
+	private boolean[] frozen;
+	private boolean[] removed; // fixed, substituted or eliminated variables
+	private int[] units;
+	private int unitCount;
+	private boolean unsat;
+	private int clauseCount;
+	private int removedClauses;
+	private int removedVariables;
+	private long deadline;
+	private int[] marks; // marks of literals
+	private int mark;
+	private int[] clauseMarks;
+	private int clauseMark;
+
+	/**
+	 * @param stages - the stages in the order they are run, a stage may occur several times
+	 */
+	public void setStages(Stage... stages)
+	{
+		this.stages = Arrays.asList(stages.clone());
+	}
+
+	/**
+	 * @param millis - the maximum time of every stage in milliseconds, unlimited by default
+	 */
+	public void setTimeBudget(long millis)
+	{
+		if(millis <= 0)
+			throw new IllegalArgumentException("Time budget must be positive");
+		this.budget = millis;
+	}
+
+	/**
+	 * @param growth - the number of clauses by which variable elimination may increase the formula, 0 by default
+	 */
+	public void setEliminationGrowth(int growth)
+	{
+		this.growth = growth;
+	}
+
+	/**
+	 * @param variables - atomic formulas that keep their meaning in the simplified formula, they are not eliminated
+	 */
+	public void setFrozen(Collection<AtomicFormula> variables)
+	{
+		frozenVariables.clear();
+		for(AtomicFormula a:variables)
+			if(!a.isBasic())
+				frozenVariables.set(VariableTable.getIndex(a));
+	}
+
+	/**
+	 * @return the reports of the stages of the last call of {@link #preprocess(SetFormula)}
+	 */
+	public List<Report> getReports()
+	{
+		return Collections.unmodifiableList(reports);
+	}
+
+	/**
+	 * Simplifies a formula in CNF
+	 * @param cnf - a formula in CNF
+	 * @return a formula in CNF that is satisfiable iff cnf is satisfiable
+	 */
+	public SetFormula preprocess(SetFormula cnf)
+	{
+		if(!cnf.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		reports.clear();
+		stack.clear();
+		load(cnf.getClauseStore());
+		for(Stage stage:stages)
+		{
+			if(unsat)
+				break;
+			long start = System.currentTimeMillis();
+			deadline = budget == Long.MAX_VALUE?Long.MAX_VALUE:start+budget;
+			int before = clauseCount;
+			removedClauses = 0;
+			removedVariables = 0;
+			boolean completed;
+			switch(stage)
+			{
+			case UNITS:
+				completed = propagate();
+				break;
+			case PURE_LITERALS:
+				completed = eliminatePureLiterals();
+				break;
+			case EQUIVALENT_LITERALS:
+				completed = substituteEquivalentLiterals();
+				break;
+			case BLOCKED_CLAUSES:
+				completed = eliminateBlockedClauses();
+				break;
+			default:
+				completed = eliminateVariables();
+			}
+			reports.add(new Report(stage, before, clauseCount, removedClauses, removedVariables,
+					System.currentTimeMillis()-start, completed));
+		}
+		return store();
+	}
+
+	/**
+	 * Extends a model of the last simplified formula to a model of the formula that was simplified
+	 * @param m - a model of the simplified formula
+	 * @return a model of the original formula
+	 */
+	public Model reconstruct(Model m)
+	{
+		BitSet values = m.toBitSet();
+		for(int i = stack.size()-1;i>=0;i--)
+		{
+			int[] entry = stack.get(i);
+			boolean satisfied = false;
+			for(int j = 1;j<entry.length && !satisfied;j++)
+				satisfied = values.get(entry[j]>>1) == ((entry[j]&1) == 0);
+			if(!satisfied)
+				values.set(entry[0]>>1, (entry[0]&1) == 0);
+		}
+		return new Model(values);
+	}
+
+	private void load(ClauseStore store)
+	{
+		Map<Integer, Integer> local = new HashMap<>();
+		List<Integer> globals = new ArrayList<>();
+		clauses = new ArrayList<>();
+		unsat = false;
+		int[] buffer = new int[16];
+		next:
+		for(int i = 0;i<store.size();i++)
+		{
+			int n = 0;
+			for(int j = 0;j<store.length(i);j++)
+			{
+				int l = store.get(i, j);
+				int g = l>>1;
+				if(g == VariableTable.TRUE || g == VariableTable.FALSE)
+				{
+					if((g == VariableTable.TRUE) == ((l&1) == 0))
+						continue next;
+					continue;
+				}
+				Integer v = local.get(g);
+				if(v == null)
+				{
+					v = globals.size();
+					local.put(g, v);
+					globals.add(g);
+				}
+				if(n == buffer.length)
+					buffer = Arrays.copyOf(buffer, 2*n);
+				buffer[n++] = (v << 1) | (l&1);
+			}
+			if(n == 0)
+				unsat = true;
+			clauses.add(Arrays.copyOf(buffer, n));
+		}
+		int n = globals.size();
+		global = new int[n];
+		frozen = new boolean[n];
+		for(int v = 0;v<n;v++)
+		{
+			global[v] = globals.get(v);
+			frozen[v] = frozenVariables.get(global[v]);
+		}
+		values = new byte[n];
+		removed = new boolean[n];
+		occurrences = new int[2*n][4];
+		occurrenceCount = new int[2*n];
+		units = new int[16];
+		unitCount = 0;
+		marks = new int[2*n];
+		mark = 0;
+		clauseMarks = new int[clauses.size()];
+		clauseMark = 0;
+		clauseCount = clauses.size();
+		for(int c = 0;c<clauses.size();c++)
+		{
+			int[] clause = clauses.get(c);
+			for(int l:clause)
+				addOccurrence(l, c);
+			if(clause.length == 1)
+				enqueue(clause[0]);
+		}
+	}
+
+	private SetFormula store()
+	{
+		if(unsat)
+			return new SetFormula(SetFormula.Type.CNF);
+		ClauseStore store = new ClauseStore();
+		int[] buffer = new int[16];
+		for(int[] clause:clauses)
+		{
+			if(clause == null)
+				continue;
+			if(buffer.length < clause.length)
+				buffer = new int[2*clause.length];
+			for(int i = 0;i<clause.length;i++)
+				buffer[i] = globalLiteral(clause[i]);
+			store.add(buffer, 0, clause.length);
+		}
+		for(int v = 0;v<values.length;v++)
+			if(frozen[v] && values[v] != 0)
+				store.add(global[v] << 1 | (values[v]-1));
+		return new SetFormula(store, SetFormula.Type.CNF);
+	}
+
+	private int globalLiteral(int l)
+	{
+		return (global[l>>1] << 1) | (l&1);
+	}
+
+	private boolean outOfTime()
+	{
+		return deadline != Long.MAX_VALUE && System.currentTimeMillis() > deadline;
+	}
+
+	// Clause database
+
+	private void addOccurrence(int l, int c)
+	{
+		if(occurrenceCount[l] == occurrences[l].length)
+			occurrences[l] = Arrays.copyOf(occurrences[l], 2*occurrenceCount[l]);
+		occurrences[l][occurrenceCount[l]++] = c;
+	}
+
+	/**
+	 * Removes the stale entries of the occurrence list of l
+	 * @return a copy of the clauses that contain l
+	 */
+	private int[] occurrences(int l)
+	{
+		int[] list = occurrences[l];
+		if(clauseMarks.length < clauses.size())
+			clauseMarks = Arrays.copyOf(clauseMarks, 2*clauses.size());
+		clauseMark++;
+		int n = 0;
+		for(int i = 0;i<occurrenceCount[l];i++)
+		{
+			int c = list[i];
+			int[] clause = clauses.get(c);
+			if(clause == null || clauseMarks[c] == clauseMark || !contains(clause, clause.length, l))
+				continue;
+			clauseMarks[c] = clauseMark;
+			list[n++] = c;
+		}
+		occurrenceCount[l] = n;
+		return Arrays.copyOf(list, n);
+	}
+
+	private static boolean contains(int[] a, int n, int x)
+	{
+		for(int i = 0;i<n;i++)
+			if(a[i] == x)
+				return true;
+		return false;
+	}
+
+	private void addClause(int[] clause)
+	{
+		int c = clauses.size();
+		clauses.add(clause);
+		clauseCount++;
+		for(int l:clause)
+			addOccurrence(l, c);
+		if(clause.length == 0)
+			unsat = true;
+		else if(clause.length == 1)
+			enqueue(clause[0]);
+	}
+
+	private void removeClause(int c)
+	{
+		clauses.set(c, null);
+		clauseCount--;
+		removedClauses++;
+	}
+
+	/**
+	 * Removes a clause and pushes it with its witness on the reconstruction stack
+	 */
+	private void eliminateClause(int c, int witness)
+	{
+		push(witness, clauses.get(c));
+		removeClause(c);
+	}
+
+	private void push(int witness, int... clause)
+	{
+		int[] entry = new int[clause.length+1];
+		entry[0] = globalLiteral(witness);
+		for(int i = 0;i<clause.length;i++)
+			entry[i+1] = globalLiteral(clause[i]);
+		stack.add(entry);
+	}
+
+	// Unit propagation
+
+	private void enqueue(int l)
+	{
+		if(unitCount == units.length)
+			units = Arrays.copyOf(units, 2*unitCount);
+		units[unitCount++] = l;
+	}
+
+	/**
+	 * Propagates the enqueued units
+	 * @return false if the time budget was exceeded
+	 */
+	private boolean propagate()
+	{
+		while(unitCount > 0 && !unsat)
+		{
+			if(outOfTime())
+				return false;
+			int l = units[--unitCount];
+			int v = l>>1;
+			if(values[v] != 0)
+			{
+				if(values[v] != (l&1)+1)
+					unsat = true;
+				continue;
+			}
+			values[v] = (byte) ((l&1)+1);
+			removed[v] = true;
+			removedVariables++;
+			push(l, l);
+			for(int c:occurrences(l))
+				removeClause(c);
+			for(int c:occurrences(l^1))
+			{
+				int[] clause = clauses.get(c);
+				int[] shorter = new int[clause.length-1];
+				int n = 0;
+				for(int k:clause)
+					if(k != (l^1))
+						shorter[n++] = k;
+				clauses.set(c, shorter);
+				if(n == 0)
+					unsat = true;
+				else if(n == 1)
+					enqueue(shorter[0]);
+			}
+		}
+		return true;
+	}
+
+	// Pure literals
+
+	private boolean eliminatePureLiterals()
+	{
+		boolean changed = true;
+		while(changed && !unsat)
+		{
+			changed = false;
+			for(int v = 0;v<values.length;v++)
+			{
+				if(outOfTime())
+					return false;
+				if(removed[v] || frozen[v])
+					continue;
+				int[] pos = occurrences(v << 1);
+				int[] neg = occurrences(v << 1 | 1);
+				if(pos.length > 0 && neg.length > 0 || pos.length+neg.length == 0)
+					continue;
+				int l = neg.length == 0?v << 1:v << 1 | 1;
+				for(int c:neg.length == 0?pos:neg)
+					removeClause(c);
+				push(l, l);
+				removed[v] = true;
+				removedVariables++;
+				changed = true;
+			}
+		}
+		return true;
+	}
+
+	// Equivalent literals
+
+	private boolean substituteEquivalentLiterals()
+	{
+		int n = values.length;
+		// Binary implication graph, the binary clause (a b) gives the edges -a -> b and -b -> a
+		int[][] edges = new int[2*n][];
+		int[] edgeCount = new int[2*n];
+		for(int[] clause:clauses)
+			if(clause != null && clause.length == 2)
+			{
+				edgeCount[clause[0]^1]++;
+				edgeCount[clause[1]^1]++;
+			}
+		for(int l = 0;l<2*n;l++)
+			edges[l] = new int[edgeCount[l]];
+		Arrays.fill(edgeCount, 0);
+		for(int[] clause:clauses)
+			if(clause != null && clause.length == 2)
+			{
+				edges[clause[0]^1][edgeCount[clause[0]^1]++] = clause[1];
+				edges[clause[1]^1][edgeCount[clause[1]^1]++] = clause[0];
+			}
+		List<int[]> components = stronglyConnectedComponents(edges);
+		if(components == null)
+			return false;
+		Set<Integer> literals = new HashSet<>();
+		for(int[] component:components)
+			for(int l:component)
+				literals.add(l);
+		if(literals.isEmpty())
+			return true;
+		DisjointSet<Integer> equivalent = new DisjointSet<>(literals);
+		for(int[] component:components)
+			for(int l:component)
+				equivalent.union(component[0], l);
+		// The representative of a set is its frozen literal or the literal of the smallest variable,
+		// so the representative of the negated set is the negated representative
+		Map<Integer, Integer> roots = equivalent.representativeMap();
+		Map<Integer, Integer> best = new HashMap<>();
+		for(Map.Entry<Integer, Integer> e:roots.entrySet())
+		{
+			int l = e.getKey();
+			if((roots.get(l^1)).equals(e.getValue()))
+			{
+				unsat = true; // l is equivalent to its negation
+				return true;
+			}
+			Integer b = best.get(e.getValue());
+			if(b == null || better(l, b))
+				best.put(e.getValue(), l);
+		}
+		int[] replacement = new int[2*n];
+		for(int l = 0;l<2*n;l++)
+			replacement[l] = l;
+		for(int l:literals)
+		{
+			int r = best.get(roots.get(l));
+			if(r != l && !frozen[l>>1])
+				replacement[l] = r;
+		}
+		for(int v = 0;v<n;v++)
+		{
+			int l = v << 1;
+			if(replacement[l] == l)
+				continue;
+			int r = replacement[l];
+			push(l, l, r^1);
+			push(l^1, l^1, r);
+			removed[v] = true;
+			removedVariables++;
+			for(int c:occurrences(l))
+				substitute(c, replacement);
+			for(int c:occurrences(l^1))
+				substitute(c, replacement);
+			if(outOfTime())
+				return false;
+		}
+		return propagate();
+	}
+
+	private boolean better(int l, int b)
+	{
+		if(frozen[l>>1] != frozen[b>>1])
+			return frozen[l>>1];
+		return l>>1 < b>>1;
+	}
+
+	private void substitute(int c, int[] replacement)
+	{
+		int[] clause = clauses.get(c);
+		if(clause == null)
+			return;
+		mark++;
+		int[] result = new int[clause.length];
+		int n = 0;
+		for(int l:clause)
+		{
+			int r = replacement[l];
+			if(marks[r^1] == mark)
+			{
+				removeClause(c); // tautology
+				return;
+			}
+			if(marks[r] == mark)
+				continue;
+			marks[r] = mark;
+			result[n++] = r;
+		}
+		removeClause(c);
+		removedClauses--;
+		addClause(Arrays.copyOf(result, n));
+	}
+
+	/**
+	 * Tarjan's algorithm with an explicit stack
+	 * @return the components with more than one literal or null if the time budget was exceeded
+	 */
+	private List<int[]> stronglyConnectedComponents(int[][] edges)
+	{
+		int n = edges.length;
+		int[] index = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int[] callStack = new int[n];
+		int[] edge = new int[n];
+		int top = 0;
+		int counter = 0;
+		List<int[]> components = new ArrayList<>();
+		for(int root = 0;root<n;root++)
+		{
+			if(index[root] != 0 || edges[root].length == 0)
+				continue;
+			if(outOfTime())
+				return null;
+			int depth = 0;
+			callStack[depth++] = root;
+			index[root] = low[root] = ++counter;
+			stack[top++] = root;
+			onStack[root] = true;
+			edge[root] = 0;
+			while(depth > 0)
+			{
+				int v = callStack[depth-1];
+				if(edge[v] < edges[v].length)
+				{
+					int w = edges[v][edge[v]++];
+					if(index[w] == 0)
+					{
+						index[w] = low[w] = ++counter;
+						stack[top++] = w;
+						onStack[w] = true;
+						edge[w] = 0;
+						callStack[depth++] = w;
+					}
+					else if(onStack[w])
+						low[v] = Math.min(low[v], index[w]);
+					continue;
+				}
+				depth--;
+				if(depth > 0)
+					low[callStack[depth-1]] = Math.min(low[callStack[depth-1]], low[v]);
+				if(low[v] == index[v])
+				{
+					int size = 0;
+					int w;
+					do
+					{
+						w = stack[--top];
+						onStack[w] = false;
+						size++;
+					}
+					while(w != v);
+					if(size > 1)
+						components.add(Arrays.copyOfRange(stack, top, top+size));
+				}
+			}
+		}
+		return components;
+	}
+
+	// Blocked clauses
+
+	private boolean eliminateBlockedClauses()
+	{
+		boolean changed = true;
+		while(changed)
+		{
+			changed = false;
+			for(int c = 0;c<clauses.size();c++)
+			{
+				if(outOfTime())
+					return false;
+				int[] clause = clauses.get(c);
+				if(clause == null)
+					continue;
+				for(int l:clause)
+				{
+					if(frozen[l>>1] || !isBlocked(c, l))
+						continue;
+					eliminateClause(c, l);
+					changed = true;
+					break;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true iff all resolvents of clause c on l are tautologies
+	 */
+	private boolean isBlocked(int c, int l)
+	{
+		int[] others = occurrences(l^1);
+		if(others.length > BLOCKED_LIMIT)
+			return false;
+		mark++;
+		for(int k:clauses.get(c))
+			marks[k] = mark;
+		for(int d:others)
+		{
+			boolean tautology = false;
+			for(int k:clauses.get(d))
+				if(k != (l^1) && marks[k^1] == mark)
+				{
+					tautology = true;
+					break;
+				}
+			if(!tautology)
+				return false;
+		}
+		return true;
+	}
+
+	// Bounded variable elimination
+
+	private boolean eliminateVariables()
+	{
+		boolean changed = true;
+		while(changed && !unsat)
+		{
+			changed = false;
+			// Cheap variables first
+			List<int[]> candidates = new ArrayList<>();
+			for(int v = 0;v<values.length;v++)
+				if(!removed[v] && !frozen[v])
+					candidates.add(new int[]{v, occurrenceCount[v << 1]*occurrenceCount[v << 1 | 1]});
+			candidates.sort((a, b) -> Integer.compare(a[1], b[1]));
+			for(int[] candidate:candidates)
+			{
+				if(outOfTime())
+					return false;
+				if(unsat)
+					break;
+				if(!removed[candidate[0]] && eliminate(candidate[0]))
+					changed = true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Eliminates v if its resolvents are at most growth clauses more than its clauses
+	 * @return true if v was eliminated
+	 */
+	private boolean eliminate(int v)
+	{
+		int[] pos = occurrences(v << 1);
+		int[] neg = occurrences(v << 1 | 1);
+		if(pos.length+neg.length == 0 || pos.length > OCCURRENCE_LIMIT || neg.length > OCCURRENCE_LIMIT)
+			return false;
+		int limit = pos.length+neg.length+growth;
+		List<int[]> resolvents = new ArrayList<>();
+		for(int p:pos)
+			for(int q:neg)
+			{
+				int[] r = resolve(clauses.get(p), clauses.get(q), v);
+				if(r == null)
+					continue;
+				if(r.length > RESOLVENT_LIMIT || resolvents.size() == limit)
+					return false;
+				resolvents.add(r);
+			}
+		for(int p:pos)
+			eliminateClause(p, v << 1);
+		for(int q:neg)
+			eliminateClause(q, v << 1 | 1);
+		removed[v] = true;
+		removedVariables++;
+		for(int[] r:resolvents)
+			addClause(r);
+		propagate();
+		return true;
+	}
+
+	/**
+	 * @return the resolvent of a and b on v or null if it is a tautology
+	 */
+	private int[] resolve(int[] a, int[] b, int v)
+	{
+		mark++;
+		int[] result = new int[a.length+b.length-2];
+		int n = 0;
+		for(int l:a)
+			if(l>>1 != v)
+			{
+				marks[l] = mark;
+				result[n++] = l;
+			}
+		for(int l:b)
+		{
+			if(l>>1 == v || marks[l] == mark)
+				continue;
+			if(marks[l^1] == mark)
+				return null;
+			result[n++] = l;
+		}
+		return Arrays.copyOf(result, n);
+	}
+}
@@ -0,0 +1,538 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Decides the satisfiability of a formula in CNF by resolution with the given-clause loop and produces a refutation.
+ * <br>
+ * The clauses are either passive or active. In every step the shortest passive clause, the given clause, is activated
+ * and resolved with all active clauses. A resolvent that is a tautology or is subsumed by a kept clause is discarded
+ * (forward subsumption), otherwise it becomes passive and removes all kept clauses it subsumes (backward subsumption).
+ * The search stops as soon as the empty clause is derived, or if no passive clause is left.
+ * <br>
+ * The resolution partners and the subsumption candidates are found with occurrence lists of the literals, the
+ * candidates are filtered by 64-bit signatures like in {@link SubsumptionFilter}, so a step does not look at
+ * all clauses.
+ * <br>
+ * Two strategies restrict the resolvents:
+ * <ul>
+ * <li>Ordered resolution only resolves on the largest literal of both clauses, the literals are ordered by their
+ * variables in the {@link VariableTable}. This is still complete.</li>
+ * <li>With a set of support, the background clauses are active from the start and are never resolved with each other.
+ * Every resolvent descends from the support, e.g. the negated goal of a proof. This is complete if the background
+ * is satisfiable, so a saturated search only shows that the support is consistent with the background.</li>
+ * </ul>
+ * The refutation is a list of {@link Step}s that can be replayed by {@link #verify(List, SetFormula)}.
+ */
+public class ResolutionProver
+{
+	/**
+	 * The outcome of a search
+	 */
+	public enum Result
+	{
+		/** the empty clause was derived */
+		UNSATISFIABLE,
+		/** all resolvents were derived without the empty clause */
+		SATISFIABLE,
+		/** the clause limit was reached, or a set of support was saturated */
+		UNKNOWN
+	}
+
+	/**
+	 * A clause of a refutation, either an input clause or the resolvent of two earlier clauses
+	 */
+	public static final class Step
+	{
+		private final int[] lits; // sorted encoded literals
+		private final int first;
+		private final int second;
+		private final int pivot;
+
+		private Step(int[] lits, int first, int second, int pivot)
+		{
+			this.lits = lits;
+			this.first = first;
+			this.second = second;
+			this.pivot = pivot;
+		}
+
+		/**
+		 * @return the literals of this clause
+		 */
+		public Set<Literal> getClause()
+		{
+			Set<Literal> set = new LinkedHashSet<>();
+			for(int l:lits)
+				set.add(VariableTable.decode(l));
+			return set;
+		}
+
+		/**
+		 * @return true if this clause is an input clause or a constant axiom, i.e. TRUE or NOT(FALSE)
+		 */
+		public boolean isInput()
+		{
+			return first < 0;
+		}
+
+		/**
+		 * @return the index of the premise that contains the pivot or -1 for an input clause
+		 */
+		public int getFirstPremise()
+		{
+			return first;
+		}
+
+		/**
+		 * @return the index of the premise that contains the negated pivot or -1 for an input clause
+		 */
+		public int getSecondPremise()
+		{
+			return second;
+		}
+
+		/**
+		 * @return the literal that is resolved upon or null for an input clause
+		 */
+		public Literal getPivot()
+		{
+			return first < 0?null:VariableTable.decode(pivot);
+		}
+
+		@Override
+		public String toString()
+		{
+			String clause = getClause().toString();
+			if(isInput())
+				return clause;
+			return clause+" from "+first+" and "+second+" on "+getPivot();
+		}
+	}
+
+	private static final byte PASSIVE = 0;
+	private static final byte ACTIVE = 1;
+	private static final byte REMOVED = 2;
+
+	private boolean ordered;
+	private int clauseLimit = Integer.MAX_VALUE;
+
+	// Clause c occupies arena[start[c]] ... arena[start[c+1]-1], its parents are -1 for an input clause
+	private int[] arena;
+	private int arenaSize;
+	private int[] start;
+	private long[] signatures;
+	private int[] parents;
+	private int[] pivots;
+	private byte[] states;
+	private int count;
+	private int empty;
+
+	// Occurrence lists indexed by literal, list[0] is the length of a list
+	private int[][] occurrences; // kept clauses under each of their literals
+	private int[][] smallest; // kept clauses under their smallest literal
+	private int[][] largest; // active clauses under their largest literal, for ordered resolution
+	private PriorityQueue<Long> passive; // length << 32 | clause
+
+	private int[] buffer = new int[16];
+	private long given;
+	private long generated;
+	private long subsumed;
+	private List<Step> refutation;
+
+	/**
+	 * @param ordered - true to only resolve on the largest literals of both clauses
+	 */
+	public void setOrdered(boolean ordered)
+	{
+		this.ordered = ordered;
+	}
+
+	/**
+	 * @param clauseLimit - the maximum number of kept clauses, the search stops with {@link Result#UNKNOWN} if it is exceeded
+	 */
+	public void setClauseLimit(int clauseLimit)
+	{
+		this.clauseLimit = clauseLimit;
+	}
+
+	/**
+	 * Searches a refutation of a formula, all clauses are in the set of support
+	 * @param cnf - a formula in CNF
+	 * @return the result of the search
+	 */
+	public Result prove(SetFormula cnf)
+	{
+		return prove(SetFormula.getEmptySetFormula(SetFormula.Type.CNF), cnf);
+	}
+
+	/**
+	 * Searches a refutation of the conjunction of two formulas with the set of support strategy
+	 * @param background - a formula in CNF whose clauses are not resolved with each other
+	 * @param support - a formula in CNF, every resolvent descends from one of its clauses
+	 * @return the result of the search
+	 */
+	public Result prove(SetFormula background, SetFormula support)
+	{
+		if(!background.isCNF() || !support.isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		ClauseStore b = background.getClauseStore();
+		ClauseStore s = support.getClauseStore();
+		init(Math.max(Math.max(b.getMaxVariable(), s.getMaxVariable()), VariableTable.FALSE));
+		// The constants are ordinary variables for resolution, they are fixed by two axioms
+		if(usesConstants(b) || usesConstants(s))
+		{
+			add(new int[] {VariableTable.TRUE << 1}, 0, 1, -1, -1, -1, ACTIVE);
+			add(new int[] {(VariableTable.FALSE << 1) | 1}, 0, 1, -1, -1, -1, ACTIVE);
+		}
+		for(int c = 0;c<b.size() && empty < 0;c++)
+			add(b.arena(), b.start(c), b.length(c), -1, -1, -1, ACTIVE);
+		for(int c = 0;c<s.size() && empty < 0;c++)
+			add(s.arena(), s.start(c), s.length(c), -1, -1, -1, PASSIVE);
+		while(empty < 0 && !passive.isEmpty())
+		{
+			int c = (int) (long) passive.poll();
+			if(states[c] != PASSIVE)
+				continue;
+			if(count > clauseLimit)
+				return Result.UNKNOWN;
+			given++;
+			activate(c);
+			resolve(c);
+		}
+		if(empty >= 0)
+		{
+			refutation = createRefutation();
+			return Result.UNSATISFIABLE;
+		}
+		return b.size() > 0?Result.UNKNOWN:Result.SATISFIABLE;
+	}
+
+	private static boolean usesConstants(ClauseStore s)
+	{
+		int[] arena = s.arena();
+		for(int c = 0;c<s.size();c++)
+		{
+			// The constants are the smallest variables
+			if(s.length(c) > 0 && (arena[s.start(c)] >> 1) <= VariableTable.FALSE)
+				return true;
+		}
+		return false;
+	}
+
+	private void init(int maxVariable)
+	{
+		arena = new int[64];
+		arenaSize = 0;
+		start = new int[17];
+		signatures = new long[16];
+		parents = new int[32];
+		pivots = new int[16];
+		states = new byte[16];
+		count = 0;
+		empty = -1;
+		int literals = 2*(maxVariable+1);
+		occurrences = new int[literals][];
+		smallest = new int[literals][];
+		largest = new int[literals][];
+		passive = new PriorityQueue<>();
+		given = 0;
+		generated = 0;
+		subsumed = 0;
+		refutation = null;
+	}
+
+	/**
+	 * Resolves the given clause with all active clauses
+	 */
+	private void resolve(int c)
+	{
+		int s = start[c];
+		int n = start[c+1]-s;
+		for(int i = ordered?n-1:0;i<n && empty < 0 && states[c] == ACTIVE;i++)
+		{
+			int l = arena[s+i];
+			int[] list = ordered?largest[l^1]:occurrences[l^1];
+			if(list == null)
+				continue;
+			for(int k = 1;k<=list[0] && empty < 0 && states[c] == ACTIVE;k++)
+			{
+				int d = list[k];
+				if(states[d] != ACTIVE)
+					continue;
+				int m = start[d+1]-start[d];
+				if(buffer.length < n+m)
+					buffer = new int[2*(n+m)];
+				int length = SetFormula.resolution(arena, s, n, start[d], m, l, buffer);
+				if(length >= 0)
+				{
+					generated++;
+					add(buffer, 0, length, c, d, l, PASSIVE);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps a sorted clause that is not a tautology, unless it is subsumed by a kept clause
+	 * @param first - the premise with the pivot or -1
+	 * @param second - the premise with the negated pivot or -1
+	 * @param state - ACTIVE for a background clause, PASSIVE otherwise
+	 */
+	private void add(int[] lits, int from, int length, int first, int second, int pivot, byte state)
+	{
+		long sig = SubsumptionFilter.signature(lits, from, length);
+		if(isSubsumed(lits, from, length, sig))
+		{
+			subsumed++;
+			return;
+		}
+		removeSubsumed(lits, from, length, sig);
+		int c = store(lits, from, length, sig, first, second, pivot, state);
+		if(length == 0)
+		{
+			empty = c;
+			return;
+		}
+		smallest[lits[from]] = append(smallest[lits[from]], c);
+		for(int i = from;i<from+length;i++)
+			occurrences[lits[i]] = append(occurrences[lits[i]], c);
+		if(state == ACTIVE)
+			activate(c);
+		else
+			passive.add(((long) length << 32) | c);
+	}
+
+	private void activate(int c)
+	{
+		states[c] = ACTIVE;
+		int l = arena[start[c+1]-1];
+		largest[l] = append(largest[l], c);
+	}
+
+	/**
+	 * Forward subsumption: every subset D of C has its smallest literal in C
+	 */
+	private boolean isSubsumed(int[] lits, int from, int length, long sig)
+	{
+		for(int i = from;i<from+length;i++)
+		{
+			int[] list = smallest[lits[i]];
+			if(list == null)
+				continue;
+			for(int k = 1;k<=list[0];k++)
+			{
+				int d = list[k];
+				if(states[d] == REMOVED || (signatures[d] & ~sig) != 0)
+					continue;
+				int s = start[d];
+				int n = start[d+1]-s;
+				if(n <= from+length-i && isSubset(arena, s, n, lits, i, from+length-i))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Backward subsumption: every superset D of C occurs in the list of each literal of C, the shortest list is searched
+	 */
+	private void removeSubsumed(int[] lits, int from, int length, long sig)
+	{
+		if(length == 0)
+			return; // the search stops anyway
+		int[] best = null;
+		for(int i = from;i<from+length;i++)
+		{
+			int[] list = occurrences[lits[i]];
+			if(list == null)
+				return; // no clause contains the literal
+			if(best == null || list[0] < best[0])
+				best = list;
+		}
+		int size = best[0];
+		int n = 0;
+		for(int k = 1;k<=size;k++)
+		{
+			int d = best[k];
+			if(states[d] == REMOVED)
+				continue; // drop removed clauses from the list
+			if((sig & ~signatures[d]) == 0)
+			{
+				int s = start[d];
+				if(start[d+1]-s >= length && isSubset(lits, from, length, arena, s, start[d+1]-s))
+				{
+					states[d] = REMOVED;
+					subsumed++;
+					continue;
+				}
+			}
+			best[++n] = d;
+		}
+		best[0] = n;
+	}
+
+	/**
+	 * @return true iff the sorted clause a is a subset of the sorted clause b
+	 */
+	private static boolean isSubset(int[] a, int aFrom, int aLength, int[] b, int bFrom, int bLength)
+	{
+		int j = bFrom;
+		int bEnd = bFrom+bLength;
+		for(int i = aFrom;i<aFrom+aLength;i++)
+		{
+			int l = a[i];
+			while(j < bEnd && b[j] < l)
+				j++;
+			if(j == bEnd || b[j] != l)
+				return false;
+			j++;
+		}
+		return true;
+	}
+
+	private int store(int[] lits, int from, int length, long sig, int first, int second, int pivot, byte state)
+	{
+		if(count == signatures.length)
+		{
+			start = Arrays.copyOf(start, 2*count+1);
+			signatures = Arrays.copyOf(signatures, 2*count);
+			parents = Arrays.copyOf(parents, 4*count);
+			pivots = Arrays.copyOf(pivots, 2*count);
+			states = Arrays.copyOf(states, 2*count);
+		}
+		if(arenaSize+length > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(2*arena.length, arenaSize+length));
+		System.arraycopy(lits, from, arena, arenaSize, length);
+		arenaSize += length;
+		int c = count++;
+		start[count] = arenaSize;
+		signatures[c] = sig;
+		parents[2*c] = first;
+		parents[2*c+1] = second;
+		pivots[c] = pivot;
+		states[c] = state;
+		return c;
+	}
+
+	private static int[] append(int[] list, int c)
+	{
+		if(list == null)
+			list = new int[4];
+		else if(list[0]+1 == list.length)
+			list = Arrays.copyOf(list, 2*list.length);
+		list[++list[0]] = c;
+		return list;
+	}
+
+	/**
+	 * Collects the ancestors of the empty clause, the parents of a clause are always older than the clause
+	 */
+	private List<Step> createRefutation()
+	{
+		boolean[] used = new boolean[count];
+		used[empty] = true;
+		for(int c = empty;c>=0;c--)
+		{
+			if(used[c] && parents[2*c] >= 0)
+			{
+				used[parents[2*c]] = true;
+				used[parents[2*c+1]] = true;
+			}
+		}
+		int[] index = new int[count];
+		List<Step> steps = new ArrayList<>();
+		for(int c = 0;c<=empty;c++)
+		{
+			if(!used[c])
+				continue;
+			index[c] = steps.size();
+			int[] lits = Arrays.copyOfRange(arena, start[c], start[c+1]);
+			if(parents[2*c] < 0)
+				steps.add(new Step(lits, -1, -1, -1));
+			else
+				steps.add(new Step(lits, index[parents[2*c]], index[parents[2*c+1]], pivots[c]));
+		}
+		return Collections.unmodifiableList(steps);
+	}
+
+	/**
+	 * @return the refutation of the last search, the last step is the empty clause, or null if the last search
+	 * 			did not derive the empty clause
+	 */
+	public List<Step> getRefutation()
+	{
+		return refutation;
+	}
+
+	/**
+	 * @return the number of given clauses of the last search
+	 */
+	public long getGivenClauses()
+	{
+		return given;
+	}
+
+	/**
+	 * @return the number of resolvents of the last search that are not tautologies
+	 */
+	public long getGeneratedClauses()
+	{
+		return generated;
+	}
+
+	/**
+	 * @return the number of clauses that were discarded or removed by subsumption in the last search
+	 */
+	public long getSubsumedClauses()
+	{
+		return subsumed;
+	}
+
+	/**
+	 * Replays a refutation: every input clause must be a clause of cnf or a constant axiom, every other clause
+	 * must be the resolvent of two earlier clauses on its pivot, and the last clause must be empty
+	 * @param refutation - a refutation, e.g. of {@link #getRefutation()}
+	 * @param cnf - the refuted formula in CNF, for the set of support the conjunction of both formulas
+	 * @return true iff refutation is a resolution refutation of cnf
+	 */
+	public static boolean verify(List<Step> refutation, SetFormula cnf)
+	{
+		if(!cnf.isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		ClauseStore s = cnf.getClauseStore();
+		int[] out = new int[16];
+		for(int i = 0;i<refutation.size();i++)
+		{
+			Step step = refutation.get(i);
+			if(step.isInput())
+			{
+				if(!s.contains(step.lits) && !Arrays.equals(step.lits, new int[] {VariableTable.TRUE << 1})
+						&& !Arrays.equals(step.lits, new int[] {(VariableTable.FALSE << 1) | 1}))
+					return false;
+				continue;
+			}
+			if(step.first >= i || step.second >= i)
+				return false;
+			int[] a = refutation.get(step.first).lits;
+			int[] b = refutation.get(step.second).lits;
+			if(Arrays.binarySearch(a, step.pivot) < 0 || Arrays.binarySearch(b, step.pivot^1) < 0)
+				return false;
+			int[] premises = new int[a.length+b.length];
+			System.arraycopy(a, 0, premises, 0, a.length);
+			System.arraycopy(b, 0, premises, a.length, b.length);
+			if(out.length < premises.length)
+				out = new int[premises.length];
+			int n = SetFormula.resolution(premises, 0, a.length, a.length, b.length, step.pivot, out);
+			if(n < 0 || !Arrays.equals(Arrays.copyOf(out, n), step.lits))
+				return false;
+		}
+		return !refutation.isEmpty() && refutation.get(refutation.size()-1).lits.length == 0;
+	}
+}
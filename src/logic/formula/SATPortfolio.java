@@ -0,0 +1,177 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decides the satisfiability of a formula in CNF with several differently configured {@link SATSolver}s in parallel.
+ * <br>
+ * The solvers differ in their restart policy, variable decay, default phase and the frequency of random decisions,
+ * the first solver uses the default configuration. Learnt clauses of at most {@link #getShareLength()} literals are
+ * exchanged through a lock-free buffer. The first solver that finishes decides the result, the others are interrupted
+ * and stop at their next conflict.
+ */
+public class SATPortfolio
+{
+	private static final int EXCHANGE_CAPACITY = 1 << 14;
+
+	private final int workers;
+	private int shareLength = 8;
+
+	private Model model;
+	private int winner = -1;
+
+	/**
+	 * Creates a portfolio with one solver per available processor
+	 */
+	public SATPortfolio()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param workers - the number of solvers
+	 */
+	public SATPortfolio(int workers)
+	{
+		if(workers < 1)
+			throw new IllegalArgumentException("At least one worker is required");
+		this.workers = workers;
+	}
+
+	/**
+	 * @param length - learnt clauses with at most length literals are shared, 0 disables sharing
+	 */
+	public void setShareLength(int length)
+	{
+		shareLength = length;
+	}
+
+	public int getShareLength()
+	{
+		return shareLength;
+	}
+
+	/**
+	 * @return the number of solvers
+	 */
+	public int getNumberOfWorkers()
+	{
+		return workers;
+	}
+
+	/**
+	 * Configures the i-th solver
+	 */
+	private static void configure(SATSolver s, int i)
+	{
+		if(i == 0)
+			return;
+		s.setRandomDecisions(0x9E3779B97F4A7C15L*i, i%4 == 3?0.05:0.01*(i%3));
+		s.setDefaultPhase(i%2 == 1);
+		s.setRestarts(i%3 == 0?512:50+25*(i%5), i%4 != 2);
+		s.setVariableDecay(new double[] {0.95, 0.8, 0.99, 0.9}[i%4]);
+	}
+
+	/**
+	 * Decides the satisfiability of f, the model is available by {@link #getModel()}
+	 * @param f - a formula in CNF
+	 * @return true iff f is satisfiable
+	 */
+	public boolean solve(SetFormula f)
+	{
+		if(!f.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		model = null;
+		winner = -1;
+		ClauseExchange exchange = shareLength > 0?new ClauseExchange(EXCHANGE_CAPACITY):null;
+		List<SATSolver> solvers = new ArrayList<>();
+		for(int i = 0;i<workers;i++)
+		{
+			SATSolver s = new SATSolver(f);
+			configure(s, i);
+			if(exchange != null)
+				s.setClauseExchange(exchange, i, shareLength);
+			solvers.add(s);
+		}
+		if(workers == 1)
+			return finish(solvers, 0, solvers.get(0).solve());
+		ExecutorService executor = Executors.newFixedThreadPool(workers, r -> {
+			Thread t = new Thread(r, "sat-portfolio");
+			t.setDaemon(true);
+			return t;
+		});
+		try
+		{
+			ExecutorCompletionService<Integer> completion = new ExecutorCompletionService<>(executor);
+			for(int i = 0;i<workers;i++)
+			{
+				final int id = i;
+				completion.submit(() -> solvers.get(id).solve()?id:-id-1);
+			}
+			while(true)
+			{
+				Future<Integer> done = completion.take();
+				int r;
+				try
+				{
+					r = done.get();
+				}
+				catch(ExecutionException e)
+				{
+					if(e.getCause() instanceof CancellationException)
+						continue;
+					for(SATSolver s:solvers)
+						s.interrupt();
+					if(e.getCause() instanceof RuntimeException)
+						throw (RuntimeException) e.getCause();
+					throw new IllegalStateException(e.getCause());
+				}
+				for(SATSolver s:solvers)
+					s.interrupt();
+				return r >= 0?finish(solvers, r, true):finish(solvers, -r-1, false);
+			}
+		}
+		catch(InterruptedException e)
+		{
+			for(SATSolver s:solvers)
+				s.interrupt();
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for the solvers");
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	private boolean finish(List<SATSolver> solvers, int id, boolean sat)
+	{
+		winner = id;
+		if(sat)
+			model = solvers.get(id).getModel();
+		return sat;
+	}
+
+	/**
+	 * @return the model found by the last call of solve or null if there is none
+	 */
+	public Model getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * @return the index of the solver that decided the last call of solve, -1 if there was none
+	 */
+	public int getWinner()
+	{
+		return winner;
+	}
+}
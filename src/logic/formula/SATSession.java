@@ -0,0 +1,209 @@
+package logic.formula;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An incremental satisfiability session over one {@link SATSolver}.
+ * <br>
+ * Clauses can be added at any time and queries are solved under assumptions, the learnt clauses,
+ * variable activities and saved phases of the solver carry over from one query to the next.
+ * <br>
+ * Clauses added after {@link #push()} are retracted by the matching {@link #pop()}. Every scope has an activation
+ * variable a, a clause C of the scope is added as C OR NOT(a) and every query assumes a. Popping a scope adds the unit
+ * clause NOT(a), which satisfies the clauses of the scope and every clause learnt from them, they are then removed.
+ */
+public class SATSession
+{
+	private final SATSolver solver;
+	private int[] scopes = new int[4]; // activation literals
+	private int depth;
+	private int[] failed = new int[0];
+	// One transformation for all formulas of the session, so their fresh variables do not clash
+	private final TseitinTransformation tseitin = new TseitinTransformation(asClauseSink(), true);
+
+	/**
+	 * Creates a session without clauses
+	 */
+	public SATSession()
+	{
+		solver = new SATSolver();
+	}
+
+	/**
+	 * Creates a session whose base clauses are the clauses of f, they can not be retracted
+	 * @param f - a formula in CNF
+	 */
+	public SATSession(SetFormula f)
+	{
+		solver = new SATSolver(f);
+	}
+
+	/**
+	 * Opens a new scope
+	 */
+	public void push()
+	{
+		if(depth == scopes.length)
+			scopes = Arrays.copyOf(scopes, 2*depth);
+		scopes[depth++] = solver.newVariable() << 1;
+	}
+
+	/**
+	 * Closes the innermost scope and retracts its clauses
+	 * @throws IllegalStateException if there is no open scope
+	 */
+	public void pop()
+	{
+		if(depth == 0)
+			throw new IllegalStateException("No scope to pop");
+		solver.addClause(scopes[--depth]^1);
+		solver.simplify();
+	}
+
+	/**
+	 * @return the number of open scopes
+	 */
+	public int getScopeDepth()
+	{
+		return depth;
+	}
+
+	private int activation()
+	{
+		return depth == 0?-1:scopes[depth-1]^1;
+	}
+
+	/**
+	 * Adds a clause to the innermost scope
+	 * @param clause - a set of literals
+	 */
+	public void addClause(Set<Literal> clause)
+	{
+		int[] lits = new int[clause.size()];
+		int n = 0;
+		for(Literal l:clause)
+			lits[n++] = VariableTable.encode(l);
+		solver.addGlobalClause(lits, 0, n, activation());
+	}
+
+	/**
+	 * Adds all clauses of a formula in CNF to the innermost scope
+	 * @param f - a formula in CNF
+	 */
+	public void addClauses(SetFormula f)
+	{
+		if(!f.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		ClauseStore store = f.getClauseStore();
+		int[] arena = store.arena();
+		for(int c = 0;c<store.size();c++)
+			solver.addGlobalClause(arena, store.start(c), store.length(c), activation());
+	}
+
+	/**
+	 * Adds a formula to the innermost scope, it is transformed into clauses by a {@link TseitinTransformation}
+	 * @param f - a formula
+	 */
+	public void addFormula(Formula f)
+	{
+		// Definitions of earlier formulas may have been retracted by pop
+		tseitin.clearDefinitions();
+		tseitin.assertFormula(f);
+	}
+
+	/**
+	 * @return a sink that adds clauses over literals of the VariableTable to the scope that is innermost when a clause arrives
+	 */
+	public ClauseSink asClauseSink()
+	{
+		return (lits, from, length) -> solver.addGlobalClause(lits, from, length, activation());
+	}
+
+	/**
+	 * @return true iff the clauses of all open scopes are satisfiable
+	 */
+	public boolean solve()
+	{
+		return solve(new Literal[0]);
+	}
+
+	/**
+	 * @param assumptions - literals that must be true
+	 * @return true iff the clauses of all open scopes are satisfiable with all assumptions true
+	 */
+	public boolean solve(Collection<Literal> assumptions)
+	{
+		return solve(assumptions.toArray(new Literal[assumptions.size()]));
+	}
+
+	/**
+	 * @param assumptions - literals that must be true
+	 * @return true iff the clauses of all open scopes are satisfiable with all assumptions true
+	 */
+	public boolean solve(Literal... assumptions)
+	{
+		int[] lits = new int[depth+assumptions.length];
+		for(int i = 0;i<depth;i++)
+			lits[i] = scopes[i];
+		int n = depth;
+		failed = new int[0];
+		for(Literal l:assumptions)
+		{
+			AtomicFormula a = l.getFormula();
+			if(a.isTRUE() || a.isFALSE())
+			{
+				if(a.isTRUE() != l.isPositive())
+				{
+					// A false constant fails on its own
+					failed = new int[] {VariableTable.encode(l)};
+					return false;
+				}
+				continue;
+			}
+			lits[n++] = (solver.getVariable(a) << 1) | (l.isPositive()?0:1);
+		}
+		if(solver.solve(Arrays.copyOf(lits, n)))
+			return true;
+		int[] f = solver.getFailedAssumptions();
+		int m = 0;
+		for(int l:f)
+		{
+			int g = solver.getGlobalVariable(l>>1);
+			if(g >= 0)
+				f[m++] = (g << 1) | (l&1); // activation literals have no atomic formula
+		}
+		failed = Arrays.copyOf(f, m);
+		return false;
+	}
+
+	/**
+	 * @return the model found by the last call of solve or null if there is none
+	 */
+	public Model getModel()
+	{
+		return solver.getModel();
+	}
+
+	/**
+	 * @return a subset of the assumptions of the last call of solve that is inconsistent with the clauses,
+	 * 			empty if the clauses are unsatisfiable without assumptions or the last call succeeded
+	 */
+	public Set<Literal> getFailedAssumptions()
+	{
+		Set<Literal> set = new LinkedHashSet<>();
+		for(int l:failed)
+			set.add(VariableTable.decode(l));
+		return set;
+	}
+
+	/**
+	 * @return the solver of this session
+	 */
+	public SATSolver getSolver()
+	{
+		return solver;
+	}
+}
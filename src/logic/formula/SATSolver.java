@@ -0,0 +1,1347 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * A conflict-driven clause-learning (CDCL) SAT solver for formulas in CNF.
+ * <br>
+ * The solver uses two-watched-literal unit propagation with blocking literals, first-UIP conflict analysis
+ * with recursive clause minimization, VSIDS variable activities with phase saving, Luby restarts and
+ * periodic deletion of learned clauses ranked by their literal block distance (LBD).
+ * <br>
+ * Internally variables are numbered 0,...,n-1 and a literal is encoded as var<<1|sign,
+ * where sign is 1 for a negative literal.
+ * <br>
+ * The heuristics can be configured, so several differently configured solvers can work on the same clauses
+ * in parallel, see {@link SATPortfolio}. Such solvers exchange short learnt clauses and can be interrupted from other threads.
+ * <br>
+ * The solver can write a DRAT proof of its learnt and deleted clauses, which certifies unsatisfiability,
+ * see {@link #setProof(DratWriter)}.
+ */
+public class SATSolver
+{
+	private static final byte TRUE = 1;
+	private static final byte FALSE = -1;
+	private static final byte UNDEF = 0;
+
+	private static final double VAR_DECAY = 0.95;
+	private static final double CLAUSE_DECAY = 0.999;
+	private static final int RESTART_UNIT = 100;
+
+	/**
+	 * A clause of the solver. The first two literals are the watched literals,
+	 * if the clause is the reason of an assignment, the implied literal is at position 0.
+	 */
+	private static final class Clause
+	{
+		int[] lits;
+		boolean learnt;
+		int lbd;
+		double activity;
+		boolean removed;
+
+		Clause(int[] lits, boolean learnt)
+		{
+			this.lits = lits;
+			this.learnt = learnt;
+		}
+	}
+
+	/**
+	 * List of clauses that watch a literal, together with a blocking literal per clause
+	 */
+	private static final class WatchList
+	{
+		Clause[] clauses = new Clause[4];
+		int[] blockers = new int[4];
+		int size;
+
+		void add(Clause c, int blocker)
+		{
+			if(size == clauses.length)
+			{
+				clauses = Arrays.copyOf(clauses, size*2);
+				blockers = Arrays.copyOf(blockers, size*2);
+			}
+			clauses[size] = c;
+			blockers[size] = blocker;
+			size++;
+		}
+	}
+
+	// Mapping between the variables of the VariableTable and the variables of this solver
+	private int[] localOfGlobal = new int[0]; // local variable + 1, 0 if there is none
+	private int[] globalOfLocal = new int[0]; // -1 if the variable has no atomic formula
+
+	private int numVars;
+	private boolean ok = true;
+
+	// Clause database
+	private List<Clause> clauses = new ArrayList<>();
+	private List<Clause> learnts = new ArrayList<>();
+	private WatchList[] watches = new WatchList[0];
+
+	// Assignment
+	private byte[] value = new byte[0]; // indexed by literals
+	private int[] level = new int[0];
+	private Clause[] reason = new Clause[0];
+	private boolean[] phase = new boolean[0]; // saved phase, true means positive
+	private int[] trail = new int[0];
+	private int trailSize;
+	private int[] trailLim = new int[0];
+	private int decisionLevel;
+	private int qhead;
+
+	// Decision heuristic
+	private double[] activity = new double[0];
+	private double varInc = 1;
+	private double varDecay = VAR_DECAY;
+	private boolean defaultPhase;
+	private long randomState = 0x9E3779B97F4A7C15L;
+	private double randomFrequency;
+	private double clauseInc = 1;
+	private int[] heap = new int[0];
+	private int heapSize;
+	private int[] heapIndex = new int[0];
+
+	// Conflict analysis
+	private boolean[] seen = new boolean[0];
+	private int[] stack = new int[0];
+	private int[] toClear = new int[0];
+	private int[] levelStamp = new int[0];
+	private int stamp;
+
+	private boolean[] model;
+	private int[] failed = new int[0];
+	private double maxLearnts;
+
+	// Restarts
+	private int restartUnit = RESTART_UNIT;
+	private boolean lubyRestarts = true;
+
+	// Clause sharing and cancellation
+	private ClauseExchange exchange;
+	private int exchangeId;
+	private long exchangeCursor;
+	private int shareLength;
+	private volatile boolean interrupted;
+
+	// DRAT proof, null if no proof is written
+	private DratWriter proof;
+	private int[] proofLits = new int[16];
+	private int[] proofVariables = new int[0]; // variable of the proof of local variables without atomic formula, 0 if none
+
+	// Statistics
+	private long conflicts;
+	private long decisions;
+	private long propagations;
+	private long restarts;
+
+	/**
+	 * Creates a new solver without any clauses
+	 */
+	public SATSolver()
+	{
+	}
+
+	/**
+	 * Creates a new solver that contains all clauses of f
+	 * @param f - a formula in CNF
+	 */
+	public SATSolver(SetFormula f)
+	{
+		this(f, null);
+	}
+
+	/**
+	 * Creates a new solver that contains all clauses of f and writes a DRAT proof, see {@link #setProof(DratWriter)}
+	 * @param f - a formula in CNF
+	 * @param proof - the proof writer or null
+	 */
+	public SATSolver(SetFormula f, DratWriter proof)
+	{
+		this.proof = proof;
+		if(!f.isCNF())
+			throw new IllegalArgumentException("Formula is not in CNF");
+		ClauseStore store = f.getClauseStore();
+		int[] arena = store.arena();
+		int[] lits = new int[16];
+		for(int c = 0;c<store.size() && ok;c++)
+		{
+			int from = store.start(c);
+			int length = store.length(c);
+			if(lits.length < length)
+				lits = new int[2*length];
+			int n = importClause(arena, from, length, lits);
+			if(n >= 0)
+				addClause(lits, n);
+		}
+	}
+
+	/**
+	 * Translates a clause over the literals of the VariableTable to literals of this solver
+	 * and evaluates the constants TRUE and FALSE
+	 * @return the number of literals written to out or -1 if the clause is satisfied
+	 */
+	private int importClause(int[] lits, int from, int length, int[] out)
+	{
+		int n = 0;
+		for(int i = from;i<from+length;i++)
+		{
+			int l = lits[i];
+			int g = l>>1;
+			if(g == VariableTable.TRUE || g == VariableTable.FALSE)
+			{
+				if((g == VariableTable.TRUE) == ((l&1) == 0))
+					return -1; // clause is satisfied
+				continue; // literal is false
+			}
+			out[n++] = (getVariable(g) << 1) | (l&1);
+		}
+		return n;
+	}
+
+	/**
+	 * Lets a fraction of the decisions pick a random variable instead of the most active one
+	 * @param seed - seed of the random choices
+	 * @param frequency - fraction of random decisions between 0 and 1, 0 by default
+	 */
+	public void setRandomDecisions(long seed, double frequency)
+	{
+		if(frequency < 0 || frequency > 1)
+			throw new IllegalArgumentException("Frequency must be between 0 and 1");
+		randomState = seed == 0?0x9E3779B97F4A7C15L:seed;
+		randomFrequency = frequency;
+	}
+
+	/**
+	 * @param decay - factor by which the activities of all variables decay after each conflict, 0.95 by default
+	 */
+	public void setVariableDecay(double decay)
+	{
+		if(decay <= 0 || decay >= 1)
+			throw new IllegalArgumentException("Decay must be between 0 and 1");
+		varDecay = decay;
+	}
+
+	/**
+	 * @param positive - the phase of variables that have never been assigned, false by default
+	 */
+	public void setDefaultPhase(boolean positive)
+	{
+		defaultPhase = positive;
+		for(int v = 0;v<numVars;v++)
+		{
+			if(value[v<<1] == UNDEF)
+				phase[v] = positive;
+		}
+	}
+
+	/**
+	 * @param unit - number of conflicts of the first restart interval, 100 by default
+	 * @param luby - true for intervals that follow the Luby sequence (default), false for intervals that grow by 1.5
+	 */
+	public void setRestarts(int unit, boolean luby)
+	{
+		if(unit < 1)
+			throw new IllegalArgumentException("Restart unit must be positive");
+		restartUnit = unit;
+		lubyRestarts = luby;
+	}
+
+	/**
+	 * Connects this solver to an exchange of learnt clauses. All solvers of an exchange must have the same variables,
+	 * e.g. they are created from the same formula. Learnt clauses are published as they are learnt,
+	 * the clauses of the other solvers are imported at every restart.
+	 * @param exchange - the exchange
+	 * @param id - the id of this solver, unique within the exchange
+	 * @param maxLength - clauses with at most this many literals are published
+	 */
+	void setClauseExchange(ClauseExchange exchange, int id, int maxLength)
+	{
+		this.exchange = exchange;
+		this.exchangeId = id;
+		this.shareLength = maxLength;
+		this.exchangeCursor = exchange.position();
+	}
+
+	/**
+	 * Asks a running call of solve to stop, it throws a {@link CancellationException}.
+	 * If no call is running, the next call stops. This method can be called from any thread.
+	 */
+	public void interrupt()
+	{
+		interrupted = true;
+	}
+
+	/**
+	 * Writes a DRAT proof of the clauses that are learnt and deleted from now on, see {@link DratWriter}.
+	 * If {@link #solve()} returns false, the proof ends with the empty clause and certifies that the clauses added to
+	 * this solver are unsatisfiable. The proof is over the variables of the VariableTable, variables without
+	 * atomic formula are variables of the proof, see {@link DratWriter#newVariable()}.
+	 * <br>
+	 * Clauses of other solvers are not imported while a proof is written, since they can not be justified.
+	 * @param proof - the proof writer or null to stop writing
+	 */
+	public void setProof(DratWriter proof)
+	{
+		this.proof = proof;
+		proofVariables = new int[0];
+	}
+
+	private void proofAdd(int[] lits, int length)
+	{
+		proof.add(toProof(lits, length), 0, length);
+	}
+
+	private void proofDelete(int[] lits)
+	{
+		proof.delete(toProof(lits, lits.length), 0, lits.length);
+	}
+
+	/**
+	 * @return the literals of the VariableTable or of the proof of lits[0],...,lits[length-1] in proofLits
+	 */
+	private int[] toProof(int[] lits, int length)
+	{
+		if(proofLits.length < length)
+			proofLits = new int[2*length];
+		for(int i = 0;i<length;i++)
+		{
+			int v = lits[i]>>1;
+			int g = globalOfLocal[v];
+			if(g < 0)
+			{
+				if(v >= proofVariables.length)
+					proofVariables = Arrays.copyOf(proofVariables, Math.max(v+1, 2*proofVariables.length));
+				if(proofVariables[v] == 0)
+					proofVariables[v] = proof.newVariable();
+				g = proofVariables[v];
+			}
+			proofLits[i] = (g << 1) | (lits[i]&1);
+		}
+		return proofLits;
+	}
+
+	/**
+	 * Marks this solver as unsatisfiable after a conflict at decision level 0, the proof ends with the empty clause
+	 * @return false
+	 */
+	private boolean refuted()
+	{
+		if(proof != null && ok)
+			proof.add(proofLits, 0, 0);
+		return ok = false;
+	}
+
+	/**
+	 * @param v - a variable of this solver
+	 * @return the variable of the VariableTable of v or -1 if v has no atomic formula
+	 */
+	int getGlobalVariable(int v)
+	{
+		return globalOfLocal[v];
+	}
+
+	/**
+	 * @return a new variable of this solver
+	 */
+	public int newVariable()
+	{
+		int v = numVars++;
+		if(v == value.length/2)
+			grow(Math.max(16, v*2));
+		level[v] = -1;
+		globalOfLocal[v] = -1;
+		phase[v] = defaultPhase;
+		heapInsert(v);
+		return v;
+	}
+
+	/**
+	 * @param a - an atomic formula
+	 * @return the variable of the solver that represents a, a new variable is created if necessary
+	 */
+	public int getVariable(AtomicFormula a)
+	{
+		return getVariable(VariableTable.getIndex(a));
+	}
+
+	/**
+	 * @param g - a variable of the VariableTable
+	 * @return the variable of the solver that represents g, a new variable is created if necessary
+	 */
+	int getVariable(int g)
+	{
+		if(g >= localOfGlobal.length)
+			localOfGlobal = Arrays.copyOf(localOfGlobal, Math.max(2*localOfGlobal.length, g+1));
+		if(localOfGlobal[g] != 0)
+			return localOfGlobal[g]-1;
+		int v = newVariable();
+		globalOfLocal[v] = g;
+		localOfGlobal[g] = v+1;
+		return v;
+	}
+
+	/**
+	 * @return the number of variables of this solver
+	 */
+	public int getNumberOfVariables()
+	{
+		return numVars;
+	}
+
+	private void grow(int n)
+	{
+		value = Arrays.copyOf(value, 2*n);
+		level = Arrays.copyOf(level, n);
+		reason = Arrays.copyOf(reason, n);
+		phase = Arrays.copyOf(phase, n);
+		trail = Arrays.copyOf(trail, n);
+		trailLim = Arrays.copyOf(trailLim, Math.max(n+1, trailLim.length));
+		activity = Arrays.copyOf(activity, n);
+		heap = Arrays.copyOf(heap, n);
+		heapIndex = Arrays.copyOf(heapIndex, n);
+		seen = Arrays.copyOf(seen, n);
+		stack = Arrays.copyOf(stack, n);
+		toClear = Arrays.copyOf(toClear, n);
+		levelStamp = Arrays.copyOf(levelStamp, Math.max(n+1, levelStamp.length));
+		globalOfLocal = Arrays.copyOf(globalOfLocal, n);
+		int old = watches.length;
+		watches = Arrays.copyOf(watches, 2*n);
+		for(int i = old;i<watches.length;i++)
+			watches[i] = new WatchList();
+	}
+
+	/**
+	 * Adds a clause given as a set of literals. The constants TRUE and FALSE are evaluated.
+	 * @param clause - a set of literals
+	 * @return false if the solver is now known to be unsatisfiable, true otherwise
+	 */
+	public boolean addClause(Set<Literal> clause)
+	{
+		int[] lits = new int[clause.size()];
+		int n = 0;
+		for(Literal l:clause)
+			lits[n++] = VariableTable.encode(l);
+		n = importClause(lits, 0, n, lits);
+		if(n < 0)
+			return ok;
+		return addClause(lits, n);
+	}
+
+	/**
+	 * @return a sink that adds clauses over literals of the VariableTable to this solver,
+	 * 			the constants TRUE and FALSE are evaluated
+	 */
+	public ClauseSink asClauseSink()
+	{
+		return (lits, from, length) -> addGlobalClause(lits, from, length, -1);
+	}
+
+	/**
+	 * Adds a clause over literals of the VariableTable, the constants TRUE and FALSE are evaluated
+	 * @param extra - a literal of this solver that is added to the clause or -1
+	 * @return false if the solver is now known to be unsatisfiable, true otherwise
+	 */
+	boolean addGlobalClause(int[] lits, int from, int length, int extra)
+	{
+		int[] c = new int[length+1];
+		int n = importClause(lits, from, length, c);
+		if(n < 0)
+			return ok;
+		if(extra >= 0)
+			c[n++] = extra;
+		return addClause(c, n);
+	}
+
+	/**
+	 * Adds a clause. The solver must not be in the middle of a search.
+	 * @param lits - literals encoded as var<<1|sign
+	 * @return false if the solver is now known to be unsatisfiable, true otherwise
+	 */
+	public boolean addClause(int... lits)
+	{
+		return addClause(lits.clone(), lits.length);
+	}
+
+	/**
+	 * Adds the clause c[0],...,c[length-1], the array c is modified
+	 */
+	private boolean addClause(int[] c, int length)
+	{
+		if(!ok)
+			return false;
+		Arrays.sort(c, 0, length);
+		int n = 0;
+		int prev = -1;
+		boolean shortened = false;
+		for(int i = 0;i<length;i++)
+		{
+			int l = c[i];
+			if((l>>1) >= numVars)
+				throw new IllegalArgumentException("Unknown variable "+(l>>1));
+			if(value[l] == TRUE || l == (prev^1))
+				return true; // satisfied or tautology
+			if(value[l] == FALSE)
+				shortened = true;
+			else if(l != prev)
+			{
+				c[n++] = l;
+				prev = l;
+			}
+		}
+		// Without the false literals the clause is a lemma of the proof
+		if(proof != null && shortened && n > 0)
+			proofAdd(c, n);
+		if(n == 0)
+			return refuted();
+		if(n == 1)
+		{
+			enqueue(c[0], null);
+			return propagate() == null || refuted();
+		}
+		Clause clause = new Clause(Arrays.copyOf(c, n), false);
+		clauses.add(clause);
+		attach(clause);
+		return true;
+	}
+
+	private void attach(Clause c)
+	{
+		watches[c.lits[0]].add(c, c.lits[1]);
+		watches[c.lits[1]].add(c, c.lits[0]);
+	}
+
+	private void enqueue(int lit, Clause from)
+	{
+		int v = lit>>1;
+		value[lit] = TRUE;
+		value[lit^1] = FALSE;
+		level[v] = decisionLevel;
+		reason[v] = from;
+		trail[trailSize++] = lit;
+	}
+
+	/**
+	 * Propagates all enqueued assignments
+	 * @return a conflicting clause or null if there is no conflict
+	 */
+	private Clause propagate()
+	{
+		Clause conflict = null;
+		while(qhead < trailSize)
+		{
+			int falseLit = trail[qhead++]^1;
+			propagations++;
+			WatchList ws = watches[falseLit];
+			Clause[] cs = ws.clauses;
+			int[] bl = ws.blockers;
+			int n = ws.size;
+			int i = 0;
+			int j = 0;
+			while(i < n)
+			{
+				int blocker = bl[i];
+				if(value[blocker] == TRUE)
+				{
+					cs[j] = cs[i];
+					bl[j++] = blocker;
+					i++;
+					continue;
+				}
+				Clause c = cs[i++];
+				int[] lits = c.lits;
+				if(lits[0] == falseLit)
+				{
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				int first = lits[0];
+				if(first != blocker && value[first] == TRUE)
+				{
+					cs[j] = c;
+					bl[j++] = first;
+					continue;
+				}
+				// Look for a new literal to watch
+				boolean found = false;
+				for(int k = 2;k<lits.length;k++)
+				{
+					if(value[lits[k]] != FALSE)
+					{
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						watches[lits[1]].add(c, first);
+						found = true;
+						break;
+					}
+				}
+				if(found)
+					continue;
+				// Clause is unit or conflicting
+				cs[j] = c;
+				bl[j++] = first;
+				if(value[first] == FALSE)
+				{
+					conflict = c;
+					qhead = trailSize;
+					while(i < n)
+					{
+						cs[j] = cs[i];
+						bl[j++] = bl[i++];
+					}
+				}
+				else
+					enqueue(first, c);
+			}
+			Arrays.fill(cs, j, n, null);
+			ws.size = j;
+		}
+		return conflict;
+	}
+
+	private void newDecisionLevel()
+	{
+		trailLim[decisionLevel++] = trailSize;
+	}
+
+	private void cancelUntil(int lvl)
+	{
+		if(decisionLevel <= lvl)
+			return;
+		for(int i = trailSize-1;i>=trailLim[lvl];i--)
+		{
+			int lit = trail[i];
+			int v = lit>>1;
+			value[lit] = UNDEF;
+			value[lit^1] = UNDEF;
+			reason[v] = null;
+			phase[v] = (lit&1) == 0;
+			if(heapIndex[v] < 0)
+				heapInsert(v);
+		}
+		trailSize = trailLim[lvl];
+		qhead = trailSize;
+		decisionLevel = lvl;
+	}
+
+	/**
+	 * First UIP conflict analysis
+	 * @param conflict - a conflicting clause
+	 * @param out - the learnt clause is written to out, its first literal is the asserting literal
+	 * @return the number of literals of the learnt clause
+	 */
+	private int analyze(Clause conflict, int[] out)
+	{
+		int pathC = 0;
+		int p = -1;
+		int n = 1;
+		int index = trailSize-1;
+		Clause c = conflict;
+		do
+		{
+			if(c.learnt)
+				bumpClause(c);
+			int[] lits = c.lits;
+			for(int j = (p == -1)?0:1;j<lits.length;j++)
+			{
+				int q = lits[j];
+				int v = q>>1;
+				if(!seen[v] && level[v] > 0)
+				{
+					bumpVariable(v);
+					seen[v] = true;
+					if(level[v] >= decisionLevel)
+						pathC++;
+					else
+						out[n++] = q;
+				}
+			}
+			while(!seen[trail[index--]>>1]);
+			p = trail[index+1];
+			c = reason[p>>1];
+			seen[p>>1] = false;
+			pathC--;
+		}
+		while(pathC > 0);
+		out[0] = p^1;
+
+		// Minimize the clause
+		int abstractLevels = 0;
+		for(int i = 1;i<n;i++)
+			abstractLevels |= abstractLevel(out[i]>>1);
+		int clearSize = 0;
+		for(int i = 1;i<n;i++)
+			toClear[clearSize++] = out[i];
+		int m = 1;
+		for(int i = 1;i<n;i++)
+		{
+			int v = out[i]>>1;
+			if(reason[v] == null)
+				out[m++] = out[i];
+			else
+			{
+				int top = clearSize;
+				clearSize = litRedundant(out[i], abstractLevels, clearSize);
+				if(clearSize < 0)
+				{
+					clearSize = top;
+					out[m++] = out[i];
+				}
+			}
+		}
+		for(int i = 0;i<clearSize;i++)
+			seen[toClear[i]>>1] = false;
+		return m;
+	}
+
+	private int abstractLevel(int v)
+	{
+		return 1 << (level[v] & 31);
+	}
+
+	/**
+	 * Checks whether p is implied by the other literals of the learnt clause
+	 * @return the new size of toClear if p is redundant, -1 otherwise
+	 */
+	private int litRedundant(int p, int abstractLevels, int clearSize)
+	{
+		int top = clearSize;
+		int sp = 0;
+		stack[sp++] = p;
+		while(sp > 0)
+		{
+			int[] lits = reason[stack[--sp]>>1].lits;
+			for(int i = 1;i<lits.length;i++)
+			{
+				int q = lits[i];
+				int v = q>>1;
+				if(!seen[v] && level[v] > 0)
+				{
+					if(reason[v] != null && (abstractLevel(v) & abstractLevels) != 0)
+					{
+						seen[v] = true;
+						stack[sp++] = q;
+						toClear[clearSize++] = q;
+					}
+					else
+					{
+						for(int j = top;j<clearSize;j++)
+							seen[toClear[j]>>1] = false;
+						return -1;
+					}
+				}
+			}
+		}
+		return clearSize;
+	}
+
+	private int computeLBD(int[] lits)
+	{
+		stamp++;
+		int lbd = 0;
+		for(int l:lits)
+		{
+			int lvl = level[l>>1];
+			if(levelStamp[lvl] != stamp)
+			{
+				levelStamp[lvl] = stamp;
+				lbd++;
+			}
+		}
+		return lbd;
+	}
+
+	private void bumpVariable(int v)
+	{
+		if((activity[v] += varInc) > 1e100)
+		{
+			for(int i = 0;i<numVars;i++)
+				activity[i] *= 1e-100;
+			varInc *= 1e-100;
+		}
+		if(heapIndex[v] >= 0)
+			heapUp(heapIndex[v]);
+	}
+
+	private void bumpClause(Clause c)
+	{
+		if((c.activity += clauseInc) > 1e20)
+		{
+			for(Clause d:learnts)
+				d.activity *= 1e-20;
+			clauseInc *= 1e-20;
+		}
+	}
+
+	/**
+	 * Removes about half of the learnt clauses, clauses with small LBD and reasons are kept
+	 */
+	private void reduceDB()
+	{
+		learnts.sort((a,b) -> {
+			if(a.lbd != b.lbd)
+				return Integer.compare(a.lbd, b.lbd);
+			return Double.compare(b.activity, a.activity);
+		});
+		int keep = learnts.size()/2;
+		int j = 0;
+		for(int i = 0;i<learnts.size();i++)
+		{
+			Clause c = learnts.get(i);
+			if(i < keep || c.lbd <= 2 || isLocked(c))
+				learnts.set(j++, c);
+			else
+			{
+				c.removed = true;
+				if(proof != null)
+					proofDelete(c.lits);
+			}
+		}
+		learnts.subList(j, learnts.size()).clear();
+		purgeWatches();
+	}
+
+	private boolean isLocked(Clause c)
+	{
+		int l = c.lits[0];
+		return value[l] == TRUE && reason[l>>1] == c;
+	}
+
+	private void purgeWatches()
+	{
+		for(int l = 0;l<2*numVars;l++)
+		{
+			WatchList ws = watches[l];
+			int j = 0;
+			for(int i = 0;i<ws.size;i++)
+			{
+				if(!ws.clauses[i].removed)
+				{
+					ws.clauses[j] = ws.clauses[i];
+					ws.blockers[j++] = ws.blockers[i];
+				}
+			}
+			Arrays.fill(ws.clauses, j, ws.size, null);
+			ws.size = j;
+		}
+	}
+
+	private int pickBranchLiteral()
+	{
+		if(randomFrequency > 0 && heapSize > 0 && nextRandom() < randomFrequency)
+		{
+			int v = heap[(int) (nextRandom()*heapSize)];
+			if(value[v<<1] == UNDEF)
+				return (v<<1) | (phase[v]?0:1);
+		}
+		while(heapSize > 0)
+		{
+			int v = heapRemoveMax();
+			if(value[v<<1] == UNDEF)
+				return (v<<1) | (phase[v]?0:1);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return a pseudo random number in [0,1) from a xorshift generator
+	 */
+	private double nextRandom()
+	{
+		randomState ^= randomState << 13;
+		randomState ^= randomState >>> 7;
+		randomState ^= randomState << 17;
+		return (randomState >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return the number of conflicts until the next restart
+	 */
+	private long restartInterval()
+	{
+		if(lubyRestarts)
+			return restartUnit*luby(restarts);
+		return (long) (restartUnit*Math.pow(1.5, Math.min(restarts, 100)));
+	}
+
+	/**
+	 * @return the i-th element of the Luby sequence 1,1,2,1,1,2,4,1,...
+	 */
+	private static long luby(long i)
+	{
+		long size = 1;
+		int seq = 0;
+		while(size < i+1)
+		{
+			seq++;
+			size = 2*size+1;
+		}
+		while(size-1 != i)
+		{
+			size = (size-1)>>1;
+			seq--;
+			i = i % size;
+		}
+		return 1L << seq;
+	}
+
+	/**
+	 * Searches for a satisfying assignment of all clauses
+	 * @return true iff the clauses are satisfiable
+	 */
+	public boolean solve()
+	{
+		return solve(new int[0]);
+	}
+
+	/**
+	 * Searches for a satisfying assignment of all clauses in which all assumptions are true.
+	 * Learnt clauses, activities and saved phases are kept for later calls, so closely related
+	 * queries can be solved incrementally.
+	 * @param assumptions - literals encoded as var<<1|sign
+	 * @return true iff the clauses and the assumptions are satisfiable,
+	 * 			if false is returned because of the assumptions, see {@link #getFailedAssumptions()}
+	 */
+	public boolean solve(int... assumptions)
+	{
+		model = null;
+		failed = new int[0];
+		if(!ok)
+			return false;
+		for(int a:assumptions)
+		{
+			if((a>>1) >= numVars)
+				throw new IllegalArgumentException("Unknown variable "+(a>>1));
+		}
+		// Every assumption gets its own decision level, even if it is already satisfied
+		int levels = numVars+assumptions.length+1;
+		if(trailLim.length < levels)
+			trailLim = Arrays.copyOf(trailLim, levels);
+		if(levelStamp.length < levels)
+			levelStamp = Arrays.copyOf(levelStamp, levels);
+		if(propagate() != null || !importShared())
+			return refuted();
+		int[] learnt = new int[numVars+1];
+		if(maxLearnts == 0)
+			maxLearnts = Math.max(clauses.size()/3.0, 2000);
+		long restartLimit = restartInterval();
+		long conflictsThisRestart = 0;
+		while(true)
+		{
+			Clause conflict = propagate();
+			if(conflict != null)
+			{
+				conflicts++;
+				conflictsThisRestart++;
+				if(decisionLevel == 0)
+					return refuted();
+				if(interrupted)
+				{
+					interrupted = false;
+					cancelUntil(0);
+					throw new CancellationException("Solver interrupted");
+				}
+				int n = analyze(conflict, learnt);
+				// Find the backjump level and move the corresponding literal to position 1
+				int btLevel = 0;
+				for(int i = 2;i<n;i++)
+				{
+					if(level[learnt[i]>>1] > level[learnt[1]>>1])
+					{
+						int tmp = learnt[1];
+						learnt[1] = learnt[i];
+						learnt[i] = tmp;
+					}
+				}
+				if(n > 1)
+					btLevel = level[learnt[1]>>1];
+				cancelUntil(btLevel);
+				if(proof != null)
+					proofAdd(learnt, n);
+				if(exchange != null && n <= shareLength)
+					exchange.publish(exchangeId, Arrays.copyOf(learnt, n));
+				if(n == 1)
+					enqueue(learnt[0], null);
+				else
+				{
+					Clause c = new Clause(Arrays.copyOf(learnt, n), true);
+					c.lbd = computeLBD(c.lits);
+					learnts.add(c);
+					attach(c);
+					bumpClause(c);
+					enqueue(learnt[0], c);
+				}
+				varInc /= varDecay;
+				clauseInc /= CLAUSE_DECAY;
+			}
+			else
+			{
+				if(conflictsThisRestart >= restartLimit)
+				{
+					cancelUntil(0);
+					restarts++;
+					restartLimit = restartInterval();
+					conflictsThisRestart = 0;
+					if(!importShared())
+						return refuted();
+					continue;
+				}
+				if(learnts.size() - trailSize >= maxLearnts)
+				{
+					reduceDB();
+					maxLearnts *= 1.1;
+				}
+				int next = -1;
+				while(decisionLevel < assumptions.length)
+				{
+					int p = assumptions[decisionLevel];
+					if(value[p] == TRUE)
+						newDecisionLevel(); // already satisfied, keep the levels aligned with the assumptions
+					else if(value[p] == FALSE)
+					{
+						analyzeFinal(p);
+						cancelUntil(0);
+						return false;
+					}
+					else
+					{
+						next = p;
+						break;
+					}
+				}
+				if(next == -1)
+					next = pickBranchLiteral();
+				if(next == -1)
+				{
+					model = new boolean[numVars];
+					for(int v = 0;v<numVars;v++)
+						model[v] = value[v<<1] == TRUE;
+					cancelUntil(0);
+					return true;
+				}
+				decisions++;
+				newDecisionLevel();
+				enqueue(next, null);
+			}
+		}
+	}
+
+	/**
+	 * Propagates the assignments at decision level 0, the solver must be at level 0
+	 * @return false if the solver is now known to be unsatisfiable, true otherwise
+	 */
+	boolean propagateRoot()
+	{
+		if(!ok)
+			return false;
+		if(propagate() != null)
+			return refuted();
+		return true;
+	}
+
+	/**
+	 * Assigns lit at a new decision level and propagates it, used for lookahead
+	 * @return false if lit is false or its propagation leads to a conflict
+	 */
+	boolean assume(int lit)
+	{
+		newDecisionLevel();
+		if(value[lit] == FALSE)
+			return false;
+		if(value[lit] == TRUE)
+			return true;
+		enqueue(lit, null);
+		return propagate() == null;
+	}
+
+	/**
+	 * Undoes all assignments above a decision level
+	 */
+	void backtrack(int lvl)
+	{
+		cancelUntil(lvl);
+	}
+
+	int getDecisionLevel()
+	{
+		return decisionLevel;
+	}
+
+	/**
+	 * @return the number of assigned variables
+	 */
+	int getNumberOfAssignments()
+	{
+		return trailSize;
+	}
+
+	boolean isAssigned(int v)
+	{
+		return value[v<<1] != UNDEF;
+	}
+
+	/**
+	 * @return the number of occurrences of every variable in the clauses that are not learnt
+	 */
+	int[] countOccurrences()
+	{
+		int[] count = new int[numVars];
+		for(Clause c:clauses)
+		{
+			for(int l:c.lits)
+				count[l>>1]++;
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the clauses that the other solvers of the exchange have published since the last import,
+	 * must be called at decision level 0
+	 * @return false if the solver is now known to be unsatisfiable, true otherwise
+	 */
+	private boolean importShared()
+	{
+		if(exchange == null)
+			return true;
+		if(proof == null)
+			exchangeCursor = exchange.read(exchangeId, exchangeCursor, this::importLearnt);
+		return ok && propagate() == null;
+	}
+
+	/**
+	 * Adds a clause learnt by another solver as a learnt clause, the literals are evaluated at level 0
+	 */
+	private void importLearnt(int[] lits)
+	{
+		if(!ok)
+			return;
+		int[] c = new int[lits.length];
+		int n = 0;
+		for(int l:lits)
+		{
+			if(value[l] == TRUE)
+				return;
+			if(value[l] == UNDEF)
+				c[n++] = l;
+		}
+		if(n == 0)
+			ok = false;
+		else if(n == 1)
+			enqueue(c[0], null);
+		else
+		{
+			Clause clause = new Clause(Arrays.copyOf(c, n), true);
+			clause.lbd = n;
+			learnts.add(clause);
+			attach(clause);
+		}
+	}
+
+	/**
+	 * Computes the assumptions that imply the negation of the assumption p
+	 */
+	private void analyzeFinal(int p)
+	{
+		int[] out = new int[decisionLevel+1];
+		int n = 0;
+		out[n++] = p;
+		if(decisionLevel > 0)
+		{
+			seen[p>>1] = true;
+			for(int i = trailSize-1;i>=trailLim[0];i--)
+			{
+				int v = trail[i]>>1;
+				if(!seen[v])
+					continue;
+				if(reason[v] == null)
+				{
+					// Every decision below the level of the assumptions is an assumption
+					if(trail[i] != p)
+						out[n++] = trail[i];
+				}
+				else
+				{
+					int[] lits = reason[v].lits;
+					for(int j = 1;j<lits.length;j++)
+					{
+						if(level[lits[j]>>1] > 0)
+							seen[lits[j]>>1] = true;
+					}
+				}
+				seen[v] = false;
+			}
+			seen[p>>1] = false;
+		}
+		failed = Arrays.copyOf(out, n);
+	}
+
+	/**
+	 * @return the assumptions of the last call of solve that are together inconsistent with the clauses,
+	 * 			empty if the last call did not fail because of the assumptions
+	 */
+	public int[] getFailedAssumptions()
+	{
+		return failed.clone();
+	}
+
+	/**
+	 * Removes all clauses that are satisfied by the assignments at decision level 0
+	 * @return false if the solver is now known to be unsatisfiable, true otherwise
+	 */
+	public boolean simplify()
+	{
+		if(!ok)
+			return false;
+		if(propagate() != null)
+			return refuted();
+		removeSatisfied(clauses);
+		removeSatisfied(learnts);
+		purgeWatches();
+		return true;
+	}
+
+	private void removeSatisfied(List<Clause> list)
+	{
+		int j = 0;
+		for(int i = 0;i<list.size();i++)
+		{
+			Clause c = list.get(i);
+			boolean satisfied = false;
+			for(int l:c.lits)
+			{
+				if(value[l] == TRUE)
+				{
+					satisfied = true;
+					break;
+				}
+			}
+			if(satisfied)
+			{
+				c.removed = true;
+				if(proof != null)
+					proofDelete(c.lits);
+			}
+			else
+				list.set(j++, c);
+		}
+		list.subList(j, list.size()).clear();
+	}
+
+	/**
+	 * @param v - a variable
+	 * @return the value of v in the model found by the last call of solve
+	 */
+	public boolean modelValue(int v)
+	{
+		if(model == null)
+			throw new IllegalStateException("No model available");
+		return model[v];
+	}
+
+	/**
+	 * @return the model found by the last call of solve or null if there is none.
+	 * 		   Atomic formulas that do not occur in the clauses are mapped to false.
+	 */
+	public Model getModel()
+	{
+		if(model == null)
+			return null;
+		BitSet values = new BitSet();
+		for(int v = 0;v<numVars;v++)
+		{
+			if(model[v] && globalOfLocal[v] >= 0)
+				values.set(globalOfLocal[v]);
+		}
+		return new Model(values);
+	}
+
+	public long getConflicts()
+	{
+		return conflicts;
+	}
+
+	public long getDecisions()
+	{
+		return decisions;
+	}
+
+	public long getPropagations()
+	{
+		return propagations;
+	}
+
+	public long getRestarts()
+	{
+		return restarts;
+	}
+
+	// Binary max-heap on the activities
+
+	private void heapInsert(int v)
+	{
+		heapIndex[v] = heapSize;
+		heap[heapSize++] = v;
+		heapUp(heapSize-1);
+	}
+
+	private int heapRemoveMax()
+	{
+		int v = heap[0];
+		heapIndex[v] = -1;
+		heapSize--;
+		if(heapSize > 0)
+		{
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			heapDown(0);
+		}
+		return v;
+	}
+
+	private void heapUp(int i)
+	{
+		int v = heap[i];
+		double a = activity[v];
+		while(i > 0)
+		{
+			int parent = (i-1)>>1;
+			int u = heap[parent];
+			if(activity[u] >= a)
+				break;
+			heap[i] = u;
+			heapIndex[u] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+
+	private void heapDown(int i)
+	{
+		int v = heap[i];
+		double a = activity[v];
+		while(true)
+		{
+			int child = 2*i+1;
+			if(child >= heapSize)
+				break;
+			if(child+1 < heapSize && activity[heap[child+1]] > activity[heap[child]])
+				child++;
+			int u = heap[child];
+			if(activity[u] <= a)
+				break;
+			heap[i] = u;
+			heapIndex[u] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+}
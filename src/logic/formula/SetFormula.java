@@ -1,22 +1,42 @@
 package logic.formula;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.AbstractSet;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import logic.helper.LogicHelper;
 import logic.helper.Pair;
 
 /**
  * Represents a Formula in CNF or DNF in set notation
+ * <br>
+ * The sets of literals are kept in a {@link ClauseStore}, the set views of this class are backed by that store.
+ * <br>
+ * Alternatively the sets can be kept in a {@link ZDD}, which represents families with millions of sets that share
+ * structure in little memory. The operations of formulas with ZDDs work on the diagrams, including equals and
+ * hashCode and operations with a formula of another manager or with a store, whose store is converted into the ZDD.
+ * The store of a formula with a ZDD is only created when the sets are accessed one by one: by
+ * {@link #getClauseStore()}, the set views, {@link #asFormula()}, {@link #asHornFormula()}, {@link #toString()}
+ * and the solvers.
  * @author andrei
  *
  */
 public class SetFormula {
-	private Set<Set<Literal>> formula;
+	private volatile ClauseStore store;
+	private ZDD zdd;
 	private Type type;
+	private volatile boolean hashed;
+	private int hash;
 
 	enum Type {
 		CNF, DNF
@@ -27,63 +47,74 @@ public class SetFormula {
 	 * @param type - formula type
 	 */
 	public SetFormula(Type type) {
-		this(LogicHelper.createSet(new HashSet<Literal>()), type, false, false);
+		ClauseStore s = new ClauseStore(1, 0);
+		s.add();
+		init(s, type);
 	}
-	
+
 	/**
 	 * Creates a new totally empty fomula, i.e. {}
 	 * @param type - formula type
 	 * @return the formula {}
 	 */
 	public static SetFormula getEmptySetFormula(Type type) {
-		return new SetFormula(new HashSet<>(), type, false, false);
+		return new SetFormula(new ClauseStore(), type);
 	}
-	
+
 	/**
 	 * Creates a new formula from a set
 	 * @param formula - a set of sets of literals
 	 * @param type - formula type
 	 */
 	public SetFormula(Set<Set<Literal>> formula, Type type) {
-		// Make copy and simplify
-		this(formula, type, true, true);
+		// Encode and simplify
+		ClauseStore s = new ClauseStore(formula.size(), 4*formula.size());
+		int[] lits = new int[16];
+		for(Set<Literal> set:formula)
+		{
+			if(lits.length < set.size())
+				lits = new int[2*set.size()];
+			int n = 0;
+			for(Literal l:set)
+				lits[n++] = VariableTable.encode(l);
+			s.add(lits, 0, n);
+		}
+		init(s, type);
 	}
-	
+
 	/**
 	 * Creates a new formula from a single literal
 	 * @param literal - a literal
 	 * @param type - formula type
 	 */
 	public SetFormula(Literal literal, Type type) {
-		// Make copy and simplify
-		this(LogicHelper.createSet(LogicHelper.createSet(literal)), type, true, true);
+		ClauseStore s = new ClauseStore(1, 1);
+		s.add(VariableTable.encode(literal));
+		init(s, type);
 	}
 
 	/**
-	 * Creates a new formula from a set
-	 * @param formula - a set of sets of literals
+	 * Creates a new formula from a clause store
+	 * @param store - a store of encoded sets of literals, it is frozen and not copied
 	 * @param type - formula type
-	 * @param simplify - if true, this constructor simplifies this formula on creation
-	 * @param makecopy - if true, the set of sets of literals is copied
 	 */
-	private SetFormula(Set<Set<Literal>> formula, Type type, boolean simplify, boolean makecopy) {
-		if(!makecopy)
-			this.formula = formula;
-		else
-		{
-			Set<Set<Literal>> set = new HashSet<>();
-			formula.forEach(s -> {
-				if(simplify)
-				{
-					Set<Literal> s2 = removeTautologies(s);
-					if(s2 != null)
-						set.add(s2);
-				}
-				else
-					set.add(s);
-			});
-			this.formula = set;
-		}
+	public SetFormula(ClauseStore store, Type type) {
+		init(store, type);
+	}
+
+	/**
+	 * Creates a new formula from a family of sets of literals
+	 * @param zdd - the sets of literals
+	 * @param type - formula type
+	 */
+	public SetFormula(ZDD zdd, Type type) {
+		this.zdd = zdd;
+		this.type = type;
+	}
+
+	private void init(ClauseStore store, Type type) {
+		store.freeze();
+		this.store = store;
 		this.type = type;
 	}
 
@@ -93,7 +124,7 @@ public class SetFormula {
 	public Type getType() {
 		return type;
 	}
-	
+
 	/**
 	 * @return true if this formula is in CNF, false otherwise
 	 */
@@ -101,7 +132,7 @@ public class SetFormula {
 	{
 		return type == Type.CNF;
 	}
-	
+
 	/**
 	 * @return true if this formula is in DNF, false otherwise
 	 */
@@ -110,50 +141,101 @@ public class SetFormula {
 		return type == Type.DNF;
 	}
 
+	/**
+	 * @return the frozen store that holds the sets of literals of this formula
+	 */
+	public ClauseStore getClauseStore()
+	{
+		return store();
+	}
+
+	/**
+	 * @return the store of this formula, it is created from the ZDD if necessary
+	 */
+	private ClauseStore store()
+	{
+		ClauseStore s = store;
+		if(s == null)
+		{
+			s = zdd.toClauseStore();
+			s.freeze();
+			store = s;
+		}
+		return s;
+	}
+
+	/**
+	 * @return the ZDD of this formula or null if it only has a store
+	 */
+	public ZDD getZDD()
+	{
+		return zdd;
+	}
+
+	/**
+	 * @param manager - a ZDD manager
+	 * @return the ZDD of the sets of literals of this formula in manager, the sets are not enumerated
+	 */
+	public ZDD toZDD(ZDDManager manager)
+	{
+		if(zdd != null)
+			return manager.copy(zdd);
+		return manager.fromClauseStore(store());
+	}
+
+	/**
+	 * @return the manager of the ZDD of this formula or of f, null if neither has a ZDD
+	 */
+	private ZDDManager zddManager(SetFormula f)
+	{
+		return zdd != null?zdd.getManager():f.zdd != null?f.zdd.getManager():null;
+	}
+
+	/**
+	 * @return the number of sets of literals
+	 */
+	public int size()
+	{
+		if(store == null)
+			return zdd.count().min(BigInteger.valueOf(Integer.MAX_VALUE)).intValue();
+		return store.size();
+	}
+
 	/**
 	 * @return formula as set of sets of literals
 	 */
 	public Set<Set<Literal>> asSet() {
 		// Make defensive copy
 		Set<Set<Literal>> set = new HashSet<>();
-		formula.forEach(s -> set.add(new HashSet<>(s)));
+		for(int c = 0;c<store().size();c++)
+			set.add(new HashSet<>(new ClauseView(c)));
 		return set;
 	}
 
 	/**
-	 * @return formula as sets of sets of literals that is unmodifiable (but the inner sets are modifiable)
+	 * @return formula as sets of sets of literals that is unmodifiable (including the inner sets),
+	 * 			the returned set is a view of this formula
 	 */
 	public Set<Set<Literal>> asReadOnlySet() {
-		// No copy, but this does NOT defend against access to inner sets
-		return Collections.unmodifiableSet(formula);
+		return new ClauseSetView();
 	}
-	
+
 	/**
 	 * @return formula as a Formula object
 	 */
 	public Formula asFormula() {
-		if(isCNF())
+		List<Formula> list = new ArrayList<>();
+		for(int c = 0;c<store().size();c++)
 		{
-			List<Formula> list = new ArrayList<>();
-			for(Set<Literal> s:formula)
-			{
-				List<Formula> list2 = new ArrayList<>();
-				s.forEach(l -> list2.add(l.asFormula()));
-				list.add(new ORFormula(list2));
-			}
-			return new ANDFormula(list).simplify();
+			List<Formula> list2 = new ArrayList<>();
+			for(int i = 0;i<store().length(c);i++)
+				list2.add(VariableTable.decode(store().get(c, i)).asFormula());
+			list.add(isCNF()?new ORFormula(list2):new ANDFormula(list2));
 		}
+		if(isCNF())
+			return new ANDFormula(list).simplify();
 		else
-		{
-			List<Formula> list = new ArrayList<>();
-			for(Set<Literal> s:formula)
-			{
-				List<Formula> list2 = new ArrayList<>();
-				s.forEach(l -> list2.add(l.asFormula()));
-				list.add(new ANDFormula(list2));
-			}
 			return new ORFormula(list).simplify();
-		}
 	}
 
 	/**
@@ -164,73 +246,94 @@ public class SetFormula {
 	{
 		if(this.getType() != f.getType())
 			throw new IllegalArgumentException("Formula not of same type");
-		if(this.getType() == Type.CNF) 
+		ZDDManager m = zddManager(f);
+		if(m != null)
 		{
-			Set<Set<Literal>> set = new HashSet<>(this.formula);
-			f.formula.forEach(s -> set.add(s));
-			return new SetFormula(set, Type.CNF, false, false);
+			ZDD a = toZDD(m);
+			ZDD b = f.toZDD(m);
+			return new SetFormula(getType() == Type.CNF?a.union(b).minimize():a.minimalProduct(b), getType());
 		}
+		if(this.getType() == Type.CNF)
+			return new SetFormula(union(this.store(), f.store()), Type.CNF);
 		else
-		{
-			Set<Set<Literal>> result = new HashSet<>();
-			this.formula.forEach(s1 -> {
-				f.formula.forEach(s2 -> {
-					Set<Literal> set = new HashSet<>(s1);
-					set.addAll(s2);
-					set = removeTautologies(set);
-					if(set != null)
-						result.add(set);
-				});
-			});
-			return new SetFormula(result, Type.DNF, false, false);
-		}
+			return new SetFormula(product(this.store(), f.store()), Type.DNF);
 	}
-	
+
 	/**
 	 * @param f - another formula
-	 * @return the logical disjunction with f 
+	 * @return the logical disjunction with f
 	 */
 	public SetFormula or(SetFormula f)
 	{
 		if(this.getType() != f.getType())
 			throw new IllegalArgumentException("Formula not of same type");
-		if(this.getType() == Type.DNF)
+		ZDDManager m = zddManager(f);
+		if(m != null)
 		{
-			Set<Set<Literal>> set = new HashSet<>(this.formula);
-			f.formula.forEach(s -> set.add(s));
-			return new SetFormula(set, Type.DNF, false, false);
+			ZDD a = toZDD(m);
+			ZDD b = f.toZDD(m);
+			return new SetFormula(getType() == Type.DNF?a.union(b).minimize():a.minimalProduct(b), getType());
 		}
+		if(this.getType() == Type.DNF)
+			return new SetFormula(union(this.store(), f.store()), Type.DNF);
 		else
+			return new SetFormula(product(this.store(), f.store()), Type.CNF);
+	}
+
+	/**
+	 * @return the union of the sets of literals of s1 and s2 without subsumed sets, see {@link SubsumptionFilter}
+	 */
+	private static ClauseStore union(ClauseStore s1, ClauseStore s2)
+	{
+		SubsumptionFilter result = new SubsumptionFilter();
+		addAll(result, s1);
+		addAll(result, s2);
+		return result.toClauseStore();
+	}
+
+	private static void addAll(SubsumptionFilter filter, ClauseStore s)
+	{
+		int[] arena = s.arena();
+		for(int c = 0;c<s.size();c++)
+			filter.add(arena, s.start(c), s.length(c));
+	}
+
+	/**
+	 * @return the set of all unions of a set of literals of s1 and a set of literals of s2,
+	 * 			without tautologies and subsumed sets
+	 */
+	private static ClauseStore product(ClauseStore s1, ClauseStore s2)
+	{
+		SubsumptionFilter result = new SubsumptionFilter();
+		int[] a1 = s1.arena();
+		int[] a2 = s2.arena();
+		int[] buffer = new int[16];
+		for(int c1 = 0;c1<s1.size();c1++)
 		{
-			Set<Set<Literal>> result = new HashSet<>();
-			this.formula.forEach(s1 -> {
-				f.formula.forEach(s2 -> {
-					Set<Literal> set = new HashSet<>(s1);
-					set.addAll(s2);
-					set = removeTautologies(set);
-					if(set != null)
-						result.add(set);
-				});
-			});
-			return new SetFormula(result, Type.CNF, false, false);
+			for(int c2 = 0;c2<s2.size();c2++)
+			{
+				int length = s1.length(c1)+s2.length(c2);
+				if(buffer.length < length)
+					buffer = new int[2*length];
+				int n = ClauseStore.merge(a1, s1.start(c1), s1.length(c1), a2, s2.start(c2), s2.length(c2), buffer);
+				if(n >= 0)
+					result.add(buffer, 0, n);
+			}
 		}
+		return result.toClauseStore();
 	}
-	
+
 	/**
 	 * @return the logical negation of this formula
 	 */
 	public SetFormula negate()
 	{
-		Set<Set<Literal>> set = new HashSet<>();
-		this.formula.forEach(s -> {
-			Set<Literal> set2 = new HashSet<>();
-			s.forEach(l -> set2.add(l.negate()));
-			set.add(set2);
-		});
 		Type t = this.isCNF()?Type.DNF:Type.CNF;
-		return new SetFormula(set, t, false, false);
+		if(zdd != null)
+			return new SetFormula(zdd.negate(), t);
+		return new SetFormula(store().negate(), t);
 	}
-	
+
 	/**
 	 * Returns a horn formula if possible
 	 * @return a HornFormula object if this is a horn formula, null otherwise
@@ -240,124 +343,263 @@ public class SetFormula {
 		if(!this.isCNF())
 			return null;
 		Set<Pair<Set<AtomicFormula>, AtomicFormula>> set = new HashSet<>();
-		for(Set<Literal> s:formula)
+		for(int c = 0;c<store().size();c++)
 		{
-			Set<AtomicFormula> positive = new HashSet<>();
 			Set<AtomicFormula> negative = new HashSet<>();
-			s.forEach(l -> {
-				if(l.isPositive())
-					positive.add(l.getFormula());
+			AtomicFormula positive = null;
+			for(int i = 0;i<store().length(c);i++)
+			{
+				int l = store().get(c, i);
+				AtomicFormula a = VariableTable.getAtomicFormula(l>>1);
+				if((l&1) == 1)
+					negative.add(a);
+				else if(positive != null)
+					return null; // this is not a horn formula
 				else
-					negative.add(l.getFormula());
-			});
-			if(positive.size() > 1)
-				return null; // this is not a horn formula
-			if(positive.size() == 1)
-				set.add(new Pair<>(negative, positive.iterator().next()));
-			else
-				set.add(new Pair<>(negative, null));
+					positive = a;
+			}
+			set.add(new Pair<>(negative, positive));
 		}
 		return new HornFormula(set);
 	}
 
 	/**
-	 * Removes statements as A AND NOT(A) or A OR NOT(A)
-	 * 
-	 * @param set
-	 *            - set of literals to be simplified
-	 * @return  null if the set has a subset of the form {A,NOT(A)},
-	 *         and set otherwise
+	 * Computes the resolvent of this formula in CNF
+	 * @return the resolvent Res
 	 */
-	private static Set<Literal> removeTautologies(Set<Literal> set) {
-		Set<Literal> newSet = new HashSet<>();
-		for (Literal l : set) {
-			if (newSet.contains(l.negate()))
-				return null;
-			newSet.add(l);
+	public SetFormula resolvent()
+	{
+		if(!isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		if(zdd != null)
+			return new SetFormula(zdd.union(zdd.resolvents()), Type.CNF);
+		ClauseStore result = new ClauseStore(store());
+		int[] arena = store().arena();
+		int[] buffer = new int[16];
+		for(int c1 = 0;c1<store().size();c1++)
+		{
+			for(int c2 = 0;c2<store().size();c2++)
+			{
+				int s1 = store().start(c1);
+				int s2 = store().start(c2);
+				int n1 = store().length(c1);
+				int n2 = store().length(c2);
+				if(buffer.length < n1+n2)
+					buffer = new int[2*(n1+n2)];
+				// Resolve on every literal l in c1 such that NOT(l) is in c2
+				int j = 0;
+				for(int i = 0;i<n1;i++)
+				{
+					int l = arena[s1+i];
+					while(j < n2 && arena[s2+j] < (l & ~1))
+						j++;
+					if(j < n2 && arena[s2+j] == (l^1))
+					{
+						int n = resolution(arena, s1, n1, s2, n2, l, buffer);
+						if(n >= 0)
+							result.addSorted(buffer, 0, n);
+					}
+				}
+			}
 		}
-		return newSet;
+		return new SetFormula(result, Type.CNF);
 	}
-	
-	
+
 	/**
-	 * Computes the intersection of literals:
-	 * 
-	 * @param set1 - a set of literals
-	 * @param set2 - a set of literals
-	 * @return a set of literals L such that L is in set1 and NOT(L) is in set2
+	 * Computes the resolution of two sorted sets of encoded literals with respect to a literal
+	 * @param l - a literal such that l is in the first set and NOT(l) is in the second set
+	 * @return the length of (set1 - {l}) U (set2 - {NOT(L)}) written to out or -1 if it is a tautology
 	 */
-	private static Set<Literal> literalIntersection(Set<Literal> set1, Set<Literal> set2)
+	static int resolution(int[] arena, int s1, int n1, int s2, int n2, int l, int[] out)
 	{
-		Set<Literal> literalSet = new HashSet<>();
-		set1.forEach(l -> {
-			if(set2.contains(l.negate()))
-				literalSet.add(l);
-		});
-		return literalSet;
+		int i = s1;
+		int j = s2;
+		int n = 0;
+		while(i < s1+n1 || j < s2+n2)
+		{
+			int x;
+			if(j == s2+n2 || (i < s1+n1 && arena[i] < arena[j]))
+				x = arena[i++];
+			else if(i == s1+n1 || arena[j] < arena[i])
+				x = arena[j++];
+			else
+			{
+				x = arena[i++];
+				j++;
+			}
+			if((x>>1) == (l>>1))
+				continue;
+			if(n > 0 && out[n-1] == (x^1))
+				return -1;
+			out[n++] = x;
+		}
+		return n;
 	}
 	
 	/**
-	 * Computes the resolution of two literal sets with respect to a literal
-	 * @param set1 - a set of literals
-	 * @param set2 - a set of literals 
-	 * @param l - a literal such that l is in set1 and NOT(l) is in set2
-	 * @return the resolution of set1 and set2, i.e. (set1 - {l}) U (set2 - {NOT(L)})
+	 * Computes the closure of this formula in CNF under resolution, i.e. Res*.
+	 * Every pair of clauses is resolved once: a clause is resolved with all clauses before it, including the resolvents
+	 * that were added before it, so no resolvent is computed twice and no fixpoint test is needed.
+	 * For a refutation, {@link #refute()} is much faster.
+	 * @return the set of all clauses that can be derived by resolution
 	 */
-	private static Set<Literal> resolution(Set<Literal> set1, Set<Literal> set2, Literal l)
+	public SetFormula resolventSet()
 	{
-		Set<Literal> resolvent = new HashSet<>(set1);
-		resolvent.remove(l);
-		Set<Literal> tmp = new HashSet<>(set2);
-		tmp.remove(l.negate());
-		resolvent.addAll(tmp);
-		return resolvent;
+		if(!isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		if(zdd != null)
+		{
+			SetFormula oldRes = this;
+			SetFormula newRes = this.resolvent();
+			while(!oldRes.equals(newRes))
+			{
+				oldRes = newRes;
+				newRes = newRes.resolvent();
+			}
+			return oldRes;
+		}
+		ClauseStore result = new ClauseStore(store());
+		int[] buffer = new int[16];
+		List<int[]> resolvents = new ArrayList<>();
+		for(int c2 = 0;c2<result.size();c2++)
+		{
+			for(int c1 = 0;c1<c2;c1++)
+			{
+				// The arena grows with the resolvents, they are added after the pair has been resolved
+				int[] arena = result.arena();
+				int s1 = result.start(c1);
+				int s2 = result.start(c2);
+				int n1 = result.length(c1);
+				int n2 = result.length(c2);
+				if(buffer.length < n1+n2)
+					buffer = new int[2*(n1+n2)];
+				int j = 0;
+				for(int i = 0;i<n1;i++)
+				{
+					int l = arena[s1+i];
+					while(j < n2 && arena[s2+j] < (l & ~1))
+						j++;
+					if(j < n2 && arena[s2+j] == (l^1))
+					{
+						int n = resolution(arena, s1, n1, s2, n2, l, buffer);
+						if(n >= 0)
+							resolvents.add(Arrays.copyOf(buffer, n));
+					}
+				}
+				for(int[] r:resolvents)
+					result.addSorted(r, 0, r.length);
+				resolvents.clear();
+			}
+		}
+		return new SetFormula(result, Type.CNF);
 	}
-	
+
 	/**
-	 * Computes the resolvent of this formula in CNF
-	 * @return the resolvent Res
+	 * Searches a resolution refutation of this formula in CNF with a {@link ResolutionProver}
+	 * @return the refutation, the last step is the empty clause, or null if this formula is satisfiable
 	 */
-	public SetFormula resolvent()
+	public List<ResolutionProver.Step> refute()
 	{
 		if(!isCNF())
 			throw new IllegalStateException("Formula is not in CNF");
-		Set<Set<Literal>> newSet = new HashSet<>();
-		formula.forEach(set1 -> {
-			formula.forEach(set2 ->{
-				Set<Literal> literalSet = literalIntersection(set1, set2);
-				literalSet.forEach(l -> newSet.add(resolution(set1, set2, l)));
-			});
-		});
-		newSet.addAll(formula);
-		return new SetFormula(newSet, Type.CNF);
+		ResolutionProver prover = new ResolutionProver();
+		prover.setOrdered(true);
+		prover.prove(this);
+		return prover.getRefutation();
 	}
-	
-	public SetFormula resolventSet()
+
+	/**
+	 * Counts the models of this formula over its variables, see {@link ModelCounter}.
+	 * A formula in DNF is counted by the complement of its negation.
+	 * @return the number of assignments of the variables of this formula that satisfy it
+	 */
+	public BigInteger countModels()
 	{
-		SetFormula oldRes = this;
-		SetFormula newRes = this.resolvent();
-		while(!oldRes.equals(newRes))
-		{
-			oldRes = newRes;
-			newRes = newRes.resolvent();
-		}
-		return oldRes;
+		if(isCNF())
+			return new ModelCounter().count(this);
+		ClauseStore cnf = negate().getClauseStore();
+		BitSet variables = ModelCounter.variables(cnf);
+		return BigInteger.ONE.shiftLeft(variables.cardinality()).subtract(new ModelCounter().count(cnf, variables));
 	}
-	
+
+	/**
+	 * Enumerates the models of this formula in CNF lazily, see {@link ModelEnumerator}
+	 * @return a stream of the models of this formula over its variables
+	 */
+	public Stream<Model> models()
+	{
+		return ModelEnumerator.models(this);
+	}
+
+	/**
+	 * Checks the satisfiability of this formula in CNF with a CDCL solver
+	 * @return true iff this formula is satisfiable
+	 */
 	public boolean isSatisfiable()
 	{
 		if(!isCNF())
 			throw new IllegalStateException("Formula is not in CNF");
-		SetFormula s = this;
-		SetFormula r = s.resolvent();
-		while(!r.equals(s))
+		return new SATSolver(this).solve();
+	}
+
+	/**
+	 * Checks the satisfiability of this formula in CNF with a CDCL solver that writes a DRAT proof.
+	 * If this formula is unsatisfiable, the proof can be checked by {@link DratChecker#check(SetFormula, java.nio.file.Path)}.
+	 * @param proof - receives the proof, it is flushed but not closed
+	 * @return true iff this formula is satisfiable
+	 * @throws UncheckedIOException if the proof can not be written
+	 */
+	public boolean isSatisfiable(DratWriter proof)
+	{
+		if(!isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		boolean sat = new SATSolver(this, proof).solve();
+		try
 		{
-			s = r;
-			r = r.resolvent();
-			if(r.asReadOnlySet().contains(new HashSet<>()))
-				return false;
+			proof.flush();
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
 		}
-		return true;
+		return sat;
+	}
+
+	/**
+	 * Checks the satisfiability of this formula in CNF with a portfolio of parallel CDCL solvers
+	 * @param threads - the number of solvers
+	 * @return true iff this formula is satisfiable
+	 */
+	public boolean isSatisfiable(int threads)
+	{
+		return new SATPortfolio(threads).solve(this);
+	}
+
+	/**
+	 * Computes a model of this formula in CNF with a CDCL solver
+	 * @return a model of this formula or null if this formula is not satisfiable
+	 */
+	public Model findModel()
+	{
+		if(!isCNF())
+			throw new IllegalStateException("Formula is not in CNF");
+		SATSolver solver = new SATSolver(this);
+		if(!solver.solve())
+			return null;
+		return solver.getModel();
+	}
+
+	/**
+	 * Computes a model of this formula in CNF with a portfolio of parallel CDCL solvers
+	 * @param threads - the number of solvers
+	 * @return a model of this formula or null if this formula is not satisfiable
+	 */
+	public Model findModel(int threads)
+	{
+		SATPortfolio portfolio = new SATPortfolio(threads);
+		if(!portfolio.solve(this))
+			return null;
+		return portfolio.getModel();
 	}
 
 	@Override
@@ -366,14 +608,141 @@ public class SetFormula {
 		if(!(obj instanceof SetFormula))
 			return false;
 		SetFormula f = (SetFormula) obj;
-		return f.getType() == this.getType() && f.formula.equals(this.formula);
+		if(f.getType() != this.getType() || f.hashCode() != hashCode())
+			return false;
+		ZDDManager m = zddManager(f);
+		if(m != null)
+			return toZDD(m).equals(f.toZDD(m));
+		return f.store().equals(this.store());
 	}
 
 	@Override
-	public String toString() 
+	public int hashCode()
 	{
-		return LogicHelper.setOfSetToString(formula);
+		if(!hashed)
+		{
+			// The signature of a ZDD is computed on the diagram, it equals the signature of the store
+			long s = store == null?zdd.signature():store.signature();
+			hash = (int) (s ^ (s >>> 32)) + type.hashCode();
+			hashed = true;
+		}
+		return hash;
+	}
+
+	@Override
+	public String toString()
+	{
+		return LogicHelper.setOfSetToString(asReadOnlySet());
+	}
+
+	/**
+	 * Read only view of the sets of literals
+	 */
+	private class ClauseSetView extends AbstractSet<Set<Literal>>
+	{
+		@Override
+		public Iterator<Set<Literal>> iterator()
+		{
+			return new Iterator<Set<Literal>>() {
+				int c = 0;
+
+				@Override
+				public boolean hasNext()
+				{
+					return c < store().size();
+				}
+
+				@Override
+				public Set<Literal> next()
+				{
+					if(!hasNext())
+						throw new NoSuchElementException();
+					return new ClauseView(c++);
+				}
+			};
+		}
+
+		@Override
+		public int size()
+		{
+			return store().size();
+		}
+
+		@Override
+		public boolean contains(Object o)
+		{
+			if(!(o instanceof Set))
+				return false;
+			Set<?> set = (Set<?>) o;
+			int[] lits = new int[set.size()];
+			int n = 0;
+			for(Object e:set)
+			{
+				if(!(e instanceof Literal))
+					return false;
+				Literal l = (Literal) e;
+				int v = VariableTable.findIndex(l.getFormula());
+				if(v < 0)
+					return false;
+				lits[n++] = (v<<1) | (l.isPositive()?0:1);
+			}
+			n = ClauseStore.normalize(lits, n);
+			return n == set.size() && store().indexOf(lits, 0, n) >= 0;
+		}
+	}
+
+	/**
+	 * Read only view of a single set of literals
+	 */
+	private class ClauseView extends AbstractSet<Literal>
+	{
+		private final int clause;
+
+		ClauseView(int clause)
+		{
+			this.clause = clause;
+		}
+
+		@Override
+		public Iterator<Literal> iterator()
+		{
+			return new Iterator<Literal>() {
+				int i = 0;
+
+				@Override
+				public boolean hasNext()
+				{
+					return i < store().length(clause);
+				}
+
+				@Override
+				public Literal next()
+				{
+					if(!hasNext())
+						throw new NoSuchElementException();
+					return VariableTable.decode(store().get(clause, i++));
+				}
+			};
+		}
+
+		@Override
+		public int size()
+		{
+			return store().length(clause);
+		}
+
+		@Override
+		public boolean contains(Object o)
+		{
+			if(!(o instanceof Literal))
+				return false;
+			Literal l = (Literal) o;
+			int v = VariableTable.findIndex(l.getFormula());
+			if(v < 0)
+				return false;
+			int lit = (v<<1) | (l.isPositive()?0:1);
+			int from = store().start(clause);
+			return Arrays.binarySearch(store().arena(), from, from+store().length(clause), lit) >= 0;
+		}
 	}
-	
-	
 }
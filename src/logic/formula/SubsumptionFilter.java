@@ -0,0 +1,287 @@
+package logic.formula;
+
+import java.util.Arrays;
+
+/**
+ * Collects clauses and keeps them subsumption-free: a clause is rejected if a clause that is a subset of it
+ * has been added before (forward subsumption) and removes all clauses that are supersets of it (backward subsumption).
+ * Duplicates are rejected as well. This is the absorption law, it holds for clauses of a CNF and terms of a DNF alike.
+ * <br>
+ * Every clause has a 64-bit signature with one bit per literal. D can only be a subset of C if the signature of D
+ * has no bit that the signature of C lacks, most candidates are rejected by this test without comparing literals.
+ * The candidates are found with two occurrence indices: every clause is listed under each of its literals
+ * for backward subsumption and under its smallest literal only for forward subsumption.
+ * The lists are kept in a hash table, so the memory only depends on the literals that occur.
+ */
+final class SubsumptionFilter
+{
+	private int[] arena = new int[64];
+	private int arenaSize;
+	private int[] start = new int[17];
+	private long[] signatures = new long[16];
+	private boolean[] removed = new boolean[16];
+	private int count;
+	private int live;
+	private boolean empty;
+
+	// Open addressing map from literals to their occurrence lists, list[0] is the length of a list
+	private int[] keys = new int[16]; // literal + 1, 0 means empty slot
+	private int[][] occ = new int[16][];
+	private int[][] first = new int[16][];
+	private int keyCount;
+
+	/**
+	 * @param lit - an encoded literal
+	 * @return the bit of lit in a signature
+	 */
+	static long signature(int lit)
+	{
+		return 1L << ((lit*0x9E3779B9) >>> 26);
+	}
+
+	/**
+	 * @return the signature of the clause lits[from],...,lits[from+length-1]
+	 */
+	static long signature(int[] lits, int from, int length)
+	{
+		long s = 0;
+		for(int i = from;i<from+length;i++)
+			s |= signature(lits[i]);
+		return s;
+	}
+
+	/**
+	 * Adds the clause lits[from],...,lits[from+length-1] which must be sorted, duplicate free and not a tautology
+	 * @return false if the clause is subsumed by a clause of this filter
+	 */
+	boolean add(int[] lits, int from, int length)
+	{
+		if(empty)
+			return false;
+		if(length == 0)
+		{
+			// The empty clause subsumes every clause
+			Arrays.fill(removed, 0, count, true);
+			live = 0;
+			empty = true;
+			return true;
+		}
+		long sig = signature(lits, from, length);
+		if(isSubsumed(lits, from, length, sig))
+			return false;
+		removeSubsumed(lits, from, length, sig);
+		store(lits, from, length, sig);
+		return true;
+	}
+
+	/**
+	 * Forward subsumption: every subset D of C has its smallest literal in C
+	 */
+	private boolean isSubsumed(int[] lits, int from, int length, long sig)
+	{
+		for(int i = from;i<from+length;i++)
+		{
+			int l = lits[i];
+			int slot = find(l);
+			if(slot < 0 || first[slot] == null)
+				continue;
+			int[] list = first[slot];
+			for(int k = 1;k<=list[0];k++)
+			{
+				int d = list[k];
+				if(removed[d] || (signatures[d] & ~sig) != 0)
+					continue;
+				int s = start[d];
+				int n = start[d+1]-s;
+				// D starts with l, so its literals are compared with the tail of C
+				if(n <= from+length-i && isSubset(arena, s, n, lits, i, from+length-i))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Backward subsumption: every superset D of C occurs in the list of each literal of C, the shortest list is searched
+	 */
+	private void removeSubsumed(int[] lits, int from, int length, long sig)
+	{
+		int[] best = null;
+		for(int i = from;i<from+length;i++)
+		{
+			int slot = find(lits[i]);
+			if(slot < 0)
+				return; // no clause contains the literal
+			int[] list = occ[slot];
+			if(best == null || list[0] < best[0])
+				best = list;
+		}
+		int size = best[0];
+		int n = 0;
+		for(int k = 1;k<=size;k++)
+		{
+			int d = best[k];
+			if(removed[d])
+				continue; // drop removed clauses from the list
+			if((sig & ~signatures[d]) == 0)
+			{
+				int s = start[d];
+				if(start[d+1]-s >= length && isSubset(lits, from, length, arena, s, start[d+1]-s))
+				{
+					removed[d] = true;
+					live--;
+					continue;
+				}
+			}
+			best[++n] = d;
+		}
+		best[0] = n;
+	}
+
+	/**
+	 * @return true iff the sorted clause a is a subset of the sorted clause b
+	 */
+	private static boolean isSubset(int[] a, int aFrom, int aLength, int[] b, int bFrom, int bLength)
+	{
+		int j = bFrom;
+		int bEnd = bFrom+bLength;
+		for(int i = aFrom;i<aFrom+aLength;i++)
+		{
+			int l = a[i];
+			while(j < bEnd && b[j] < l)
+				j++;
+			if(j == bEnd || b[j] != l)
+				return false;
+			j++;
+		}
+		return true;
+	}
+
+	private void store(int[] lits, int from, int length, long sig)
+	{
+		if(count == signatures.length)
+		{
+			start = Arrays.copyOf(start, 2*count+1);
+			signatures = Arrays.copyOf(signatures, 2*count);
+			removed = Arrays.copyOf(removed, 2*count);
+		}
+		if(arenaSize+length > arena.length)
+			arena = Arrays.copyOf(arena, Math.max(2*arena.length, arenaSize+length));
+		System.arraycopy(lits, from, arena, arenaSize, length);
+		arenaSize += length;
+		int c = count++;
+		start[count] = arenaSize;
+		signatures[c] = sig;
+		live++;
+		for(int i = from;i<from+length;i++)
+		{
+			int slot = insert(lits[i]);
+			occ[slot] = append(occ[slot], c);
+			if(i == from)
+				first[slot] = append(first[slot], c);
+		}
+	}
+
+	private static int mix(int lit)
+	{
+		int h = lit*0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * @return the slot of lit or -1 if lit does not occur
+	 */
+	private int find(int lit)
+	{
+		int mask = keys.length-1;
+		for(int slot = mix(lit) & mask;keys[slot] != 0;slot = (slot+1) & mask)
+		{
+			if(keys[slot] == lit+1)
+				return slot;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the slot of lit, a new slot is created if necessary
+	 */
+	private int insert(int lit)
+	{
+		int mask = keys.length-1;
+		int slot = mix(lit) & mask;
+		for(;keys[slot] != 0;slot = (slot+1) & mask)
+		{
+			if(keys[slot] == lit+1)
+				return slot;
+		}
+		if(2*(keyCount+1) > keys.length)
+		{
+			rehash();
+			return insert(lit);
+		}
+		keys[slot] = lit+1;
+		occ[slot] = new int[4];
+		keyCount++;
+		return slot;
+	}
+
+	private void rehash()
+	{
+		int[] oldKeys = keys;
+		int[][] oldOcc = occ;
+		int[][] oldFirst = first;
+		keys = new int[2*oldKeys.length];
+		occ = new int[keys.length][];
+		first = new int[keys.length][];
+		int mask = keys.length-1;
+		for(int i = 0;i<oldKeys.length;i++)
+		{
+			if(oldKeys[i] == 0)
+				continue;
+			int slot = mix(oldKeys[i]-1) & mask;
+			while(keys[slot] != 0)
+				slot = (slot+1) & mask;
+			keys[slot] = oldKeys[i];
+			occ[slot] = oldOcc[i];
+			first[slot] = oldFirst[i];
+		}
+	}
+
+	private static int[] append(int[] list, int c)
+	{
+		if(list == null)
+			list = new int[4];
+		else if(list[0]+1 == list.length)
+			list = Arrays.copyOf(list, 2*list.length);
+		list[++list[0]] = c;
+		return list;
+	}
+
+	/**
+	 * @return the number of clauses that are not subsumed
+	 */
+	int size()
+	{
+		return live;
+	}
+
+	/**
+	 * @return a store with all clauses that have not been subsumed
+	 */
+	ClauseStore toClauseStore()
+	{
+		if(empty)
+		{
+			ClauseStore s = new ClauseStore(1, 0);
+			s.add();
+			return s;
+		}
+		ClauseStore s = new ClauseStore(live, arenaSize);
+		for(int c = 0;c<count;c++)
+		{
+			if(!removed[c])
+				s.addSorted(arena, start[c], start[c+1]-start[c]);
+		}
+		return s;
+	}
+}
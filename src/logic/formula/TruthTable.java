@@ -0,0 +1,244 @@
+package logic.formula;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Evaluates formulas over all assignments of their atomic formulas, 64 assignments at a time.
+ * <br>
+ * The atomic formulas are numbered 0,...,n-1 and the assignment with index k maps the i-th atomic formula to bit i of k.
+ * A word w of 64 bits holds the values of the assignments 64*w,...,64*w+63: the atomic formulas 0,...,5
+ * have the same fixed bit patterns in every word and the atomic formulas 6,...,n-1 are constant within a word.
+ * The formula is compiled to a {@link CompiledFormula} and evaluated on whole words with bitwise operations,
+ * the words are split among the tasks of a ForkJoin pool. Shared subformulas are evaluated once per word.
+ * <br>
+ * The constants TRUE and FALSE are evaluated and not enumerated.
+ */
+public class TruthTable
+{
+	private static final long[] PATTERNS = {
+		0xAAAAAAAAAAAAAAAAL, 0xCCCCCCCCCCCCCCCCL, 0xF0F0F0F0F0F0F0F0L,
+		0xFF00FF00FF00FF00L, 0xFFFF0000FFFF0000L, 0xFFFFFFFF00000000L
+	};
+
+	// Number of words evaluated sequentially by a task
+	private static final long THRESHOLD = 1 << 10;
+	// Number of words every instruction is applied to at once
+	private static final int BLOCK = 64;
+
+	private final CompiledFormula program;
+	// Register of the values of the assignments and register of the second formula that is compared, or -1
+	private final int result;
+	private final int other;
+
+	private TruthTable(CompiledFormula program)
+	{
+		this.program = program;
+		this.result = program.getResultRegister(0);
+		this.other = program.getNumberOfResults() > 1?program.getResultRegister(1):-1;
+	}
+
+	/**
+	 * Searches a model of f
+	 * @param f - a formula
+	 * @return a model of f or null if f is not satisfiable
+	 */
+	public static Model findModel(Formula f)
+	{
+		TruthTable t = new TruthTable(CompiledFormula.compile(f));
+		return t.toModel(t.findFirst());
+	}
+
+	/**
+	 * @param f - a formula
+	 * @param g - a formula
+	 * @return true iff f and g are true in exactly the same interpretations
+	 */
+	public static boolean isEquivalent(Formula f, Formula g)
+	{
+		return new TruthTable(CompiledFormula.compile(f, g)).findFirst() < 0;
+	}
+
+	/**
+	 * @param f - a formula
+	 * @return the number of interpretations of the atomic formulas of f that are models of f
+	 */
+	public static long countModels(Formula f)
+	{
+		TruthTable t = new TruthTable(CompiledFormula.compile(f));
+		return ForkJoinPool.commonPool().invoke(new CountTask(t, 0, t.wordCount()));
+	}
+
+	/**
+	 * @return the number of words of 64 assignments
+	 */
+	private long wordCount()
+	{
+		int n = program.getNumberOfSlots();
+		if(n > 62)
+			throw new IllegalArgumentException("Too many atomic formulas: "+n);
+		return n <= 6?1:1L << (n-6);
+	}
+
+	/**
+	 * Evaluates the program on the words w,...,w+BLOCK-1, every instruction is applied to the whole block
+	 * @param regs - registers of the program, the registers of the atomic formulas 0,...,5 hold their patterns
+	 * @return the values of the assignments 64*w,...,64*(w+BLOCK)-1, one word per entry
+	 */
+	private long[] evaluate(long w, long[][] regs)
+	{
+		int n = program.getNumberOfSlots();
+		for(int i = 6;i<n;i++)
+		{
+			long[] v = regs[i];
+			for(int k = 0;k<BLOCK;k++)
+				v[k] = (((w+k) >>> (i-6)) & 1) == 0?0:-1L;
+		}
+		program.evaluate(regs, BLOCK);
+		long[] r = regs[result];
+		if(other >= 0)
+		{
+			long[] s = regs[other];
+			for(int k = 0;k<BLOCK;k++)
+				r[k] ^= s[k];
+		}
+		return r;
+	}
+
+	private long[][] newRegisters()
+	{
+		long[][] regs = program.newRegisters(BLOCK);
+		for(int i = 0;i<program.getNumberOfSlots() && i<6;i++)
+			Arrays.fill(regs[i], PATTERNS[i]);
+		return regs;
+	}
+
+	/**
+	 * @param k - index of a word in a block
+	 * @param hi - end of the range of words of a task
+	 * @return the mask of the valid assignments of the k-th word of the block starting at word w
+	 */
+	private long validMask(long w, int k, long hi)
+	{
+		if(w+k >= hi)
+			return 0;
+		int n = program.getNumberOfSlots();
+		return n >= 6?-1L:(1L << (1 << n))-1;
+	}
+
+	/**
+	 * @return the index of an assignment that satisfies the program or -1 if there is none
+	 */
+	private long findFirst()
+	{
+		AtomicLong found = new AtomicLong(-1);
+		ForkJoinPool.commonPool().invoke(new SearchTask(this, 0, wordCount(), found));
+		return found.get();
+	}
+
+	private Model toModel(long assignment)
+	{
+		if(assignment < 0)
+			return null;
+		BitSet values = new BitSet();
+		List<AtomicFormula> atoms = program.getAtomicFormulas();
+		for(int i = 0;i<atoms.size();i++)
+		{
+			if(((assignment >>> i) & 1) != 0)
+				values.set(VariableTable.getIndex(atoms.get(i)));
+		}
+		return new Model(values);
+	}
+
+	/**
+	 * Searches the words lo,...,hi-1 for a satisfying assignment and stops as soon as any task found one
+	 */
+	private static final class SearchTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final TruthTable table;
+		private final long lo;
+		private final long hi;
+		private final AtomicLong found;
+
+		SearchTask(TruthTable table, long lo, long hi, AtomicLong found)
+		{
+			this.table = table;
+			this.lo = lo;
+			this.hi = hi;
+			this.found = found;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(found.get() >= 0)
+				return;
+			if(hi-lo > THRESHOLD)
+			{
+				long mid = (lo+hi) >>> 1;
+				invokeAll(new SearchTask(table, lo, mid, found), new SearchTask(table, mid, hi, found));
+				return;
+			}
+			long[][] regs = table.newRegisters();
+			for(long w = lo;w<hi && found.get() < 0;w += BLOCK)
+			{
+				long[] r = table.evaluate(w, regs);
+				for(int k = 0;k<BLOCK;k++)
+				{
+					long m = r[k] & table.validMask(w, k, hi);
+					if(m != 0)
+					{
+						found.compareAndSet(-1, 64*(w+k) + Long.numberOfTrailingZeros(m));
+						return;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the satisfying assignments of the words lo,...,hi-1
+	 */
+	private static final class CountTask extends RecursiveTask<Long>
+	{
+		private static final long serialVersionUID = 1L;
+		private final TruthTable table;
+		private final long lo;
+		private final long hi;
+
+		CountTask(TruthTable table, long lo, long hi)
+		{
+			this.table = table;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected Long compute()
+		{
+			if(hi-lo > THRESHOLD)
+			{
+				long mid = (lo+hi) >>> 1;
+				CountTask left = new CountTask(table, lo, mid);
+				left.fork();
+				long right = new CountTask(table, mid, hi).compute();
+				return left.join() + right;
+			}
+			long[][] regs = table.newRegisters();
+			long count = 0;
+			for(long w = lo;w<hi;w += BLOCK)
+			{
+				long[] r = table.evaluate(w, regs);
+				for(int k = 0;k<BLOCK;k++)
+					count += Long.bitCount(r[k] & table.validMask(w, k, hi));
+			}
+			return count;
+		}
+	}
+}
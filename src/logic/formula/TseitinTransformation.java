@@ -0,0 +1,337 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Translates formulas into equisatisfiable clauses in linear time and writes them into a {@link ClauseSink}.
+ * <br>
+ * Every AND and OR node with at least two arguments gets a fresh variable v and clauses that define v by its arguments.
+ * NOT nodes and the constants TRUE and FALSE do not need variables, the constants are propagated.
+ * Equal subformulas are defined only once, also across several calls of the same transformation.
+ * <br>
+ * In the Plaisted-Greenbaum mode only the implications that are needed for the polarities of a node are added,
+ * e.g. v -&gt; AND(a,b) but not AND(a,b) -&gt; v if the node only occurs positively. This roughly halves the number of clauses,
+ * the result is still equisatisfiable.
+ * <br>
+ * Fresh variables are the auxiliary variables 0,1,2,... of the prefix from {@link VariableTable#getAuxiliaryVariable(String, int)},
+ * skipping the variables of the input formulas. So the variable table does not grow with every transformation,
+ * but the fresh variables are only unique within one transformation: the clauses of two transformations with the same
+ * prefix must not be combined, a transformation can instead assert any number of formulas.
+ * The formulas are traversed with an explicit stack, so deep formulas do not overflow the stack.
+ */
+public class TseitinTransformation
+{
+	private static final int POSITIVE = 1;
+	private static final int NEGATIVE = 2;
+	private static final int BOTH = POSITIVE | NEGATIVE;
+
+	// Encoded literals of the constants
+	private static final int TRUE_LITERAL = VariableTable.TRUE << 1;
+	private static final int FALSE_LITERAL = TRUE_LITERAL | 1;
+
+	private final ClauseSink sink;
+	private final boolean plaistedGreenbaum;
+	private String prefix = "X_";
+
+	// Literal of every visited node and the polarities whose clauses have been added
+	private final Map<Formula, int[]> nodes = new HashMap<>();
+	private final BitSet auxiliary = new BitSet();
+	private final BitSet inputs = new BitSet();
+	private int fresh;
+	private int clauseCount;
+	private int[] clause = new int[16];
+
+	/**
+	 * Creates a full Tseitin transformation
+	 * @param sink - receives the clauses
+	 */
+	public TseitinTransformation(ClauseSink sink)
+	{
+		this(sink, false);
+	}
+
+	/**
+	 * @param sink - receives the clauses
+	 * @param plaistedGreenbaum - true to only add the clauses required by the polarities of the subformulas
+	 */
+	public TseitinTransformation(ClauseSink sink, boolean plaistedGreenbaum)
+	{
+		this.sink = sink;
+		this.plaistedGreenbaum = plaistedGreenbaum;
+	}
+
+	/**
+	 * Transforms a formula into equisatisfiable clauses
+	 * @param f - a formula
+	 * @param plaistedGreenbaum - true for the Plaisted-Greenbaum mode
+	 * @return the formula in CNF
+	 */
+	public static SetFormula transform(Formula f, boolean plaistedGreenbaum)
+	{
+		ClauseStore store = new ClauseStore();
+		new TseitinTransformation(store, plaistedGreenbaum).assertFormula(f);
+		return new SetFormula(store, SetFormula.Type.CNF);
+	}
+
+	/**
+	 * @param prefix - prefix of the names of fresh variables, X_ by default
+	 */
+	public void setPrefix(String prefix)
+	{
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Adds clauses that are satisfiable iff f is satisfiable, together with the clauses of earlier calls
+	 * @param f - a formula
+	 */
+	public void assertFormula(Formula f)
+	{
+		int lit = encode(f, plaistedGreenbaum?POSITIVE:BOTH);
+		if(lit == FALSE_LITERAL)
+			emit(0);
+		else if(lit != TRUE_LITERAL)
+		{
+			clause[0] = lit;
+			emit(1);
+		}
+	}
+
+	/**
+	 * Defines a literal that is equivalent to f under the added clauses, no clause asserts f itself.
+	 * The constants are encoded as the literals of the variables {@link VariableTable#TRUE} and NOT TRUE.
+	 * @param f - a formula
+	 * @return the encoded literal of f
+	 */
+	public int encode(Formula f)
+	{
+		return encode(f, BOTH);
+	}
+
+	/**
+	 * Defines a literal that implies f, in the full mode it is equivalent to f like {@link #encode(Formula)}
+	 * @param f - a formula
+	 * @param positive - true if the literal implies f, false if NOT of the literal implies NOT(f)
+	 * @return the encoded literal of f
+	 */
+	int encode(Formula f, boolean positive)
+	{
+		return encode(f, !plaistedGreenbaum?BOTH:positive?POSITIVE:NEGATIVE);
+	}
+
+	/**
+	 * @return the fresh variables created so far
+	 */
+	public BitSet getAuxiliaryVariables()
+	{
+		return (BitSet) auxiliary.clone();
+	}
+
+	/**
+	 * Forgets the definitions of the subformulas, later formulas are defined again with new fresh variables.
+	 * Needed when the clauses of earlier definitions may have been retracted.
+	 */
+	void clearDefinitions()
+	{
+		nodes.clear();
+	}
+
+	/**
+	 * @return the number of clauses added so far
+	 */
+	public int getNumberOfClauses()
+	{
+		return clauseCount;
+	}
+
+	private int encode(Formula root, int polarity)
+	{
+		internAtoms(root);
+		// Post-order traversal, a frame is a formula and its polarity, EXIT marks the second visit
+		final int EXIT = 4;
+		List<Formula> formulas = new ArrayList<>();
+		int[] states = new int[16];
+		formulas.add(root);
+		states[0] = polarity;
+		while(!formulas.isEmpty())
+		{
+			int top = formulas.size()-1;
+			Formula f = formulas.remove(top);
+			int state = states[top];
+			int pol = state & BOTH;
+			int[] node = nodes.get(f);
+			if((state & EXIT) == 0)
+			{
+				if(node != null && (node[1] & pol) == pol)
+					continue;
+				if(f instanceof AtomicFormula)
+				{
+					nodes.put(f, new int[] {literal((AtomicFormula) f), BOTH});
+					continue;
+				}
+				List<Formula> args = arguments(f);
+				int childPol = f instanceof NOTFormula?flip(pol):pol;
+				if(states.length < formulas.size()+args.size()+1)
+					states = Arrays.copyOf(states, 2*(formulas.size()+args.size()+1));
+				states[formulas.size()] = pol | EXIT;
+				formulas.add(f);
+				for(int i = args.size()-1;i>=0;i--)
+				{
+					states[formulas.size()] = childPol;
+					formulas.add(args.get(i));
+				}
+			}
+			else
+				define(f, node, pol);
+		}
+		return nodes.get(root)[0];
+	}
+
+	private static int flip(int pol)
+	{
+		return ((pol & POSITIVE) << 1) | ((pol & NEGATIVE) >> 1);
+	}
+
+	private static List<Formula> arguments(Formula f)
+	{
+		if(f instanceof NOTFormula)
+			return Arrays.asList(((NOTFormula)f).getArgumentFormula());
+		if(f instanceof ANDFormula)
+			return ((ANDFormula)f).getOrigList();
+		if(f instanceof ORFormula)
+			return ((ORFormula)f).getOrigList();
+		throw new IllegalArgumentException("Formula type not supported");
+	}
+
+	private static int literal(AtomicFormula a)
+	{
+		if(a.isTRUE())
+			return TRUE_LITERAL;
+		if(a.isFALSE())
+			return FALSE_LITERAL;
+		return VariableTable.getIndex(a) << 1;
+	}
+
+	/**
+	 * Interns the atomic formulas of f before any fresh variable is created and records them as inputs,
+	 * so fresh variables never clash with them
+	 */
+	private void internAtoms(Formula root)
+	{
+		Set<Formula> visited = new HashSet<>();
+		List<Formula> stack = new ArrayList<>();
+		stack.add(root);
+		while(!stack.isEmpty())
+		{
+			Formula f = stack.remove(stack.size()-1);
+			if(nodes.containsKey(f) || !visited.add(f))
+				continue;
+			if(f instanceof AtomicFormula)
+				inputs.set(VariableTable.getIndex((AtomicFormula) f));
+			else
+				stack.addAll(arguments(f));
+		}
+	}
+
+	/**
+	 * Adds the clauses of the polarities pol of f whose arguments have already been defined
+	 */
+	private void define(Formula f, int[] node, int pol)
+	{
+		if(f instanceof NOTFormula)
+		{
+			int lit = nodes.get(((NOTFormula)f).getArgumentFormula())[0];
+			nodes.put(f, new int[] {lit ^ 1, pol | (node == null?0:node[1])});
+			return;
+		}
+		boolean and = f instanceof ANDFormula;
+		List<Formula> args = arguments(f);
+		if(node == null)
+		{
+			// Propagate the constants, the remaining literals are the operands
+			int n = 0;
+			int absorbing = and?FALSE_LITERAL:TRUE_LITERAL;
+			int neutral = absorbing ^ 1;
+			int lit = -1;
+			for(Formula g:args)
+			{
+				int l = nodes.get(g)[0];
+				if(l == absorbing)
+				{
+					lit = absorbing;
+					break;
+				}
+				if(l != neutral)
+				{
+					n++;
+					lit = l;
+				}
+			}
+			boolean defined = lit != absorbing && n > 1;
+			if(defined)
+			{
+				int v;
+				do
+					v = VariableTable.getAuxiliaryVariable(prefix, fresh++);
+				while(inputs.get(v));
+				lit = v << 1;
+				auxiliary.set(v);
+			}
+			else if(n == 0 && lit != absorbing)
+				lit = neutral;
+			// A constant does not depend on its arguments, a single argument is passed through
+			node = new int[] {lit, lit == absorbing || lit == neutral?BOTH:0, defined?1:0};
+			nodes.put(f, node);
+		}
+		int need = pol & ~node[1];
+		if(need == 0)
+			return;
+		node[1] |= need;
+		if(node[2] == 0)
+			return;
+		int v = node[0];
+		// AND: v -> args is the positive, args -> v the negative direction. OR: v -> OR(args) and args -> v.
+		boolean implications = (need & (and?POSITIVE:NEGATIVE)) != 0;
+		boolean wide = (need & (and?NEGATIVE:POSITIVE)) != 0;
+		int neutral = and?TRUE_LITERAL:FALSE_LITERAL;
+		if(implications)
+		{
+			for(Formula g:args)
+			{
+				int l = nodes.get(g)[0];
+				if(l == neutral)
+					continue;
+				clause[0] = and?v ^ 1:v;
+				clause[1] = and?l:l ^ 1;
+				emit(2);
+			}
+		}
+		if(wide)
+		{
+			if(clause.length < args.size()+1)
+				clause = new int[2*(args.size()+1)];
+			int n = 0;
+			clause[n++] = and?v:v ^ 1;
+			for(Formula g:args)
+			{
+				int l = nodes.get(g)[0];
+				if(l != neutral)
+					clause[n++] = and?l ^ 1:l;
+			}
+			emit(n);
+		}
+	}
+
+	private void emit(int length)
+	{
+		clauseCount++;
+		sink.addClause(clause, 0, length);
+	}
+}
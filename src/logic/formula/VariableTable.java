@@ -0,0 +1,167 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns atomic formulas as variables 0,1,2,...
+ * <br>
+ * A literal over a variable v is encoded as v<<1|sign where sign is 0 for a positive and 1 for a negative literal.
+ * The variables 0 and 1 are reserved for the constants TRUE and FALSE.
+ * <br>
+ * This table is shared by all formulas and safe to use from multiple threads. Variables are never removed,
+ * so transformations that need auxiliary variables take them from a pool with {@link #getAuxiliaryVariable(String, int)}
+ * and the table only grows to the largest number of auxiliary variables that one transformation needs.
+ */
+public final class VariableTable
+{
+	public static final int TRUE = 0;
+	public static final int FALSE = 1;
+
+	private static final ConcurrentHashMap<String, Integer> indexMap = new ConcurrentHashMap<>();
+	private static volatile AtomicFormula[] atoms = new AtomicFormula[64];
+	private static volatile int size;
+	// Next suffix of every prefix of fresh variables, guarded by the class lock
+	private static final HashMap<String, Integer> freshCounters = new HashMap<>();
+	// Auxiliary variables of every prefix in the order of creation, guarded by the class lock
+	private static final HashMap<String, List<Integer>> auxiliaryVariables = new HashMap<>();
+
+	static
+	{
+		getIndex(AtomicFormula.TRUE);
+		getIndex(AtomicFormula.FALSE);
+	}
+
+	private VariableTable()
+	{
+	}
+
+	/**
+	 * @param a - an atomic formula
+	 * @return the variable of a, a new variable is created if a has not been interned yet
+	 */
+	public static int getIndex(AtomicFormula a)
+	{
+		int i = a.index;
+		if(i >= 0)
+			return i;
+		Integer j = indexMap.get(a.getName());
+		if(j == null)
+		{
+			synchronized(VariableTable.class)
+			{
+				j = indexMap.get(a.getName());
+				if(j == null)
+				{
+					j = size;
+					if(j == atoms.length)
+						atoms = Arrays.copyOf(atoms, 2*j);
+					atoms[j] = a;
+					size = j+1;
+					indexMap.put(a.getName(), j);
+				}
+			}
+		}
+		a.index = j;
+		return j;
+	}
+
+	/**
+	 * @param a - an atomic formula
+	 * @return the variable of a or -1 if a has not been interned
+	 */
+	public static int findIndex(AtomicFormula a)
+	{
+		int i = a.index;
+		if(i >= 0)
+			return i;
+		Integer j = indexMap.get(a.getName());
+		return j == null?-1:j;
+	}
+
+	/**
+	 * Creates a fresh variable. Its name is prefix+k for the smallest k that has not been used
+	 * by this method before and whose name has not been interned, so every call takes amortized constant time.
+	 * @param prefix - prefix of the name, e.g. X_
+	 * @return the new variable
+	 */
+	public static int newVariable(String prefix)
+	{
+		synchronized(VariableTable.class)
+		{
+			int k = freshCounters.getOrDefault(prefix, 0);
+			String name;
+			do
+				name = prefix+k++;
+			while(indexMap.containsKey(name));
+			freshCounters.put(prefix, k);
+			return getIndex(FormulaFactory.getDefault().atom(name));
+		}
+	}
+
+	/**
+	 * Returns the k-th auxiliary variable of a prefix, it is created by {@link #newVariable(String)} on the first call.
+	 * All callers share the auxiliary variables, so clauses that use them must only be combined with clauses
+	 * that do not use the same auxiliary variables with another meaning.
+	 * @param prefix - prefix of the name, e.g. X_
+	 * @param k - number of the auxiliary variable, starting at 0
+	 * @return the auxiliary variable
+	 */
+	public static int getAuxiliaryVariable(String prefix, int k)
+	{
+		if(k < 0)
+			throw new IllegalArgumentException("Negative number "+k);
+		synchronized(VariableTable.class)
+		{
+			List<Integer> list = auxiliaryVariables.get(prefix);
+			if(list == null)
+			{
+				list = new ArrayList<>();
+				auxiliaryVariables.put(prefix, list);
+			}
+			while(list.size() <= k)
+				list.add(newVariable(prefix));
+			return list.get(k);
+		}
+	}
+
+	/**
+	 * @param v - a variable
+	 * @return the atomic formula of v
+	 */
+	public static AtomicFormula getAtomicFormula(int v)
+	{
+		if(v >= size)
+			throw new IllegalArgumentException("Unknown variable "+v);
+		return atoms[v];
+	}
+
+	/**
+	 * @return the number of interned variables
+	 */
+	public static int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param l - a literal
+	 * @return the encoding of l
+	 */
+	public static int encode(Literal l)
+	{
+		return (getIndex(l.getFormula())<<1) | (l.isPositive()?0:1);
+	}
+
+	/**
+	 * @param lit - an encoded literal
+	 * @return the literal of the encoding lit
+	 */
+	public static Literal decode(int lit)
+	{
+		return new Literal(getAtomicFormula(lit>>1), (lit&1) == 0);
+	}
+}
@@ -0,0 +1,178 @@
+package logic.formula;
+
+import java.math.BigInteger;
+
+/**
+ * A family of sets of literals represented by a zero-suppressed decision diagram of a {@link ZDDManager}.
+ * <br>
+ * ZDDs are immutable. Two ZDDs of the same manager represent the same family iff they are equal.
+ * All operations work on the diagrams and never enumerate the sets, their cost depends on the number of nodes.
+ * Operations on ZDDs of different managers are not allowed.
+ */
+public final class ZDD
+{
+	final ZDDManager manager;
+	final int node;
+
+	ZDD(ZDDManager manager, int node)
+	{
+		this.manager = manager;
+		this.node = node;
+	}
+
+	public ZDDManager getManager()
+	{
+		return manager;
+	}
+
+	/**
+	 * @return the sets of this family and of g, i.e. AND for clauses and OR for terms
+	 */
+	public ZDD union(ZDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.union(node, g.node));
+	}
+
+	/**
+	 * @return the sets that are in this family and in g
+	 */
+	public ZDD intersect(ZDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.intersect(node, g.node));
+	}
+
+	/**
+	 * @return all unions of a set of this family and a set of g without tautologies, i.e. OR for clauses and AND for terms
+	 */
+	public ZDD product(ZDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.product(node, g.node));
+	}
+
+	/**
+	 * @return the product with g without sets that have a proper subset in the product
+	 */
+	public ZDD minimalProduct(ZDD g)
+	{
+		manager.check(g);
+		manager.checkpoint();
+		return manager.handle(manager.minimal(manager.product(node, g.node)));
+	}
+
+	/**
+	 * @return the sets of this family that have no proper subset in this family (absorption)
+	 */
+	public ZDD minimize()
+	{
+		manager.checkpoint();
+		return manager.handle(manager.minimal(node));
+	}
+
+	/**
+	 * @return all non-tautological resolvents of two sets of this family
+	 */
+	public ZDD resolvents()
+	{
+		manager.checkpoint();
+		return manager.handle(manager.resolvents(node));
+	}
+
+	/**
+	 * @return the family with every literal negated, this family must not contain tautologies
+	 */
+	public ZDD negate()
+	{
+		manager.checkpoint();
+		return manager.handle(manager.negate(node));
+	}
+
+	/**
+	 * @param l - a literal
+	 * @return the sets of this family that contain l, without l
+	 */
+	public ZDD onSet(Literal l)
+	{
+		manager.checkpoint();
+		return manager.handle(manager.subset1(node, VariableTable.encode(l)));
+	}
+
+	/**
+	 * @param l - a literal
+	 * @return the sets of this family that do not contain l
+	 */
+	public ZDD offSet(Literal l)
+	{
+		manager.checkpoint();
+		return manager.handle(manager.subset0(node, VariableTable.encode(l)));
+	}
+
+	/**
+	 * @return true iff this family has no sets
+	 */
+	public boolean isEmpty()
+	{
+		return node == ZDDManager.EMPTY;
+	}
+
+	/**
+	 * @return true iff the empty set belongs to this family
+	 */
+	public boolean containsEmptySet()
+	{
+		return manager.containsEmptySet(node);
+	}
+
+	/**
+	 * @return the number of sets of this family
+	 */
+	public BigInteger count()
+	{
+		return manager.count(node);
+	}
+
+	/**
+	 * @return the signature of the sets of this family without enumerating them, see {@link ClauseStore#signature()}
+	 */
+	long signature()
+	{
+		return manager.signature(node);
+	}
+
+	/**
+	 * @return the number of nodes of this ZDD including the terminals
+	 */
+	public int getNodeCount()
+	{
+		return manager.size(node);
+	}
+
+	/**
+	 * Enumerates the sets of this family
+	 * @return a new store with the sets of this family
+	 */
+	public ClauseStore toClauseStore()
+	{
+		return manager.toClauseStore(node);
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if(!(obj instanceof ZDD))
+			return false;
+		ZDD z = (ZDD) obj;
+		return z.manager == manager && z.node == node;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return node*31 + System.identityHashCode(manager);
+	}
+}
@@ -0,0 +1,725 @@
+package logic.formula;
+
+import java.lang.ref.WeakReference;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A manager of zero-suppressed decision diagrams (ZDDs) that represent families of sets of literals,
+ * i.e. the clauses of a CNF or the terms of a DNF, see {@link ZDD}.
+ * <br>
+ * The elements are encoded literals (see {@link VariableTable}) in increasing order, so a literal and its negation
+ * are adjacent. A node (x, lo, hi) represents the sets of lo together with the sets of hi extended by x.
+ * Nodes whose hi child is the empty family are never created (zero-suppression), so a family of sets that share
+ * prefixes and suffixes needs few nodes. The node 0 is the empty family {} and the node 1 is the family {{}}.
+ * <br>
+ * Nodes are stored in parallel int arrays with one unique table, results of operations are remembered in a
+ * direct-mapped cache. Nodes that are not reachable from a ZDD object are reclaimed by a mark-and-sweep
+ * garbage collection before an operation if the number of nodes has doubled since the last collection.
+ * <br>
+ * A manager is not thread-safe.
+ */
+public final class ZDDManager
+{
+	static final int EMPTY = 0;
+	static final int BASE = 1;
+
+	private static final int OP_UNION = 0;
+	private static final int OP_INTERSECT = 1;
+	private static final int OP_PRODUCT = 2;
+	private static final int OP_MINIMAL = 3;
+	private static final int OP_NONSUP = 4;
+	private static final int OP_SUBSET1 = 5;
+	private static final int OP_SUBSET0 = 6;
+	private static final int OP_NEGATE = 7;
+
+	// Nodes
+	private int[] elem = new int[1024]; // -1 for terminals and free nodes
+	private int[] low = new int[1024];
+	private int[] high = new int[1024];
+	private int[] next = new int[1024]; // next node in the chain of the unique table or the free list, 0 ends a chain
+	private boolean[] marked = new boolean[1024];
+	private int used = 2;
+	private int freeList;
+	private int live;
+	private int[] table = new int[1024];
+
+	// Computed cache
+	private int[] cacheOp;
+	private int[] cacheA;
+	private int[] cacheB;
+	private int[] cacheResult;
+
+	private final List<WeakReference<ZDD>> handles = new ArrayList<>();
+	private int handleLimit = 1024;
+	private int gcThreshold = 1 << 16;
+	private long collections;
+
+	/**
+	 * Creates a new manager
+	 */
+	public ZDDManager()
+	{
+		elem[EMPTY] = elem[BASE] = -1;
+		initCache(1 << 12);
+	}
+
+	private void initCache(int size)
+	{
+		cacheOp = new int[size];
+		Arrays.fill(cacheOp, -1);
+		cacheA = new int[size];
+		cacheB = new int[size];
+		cacheResult = new int[size];
+	}
+
+	/**
+	 * @return the empty family {}, i.e. TRUE as a CNF and FALSE as a DNF
+	 */
+	public ZDD getEmpty()
+	{
+		return handle(EMPTY);
+	}
+
+	/**
+	 * @return the family {{}} that contains only the empty set, i.e. FALSE as a CNF and TRUE as a DNF
+	 */
+	public ZDD getBase()
+	{
+		return handle(BASE);
+	}
+
+	/**
+	 * @param l - a literal
+	 * @return the family {{l}}
+	 */
+	public ZDD literal(Literal l)
+	{
+		return handle(mk(VariableTable.encode(l), EMPTY, BASE));
+	}
+
+	/**
+	 * Copies a ZDD of another manager in time linear in its number of nodes. All managers order the literals by
+	 * their encoding, so the copy has the same structure and the sets are not enumerated.
+	 * @param z - a ZDD of any manager
+	 * @return the ZDD of the same family in this manager
+	 */
+	public ZDD copy(ZDD z)
+	{
+		if(z.manager == this)
+			return z;
+		checkpoint();
+		return handle(copy(z.manager, z.node, new HashMap<>()));
+	}
+
+	private int copy(ZDDManager from, int f, Map<Integer, Integer> memo)
+	{
+		if(f < 2)
+			return f;
+		Integer n = memo.get(f);
+		if(n == null)
+		{
+			n = mk(from.elem[f], copy(from, from.low[f], memo), copy(from, from.high[f], memo));
+			memo.put(f, n);
+		}
+		return n;
+	}
+
+	/**
+	 * Builds the ZDD of the sets of a store in time linear in the number of literals after sorting the sets
+	 * @param store - a store of sets of literals
+	 * @return the family of the sets of store
+	 */
+	public ZDD fromClauseStore(ClauseStore store)
+	{
+		checkpoint();
+		Integer[] order = new Integer[store.size()];
+		for(int i = 0;i<order.length;i++)
+			order[i] = i;
+		int[] arena = store.arena();
+		// Lexicographic order of the sorted sets, so sets with a common prefix are adjacent
+		Arrays.sort(order, (a,b) -> {
+			int sa = store.start(a);
+			int sb = store.start(b);
+			int na = store.length(a);
+			int nb = store.length(b);
+			for(int i = 0;i<Math.min(na, nb);i++)
+			{
+				if(arena[sa+i] != arena[sb+i])
+					return Integer.compare(arena[sa+i], arena[sb+i]);
+			}
+			return Integer.compare(na, nb);
+		});
+		return handle(build(store, order, 0, order.length, 0));
+	}
+
+	/**
+	 * Builds the family of the sets order[from],...,order[to-1] without their common prefix of length d
+	 */
+	private int build(ClauseStore store, Integer[] order, int from, int to, int d)
+	{
+		if(from == to)
+			return EMPTY;
+		int result = EMPTY;
+		if(store.length(order[from]) == d)
+		{
+			result = BASE; // the set equals the prefix
+			from++;
+		}
+		int[] arena = store.arena();
+		// The groups of sets with the same element at position d, from the largest element to the smallest
+		int end = to;
+		while(end > from)
+		{
+			int x = arena[store.start(order[end-1])+d];
+			int begin = end-1;
+			while(begin > from && arena[store.start(order[begin-1])+d] == x)
+				begin--;
+			result = mk(x, result, build(store, order, begin, end, d+1));
+			end = begin;
+		}
+		return result;
+	}
+
+	ZDD handle(int n)
+	{
+		ZDD z = new ZDD(this, n);
+		if(handles.size() >= handleLimit)
+		{
+			handles.removeIf(w -> w.get() == null);
+			handleLimit = Math.max(1024, 2*handles.size());
+		}
+		handles.add(new WeakReference<>(z));
+		return z;
+	}
+
+	void check(ZDD z)
+	{
+		if(z.manager != this)
+			throw new IllegalArgumentException("ZDD belongs to another manager");
+	}
+
+	/**
+	 * @return the number of nodes without the terminals, including nodes that have not been collected yet
+	 */
+	public int getNodeCount()
+	{
+		return live;
+	}
+
+	/**
+	 * @return the number of garbage collections so far
+	 */
+	public long getCollections()
+	{
+		return collections;
+	}
+
+	// ---------------------------------------------------------------- nodes
+
+	private int top(int n)
+	{
+		return n < 2?Integer.MAX_VALUE:elem[n];
+	}
+
+	private static int hash(int x, int lo, int hi)
+	{
+		int h = x*0x27D4EB2D + lo*0x9E3779B1 + hi*0x85EBCA6B;
+		return h ^ (h >>> 15);
+	}
+
+	private int mk(int x, int lo, int hi)
+	{
+		if(hi == EMPTY)
+			return lo;
+		int slot = hash(x, lo, hi) & (table.length-1);
+		for(int n = table[slot];n != 0;n = next[n])
+		{
+			if(elem[n] == x && low[n] == lo && high[n] == hi)
+				return n;
+		}
+		int n;
+		if(freeList != 0)
+		{
+			n = freeList;
+			freeList = next[n];
+		}
+		else
+		{
+			if(used == elem.length)
+			{
+				int size = 2*used;
+				elem = Arrays.copyOf(elem, size);
+				low = Arrays.copyOf(low, size);
+				high = Arrays.copyOf(high, size);
+				next = Arrays.copyOf(next, size);
+				marked = Arrays.copyOf(marked, size);
+			}
+			n = used++;
+		}
+		elem[n] = x;
+		low[n] = lo;
+		high[n] = hi;
+		next[n] = table[slot];
+		table[slot] = n;
+		if(++live > table.length)
+			rehash();
+		return n;
+	}
+
+	private void rehash()
+	{
+		table = new int[2*table.length];
+		int mask = table.length-1;
+		for(int n = 2;n<used;n++)
+		{
+			if(elem[n] < 0)
+				continue;
+			int slot = hash(elem[n], low[n], high[n]) & mask;
+			next[n] = table[slot];
+			table[slot] = n;
+		}
+	}
+
+	// ---------------------------------------------------------------- cache
+
+	private int cacheSlot(int op, int a, int b)
+	{
+		int h = op*0x27D4EB2D + a*0x9E3779B1 + b*0x85EBCA6B;
+		return (h ^ (h >>> 16)) & (cacheOp.length-1);
+	}
+
+	private int lookup(int op, int a, int b)
+	{
+		int slot = cacheSlot(op, a, b);
+		if(cacheOp[slot] == op && cacheA[slot] == a && cacheB[slot] == b)
+			return cacheResult[slot];
+		return -1;
+	}
+
+	private int store(int op, int a, int b, int result)
+	{
+		int slot = cacheSlot(op, a, b);
+		cacheOp[slot] = op;
+		cacheA[slot] = a;
+		cacheB[slot] = b;
+		cacheResult[slot] = result;
+		return result;
+	}
+
+	// ---------------------------------------------------------------- operations
+
+	/**
+	 * @return the sets of f and g
+	 */
+	int union(int f, int g)
+	{
+		if(f == EMPTY || f == g)
+			return g;
+		if(g == EMPTY)
+			return f;
+		if(f > g)
+		{
+			int t = f;
+			f = g;
+			g = t;
+		}
+		int r = lookup(OP_UNION, f, g);
+		if(r >= 0)
+			return r;
+		int tf = top(f);
+		int tg = top(g);
+		if(tf < tg)
+			r = mk(tf, union(low[f], g), high[f]);
+		else if(tg < tf)
+			r = mk(tg, union(f, low[g]), high[g]);
+		else
+			r = mk(tf, union(low[f], low[g]), union(high[f], high[g]));
+		return store(OP_UNION, f, g, r);
+	}
+
+	/**
+	 * @return the sets that are in f and in g
+	 */
+	int intersect(int f, int g)
+	{
+		if(f == EMPTY || g == EMPTY)
+			return EMPTY;
+		if(f == g)
+			return f;
+		if(f > g)
+		{
+			int t = f;
+			f = g;
+			g = t;
+		}
+		int r = lookup(OP_INTERSECT, f, g);
+		if(r >= 0)
+			return r;
+		int tf = top(f);
+		int tg = top(g);
+		if(tf < tg)
+			r = intersect(low[f], g);
+		else if(tg < tf)
+			r = intersect(f, low[g]);
+		else
+			r = mk(tf, intersect(low[f], low[g]), intersect(high[f], high[g]));
+		return store(OP_INTERSECT, f, g, r);
+	}
+
+	/**
+	 * @return all unions of a set of f and a set of g that do not contain a literal and its negation
+	 */
+	int product(int f, int g)
+	{
+		if(f == EMPTY || g == EMPTY)
+			return EMPTY;
+		if(f == BASE)
+			return g;
+		if(g == BASE)
+			return f;
+		if(f > g)
+		{
+			int t = f;
+			f = g;
+			g = t;
+		}
+		int r = lookup(OP_PRODUCT, f, g);
+		if(r >= 0)
+			return r;
+		int x = Math.min(top(f), top(g));
+		int f1 = top(f) == x?high[f]:EMPTY;
+		int f0 = top(f) == x?low[f]:f;
+		int g1 = top(g) == x?high[g]:EMPTY;
+		int g0 = top(g) == x?low[g]:g;
+		// x(f1 g1 + f1 g0 + f0 g1) + f0 g0
+		int lo = product(f0, g0);
+		int hi = union(union(product(f1, g1), product(f1, g0)), product(f0, g1));
+		if((x&1) == 0 && top(hi) == (x|1))
+			hi = low[hi]; // sets with x and NOT(x) are tautologies
+		return store(OP_PRODUCT, f, g, mk(x, lo, hi));
+	}
+
+	/**
+	 * @return the sets of f that have no proper subset in f
+	 */
+	int minimal(int f)
+	{
+		if(f < 2)
+			return f;
+		int r = lookup(OP_MINIMAL, f, 0);
+		if(r >= 0)
+			return r;
+		int lo = minimal(low[f]);
+		int hi = nonSuperset(minimal(high[f]), lo);
+		return store(OP_MINIMAL, f, 0, mk(elem[f], lo, hi));
+	}
+
+	/**
+	 * @return the sets of f that are not a superset of a set of g
+	 */
+	int nonSuperset(int f, int g)
+	{
+		if(g == EMPTY || f == EMPTY)
+			return f;
+		if(f == g || containsEmptySet(g))
+			return EMPTY;
+		if(f == BASE)
+			return BASE;
+		int r = lookup(OP_NONSUP, f, g);
+		if(r >= 0)
+			return r;
+		int x = Math.min(top(f), top(g));
+		if(top(f) != x)
+			r = nonSuperset(f, low[g]); // the sets of g with x are no subsets
+		else
+		{
+			int g1 = top(g) == x?high[g]:EMPTY;
+			int g0 = top(g) == x?low[g]:g;
+			int hi = intersect(nonSuperset(high[f], g1), nonSuperset(high[f], g0));
+			r = mk(x, nonSuperset(low[f], g0), hi);
+		}
+		return store(OP_NONSUP, f, g, r);
+	}
+
+	boolean containsEmptySet(int f)
+	{
+		while(f >= 2)
+			f = low[f];
+		return f == BASE;
+	}
+
+	/**
+	 * @return the sets of f that contain x, without x
+	 */
+	int subset1(int f, int x)
+	{
+		int t = top(f);
+		if(t > x)
+			return EMPTY;
+		if(t == x)
+			return high[f];
+		int r = lookup(OP_SUBSET1, f, x);
+		if(r >= 0)
+			return r;
+		return store(OP_SUBSET1, f, x, mk(t, subset1(low[f], x), subset1(high[f], x)));
+	}
+
+	/**
+	 * @return the sets of f that do not contain x
+	 */
+	int subset0(int f, int x)
+	{
+		int t = top(f);
+		if(t > x)
+			return f;
+		if(t == x)
+			return low[f];
+		int r = lookup(OP_SUBSET0, f, x);
+		if(r >= 0)
+			return r;
+		return store(OP_SUBSET0, f, x, mk(t, subset0(low[f], x), subset0(high[f], x)));
+	}
+
+	/**
+	 * @return the sets of f with every literal negated, f must not contain tautologies
+	 */
+	int negate(int f)
+	{
+		if(f < 2)
+			return f;
+		int r = lookup(OP_NEGATE, f, 0);
+		if(r >= 0)
+			return r;
+		// The order of x and NOT(x) changes, so the negated sets with x are merged with the others
+		r = union(mk(elem[f]^1, EMPTY, negate(high[f])), negate(low[f]));
+		return store(OP_NEGATE, f, 0, r);
+	}
+
+	/**
+	 * @return all non-tautological resolvents of two sets of f
+	 */
+	int resolvents(int f)
+	{
+		BitSet elements = support(f);
+		int r = EMPTY;
+		for(int x = elements.nextSetBit(0);x >= 0;x = elements.nextSetBit(x+1))
+		{
+			if((x&1) == 0 && elements.get(x+1))
+				r = union(r, product(subset1(f, x), subset1(f, x+1)));
+		}
+		return r;
+	}
+
+	/**
+	 * @return the elements that occur in the sets of f
+	 */
+	BitSet support(int f)
+	{
+		BitSet elements = new BitSet();
+		BitSet visited = new BitSet();
+		int[] stack = new int[16];
+		int sp = 0;
+		stack[sp++] = f;
+		while(sp > 0)
+		{
+			int n = stack[--sp];
+			if(n < 2 || visited.get(n))
+				continue;
+			visited.set(n);
+			elements.set(elem[n]);
+			if(sp+2 > stack.length)
+				stack = Arrays.copyOf(stack, 2*stack.length);
+			stack[sp++] = low[n];
+			stack[sp++] = high[n];
+		}
+		return elements;
+	}
+
+	// ---------------------------------------------------------------- analysis
+
+	/**
+	 * @return the number of sets of f
+	 */
+	BigInteger count(int f)
+	{
+		return count(f, new HashMap<>());
+	}
+
+	private BigInteger count(int f, Map<Integer, BigInteger> memo)
+	{
+		if(f < 2)
+			return f == BASE?BigInteger.ONE:BigInteger.ZERO;
+		BigInteger c = memo.get(f);
+		if(c == null)
+		{
+			c = count(low[f], memo).add(count(high[f], memo));
+			memo.put(f, c);
+		}
+		return c;
+	}
+
+	/**
+	 * @return the signature of the sets of f, see {@link ClauseStore#signature()}
+	 */
+	long signature(int f)
+	{
+		return signature(f, new HashMap<>());
+	}
+
+	private long signature(int f, Map<Integer, Long> memo)
+	{
+		if(f < 2)
+			return f == BASE?1:0;
+		Long s = memo.get(f);
+		if(s == null)
+		{
+			// The sets without elem[f] and the sets with it
+			s = signature(low[f], memo) + ClauseStore.weight(elem[f])*signature(high[f], memo);
+			memo.put(f, s);
+		}
+		return s;
+	}
+
+	/**
+	 * @return the number of nodes reachable from f including the terminals
+	 */
+	int size(int f)
+	{
+		BitSet visited = new BitSet();
+		int[] stack = new int[16];
+		int sp = 0;
+		stack[sp++] = f;
+		int count = 0;
+		while(sp > 0)
+		{
+			int n = stack[--sp];
+			if(visited.get(n))
+				continue;
+			visited.set(n);
+			count++;
+			if(n >= 2)
+			{
+				if(sp+2 > stack.length)
+					stack = Arrays.copyOf(stack, 2*stack.length);
+				stack[sp++] = low[n];
+				stack[sp++] = high[n];
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Enumerates the sets of f into a new store, every set is a path from f to the terminal 1
+	 */
+	ClauseStore toClauseStore(int f)
+	{
+		ClauseStore s = new ClauseStore();
+		int[] path = new int[16]; // elements of the hi edges on the path
+		int[] nodes = new int[16]; // nodes on the path, a negative entry -n-1 means the hi edge of n was taken
+		int depth = 0;
+		int length = 0;
+		nodes[depth++] = f;
+		while(depth > 0)
+		{
+			int n = nodes[--depth];
+			if(n < 0)
+			{
+				length--; // backtrack over a hi edge
+				continue;
+			}
+			if(n == EMPTY)
+				continue;
+			if(n == BASE)
+			{
+				s.addSorted(path, 0, length);
+				continue;
+			}
+			if(depth+3 > nodes.length)
+				nodes = Arrays.copyOf(nodes, 2*nodes.length);
+			if(length == path.length)
+				path = Arrays.copyOf(path, 2*length);
+			// Visit the lo child after the hi child, the marker undoes the element of the hi edge
+			nodes[depth++] = low[n];
+			nodes[depth++] = -n-1;
+			nodes[depth++] = high[n];
+			path[length++] = elem[n];
+		}
+		return s;
+	}
+
+	// ---------------------------------------------------------------- garbage collection
+
+	/**
+	 * Collects garbage if the number of nodes has grown enough, called before every operation
+	 */
+	void checkpoint()
+	{
+		if(live < gcThreshold)
+			return;
+		gc();
+		gcThreshold = Math.max(gcThreshold, 2*live);
+		if(live > cacheOp.length && cacheOp.length < (1 << 22))
+			initCache(2*cacheOp.length);
+	}
+
+	/**
+	 * Frees all nodes that are not reachable from a ZDD object
+	 */
+	public void gc()
+	{
+		collections++;
+		handles.removeIf(w -> w.get() == null);
+		int[] stack = new int[Math.max(16, handles.size())];
+		int sp = 0;
+		for(WeakReference<ZDD> w:handles)
+		{
+			ZDD z = w.get();
+			if(z != null)
+				stack[sp++] = z.node;
+		}
+		while(sp > 0)
+		{
+			int n = stack[--sp];
+			if(n < 2 || marked[n])
+				continue;
+			marked[n] = true;
+			if(sp+2 > stack.length)
+				stack = Arrays.copyOf(stack, 2*stack.length);
+			stack[sp++] = low[n];
+			stack[sp++] = high[n];
+		}
+		for(int b = 0;b<table.length;b++)
+		{
+			int prev = 0;
+			int n = table[b];
+			while(n != 0)
+			{
+				int m = next[n];
+				if(!marked[n])
+				{
+					if(prev == 0)
+						table[b] = m;
+					else
+						next[prev] = m;
+					elem[n] = -1;
+					next[n] = freeList;
+					freeList = n;
+					live--;
+				}
+				else
+				{
+					marked[n] = false;
+					prev = n;
+				}
+				n = m;
+			}
+		}
+		Arrays.fill(cacheOp, -1);
+	}
+}
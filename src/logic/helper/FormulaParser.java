@@ -0,0 +1,527 @@
+package logic.helper;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import logic.formula.AtomicFormula;
+import logic.formula.Formula;
+import logic.formula.FormulaFactory;
+
+/**
+ * Parses formulas from a character stream in a single pass.
+ * <br>
+ * Accepted are the prefix syntax AND(A,B,...), OR(A,B,...), NOT(A) and the infix operators
+ * ! (not), &amp; (and), | (or), -&gt; (implies) with this precedence from strongest to weakest.
+ * &amp; and | are left associative, chains are parsed into one n-ary formula, -&gt; is right associative.
+ * Both syntaxes can be mixed, e.g. AND(A, B | !C) -&gt; D. Several formulas can be separated by ;
+ * <br>
+ * The parser uses explicit stacks instead of recursion, so the nesting depth of the input is only limited by the heap.
+ * Atomic formulas are interned while reading, an atomic formula that has been read before is found without allocation.
+ * All formulas are built by a {@link FormulaFactory}.
+ */
+public class FormulaParser
+{
+	// Tokens
+	private static final int END = 0;
+	private static final int ATOM = 1;
+	private static final int LPAREN = 2;
+	private static final int RPAREN = 3;
+	private static final int COMMA = 4;
+	private static final int SEMICOLON = 5;
+	private static final int BANG = 6;
+	private static final int AMPERSAND = 7;
+	private static final int BAR = 8;
+	private static final int ARROW = 9;
+	private static final int CALL_AND = 10;
+	private static final int CALL_OR = 11;
+	private static final int CALL_NOT = 12;
+
+	private final Reader in;
+	private final FormulaFactory factory;
+	// Atomic formulas parsed so far, as in Parser.parseFormula
+	private Map<AtomicFormula, AtomicFormula> afMap;
+
+	private final char[] buf = new char[1 << 13];
+	private int pos;
+	private int limit;
+	private long offset;
+	private boolean eof;
+
+	private char[] name = new char[32];
+	private int nameLength;
+	private AtomicFormula atom;
+
+	// Open addressing table of the atomic formulas read so far
+	private AtomicFormula[] atoms = new AtomicFormula[64];
+	private int[] atomHashes = new int[64];
+	private int atomCount;
+
+	// Operand stack
+	private Formula[] values = new Formula[16];
+	private int valueCount;
+	// Operator stack, the argument is the number of infix operators of a chain or the base of the operands of a call
+	private int[] ops = new int[16];
+	private int[] opArgs = new int[16];
+	private int opCount;
+
+	/**
+	 * Creates a parser that builds formulas with the default factory
+	 * @param in - the input
+	 */
+	public FormulaParser(Reader in)
+	{
+		this(in, FormulaFactory.getDefault());
+	}
+
+	/**
+	 * @param in - the input
+	 * @param factory - the factory that builds the formulas
+	 */
+	public FormulaParser(Reader in, FormulaFactory factory)
+	{
+		this.in = in;
+		this.factory = factory;
+	}
+
+	/**
+	 * @param afMap - map of the atomic formulas parsed so far, an atomic formula already in the map is replaced
+	 * by its key, or null
+	 */
+	public void setAtomicFormulaMap(Map<AtomicFormula, AtomicFormula> afMap)
+	{
+		this.afMap = afMap;
+	}
+
+	/**
+	 * @param s - a formula
+	 * @return the parsed formula
+	 */
+	public static Formula parse(String s)
+	{
+		try
+		{
+			return new FormulaParser(new StringReader(s)).parse();
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Parses the whole input as one formula
+	 * @return the parsed formula
+	 * @throws IOException if the input can not be read
+	 * @throws IllegalArgumentException if the input is not exactly one formula
+	 */
+	public Formula parse() throws IOException
+	{
+		Formula f = next();
+		if(f == null)
+			throw new IllegalArgumentException("No formula found");
+		if(next() != null)
+			throw new IllegalArgumentException("More than one formula at position "+position());
+		return f;
+	}
+
+	/**
+	 * Parses all formulas of the input
+	 * @return the list of formulas separated by ;
+	 * @throws IOException if the input can not be read
+	 */
+	public List<Formula> parseAll() throws IOException
+	{
+		List<Formula> list = new ArrayList<>();
+		for(Formula f = next();f != null;f = next())
+			list.add(f);
+		return list;
+	}
+
+	/**
+	 * Parses the next formula, formulas are separated by ;
+	 * @return the next formula or null if the end of the input is reached
+	 * @throws IOException if the input can not be read
+	 * @throws IllegalArgumentException if the input is not well-formed
+	 */
+	public Formula next() throws IOException
+	{
+		int t = nextToken();
+		while(t == SEMICOLON)
+			t = nextToken();
+		if(t == END)
+			return null;
+		valueCount = 0;
+		opCount = 0;
+		boolean operand = true;
+		boolean afterCall = false;
+		for(;;t = nextToken())
+		{
+			if(operand)
+			{
+				switch(t)
+				{
+				case ATOM:
+					push(atom);
+					operand = false;
+					break;
+				case BANG:
+				case LPAREN:
+					pushOp(t, 0);
+					break;
+				case CALL_AND:
+				case CALL_OR:
+				case CALL_NOT:
+					pushOp(t, valueCount);
+					afterCall = true;
+					continue;
+				case RPAREN:
+					if(!afterCall)
+						throw error("Operand expected");
+					closeCall(); // call without arguments
+					operand = false;
+					break;
+				default:
+					throw error("Operand expected");
+				}
+			}
+			else
+			{
+				switch(t)
+				{
+				case AMPERSAND:
+				case BAR:
+				case ARROW:
+					pushInfix(t);
+					operand = true;
+					break;
+				case COMMA:
+					reduceAll();
+					if(opCount == 0 || !isCall(ops[opCount-1]))
+						throw error("Unexpected ,");
+					operand = true;
+					break;
+				case RPAREN:
+					reduceAll();
+					if(opCount == 0)
+						throw error("Unbalanced )");
+					if(ops[opCount-1] == LPAREN)
+						opCount--;
+					else
+						closeCall();
+					break;
+				case SEMICOLON:
+				case END:
+					reduceAll();
+					if(opCount > 0)
+						throw error("Missing )");
+					return values[0];
+				default:
+					throw error("Operator expected");
+				}
+			}
+			afterCall = false;
+		}
+	}
+
+	private static boolean isCall(int op)
+	{
+		return op == CALL_AND || op == CALL_OR || op == CALL_NOT;
+	}
+
+	private static int precedence(int op)
+	{
+		switch(op)
+		{
+		case BANG:
+			return 4;
+		case AMPERSAND:
+			return 3;
+		case BAR:
+			return 2;
+		case ARROW:
+			return 1;
+		default:
+			return 0;
+		}
+	}
+
+	private void push(Formula f)
+	{
+		if(valueCount == values.length)
+			values = Arrays.copyOf(values, 2*valueCount);
+		values[valueCount++] = f;
+	}
+
+	private void pushOp(int op, int arg)
+	{
+		if(opCount == ops.length)
+		{
+			ops = Arrays.copyOf(ops, 2*opCount);
+			opArgs = Arrays.copyOf(opArgs, 2*opCount);
+		}
+		ops[opCount] = op;
+		opArgs[opCount++] = arg;
+	}
+
+	private void pushInfix(int op)
+	{
+		int p = precedence(op);
+		while(opCount > 0 && precedence(ops[opCount-1]) > p)
+			reduce();
+		if(op != ARROW && opCount > 0 && ops[opCount-1] == op)
+			opArgs[opCount-1]++;
+		else
+			pushOp(op, 1);
+	}
+
+	/**
+	 * Applies all operators up to the innermost bracket or call
+	 */
+	private void reduceAll()
+	{
+		while(opCount > 0 && precedence(ops[opCount-1]) > 0)
+			reduce();
+	}
+
+	private void reduce()
+	{
+		int op = ops[--opCount];
+		int arg = opArgs[opCount];
+		switch(op)
+		{
+		case BANG:
+			values[valueCount-1] = factory.not(values[valueCount-1]);
+			break;
+		case AMPERSAND:
+		case BAR:
+		{
+			List<Formula> list = pop(valueCount-arg-1);
+			push(op == AMPERSAND?factory.and(list):factory.or(list));
+			break;
+		}
+		case ARROW:
+		{
+			Formula b = values[--valueCount];
+			Formula a = values[valueCount-1];
+			values[valueCount-1] = factory.or(factory.not(a), b);
+			break;
+		}
+		}
+	}
+
+	private void closeCall()
+	{
+		int op = ops[--opCount];
+		List<Formula> list = pop(opArgs[opCount]);
+		if(op == CALL_NOT)
+		{
+			if(list.size() != 1)
+				throw error("NOT expects one argument");
+			push(factory.not(list.get(0)));
+		}
+		else
+			push(op == CALL_AND?factory.and(list):factory.or(list));
+	}
+
+	private List<Formula> pop(int base)
+	{
+		List<Formula> list = new ArrayList<>(Arrays.asList(values).subList(base, valueCount));
+		Arrays.fill(values, base, valueCount, null);
+		valueCount = base;
+		return list;
+	}
+
+	private long position()
+	{
+		return offset+pos;
+	}
+
+	private IllegalArgumentException error(String message)
+	{
+		return new IllegalArgumentException(message+" at position "+position());
+	}
+
+	/**
+	 * Makes sure that n characters are buffered unless the input ends before
+	 */
+	private void ensure(int n) throws IOException
+	{
+		if(limit-pos >= n || eof)
+			return;
+		System.arraycopy(buf, pos, buf, 0, limit-pos);
+		offset += pos;
+		limit -= pos;
+		pos = 0;
+		while(limit < n)
+		{
+			int r = in.read(buf, limit, buf.length-limit);
+			if(r < 0)
+			{
+				eof = true;
+				return;
+			}
+			limit += r;
+		}
+	}
+
+	private int peek(int k) throws IOException
+	{
+		ensure(k+1);
+		return pos+k < limit?buf[pos+k]:-1;
+	}
+
+	private int skipWhitespace() throws IOException
+	{
+		int c = peek(0);
+		while(c >= 0 && Character.isWhitespace(c))
+		{
+			pos++;
+			c = peek(0);
+		}
+		return c;
+	}
+
+	private static boolean isNameChar(int c)
+	{
+		return !Character.isWhitespace(c) && "(),;&|!".indexOf(c) < 0;
+	}
+
+	private int nextToken() throws IOException
+	{
+		int c = skipWhitespace();
+		switch(c)
+		{
+		case -1:
+			return END;
+		case '(':
+			pos++;
+			return LPAREN;
+		case ')':
+			pos++;
+			return RPAREN;
+		case ',':
+			pos++;
+			return COMMA;
+		case ';':
+			pos++;
+			return SEMICOLON;
+		case '!':
+			pos++;
+			return BANG;
+		case '&':
+			pos++;
+			return AMPERSAND;
+		case '|':
+			pos++;
+			return BAR;
+		case '-':
+			if(peek(1) == '>')
+			{
+				pos += 2;
+				return ARROW;
+			}
+		}
+		nameLength = 0;
+		while(c >= 0 && isNameChar(c) && !(c == '-' && peek(1) == '>'))
+		{
+			if(nameLength == name.length)
+				name = Arrays.copyOf(name, 2*nameLength);
+			name[nameLength++] = (char) c;
+			pos++;
+			c = peek(0);
+		}
+		if(nameLength == 0)
+			throw error("Unexpected character "+(char) c);
+		int call = keyword();
+		if(call != ATOM && skipWhitespace() == '(')
+		{
+			pos++;
+			return call;
+		}
+		atom = lookupAtom();
+		return ATOM;
+	}
+
+	private int keyword()
+	{
+		if(nameLength == 3 && name[0] == 'A' && name[1] == 'N' && name[2] == 'D')
+			return CALL_AND;
+		if(nameLength == 2 && name[0] == 'O' && name[1] == 'R')
+			return CALL_OR;
+		if(nameLength == 3 && name[0] == 'N' && name[1] == 'O' && name[2] == 'T')
+			return CALL_NOT;
+		return ATOM;
+	}
+
+	/**
+	 * @return the atomic formula with the name in the name buffer
+	 */
+	private AtomicFormula lookupAtom()
+	{
+		int h = 0;
+		for(int i = 0;i<nameLength;i++)
+			h = 31*h + name[i];
+		int mask = atoms.length-1;
+		int i = mix(h) & mask;
+		for(AtomicFormula a = atoms[i];a != null;a = atoms[i])
+		{
+			if(atomHashes[i] == h && hasName(a))
+				return a;
+			i = (i+1) & mask;
+		}
+		AtomicFormula a = factory.atom(new String(name, 0, nameLength));
+		if(afMap != null)
+		{
+			AtomicFormula f = afMap.putIfAbsent(a, a);
+			if(f != null)
+				a = f;
+		}
+		atoms[i] = a;
+		atomHashes[i] = h;
+		if(2*++atomCount > atoms.length)
+			rehash();
+		return a;
+	}
+
+	private boolean hasName(AtomicFormula a)
+	{
+		String s = a.getName();
+		if(s.length() != nameLength)
+			return false;
+		for(int i = 0;i<nameLength;i++)
+			if(s.charAt(i) != name[i])
+				return false;
+		return true;
+	}
+
+	private static int mix(int h)
+	{
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private void rehash()
+	{
+		AtomicFormula[] oldAtoms = atoms;
+		int[] oldHashes = atomHashes;
+		atoms = new AtomicFormula[2*oldAtoms.length];
+		atomHashes = new int[atoms.length];
+		int mask = atoms.length-1;
+		for(int j = 0;j<oldAtoms.length;j++)
+		{
+			if(oldAtoms[j] == null)
+				continue;
+			int i = mix(oldHashes[j]) & mask;
+			while(atoms[i] != null)
+				i = (i+1) & mask;
+			atoms[i] = oldAtoms[j];
+			atomHashes[i] = oldHashes[j];
+		}
+	}
+}
@@ -3,6 +3,7 @@ package logic.helper;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -12,12 +13,7 @@ public class LogicHelper
 {
 	public static <T> List<T> removeDuplicates(List<T> list)
 	{
-		ArrayList<T> newList = new ArrayList<>();
-		list.forEach(t -> {
-			if (!newList.contains(t))
-				newList.add(t);
-		});
-		return newList;
+		return new ArrayList<>(new LinkedHashSet<>(list));
 	}
 
 	public static <T> Set<Set<T>> powerSet(Set<T> set)
@@ -1,6 +1,6 @@
 package logic.helper;
 
-import logic.helper.Pair;
+import java.util.Objects;
 
 public class Pair<U, V> 
 {
@@ -55,6 +55,6 @@ public class Pair<U, V>
     	if(!(b instanceof Pair))
     		return false;
     	Pair<?,?> p = (Pair<?,?>)b;
-    	return p.getFirst().equals(this.getFirst()) && p.getSecond().equals(this.getSecond());
+    	return Objects.equals(p.getFirst(), this.getFirst()) && Objects.equals(p.getSecond(), this.getSecond());
     }
 }
\ No newline at end of file
@@ -1,45 +1,30 @@
 package logic.helper;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import logic.formula.ANDFormula;
 import logic.formula.AtomicFormula;
 import logic.formula.Formula;
-import logic.formula.NOTFormula;
-import logic.formula.ORFormula;
 
 public class Parser {
 
+	/**
+	 * Parses a formula, the result is built by the default factory, i.e. equal subformulas are shared
+	 * @param u - a formula such as AND(A,OR(B,NOT(C))) or A &amp; (B | !C), see {@link FormulaParser}
+	 * @param afMap - map of the atomic formulas parsed so far
+	 * @return the parsed formula
+	 */
 	public static Formula parseFormula(String u, Map<AtomicFormula, AtomicFormula> afMap) {
-		u = u.trim();
-		final String s = u;
-
-		if (s.charAt(0) == '(' && s.charAt(s.length() - 1) == ')')
-			return parseFormula(s.substring(1, s.length() - 1), afMap);
-
-		if (s.startsWith("NOT")) {
-			List<Formula> argList = parseArgsFormula(s.substring(4, s.length() - 1), afMap);
-			if (argList.size() != 1)
-				throw new IllegalArgumentException();
-			return new NOTFormula(argList.get(0));
-		}
-		if (s.startsWith("AND")) {
-			List<Formula> argList = parseArgsFormula(s.substring(4, s.length() - 1), afMap);
-			return new ANDFormula(argList);
+		FormulaParser parser = new FormulaParser(new StringReader(u));
+		parser.setAtomicFormulaMap(afMap);
+		try {
+			return parser.parse();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		if (s.startsWith("OR")) {
-			List<Formula> argList = parseArgsFormula(s.substring(3, s.length() - 1), afMap);
-			return new ORFormula(argList);
-		}
-		AtomicFormula g = new AtomicFormula(s);
-		AtomicFormula f = afMap.get(g);
-		if (f == null) {
-			afMap.put(g, g);
-			return g;
-		}
-		return f;
-
 	}
 
 	public static boolean isOperator(char c) {
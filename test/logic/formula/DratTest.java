@@ -0,0 +1,88 @@
+package logic.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the DRAT proofs of the solver with {@link DratChecker}: proofs of unsatisfiable random formulas are accepted,
+ * the same proofs are rejected for a satisfiable subset of the clauses
+ */
+public class DratTest
+{
+	@TempDir
+	Path dir;
+
+	@Test
+	public void proofsOfUnsatisfiableFormulas() throws IOException
+	{
+		RandomFormulas r = new RandomFormulas(11, 12);
+		Path proof = dir.resolve("proof.drat");
+		int unsat = 0;
+		for(int i = 0;i<200;i++)
+		{
+			SetFormula cnf = r.cnf(50+r.random().nextInt(30), 3);
+			boolean binary = r.random().nextBoolean();
+			boolean sat;
+			try(DratWriter writer = new DratWriter(proof, binary))
+			{
+				sat = cnf.isSatisfiable(writer);
+			}
+			assertEquals(Algorithms.getModelTT(cnf.asFormula()) != null, sat, cnf.toString());
+			if(sat)
+				continue;
+			unsat++;
+			assertTrue(new DratChecker().check(cnf, proof), cnf.toString());
+			SetFormula subset = satisfiableSubset(cnf, r);
+			assertFalse(new DratChecker().check(subset, proof), subset.toString());
+		}
+		assertTrue(unsat > 50, "too few unsatisfiable formulas: "+unsat);
+	}
+
+	@Test
+	public void proofsWithDimacsNumbering() throws IOException
+	{
+		RandomFormulas r = new RandomFormulas(12, 12);
+		Path cnfFile = dir.resolve("formula.cnf");
+		Path proof = dir.resolve("proof.drat");
+		for(int i = 0;i<50;i++)
+		{
+			SetFormula cnf = r.cnf(70, 3);
+			DimacsWriter dimacs = new DimacsWriter(cnfFile);
+			dimacs.write(cnf);
+			dimacs.close();
+			boolean sat;
+			try(DratWriter writer = new DratWriter(proof, false))
+			{
+				writer.setNumbering(dimacs);
+				sat = cnf.isSatisfiable(writer);
+			}
+			assertEquals(!sat, new DratChecker().check(cnfFile, proof), cnf.toString());
+		}
+	}
+
+	/**
+	 * Removes random clauses of cnf until the rest is satisfiable
+	 */
+	private static SetFormula satisfiableSubset(SetFormula cnf, RandomFormulas r)
+	{
+		List<Set<Literal>> clauses = new ArrayList<>(cnf.asSet());
+		while(true)
+		{
+			clauses.remove(r.random().nextInt(clauses.size()));
+			SetFormula subset = new SetFormula(new HashSet<>(clauses), SetFormula.Type.CNF);
+			if(Algorithms.getModelTT(subset.asFormula()) != null)
+				return subset;
+		}
+	}
+}
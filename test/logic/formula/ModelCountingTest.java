@@ -0,0 +1,132 @@
+package logic.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import logic.helper.Pair;
+
+/**
+ * Cross-checks model counts and enumerations of BDDs, ZDDs, the {@link ModelCounter} and the {@link ModelEnumerator}
+ * against {@link TruthTable#countModels(Formula)} on random formulas
+ */
+public class ModelCountingTest
+{
+	private static final int ROUNDS = 300;
+
+	@Test
+	public void bddCountsAndModels()
+	{
+		RandomFormulas r = new RandomFormulas(21, 7);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			Formula f = r.formula(6);
+			BDD bdd = f.toBDD();
+			BigInteger expected = BigInteger.valueOf(TruthTable.countModels(f));
+			assertEquals(expected, bdd.countModels(), f.toString());
+			assertEquals(expected.signum() > 0, bdd.isSatisfiable(), f.toString());
+			assertModels(f, bdd.models(), expected);
+		}
+	}
+
+	@Test
+	public void bddOfConstantFormulas()
+	{
+		FormulaFactory factory = FormulaFactory.getDefault();
+		AtomicFormula p = factory.atom("a0");
+		Formula[] unsatisfiable = {AtomicFormula.FALSE, factory.not(AtomicFormula.TRUE), factory.or(),
+				factory.and(p, factory.not(p))};
+		for(Formula f:unsatisfiable)
+		{
+			BDD bdd = f.toBDD();
+			assertEquals(BigInteger.ZERO, bdd.countModels(), f.toString());
+			assertModels(f, bdd.models(), BigInteger.ZERO);
+		}
+		Formula[] valid = {AtomicFormula.TRUE, factory.and(), factory.not(AtomicFormula.FALSE)};
+		for(Formula f:valid)
+		{
+			BDD bdd = f.toBDD();
+			assertEquals(BigInteger.ONE, bdd.countModels(), f.toString());
+			assertModels(f, bdd.models(), BigInteger.ONE);
+		}
+	}
+
+	@Test
+	public void zddNormalForms()
+	{
+		RandomFormulas r = new RandomFormulas(22, 6);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			Formula f = r.formula(5);
+			ZDDManager manager = new ZDDManager();
+			Pair<SetFormula, SetFormula> forms = f.toNormalForm(manager);
+			SetFormula cnf = forms.getFirst();
+			SetFormula dnf = forms.getSecond();
+			assertTrue(TruthTable.isEquivalent(f, cnf.asFormula()), f.toString());
+			assertTrue(TruthTable.isEquivalent(f, dnf.asFormula()), f.toString());
+			assertEquals(BigInteger.valueOf(cnf.getClauseStore().size()), cnf.getZDD().count(), f.toString());
+			// Equal families are equal and have equal hash codes, whether they are kept in a ZDD or a store
+			SetFormula copy = new SetFormula(new ClauseStore(cnf.getClauseStore()), SetFormula.Type.CNF);
+			assertEquals(copy, cnf, f.toString());
+			assertEquals(copy.hashCode(), cnf.hashCode(), f.toString());
+			SetFormula other = new SetFormula(cnf.toZDD(new ZDDManager()), SetFormula.Type.CNF);
+			assertEquals(cnf, other, f.toString());
+			assertEquals(cnf.hashCode(), other.hashCode(), f.toString());
+		}
+	}
+
+	@Test
+	public void modelCounter()
+	{
+		RandomFormulas r = new RandomFormulas(23, 10);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			SetFormula cnf = r.cnf(10+r.random().nextInt(35), 3);
+			BigInteger expected = BigInteger.valueOf(TruthTable.countModels(cnf.asFormula()));
+			assertEquals(expected, new ModelCounter().count(cnf), cnf.toString());
+			assertEquals(expected, cnf.countModels(), cnf.toString());
+			Formula f = r.formula(6);
+			assertEquals(BigInteger.valueOf(TruthTable.countModels(f)), f.countModels(), f.toString());
+		}
+	}
+
+	@Test
+	public void modelEnumerator()
+	{
+		RandomFormulas r = new RandomFormulas(24, 8);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			SetFormula cnf = r.cnf(8+r.random().nextInt(25), 3);
+			BigInteger expected = BigInteger.valueOf(TruthTable.countModels(cnf.asFormula()));
+			List<Model> models = cnf.models().collect(Collectors.toList());
+			assertModels(cnf.asFormula(), models, expected);
+			assertEquals(expected.longValue(), cnf.models().parallel().count(), cnf.toString());
+			Formula f = r.formula(6);
+			assertModels(f, f.models().collect(Collectors.toList()), BigInteger.valueOf(TruthTable.countModels(f)));
+		}
+	}
+
+	/**
+	 * Asserts that the models are distinct models of f and that there are expected many
+	 */
+	private static void assertModels(Formula f, Iterable<Model> models, BigInteger expected)
+	{
+		Set<Set<AtomicFormula>> distinct = new HashSet<>();
+		long n = 0;
+		for(Model m:models)
+		{
+			assertTrue(f.isTrue(m), f+" "+m);
+			distinct.add(m.getTrueAtomicFormulas());
+			n++;
+		}
+		assertEquals(expected.longValue(), n, f.toString());
+		assertEquals(n, distinct.size(), f.toString());
+	}
+}
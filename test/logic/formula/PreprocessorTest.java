@@ -0,0 +1,50 @@
+package logic.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import logic.formula.Preprocessor.Stage;
+
+/**
+ * Cross-checks the {@link Preprocessor} against the truth table: the simplified formula is satisfiable iff the input is,
+ * and the reconstruction of a model of the simplified formula is a model of the input
+ */
+public class PreprocessorTest
+{
+	@Test
+	public void defaultPipeline()
+	{
+		RandomFormulas r = new RandomFormulas(31, 10);
+		for(int i = 0;i<300;i++)
+			check(new Preprocessor(), r.cnf(5+r.random().nextInt(40), 2+r.random().nextInt(2)));
+	}
+
+	@Test
+	public void randomStages()
+	{
+		RandomFormulas r = new RandomFormulas(32, 10);
+		Stage[] all = Stage.values();
+		for(int i = 0;i<300;i++)
+		{
+			Stage[] stages = new Stage[1+r.random().nextInt(6)];
+			for(int j = 0;j<stages.length;j++)
+				stages[j] = all[r.random().nextInt(all.length)];
+			Preprocessor p = new Preprocessor();
+			p.setStages(stages);
+			p.setEliminationGrowth(r.random().nextInt(3));
+			check(p, r.cnf(5+r.random().nextInt(40), 1+r.random().nextInt(3)));
+		}
+	}
+
+	private static void check(Preprocessor p, SetFormula cnf)
+	{
+		boolean expected = Algorithms.getModelTT(cnf.asFormula()) != null;
+		SetFormula simplified = p.preprocess(cnf);
+		Model m = simplified.findModel();
+		assertEquals(expected, m != null, cnf.toString());
+		if(m != null)
+			assertTrue(RandomFormulas.satisfies(p.reconstruct(m), cnf), cnf+" simplified to "+simplified);
+	}
+}
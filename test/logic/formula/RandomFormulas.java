@@ -0,0 +1,130 @@
+package logic.formula;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Random formulas and clause sets over a fixed set of atomic formulas for the randomized tests.
+ * Every test uses its own seed, so a failure can be reproduced.
+ */
+final class RandomFormulas
+{
+	private final Random random;
+	private final FormulaFactory factory = FormulaFactory.getDefault();
+	private final List<AtomicFormula> atoms = new ArrayList<>();
+
+	/**
+	 * @param seed - seed of the random numbers
+	 * @param variables - number of atomic formulas, they are named a0, a1, ...
+	 */
+	RandomFormulas(long seed, int variables)
+	{
+		random = new Random(seed);
+		for(int i = 0;i<variables;i++)
+			atoms.add(factory.atom("a"+i));
+	}
+
+	Random random()
+	{
+		return random;
+	}
+
+	List<AtomicFormula> atoms()
+	{
+		return Collections.unmodifiableList(atoms);
+	}
+
+	/**
+	 * @param depth - maximum nesting depth
+	 * @return a formula with NOT, AND, OR and rarely the constants
+	 */
+	Formula formula(int depth)
+	{
+		if(depth == 0 || random.nextInt(4) == 0)
+		{
+			int r = random.nextInt(20);
+			if(r == 0)
+				return AtomicFormula.TRUE;
+			if(r == 1)
+				return AtomicFormula.FALSE;
+			return atoms.get(random.nextInt(atoms.size()));
+		}
+		switch(random.nextInt(3))
+		{
+		case 0:
+			return factory.not(formula(depth-1));
+		case 1:
+			return factory.and(arguments(depth-1));
+		default:
+			return factory.or(arguments(depth-1));
+		}
+	}
+
+	private List<Formula> arguments(int depth)
+	{
+		int n = 2+random.nextInt(2);
+		List<Formula> args = new ArrayList<>(n);
+		for(int i = 0;i<n;i++)
+			args.add(formula(depth));
+		return args;
+	}
+
+	/**
+	 * @param clauses - number of clauses
+	 * @param width - number of distinct variables per clause
+	 * @return a random formula in CNF
+	 */
+	SetFormula cnf(int clauses, int width)
+	{
+		Set<Set<Literal>> set = new HashSet<>();
+		for(int i = 0;i<clauses;i++)
+			set.add(clause(width));
+		return new SetFormula(set, SetFormula.Type.CNF);
+	}
+
+	/**
+	 * @param clauses - number of clauses
+	 * @return a random formula in CNF whose clauses have at most one positive literal
+	 */
+	HornFormula horn(int clauses)
+	{
+		Set<Set<Literal>> set = new HashSet<>();
+		for(int i = 0;i<clauses;i++)
+		{
+			Set<Literal> clause = clause(1+random.nextInt(3));
+			Set<Literal> horn = new HashSet<>();
+			boolean head = random.nextInt(4) != 0;
+			for(Literal l:clause)
+			{
+				horn.add(new Literal(l.getFormula(), head));
+				head = false;
+			}
+			set.add(horn);
+		}
+		return new SetFormula(set, SetFormula.Type.CNF).asHornFormula();
+	}
+
+	private Set<Literal> clause(int width)
+	{
+		List<AtomicFormula> shuffled = new ArrayList<>(atoms);
+		Collections.shuffle(shuffled, random);
+		Set<Literal> clause = new HashSet<>();
+		for(int j = 0;j<width;j++)
+			clause.add(new Literal(shuffled.get(j), random.nextBoolean()));
+		return clause;
+	}
+
+	/**
+	 * @param m - an interpretation
+	 * @param f - a formula in CNF
+	 * @return true iff m satisfies every clause of f
+	 */
+	static boolean satisfies(Model m, SetFormula f)
+	{
+		return f.asFormula().isTrue(m);
+	}
+}
@@ -0,0 +1,109 @@
+package logic.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import logic.helper.FormulaParser;
+
+/**
+ * Parses printed random formulas and reads written DIMACS files back, the results must be the original formulas
+ */
+public class RoundTripTest
+{
+	@TempDir
+	Path dir;
+
+	@Test
+	public void prefixNotation() throws IOException
+	{
+		RandomFormulas r = new RandomFormulas(41, 6);
+		List<Formula> formulas = new ArrayList<>();
+		StringBuilder all = new StringBuilder();
+		for(int i = 0;i<300;i++)
+		{
+			Formula f = r.formula(6);
+			assertEquals(f, Formula.parseFormula(f.toString()), f.toString());
+			formulas.add(f);
+			all.append(f).append(";\n");
+		}
+		assertEquals(formulas, new FormulaParser(new StringReader(all.toString())).parseAll());
+	}
+
+	@Test
+	public void infixNotation()
+	{
+		RandomFormulas r = new RandomFormulas(42, 6);
+		FormulaFactory factory = FormulaFactory.getDefault();
+		for(int i = 0;i<300;i++)
+		{
+			Formula f = r.formula(6);
+			Formula g = r.formula(4);
+			assertTrue(TruthTable.isEquivalent(f, Formula.parseFormula(infix(f))), infix(f));
+			String implication = infix(f)+" -> "+infix(g);
+			assertTrue(TruthTable.isEquivalent(factory.or(factory.not(f), g), Formula.parseFormula(implication)), implication);
+		}
+	}
+
+	@Test
+	public void dimacs() throws IOException
+	{
+		RandomFormulas r = new RandomFormulas(43, 12);
+		Path file = dir.resolve("formula.cnf");
+		for(int i = 0;i<200;i++)
+		{
+			SetFormula cnf = r.cnf(1+r.random().nextInt(60), 1+r.random().nextInt(4));
+			DimacsWriter writer = new DimacsWriter(file);
+			writer.write(cnf);
+			writer.close();
+			DimacsReader reader = new DimacsReader();
+			SetFormula read = reader.readFormula(file);
+			assertEquals(writer.getNumberOfVariables(), reader.getDeclaredVariables());
+			assertEquals(cnf.size(), reader.getDeclaredClauses());
+			// Map the atomic formulas of the reader back to the written ones
+			Set<Set<Literal>> clauses = new HashSet<>();
+			for(Set<Literal> clause:read.asSet())
+			{
+				Set<Literal> c = new HashSet<>();
+				for(Literal l:clause)
+				{
+					int v = Integer.parseInt(l.getFormula().getName().substring(1));
+					c.add(new Literal(writer.getAtomicFormula(v), l.isPositive()));
+				}
+				clauses.add(c);
+			}
+			assertEquals(cnf.asSet(), clauses, cnf.toString());
+		}
+	}
+
+	/**
+	 * @return f with the infix operators !, &amp; and |
+	 */
+	private static String infix(Formula f)
+	{
+		if(f instanceof AtomicFormula)
+			return f.toString();
+		if(f instanceof NOTFormula)
+			return "!"+infix(((NOTFormula)f).getArgumentFormula());
+		boolean and = f instanceof ANDFormula;
+		List<Formula> args = and?((ANDFormula)f).getOrigList():((ORFormula)f).getOrigList();
+		StringBuilder sb = new StringBuilder("(");
+		for(int i = 0;i<args.size();i++)
+		{
+			if(i > 0)
+				sb.append(and?" & ":" | ");
+			sb.append(infix(args.get(i)));
+		}
+		return sb.append(")").toString();
+	}
+}
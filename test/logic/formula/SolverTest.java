@@ -0,0 +1,159 @@
+package logic.formula;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Cross-checks the satisfiability front-ends against the truth table on random formulas:
+ * the result must agree with {@link Algorithms#getModelTT(Formula)} and every returned model must satisfy the formula.
+ */
+public class SolverTest
+{
+	private static final int ROUNDS = 300;
+
+	@Test
+	public void satSolver()
+	{
+		RandomFormulas r = new RandomFormulas(1, 10);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			SetFormula cnf = r.cnf(30+r.random().nextInt(25), 3);
+			boolean expected = Algorithms.getModelTT(cnf.asFormula()) != null;
+			SATSolver solver = new SATSolver(cnf);
+			assertEquals(expected, solver.solve(), cnf.toString());
+			if(expected)
+				assertTrue(RandomFormulas.satisfies(solver.getModel(), cnf), cnf.toString());
+			Model m = cnf.findModel();
+			assertEquals(expected, m != null, cnf.toString());
+			if(expected)
+				assertTrue(RandomFormulas.satisfies(m, cnf), cnf.toString());
+		}
+	}
+
+	@Test
+	public void portfolio()
+	{
+		RandomFormulas r = new RandomFormulas(2, 10);
+		for(int i = 0;i<ROUNDS/3;i++)
+		{
+			SetFormula cnf = r.cnf(35+r.random().nextInt(15), 3);
+			boolean expected = Algorithms.getModelTT(cnf.asFormula()) != null;
+			SATPortfolio portfolio = new SATPortfolio(2);
+			assertEquals(expected, portfolio.solve(cnf), cnf.toString());
+			if(expected)
+				assertTrue(RandomFormulas.satisfies(portfolio.getModel(), cnf), cnf.toString());
+		}
+	}
+
+	@Test
+	public void cubeAndConquer()
+	{
+		RandomFormulas r = new RandomFormulas(3, 12);
+		for(int i = 0;i<ROUNDS/3;i++)
+		{
+			SetFormula cnf = r.cnf(45+r.random().nextInt(15), 3);
+			boolean expected = Algorithms.getModelTT(cnf.asFormula()) != null;
+			CubeAndConquer solver = new CubeAndConquer(2);
+			solver.setDepth(1+r.random().nextInt(4));
+			assertEquals(expected, solver.solve(cnf), cnf.toString());
+			if(expected)
+				assertTrue(RandomFormulas.satisfies(solver.getModel(), cnf), cnf.toString());
+		}
+	}
+
+	@Test
+	public void sessionWithAssumptionsAndScopes()
+	{
+		RandomFormulas r = new RandomFormulas(4, 8);
+		FormulaFactory factory = FormulaFactory.getDefault();
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			SetFormula base = r.cnf(10+r.random().nextInt(10), 3);
+			Formula scoped = r.formula(4);
+			SATSession session = new SATSession(base);
+			session.push();
+			session.addFormula(scoped);
+			List<Literal> assumptions = new ArrayList<>();
+			List<Formula> conjuncts = new ArrayList<>();
+			conjuncts.add(base.asFormula());
+			conjuncts.add(scoped);
+			for(int j = r.random().nextInt(3);j>0;j--)
+			{
+				Literal l = new Literal(r.atoms().get(r.random().nextInt(r.atoms().size())), r.random().nextBoolean());
+				assumptions.add(l);
+				conjuncts.add(l.asFormula());
+			}
+			Formula expected = factory.and(conjuncts);
+			boolean sat = Algorithms.getModelTT(expected) != null;
+			assertEquals(sat, session.solve(assumptions), expected.toString());
+			if(sat)
+				assertTrue(expected.isTrue(session.getModel()), expected.toString());
+			else
+			{
+				// The failed assumptions alone are inconsistent with the clauses
+				List<Formula> core = new ArrayList<>();
+				core.add(base.asFormula());
+				core.add(scoped);
+				for(Literal l:session.getFailedAssumptions())
+				{
+					assertTrue(assumptions.contains(l), l.toString());
+					core.add(l.asFormula());
+				}
+				assertNull(Algorithms.getModelTT(factory.and(core)), expected.toString());
+			}
+			// The scope is retracted, the base clauses remain
+			session.pop();
+			boolean baseSat = Algorithms.getModelTT(base.asFormula()) != null;
+			assertEquals(baseSat, session.solve(), base.toString());
+			if(baseSat)
+				assertTrue(RandomFormulas.satisfies(session.getModel(), base), base.toString());
+		}
+	}
+
+	@Test
+	public void hornMinimalModel()
+	{
+		RandomFormulas r = new RandomFormulas(5, 8);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			HornFormula horn = r.horn(4+r.random().nextInt(12));
+			Formula f = horn.asFormula();
+			Model m = horn.findModel();
+			assertEquals(Algorithms.getModelTT(f) != null, m != null, horn.toString());
+			if(m == null)
+				continue;
+			assertTrue(f.isTrue(m), horn.toString());
+			// The minimal model is contained in every model
+			f.models().forEach(other -> assertTrue(other.getTrueAtomicFormulas().containsAll(m.getTrueAtomicFormulas()),
+					horn.toString()));
+		}
+	}
+
+	@Test
+	public void equisatisfiableTransformations()
+	{
+		RandomFormulas r = new RandomFormulas(6, 6);
+		for(int i = 0;i<ROUNDS;i++)
+		{
+			Formula f = r.formula(6);
+			boolean expected = Algorithms.getModelTT(f) != null;
+			assertEquals(expected, Algorithms.getEquisatisfiableCNF(f).isSatisfiable(), f.toString());
+			assertEquals(expected, Algorithms.getEquisatisfiableCNF(f, true).isSatisfiable(), f.toString());
+			assertEquals(expected, Algorithms.getEquisatisfiableCNF(f, 4L).isSatisfiable(), f.toString());
+			// A model of the full transformation is a model of f
+			Model m = Algorithms.getEquisatisfiableCNF(f).findModel();
+			if(expected)
+			{
+				assertNotNull(m);
+				assertTrue(f.isTrue(m), f.toString());
+			}
+		}
+	}
+}